@@ -0,0 +1,179 @@
+package io.github.Syedowais381.CodePulz.benchmark;
+
+import io.github.Syedowais381.CodePulz.cache.CompilationCache;
+import io.github.Syedowais381.CodePulz.cache.ResultCache;
+import io.github.Syedowais381.CodePulz.config.AdmissionProperties;
+import io.github.Syedowais381.CodePulz.config.CompileCacheProperties;
+import io.github.Syedowais381.CodePulz.config.ExecutionProperties;
+import io.github.Syedowais381.CodePulz.config.ResultCacheProperties;
+import io.github.Syedowais381.CodePulz.config.SandboxPoolProperties;
+import io.github.Syedowais381.CodePulz.config.SessionProperties;
+import io.github.Syedowais381.CodePulz.config.WorkspaceProperties;
+import io.github.Syedowais381.CodePulz.dto.ExecutionRequest;
+import io.github.Syedowais381.CodePulz.dto.ExecutionResponse;
+import io.github.Syedowais381.CodePulz.dto.ExecutionSession;
+import io.github.Syedowais381.CodePulz.metrics.ExecutionMetrics;
+import io.github.Syedowais381.CodePulz.sandbox.Language;
+import io.github.Syedowais381.CodePulz.sandbox.Sandbox;
+import io.github.Syedowais381.CodePulz.sandbox.SandboxPool;
+import io.github.Syedowais381.CodePulz.sandbox.SandboxRunner;
+import io.github.Syedowais381.CodePulz.sandbox.WorkspaceManager;
+import io.github.Syedowais381.CodePulz.scheduler.ExecutionScheduler;
+import io.github.Syedowais381.CodePulz.service.ExecutionService;
+import io.github.Syedowais381.CodePulz.service.SessionManager;
+import io.github.Syedowais381.CodePulz.service.StdinWaitDetector;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * The ExecutionService request path (admission, pooled sandbox, session setup, output
+ * waits, release) with the container replaced by an in-JVM program that prompts for a
+ * number and echoes it. The interactive round trip includes two quiescence windows by
+ * design; compare runs with the same quiescenceMs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExecutionServiceBenchmark {
+
+    @Param({"5"})
+    public long quiescenceMs;
+
+    private ExecutorService io;
+    private SandboxPool pool;
+    private ExecutionService service;
+    private ExecutionRequest request;
+
+    @Setup
+    public void setUp() {
+        io = Executors.newCachedThreadPool(Thread.ofPlatform().daemon(true).factory());
+
+        SandboxPoolProperties poolProperties = new SandboxPoolProperties();
+        poolProperties.setEnabled(true);
+        poolProperties.setMinIdle(0);
+        poolProperties.setMaxSize(64);
+        pool = new SandboxPool(new InJvmRunner(), poolProperties);
+
+        CompileCacheProperties cacheProperties = new CompileCacheProperties();
+        cacheProperties.setEnabled(false);
+        ExecutionProperties properties = new ExecutionProperties();
+        properties.setQuiescenceMs(quiescenceMs);
+        AdmissionProperties admission = new AdmissionProperties();
+        admission.setMaxConcurrent(64);
+        admission.setMaxPerClient(64);
+        SessionProperties sessionProperties = new SessionProperties();
+        sessionProperties.setMaxPerClient(64);
+
+        service = new ExecutionService(pool, new CompilationCache(cacheProperties, new SimpleMeterRegistry()),
+                properties, io, new ExecutionScheduler(admission), new ExecutionMetrics(new SimpleMeterRegistry()),
+                new StdinWaitDetector(properties), new WorkspaceManager(new WorkspaceProperties()),
+                new SessionManager(sessionProperties, new SimpleMeterRegistry()),
+                new ResultCache(new ResultCacheProperties(), new SimpleMeterRegistry()));
+
+        request = new ExecutionRequest();
+        request.setLanguage("python");
+        request.setCode("n = input('Enter a number: ')\nprint('You entered: ' + n)\n");
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+        io.shutdownNow();
+    }
+
+    @Benchmark
+    public ExecutionResponse interactiveRoundTrip() throws Exception {
+        ExecutionResponse started = service.startInteractiveExecution(request, "bench");
+        ExecutionResponse answered = service.sendInputToSession(started.getSessionId(), "42", false);
+        // Make sure the session is cleaned up and its sandbox released before the next call
+        ExecutionSession session = service.getSessionById(started.getSessionId());
+        if (session != null) {
+            session.getExitFuture().get(10, TimeUnit.SECONDS);
+            service.getSessionStatus(started.getSessionId());
+        }
+        return answered;
+    }
+
+    @Benchmark
+    public ExecutionService.RunResult runWithInput() throws Exception {
+        return service.runWithInput(Language.PYTHON, request.getCode(), "42\n", "bench");
+    }
+
+    /**
+     * Sandboxes are temp directories; every command runs the same prompt/echo program.
+     */
+    private static final class InJvmRunner implements SandboxRunner {
+
+        @Override
+        public String getName() {
+            return "in-jvm";
+        }
+
+        @Override
+        public Sandbox create(Language language) throws IOException {
+            return new Sandbox("bench-" + UUID.randomUUID(), language, Files.createTempDirectory("codepulz-bench"));
+        }
+
+        @Override
+        public Process exec(Sandbox sandbox, String command) {
+            return start(sandbox.getLanguage(), sandbox.getWorkspace(), command);
+        }
+
+        @Override
+        public Process start(Language language, Path workspace, String command) {
+            return new FakeProcess((stdin, stdout, stderr) -> {
+                stdout.write("Enter a number: ".getBytes(StandardCharsets.UTF_8));
+                String line = new BufferedReader(new InputStreamReader(stdin, StandardCharsets.UTF_8)).readLine();
+                stdout.write(("You entered: " + line + "\n").getBytes(StandardCharsets.UTF_8));
+                return 0;
+            });
+        }
+
+        @Override
+        public void reset(Sandbox sandbox) throws IOException {
+            try (Stream<Path> files = Files.list(sandbox.getWorkspace())) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+
+        @Override
+        public void destroy(Sandbox sandbox) {
+            try (Stream<Path> walk = Files.walk(sandbox.getWorkspace())) {
+                for (Path path : (Iterable<Path>) walk.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.deleteIfExists(path);
+                }
+            } catch (IOException e) {
+                // Best effort
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package io.github.Syedowais381.CodePulz.benchmark;
+
+import io.github.Syedowais381.CodePulz.dto.ExecutionSession;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A whole session's output path: reader thread, buffer append, listener dispatch and
+ * change signalling, fed by an in-JVM program that prints a fixed amount of output.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExecutionSessionBenchmark {
+
+    @Param({"64", "4096"})
+    public int lineBytes;
+
+    @Param({"256"})
+    public int lines;
+
+    // Listeners attached, as with open WebSocket viewers
+    @Param({"0", "1"})
+    public int subscribers;
+
+    private ExecutorService io;
+    private byte[] line;
+
+    @Setup
+    public void setUp() {
+        io = Executors.newCachedThreadPool(Thread.ofPlatform().daemon(true).factory());
+        line = ("x".repeat(lineBytes - 1) + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    @TearDown
+    public void tearDown() {
+        io.shutdownNow();
+    }
+
+    @Benchmark
+    public String runToExit() throws Exception {
+        FakeProcess process = new FakeProcess((stdin, stdout, stderr) -> {
+            for (int i = 0; i < lines; i++) {
+                stdout.write(line);
+            }
+            return 0;
+        });
+        ExecutionSession session = new ExecutionSession("bench", process, null,
+                ExecutionSession.DEFAULT_OUTPUT_RETENTION_BYTES, io);
+        LongAdder delivered = new LongAdder();
+        for (int i = 0; i < subscribers; i++) {
+            session.subscribe(new CountingListener(delivered));
+        }
+        session.getExitFuture().get(10, TimeUnit.SECONDS);
+        return session.getCurrentOutput();
+    }
+
+    private record CountingListener(LongAdder delivered) implements ExecutionSession.OutputListener {
+        @Override
+        public void onStdout(String data, long endOffset) {
+            delivered.add(data.length());
+        }
+
+        @Override
+        public void onStderr(String data, long endOffset) {
+            delivered.add(data.length());
+        }
+
+        @Override
+        public void onExit(int exitCode) {
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package io.github.Syedowais381.CodePulz.benchmark;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * In-JVM stand-in for a sandboxed program, so benchmarks measure our stream handling
+ * rather than process or container startup. The program body runs on its own thread
+ * and talks to the caller through pipes, like a real child process.
+ */
+public class FakeProcess extends Process {
+
+    private static final int PIPE_SIZE = 64 * 1024;
+
+    /**
+     * What the fake program does; returns its exit code.
+     */
+    @FunctionalInterface
+    public interface Program {
+        int run(InputStream stdin, OutputStream stdout, OutputStream stderr) throws IOException;
+    }
+
+    private final PipedOutputStream stdin = new PipedOutputStream();
+    private final PipedInputStream stdout = new PipedInputStream(PIPE_SIZE);
+    private final PipedInputStream stderr = new PipedInputStream(PIPE_SIZE);
+    private final CompletableFuture<Integer> exit = new CompletableFuture<>();
+    private final Thread thread;
+
+    public FakeProcess(Program program) {
+        try {
+            PipedInputStream programIn = new PipedInputStream(stdin, PIPE_SIZE);
+            OutputStream programOut = new AutoFlush(new PipedOutputStream(stdout));
+            OutputStream programErr = new AutoFlush(new PipedOutputStream(stderr));
+            thread = Thread.ofPlatform().daemon(true).name("fake-process").start(() -> {
+                int code = 1;
+                try (programIn; programOut; programErr) {
+                    code = program.run(programIn, programOut, programErr);
+                } catch (IOException e) {
+                    // Pipe closed by the reader side: treat as killed
+                }
+                exit.complete(code);
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * A piped reader only wakes promptly on flush (otherwise it polls once a second),
+     * so flush every write the way an unbuffered child's write(2) would be seen.
+     */
+    private static final class AutoFlush extends FilterOutputStream {
+        private AutoFlush(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            out.flush();
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            out.flush();
+        }
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return stdin;
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return stdout;
+    }
+
+    @Override
+    public InputStream getErrorStream() {
+        return stderr;
+    }
+
+    @Override
+    public int waitFor() throws InterruptedException {
+        try {
+            return exit.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public boolean waitFor(long timeout, TimeUnit unit) throws InterruptedException {
+        try {
+            exit.get(timeout, unit);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public int exitValue() {
+        Integer code = exit.getNow(null);
+        if (code == null) {
+            throw new IllegalThreadStateException("process hasn't exited");
+        }
+        return code;
+    }
+
+    @Override
+    public boolean isAlive() {
+        return !exit.isDone();
+    }
+
+    @Override
+    public void destroy() {
+        thread.interrupt();
+        try {
+            stdin.close();
+            stdout.close();
+            stderr.close();
+        } catch (IOException e) {
+            // ignore
+        }
+        exit.complete(137);
+    }
+}
@@ -0,0 +1,74 @@
+package io.github.Syedowais381.CodePulz.benchmark;
+
+import io.github.Syedowais381.CodePulz.buffer.OutputBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Output accumulation in a session stream: appending reader chunks, the incremental
+ * read the WebSocket/REST deltas use, and the full read behind getCurrentOutput().
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OutputBufferBenchmark {
+
+    // Size of one read() from the process pipe
+    @Param({"64", "8192"})
+    public int chunkBytes;
+
+    // Output already retained when reading (the 1 MiB default cap when full)
+    @Param({"4096", "1048576"})
+    public int retainedBytes;
+
+    private byte[] chunk;
+    private OutputBuffer buffer;
+    private long tailOffset;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        chunk = new byte[chunkBytes];
+        Arrays.fill(chunk, (byte) 'x');
+        buffer = new OutputBuffer(1024 * 1024);
+        byte[] fill = "0123456789abcdef\n".repeat(retainedBytes / 17 + 1).getBytes(StandardCharsets.UTF_8);
+        buffer.write(fill, 0, retainedBytes);
+        tailOffset = buffer.getEndOffset();
+    }
+
+    @Benchmark
+    public long append() {
+        buffer.write(chunk, 0, chunk.length);
+        return buffer.getEndOffset();
+    }
+
+    @Benchmark
+    public String readDelta() {
+        // What a subscriber reads after each chunk: only the newest bytes
+        buffer.write(chunk, 0, chunk.length);
+        OutputBuffer.Read read = buffer.read(tailOffset);
+        tailOffset = read.nextOffset();
+        return read.text();
+    }
+
+    @Benchmark
+    public String readAll() {
+        return buffer.readAll();
+    }
+}
@@ -0,0 +1,94 @@
+package io.github.Syedowais381.CodePulz.benchmark;
+
+import io.github.Syedowais381.CodePulz.config.WorkspaceProperties;
+import io.github.Syedowais381.CodePulz.sandbox.WorkspaceManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Staging a program for a cold run: a fresh temp directory per run (write the source,
+ * then delete the tree) against a WorkspaceManager workspace that is emptied and
+ * reused, on tmpfs and on the regular temp directory.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WorkspaceBenchmark {
+
+    @Param({"tmpfs", "disk"})
+    public String storage;
+
+    private static final String SOURCE = "public class Main {\n    public static void main(String[] args) {\n"
+            + "        System.out.println(\"Hello\");\n".repeat(20) + "    }\n}\n";
+
+    private Path base;
+    private WorkspaceManager workspaces;
+
+    @Setup
+    public void setUp() throws IOException {
+        Path parent = storage.equals("tmpfs") && Files.isWritable(Paths.get("/dev/shm"))
+                ? Paths.get("/dev/shm")
+                : Paths.get(System.getProperty("java.io.tmpdir"));
+        base = Files.createTempDirectory(parent, "codepulz-bench");
+        WorkspaceProperties properties = new WorkspaceProperties();
+        properties.setDirectory(base.resolve("pool").toString());
+        workspaces = new WorkspaceManager(properties);
+        Files.createDirectories(workspaces.getRoot());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        workspaces.shutdown();
+        delete(base);
+    }
+
+    @Benchmark
+    public Path tempDirectoryPerRun() throws IOException {
+        // What ExecutionService did before: createTempDirectory, write, recursive delete
+        Path dir = Files.createTempDirectory(base, "codepulz-run-");
+        Path source = Files.writeString(dir.resolve("Main.java"), SOURCE);
+        Files.createDirectories(dir.resolve("classes"));
+        Files.writeString(dir.resolve("classes").resolve("Main.class"), SOURCE);
+        delete(dir);
+        return source;
+    }
+
+    @Benchmark
+    public Path pooledWorkspace() throws IOException {
+        Path dir = workspaces.acquire();
+        Path source = Files.writeString(dir.resolve("Main.java"), SOURCE);
+        Files.createDirectories(dir.resolve("classes"));
+        Files.writeString(dir.resolve("classes").resolve("Main.class"), SOURCE);
+        workspaces.release(dir);
+        return source;
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> walk = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) walk.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
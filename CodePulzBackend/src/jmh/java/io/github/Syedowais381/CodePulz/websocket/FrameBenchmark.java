@@ -0,0 +1,230 @@
+package io.github.Syedowais381.CodePulz.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.Syedowais381.CodePulz.benchmark.FakeProcess;
+import io.github.Syedowais381.CodePulz.config.WebSocketProperties;
+import io.github.Syedowais381.CodePulz.dto.ExecutionSession;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.security.Principal;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * WebSocket output framing: building one JSON frame per delta, and a burst of deltas
+ * going through SessionBroadcaster (coalescing, encoding once, sending to every
+ * subscriber) with the JSON protocol and with the binary one.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrameBenchmark {
+
+    @Param({"16", "1024"})
+    public int deltaChars;
+
+    // Deltas arriving before the sender gets to run (coalesced into one frame)
+    @Param({"1", "32"})
+    public int burst;
+
+    // Sockets attached to the session, all sent the same frames
+    @Param({"1", "30"})
+    public int subscribers;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final ArrayDeque<Runnable> senderTasks = new ArrayDeque<>();
+    private final Executor sender = senderTasks::add;
+    private ScheduledExecutorService timer;
+    private ExecutionSession execSession;
+    private CountingSocket socket;
+    private SessionBroadcaster broadcaster;
+    private SessionBroadcaster binaryBroadcaster;
+    private String delta;
+
+    @Setup
+    public void setUp() {
+        delta = "line \"quoted\"\t".repeat(deltaChars / 14 + 1).substring(0, deltaChars);
+        timer = Executors.newSingleThreadScheduledExecutor();
+        // A program that just waits for stdin, so the quiet check sees a live session
+        execSession = new ExecutionSession("bench", new FakeProcess((stdin, stdout, stderr) -> {
+            stdin.read();
+            return 0;
+        }), null);
+        socket = new CountingSocket();
+        // No flush window (the burst is already complete), no flow-control pauses and no
+        // slow subscribers
+        WebSocketProperties properties = new WebSocketProperties();
+        properties.setFlushWindowMs(0);
+        properties.setFlowWindowBytes(Long.MAX_VALUE / 2);
+        properties.setSubscriberMaxLagBytes(Long.MAX_VALUE / 2);
+        // Quiet window longer than the run: the status timer never fires mid-measurement
+        broadcaster = new SessionBroadcaster(execSession, mapper, sender, timer, TimeUnit.HOURS.toMillis(1), properties);
+        binaryBroadcaster = new SessionBroadcaster(execSession, mapper, sender, timer, TimeUnit.HOURS.toMillis(1),
+                properties);
+        for (int i = 0; i < subscribers; i++) {
+            broadcaster.join(socket, false, false);
+            binaryBroadcaster.join(socket, true, false);
+        }
+        runSenderTasks();
+    }
+
+    @TearDown
+    public void tearDown() {
+        execSession.close();
+        timer.shutdownNow();
+    }
+
+    @Benchmark
+    public String frameObjectNode() {
+        return mapper.createObjectNode().put("type", "stdout").put("data", delta).toString();
+    }
+
+    @Benchmark
+    public String frameWriteValueAsString() throws Exception {
+        return mapper.writeValueAsString(Map.of("type", "stdout", "data", delta));
+    }
+
+    @Benchmark
+    public void streamBurst(Blackhole blackhole) {
+        streamBurst(broadcaster);
+        blackhole.consume(socket.bytesSent);
+    }
+
+    @Benchmark
+    public void streamBurstBinary(Blackhole blackhole) {
+        streamBurst(binaryBroadcaster);
+        blackhole.consume(socket.bytesSent);
+    }
+
+    private void streamBurst(SessionBroadcaster target) {
+        // The broadcaster reads output from the session buffer, so the burst is written there
+        for (int i = 0; i < burst; i++) {
+            execSession.getOutputBuffer().write(delta);
+            target.onStdout(delta, 0);
+        }
+        runSenderTasks();
+    }
+
+    private void runSenderTasks() {
+        Runnable task;
+        while ((task = senderTasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    /**
+     * Open socket that only counts what is sent to it.
+     */
+    private static final class CountingSocket implements WebSocketSession {
+        private long bytesSent;
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) {
+            bytesSent += message.getPayloadLength();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public String getId() {
+            return "bench";
+        }
+
+        @Override
+        public URI getUri() {
+            return URI.create("ws://localhost/ws/execute/bench");
+        }
+
+        @Override
+        public HttpHeaders getHandshakeHeaders() {
+            return new HttpHeaders();
+        }
+
+        @Override
+        public Map<String, Object> getAttributes() {
+            return new HashMap<>();
+        }
+
+        @Override
+        public Principal getPrincipal() {
+            return null;
+        }
+
+        @Override
+        public InetSocketAddress getLocalAddress() {
+            return null;
+        }
+
+        @Override
+        public InetSocketAddress getRemoteAddress() {
+            return null;
+        }
+
+        @Override
+        public String getAcceptedProtocol() {
+            return null;
+        }
+
+        @Override
+        public void setTextMessageSizeLimit(int messageSizeLimit) {
+        }
+
+        @Override
+        public int getTextMessageSizeLimit() {
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        public void setBinaryMessageSizeLimit(int messageSizeLimit) {
+        }
+
+        @Override
+        public int getBinaryMessageSizeLimit() {
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        public List<WebSocketExtension> getExtensions() {
+            return List.of();
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void close(CloseStatus status) {
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package io.github.Syedowais381.CodePulz.buffer;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Bounded byte store for one output stream of a running program.
+ *
+ * Bytes are kept in a ring of fixed-size chunks, allocated on demand. Every byte has
+ * a monotonic offset (the number of bytes written before it), so consumers can read
+ * incrementally with read(fromOffset). Once more than the retention cap has been
+ * written the oldest chunk is dropped; reads that start before the retained window
+ * get a truncation marker in place of the missing bytes.
+ *
+ * Reads decode UTF-8 and never split a character: a multi-byte sequence that is
+ * still incomplete at the end of the buffer is left for the next read (until the
+ * stream is closed).
+ */
+public class OutputBuffer {
+
+    public static final int CHUNK_SIZE = 4096;
+
+    private final byte[][] chunks;
+    private long startOffset; // offset of the first retained byte (chunk aligned)
+    private long endOffset;   // total bytes ever written
+    private boolean closed;
+
+    /**
+     * Result of a read: decoded text and the offset to pass to the next read.
+     */
+    public record Read(String text, long nextOffset, boolean truncated) {
+    }
+
+    /**
+     * Result of readBytes: the array holds length raw bytes after its reserved prefix,
+     * starting at stream offset offset.
+     */
+    public record Slice(byte[] data, long offset, int length, boolean truncated) {
+        public long nextOffset() {
+            return offset + length;
+        }
+    }
+
+    /**
+     * @param retentionBytes how much of the most recent output to keep; rounded up
+     *                       to whole chunks
+     */
+    public OutputBuffer(long retentionBytes) {
+        int count = (int) Math.max(2, (retentionBytes + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        this.chunks = new byte[count][];
+    }
+
+    public synchronized void write(byte[] data, int offset, int length) {
+        while (length > 0) {
+            int position = (int) (endOffset % CHUNK_SIZE);
+            int index = (int) ((endOffset / CHUNK_SIZE) % chunks.length);
+            if (position == 0) {
+                // Starting a new chunk; if the ring is full it replaces the oldest one
+                if (endOffset - startOffset >= (long) chunks.length * CHUNK_SIZE) {
+                    startOffset += CHUNK_SIZE;
+                }
+                if (chunks[index] == null) {
+                    chunks[index] = new byte[CHUNK_SIZE];
+                }
+            }
+            int count = Math.min(length, CHUNK_SIZE - position);
+            System.arraycopy(data, offset, chunks[index], position, count);
+            endOffset += count;
+            offset += count;
+            length -= count;
+        }
+    }
+
+    public void write(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Mark the stream as finished: reads now also return a trailing incomplete
+     * UTF-8 sequence (decoded with a replacement character).
+     */
+    public synchronized void close() {
+        closed = true;
+    }
+
+    /**
+     * Everything written at or after fromOffset that is still retained.
+     */
+    public synchronized Read read(long fromOffset) {
+        return read(fromOffset, endOffset);
+    }
+
+    /**
+     * Output written from fromOffset up to toOffset, which should be a nextOffset of an
+     * earlier read so it falls on a character boundary.
+     */
+    public synchronized Read read(long fromOffset, long toOffset) {
+        long to = Math.min(Math.max(toOffset, 0), endOffset);
+        long from = Math.min(Math.max(fromOffset, 0), to);
+        boolean truncated = from < startOffset;
+        long start = Math.min(Math.max(from, startOffset), to);
+        byte[] bytes = copy(start, (int) (to - start));
+
+        int begin = 0;
+        if (truncated) {
+            // Eviction is chunk aligned and may have cut a character in half
+            while (begin < bytes.length && begin < 3 && (bytes[begin] & 0xC0) == 0x80) {
+                begin++;
+            }
+        }
+        int end = closed || to < endOffset ? bytes.length : completeLength(bytes, begin);
+        String text = new String(bytes, begin, end - begin, StandardCharsets.UTF_8);
+        if (truncated) {
+            text = "[... " + (start + begin - from) + " bytes of earlier output truncated ...]\n" + text;
+        }
+        return new Read(text, start + end, truncated);
+    }
+
+    /**
+     * Up to maxBytes raw bytes written at or after fromOffset, without decoding, so a
+     * multi-byte character may be split across slices. The returned array starts with
+     * reserve unused bytes (room for a frame header) followed by the data. The slice
+     * starts later than fromOffset when that output was truncated.
+     */
+    public synchronized Slice readBytes(long fromOffset, int maxBytes, int reserve) {
+        long from = Math.min(Math.max(fromOffset, 0), endOffset);
+        long start = Math.max(from, startOffset);
+        int length = (int) Math.min(maxBytes, endOffset - start);
+        byte[] data = new byte[reserve + length];
+        copy(start, data, reserve, length);
+        return new Slice(data, start, length, from < startOffset);
+    }
+
+    public String readAll() {
+        return read(0).text();
+    }
+
+    public synchronized long getStartOffset() {
+        return startOffset;
+    }
+
+    public synchronized long getEndOffset() {
+        return endOffset;
+    }
+
+    /**
+     * Bytes currently held (at most the retention cap rounded up to a chunk).
+     */
+    public synchronized long getRetainedBytes() {
+        return endOffset - startOffset;
+    }
+
+    private byte[] copy(long start, int length) {
+        byte[] result = new byte[length];
+        copy(start, result, 0, length);
+        return result;
+    }
+
+    private void copy(long start, byte[] dest, int destOffset, int length) {
+        int copied = 0;
+        long offset = start;
+        while (copied < length) {
+            int position = (int) (offset % CHUNK_SIZE);
+            int index = (int) ((offset / CHUNK_SIZE) % chunks.length);
+            int count = Math.min(length - copied, CHUNK_SIZE - position);
+            System.arraycopy(chunks[index], position, dest, destOffset + copied, count);
+            copied += count;
+            offset += count;
+        }
+    }
+
+    /**
+     * Length of the prefix of bytes that ends on a UTF-8 character boundary.
+     */
+    private static int completeLength(byte[] bytes, int begin) {
+        int length = bytes.length;
+        // Look back at most 3 bytes for the lead byte of the last sequence
+        for (int i = length - 1; i >= Math.max(begin, length - 3); i--) {
+            int b = bytes[i] & 0xFF;
+            if ((b & 0xC0) == 0x80) {
+                continue; // continuation byte
+            }
+            int needed = b >= 0xF0 ? 4 : b >= 0xE0 ? 3 : b >= 0xC0 ? 2 : 1;
+            return length - i >= needed ? length : i;
+        }
+        return length;
+    }
+}
@@ -0,0 +1,90 @@
+package io.github.Syedowais381.CodePulz.buffer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Output limits of one program run, shared by its stdout and stderr readers.
+ *
+ * - Rate: a token bucket of burstBytes refilled at bytesPerSecond. A reader that runs
+ *   out of tokens sleeps before reading again, so the pipe fills up and the program
+ *   blocks in write() instead of the server buffering everything it prints.
+ * - Cap: admit() lets through at most maxBytes in total; the caller stops the program
+ *   once it returns less than it was given.
+ */
+public class OutputLimiter {
+
+    /**
+     * Zero or negative values turn the respective limit off.
+     */
+    public record Limits(long bytesPerSecond, long burstBytes, long maxBytes) {
+        public static final Limits UNLIMITED = new Limits(0, 0, 0);
+    }
+
+    private final Limits limits;
+    // Guarded by this
+    private double tokens;
+    private long refilledAt;
+    private long admitted;
+    private volatile boolean throttled;
+
+    public OutputLimiter(Limits limits) {
+        this.limits = limits;
+        this.tokens = Math.max(limits.burstBytes(), 0);
+        this.refilledAt = System.nanoTime();
+    }
+
+    public Limits getLimits() {
+        return limits;
+    }
+
+    /**
+     * Count bytes towards the cap. Returns how many of them are still within it.
+     */
+    public synchronized int admit(int bytes) {
+        if (limits.maxBytes() <= 0) {
+            admitted += bytes;
+            return bytes;
+        }
+        int allowed = (int) Math.max(0, Math.min(bytes, limits.maxBytes() - admitted));
+        admitted += allowed;
+        return allowed;
+    }
+
+    /**
+     * Take bytes from the bucket, sleeping until the bucket has paid them back if it
+     * runs dry. The debt is taken up front, so readers sharing the limiter queue up
+     * behind each other rather than all waking at once.
+     */
+    public void pace(int bytes) throws InterruptedException {
+        if (limits.bytesPerSecond() <= 0 || bytes <= 0) {
+            return;
+        }
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            tokens = Math.min(Math.max(limits.burstBytes(), 0),
+                    tokens + (now - refilledAt) * limits.bytesPerSecond() / 1e9);
+            refilledAt = now;
+            tokens -= bytes;
+            waitNanos = tokens >= 0 ? 0 : (long) (-tokens * 1e9 / limits.bytesPerSecond());
+        }
+        if (waitNanos > 0) {
+            throttled = true;
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /**
+     * Whether the rate limit ever held a reader back.
+     */
+    public boolean isThrottled() {
+        return throttled;
+    }
+
+    /**
+     * Bytes let through so far.
+     */
+    public synchronized long getAdmittedBytes() {
+        return admitted;
+    }
+}
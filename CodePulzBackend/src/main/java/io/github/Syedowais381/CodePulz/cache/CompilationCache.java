@@ -0,0 +1,322 @@
+package io.github.Syedowais381.CodePulz.cache;
+
+import io.github.Syedowais381.CodePulz.config.CompileCacheProperties;
+import io.github.Syedowais381.CodePulz.sandbox.Language;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed store of compiled artifacts (the build/ directory of a run),
+ * keyed by a hash of the language, toolchain image, compile command and source.
+ * A hit lets the caller copy the artifacts into a fresh workspace and skip
+ * straight to the run command.
+ *
+ * Entries live on disk under the cache directory; an in-memory index keeps them
+ * in access order so the least recently used ones are evicted once the store
+ * exceeds its byte budget. An entry being restored is pinned and skipped by
+ * eviction until the copy is done.
+ */
+@Slf4j
+@Component
+public class CompilationCache {
+
+    private static final String STAGING_PREFIX = ".staging-";
+
+    private final CompileCacheProperties properties;
+    private final Path root;
+
+    // key -> entry size in bytes, in access order (guarded by "this")
+    private final LinkedHashMap<String, Long> index = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytesStored;
+    // key -> restores copying the entry right now (guarded by "this")
+    private final Map<String, Integer> pinned = new HashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    @Autowired
+    public CompilationCache(CompileCacheProperties properties, MeterRegistry registry) {
+        this.properties = properties;
+        this.root = properties.getDirectory() != null
+                ? Paths.get(properties.getDirectory())
+                : Paths.get(System.getProperty("java.io.tmpdir"), "codepulz-compile-cache");
+
+        FunctionCounter.builder("codepulz.compile.cache.hits", hits, AtomicLong::get)
+                .description("Compilations skipped thanks to a cached artifact").register(registry);
+        FunctionCounter.builder("codepulz.compile.cache.misses", misses, AtomicLong::get)
+                .description("Lookups that required a fresh compilation").register(registry);
+        Gauge.builder("codepulz.compile.cache.bytes", this, CompilationCache::getBytesStored)
+                .description("Bytes of compiled artifacts on disk").baseUnit("bytes").register(registry);
+        Gauge.builder("codepulz.compile.cache.entries", this, CompilationCache::getEntryCount)
+                .description("Number of cached artifacts").register(registry);
+    }
+
+    /**
+     * Rebuild the index from what is already on disk, oldest first, so a restart
+     * keeps the warm cache.
+     */
+    @PostConstruct
+    public void init() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        try {
+            Files.createDirectories(root);
+            List<Path> entries;
+            try (Stream<Path> list = Files.list(root)) {
+                entries = list.toList();
+            }
+            entries.stream()
+                    .filter(path -> path.getFileName().toString().startsWith(STAGING_PREFIX))
+                    .forEach(CompilationCache::deleteTree);
+            entries.stream()
+                    .filter(path -> !path.getFileName().toString().startsWith(STAGING_PREFIX))
+                    .sorted(Comparator.comparingLong(CompilationCache::lastModified))
+                    .forEach(path -> {
+                        long size = sizeOf(path);
+                        synchronized (this) {
+                            index.put(path.getFileName().toString(), size);
+                            bytesStored += size;
+                        }
+                    });
+            evictIfNeeded();
+        } catch (IOException e) {
+            log.warn("Could not open compile cache at {}: {}", root, e.getMessage());
+        }
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Cache key for a program: changes whenever the language, its toolchain image,
+     * the way it is compiled or the source itself changes.
+     */
+    public String key(Language language, String code) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String part : new String[] {
+                    language.getId(), language.getImage(), language.getCompileCommand(), code }) {
+                digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Whether artifacts for the key are cached (does not count as a hit or an access).
+     */
+    public synchronized boolean contains(String key) {
+        return index.containsKey(key);
+    }
+
+    /**
+     * Copy the cached artifacts for the key into buildDir. Returns false on a miss,
+     * leaving buildDir absent. The entry is pinned for the duration of the copy so
+     * eviction cannot delete it underneath us.
+     */
+    public boolean restore(String key, Path buildDir) {
+        Long size;
+        synchronized (this) {
+            // get() (not containsKey) so the lookup counts as an access for LRU order
+            size = index.get(key);
+            if (size == null) {
+                misses.incrementAndGet();
+                return false;
+            }
+            pinned.merge(key, 1, Integer::sum);
+        }
+        try {
+            copyTree(root.resolve(key), buildDir);
+            if (sizeOf(buildDir) != size) {
+                throw new IOException("Short copy of cached artifacts for " + key);
+            }
+            hits.incrementAndGet();
+            return true;
+        } catch (IOException e) {
+            // Entry damaged on disk or copy incomplete; treat as a miss
+            deleteTree(buildDir);
+            misses.incrementAndGet();
+            return false;
+        } finally {
+            synchronized (this) {
+                pinned.merge(key, -1, (count, delta) -> count + delta == 0 ? null : count + delta);
+            }
+            // Eviction may have skipped this entry while it was pinned
+            evictIfNeeded();
+        }
+    }
+
+    /**
+     * Add the artifacts in buildDir under the key. Entries are staged and then moved
+     * into place, so readers never see a half-written entry. A build directory holding
+     * anything but plain files and directories is not cached: the program wrote it, and
+     * a symlink could point at files of the host.
+     */
+    public void store(String key, Path buildDir) {
+        synchronized (this) {
+            if (index.containsKey(key)) {
+                return;
+            }
+        }
+        Path staging = root.resolve(STAGING_PREFIX + UUID.randomUUID());
+        try {
+            if (!onlyFilesAndDirectories(buildDir)) {
+                log.debug("Not caching artifacts for {}: build directory holds links or special files", key);
+                return;
+            }
+            copyTree(buildDir, staging);
+            long size = sizeOf(staging);
+            if (size > properties.getMaxBytes()) {
+                deleteTree(staging);
+                return;
+            }
+            Files.move(staging, root.resolve(key), StandardCopyOption.ATOMIC_MOVE);
+            synchronized (this) {
+                index.put(key, size);
+                bytesStored += size;
+            }
+            evictIfNeeded();
+        } catch (IOException e) {
+            // Another run may have stored the same key concurrently
+            deleteTree(staging);
+            log.debug("Could not cache artifacts for {}: {}", key, e.getMessage());
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public synchronized long getBytesStored() {
+        return bytesStored;
+    }
+
+    public synchronized int getEntryCount() {
+        return index.size();
+    }
+
+    /**
+     * Delete least recently used entries until the store fits its budget. Pinned
+     * entries are skipped; the restore holding them calls back in once it is done.
+     */
+    private void evictIfNeeded() {
+        while (true) {
+            String victim = null;
+            synchronized (this) {
+                if (bytesStored <= properties.getMaxBytes()) {
+                    return;
+                }
+                Iterator<Map.Entry<String, Long>> eldest = index.entrySet().iterator();
+                while (eldest.hasNext()) {
+                    Map.Entry<String, Long> entry = eldest.next();
+                    if (!pinned.containsKey(entry.getKey())) {
+                        victim = entry.getKey();
+                        bytesStored -= entry.getValue();
+                        eldest.remove();
+                        break;
+                    }
+                }
+                if (victim == null) {
+                    return;
+                }
+            }
+            deleteTree(root.resolve(victim));
+        }
+    }
+
+    private static boolean onlyFilesAndDirectories(Path directory) throws IOException {
+        if (!Files.isDirectory(directory, LinkOption.NOFOLLOW_LINKS)) {
+            return false;
+        }
+        try (Stream<Path> walk = Files.walk(directory)) {
+            return walk.allMatch(path -> Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)
+                    || Files.isRegularFile(path, LinkOption.NOFOLLOW_LINKS));
+        }
+    }
+
+    private static void copyTree(Path source, Path target) throws IOException {
+        try (Stream<Path> walk = Files.walk(source)) {
+            for (Path path : (Iterable<Path>) walk::iterator) {
+                Path destination = target.resolve(source.relativize(path).toString());
+                if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                    Files.createDirectories(destination);
+                } else if (Files.isRegularFile(path, LinkOption.NOFOLLOW_LINKS)) {
+                    // COPY_ATTRIBUTES keeps the executable bit on compiled binaries
+                    Files.copy(path, destination, StandardCopyOption.COPY_ATTRIBUTES,
+                            StandardCopyOption.REPLACE_EXISTING, LinkOption.NOFOLLOW_LINKS);
+                } else {
+                    throw new IOException("Not a regular file: " + path);
+                }
+            }
+        }
+    }
+
+    private static long sizeOf(Path directory) {
+        try (Stream<Path> walk = Files.walk(directory)) {
+            return walk.filter(path -> Files.isRegularFile(path, LinkOption.NOFOLLOW_LINKS)).mapToLong(path -> {
+                try {
+                    return Files.size(path);
+                } catch (IOException e) {
+                    return 0;
+                }
+            }).sum();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static void deleteTree(Path directory) {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> walk = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) walk.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        } catch (IOException e) {
+            // Best effort
+        }
+    }
+}
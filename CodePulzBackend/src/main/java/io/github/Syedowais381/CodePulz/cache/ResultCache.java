@@ -0,0 +1,220 @@
+package io.github.Syedowais381.CodePulz.cache;
+
+import io.github.Syedowais381.CodePulz.config.ResultCacheProperties;
+import io.github.Syedowais381.CodePulz.sandbox.Language;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory cache of finished non-interactive runs, keyed by a hash of the language,
+ * its runtime image and command, the source, the stdin and the output cap.
+ *
+ * Concurrent lookups of the same key share one run: the first caller runs the program
+ * and the others wait for its result. If that run fails, each waiter runs on its own.
+ * Entries are kept in access order and the least recently used ones are evicted once
+ * the cached output exceeds its byte budget; entries older than the TTL are dropped
+ * when they are next looked up.
+ */
+@Component
+public class ResultCache {
+
+    // Rough per-entry cost of the key, record and map node
+    private static final long ENTRY_OVERHEAD_BYTES = 256;
+
+    /**
+     * What a run produced, as far as it can be replayed to another caller.
+     */
+    public record Result(String output, String error, int exitCode, boolean timedOut, boolean outputTruncated,
+                         long durationMs) {
+        /**
+         * Runs cut short by a limit say more about the host than about the program.
+         */
+        boolean cacheable() {
+            return !timedOut && !outputTruncated;
+        }
+
+        long sizeBytes() {
+            // Java strings hold up to two bytes per character
+            return 2L * (output.length() + error.length()) + ENTRY_OVERHEAD_BYTES;
+        }
+    }
+
+    /**
+     * How a lookup was answered.
+     */
+    public enum Source {
+        CACHE, // a stored result
+        COALESCED, // the result of an identical run that was already in progress
+        RUN // the caller's own run
+    }
+
+    public record Lookup(Result result, Source source) {
+    }
+
+    @FunctionalInterface
+    public interface Runner {
+        Result run() throws Exception;
+    }
+
+    private record Entry(Result result, long storedAt) {
+    }
+
+    private final ResultCacheProperties properties;
+
+    // key -> entry, in access order (guarded by "this")
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytesStored;
+    private final ConcurrentHashMap<String, CompletableFuture<Result>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    @Autowired
+    public ResultCache(ResultCacheProperties properties, MeterRegistry registry) {
+        this.properties = properties;
+
+        FunctionCounter.builder("codepulz.result.cache.hits", hits, AtomicLong::get)
+                .description("Runs answered from a cached result").register(registry);
+        FunctionCounter.builder("codepulz.result.cache.misses", misses, AtomicLong::get)
+                .description("Lookups that required running the program").register(registry);
+        FunctionCounter.builder("codepulz.result.cache.coalesced", coalesced, AtomicLong::get)
+                .description("Runs answered by an identical run already in progress").register(registry);
+        Gauge.builder("codepulz.result.cache.bytes", this, ResultCache::getBytesStored)
+                .description("Estimated heap held by cached results").baseUnit("bytes").register(registry);
+        Gauge.builder("codepulz.result.cache.entries", this, ResultCache::getEntryCount)
+                .description("Number of cached results").register(registry);
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Cache key for a run: changes whenever anything that can change its output does.
+     */
+    public String key(Language language, String code, String input, long outputMaxBytes) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String part : new String[] {
+                    language.getId(), language.getImage(), language.getCommand(), code, input,
+                    Long.toString(outputMaxBytes) }) {
+                digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * The cached result for key, the result of an identical run in progress, or else
+     * the result of runner, stored unless it timed out or hit the output cap. Exceptions of runner are thrown
+     * to its own caller only and nothing is cached.
+     */
+    public Lookup getOrRun(String key, Runner runner) throws Exception {
+        Result cached = get(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return new Lookup(cached, Source.CACHE);
+        }
+        CompletableFuture<Result> own = new CompletableFuture<>();
+        CompletableFuture<Result> running = inFlight.putIfAbsent(key, own);
+        if (running != null) {
+            try {
+                Result shared = running.get();
+                coalesced.incrementAndGet();
+                return new Lookup(shared, Source.COALESCED);
+            } catch (ExecutionException e) {
+                // The other run failed (e.g. it was rejected); try on our own
+            }
+        }
+        try {
+            // An identical run may have finished between the lookup and putIfAbsent
+            Result result = running == null ? get(key) : null;
+            if (result != null) {
+                hits.incrementAndGet();
+                own.complete(result);
+                return new Lookup(result, Source.CACHE);
+            }
+            misses.incrementAndGet();
+            result = runner.run();
+            if (result.cacheable()) {
+                put(key, result);
+            }
+            own.complete(result);
+            return new Lookup(result, Source.RUN);
+        } catch (Exception | Error e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, own);
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    public synchronized long getBytesStored() {
+        return bytesStored;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    private synchronized Result get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() - entry.storedAt() > properties.getTtlMs()) {
+            entries.remove(key);
+            bytesStored -= entry.result().sizeBytes();
+            return null;
+        }
+        return entry.result();
+    }
+
+    private synchronized void put(String key, Result result) {
+        long size = result.sizeBytes();
+        if (size > properties.getMaxEntryBytes() || size > properties.getMaxBytes()) {
+            return;
+        }
+        Entry previous = entries.put(key, new Entry(result, System.currentTimeMillis()));
+        if (previous != null) {
+            bytesStored -= previous.result().sizeBytes();
+        }
+        bytesStored += size;
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (bytesStored > properties.getMaxBytes() && eldest.hasNext()) {
+            bytesStored -= eldest.next().getValue().result().sizeBytes();
+            eldest.remove();
+        }
+    }
+}
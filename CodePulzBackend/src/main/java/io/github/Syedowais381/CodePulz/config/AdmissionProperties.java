@@ -0,0 +1,30 @@
+package io.github.Syedowais381.CodePulz.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Admission control for executions (codepulz.admission.*).
+ */
+@Data
+@ConfigurationProperties(prefix = "codepulz.admission")
+public class AdmissionProperties {
+    private boolean enabled = true;
+    // Concurrent executions allowed host-wide; 0 derives it from CPU and memory
+    private int maxConcurrent = 0;
+    // Resources one sandbox asks for (matches --cpus / --memory), used to derive maxConcurrent
+    private double cpusPerRun = 0.5;
+    private long memoryPerRunMb = 256;
+    // Share of host memory that sandboxes may use
+    private double memoryFraction = 0.75;
+    // Concurrent executions per client (authenticated user, or remote address)
+    private int maxPerClient = 2;
+    // Waiting requests beyond this are rejected with 429
+    private int maxQueue = 100;
+    private long maxWaitMs = 30000;
+    // Optional concurrency cap per language, e.g. codepulz.admission.languages.csharp=2
+    private Map<String, Integer> languages = new HashMap<>();
+}
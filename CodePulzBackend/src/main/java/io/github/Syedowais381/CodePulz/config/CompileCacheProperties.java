@@ -0,0 +1,17 @@
+package io.github.Syedowais381.CodePulz.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings for the compiled-artifact cache (codepulz.compile-cache.*).
+ */
+@Data
+@ConfigurationProperties(prefix = "codepulz.compile-cache")
+public class CompileCacheProperties {
+    private boolean enabled = true;
+    // Defaults to codepulz-compile-cache in the system temp directory
+    private String directory;
+    // Least recently used entries are evicted once the store grows past this
+    private long maxBytes = 256L * 1024 * 1024;
+}
@@ -0,0 +1,76 @@
+package io.github.Syedowais381.CodePulz.config;
+
+import io.github.Syedowais381.CodePulz.buffer.OutputLimiter;
+import io.github.Syedowais381.CodePulz.sandbox.Language;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Timing of the interactive REST endpoints, async jobs and batches (codepulz.execution.*).
+ */
+@Data
+@ConfigurationProperties(prefix = "codepulz.execution")
+public class ExecutionProperties {
+    // Longest /execute/start waits for the first output (Docker startup + compilation)
+    private long startupTimeoutMs = 7000;
+    // Longest /input waits for the program to react to the input
+    private long inputResponseTimeoutMs = 6000;
+    // Once output is flowing, return after it has been quiet for this long
+    private long quiescenceMs = 300;
+    // Read the program's process state to report "waiting for input" as soon as it blocks
+    // on stdin (pooled sandboxes on a Linux host); otherwise fall back to output silence
+    private boolean stdinDetection = true;
+    // How often a live session's process state is sampled
+    private long stdinProbeIntervalMs = 10;
+    // Most recent stdout/stderr bytes kept per session stream; older output is truncated
+    private long outputRetentionBytes = 1024 * 1024;
+    // Output (stdout and stderr together) a program may write per second; beyond it the
+    // session stops draining the pipe and the program blocks on write. 0 = unlimited
+    private long outputRateBytesPerSecond = 256 * 1024;
+    // Written at full speed before the rate applies
+    private long outputBurstBytes = 1024 * 1024;
+    // Past this the output ends with a marker and the program is killed. 0 = no cap
+    private long outputMaxBytes = 16L * 1024 * 1024;
+    // Per-language overrides, e.g. codepulz.execution.output-limits.python.max-bytes=1048576
+    private Map<String, OutputLimit> outputLimits = new HashMap<>();
+    // Finished async jobs can be fetched for this long before they are forgotten
+    private long jobRetentionMs = 300000;
+    // Longest a GET /jobs/{jobId}?waitMs=... long-poll is held open
+    private long jobMaxWaitMs = 30000;
+    // Longest a GET /execute/{sessionId}/status?waitMs=... long-poll is held open
+    private long statusMaxWaitMs = 30000;
+    // Longest a GET /execute/{sessionId}/events stream is held open; the client then
+    // reconnects with Last-Event-ID and continues where it stopped
+    private long eventStreamTimeoutMs = 300000;
+    // Stdout a POST /execute/stream run may write before it is killed. Its input is capped
+    // by spring.servlet.multipart.max-file-size. 0 = no cap
+    private long streamMaxOutputBytes = 64L * 1024 * 1024;
+    // Most test cases accepted in one batch request
+    private int batchMaxCases = 100;
+    // Longest a whole batch may take before its request is abandoned
+    private long batchTimeoutMs = 600000;
+
+    /**
+     * Override of the output limits for one language; unset fields keep the defaults.
+     */
+    @Data
+    public static class OutputLimit {
+        private Long rateBytesPerSecond;
+        private Long burstBytes;
+        private Long maxBytes;
+    }
+
+    public OutputLimiter.Limits outputLimitsFor(Language language) {
+        OutputLimit override = outputLimits.get(language.getId());
+        if (override == null) {
+            return new OutputLimiter.Limits(outputRateBytesPerSecond, outputBurstBytes, outputMaxBytes);
+        }
+        return new OutputLimiter.Limits(
+                override.getRateBytesPerSecond() != null ? override.getRateBytesPerSecond() : outputRateBytesPerSecond,
+                override.getBurstBytes() != null ? override.getBurstBytes() : outputBurstBytes,
+                override.getMaxBytes() != null ? override.getMaxBytes() : outputMaxBytes);
+    }
+}
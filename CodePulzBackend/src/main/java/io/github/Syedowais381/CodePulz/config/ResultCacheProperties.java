@@ -0,0 +1,20 @@
+package io.github.Syedowais381.CodePulz.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Cache of finished non-interactive runs (codepulz.result-cache.*).
+ */
+@Data
+@ConfigurationProperties(prefix = "codepulz.result-cache")
+public class ResultCacheProperties {
+    // Off by default: only safe when the programs people run are deterministic
+    private boolean enabled = false;
+    // Least recently used results are evicted once their output adds up to more than this
+    private long maxBytes = 32L * 1024 * 1024;
+    // Results with more output than this are not cached
+    private long maxEntryBytes = 1024 * 1024;
+    // A result is run again once it is older than this
+    private long ttlMs = 600000;
+}
@@ -0,0 +1,100 @@
+package io.github.Syedowais381.CodePulz.config;
+
+import io.github.Syedowais381.CodePulz.sandbox.Language;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Settings for the warm sandbox pool (codepulz.pool.*). Sizes and the runner can be
+ * overridden per language, e.g. codepulz.pool.languages.python.min-idle=3 or
+ * codepulz.pool.languages.python.runner=local
+ */
+@Data
+@ConfigurationProperties(prefix = "codepulz.pool")
+public class SandboxPoolProperties {
+    private boolean enabled = false;
+    // Sandbox backend, by SandboxRunner name: "docker", or "local" (host processes under
+    // rlimits, plus namespaces and cgroups where the host allows them)
+    private String runner = "docker";
+    private int minIdle = 1;
+    private int maxSize = 4;
+    // A sandbox is destroyed and replaced after this many runs. Reset only restores the
+    // workspace and tmpfs mounts, so by default a sandbox never serves a second run
+    private int maxUses = 1;
+    private long refillIntervalMs = 2000;
+    // How long a request waits for a free sandbox before falling back to a cold start
+    private long acquireTimeoutMs = 500;
+    // Run python and javascript through a long-lived runtime worker in each sandbox, which
+    // starts every program in a fresh pre-warmed child instead of booting the interpreter,
+    // and java in a worker JVM booted ahead of the request that compiles in memory and runs
+    // one program only (the sandbox is then replaced)
+    private boolean runtimeWorkers = false;
+    // A sandbox is replaced once its worker has grown by this much since its first run
+    // (it is also replaced after max-uses runs like any other)
+    private long workerMaxGrowthBytes = 64 * 1024 * 1024;
+    private Map<String, Overrides> languages = new HashMap<>();
+    private Local local = new Local();
+    private Docker docker = new Docker();
+
+    @Data
+    public static class Overrides {
+        private Integer minIdle;
+        private Integer maxSize;
+        private String runner;
+    }
+
+    /**
+     * Limits of the local runner (codepulz.pool.local.*). Rlimits apply to every program;
+     * the cgroup limits only when cgroup-root is a cgroup v2 directory delegated to this
+     * server, e.g. a systemd Delegate=yes slice.
+     */
+    @Data
+    public static class Local {
+        // Writable data (heap) per process, RLIMIT_DATA
+        private long memoryMb = 512;
+        // CPU time per process, RLIMIT_CPU
+        private long cpuSeconds = 60;
+        // Largest file a program may write, RLIMIT_FSIZE
+        private long maxFileMb = 64;
+        private long maxOpenFiles = 256;
+        // Run programs in their own network namespace (no network) when unprivileged user
+        // namespaces are available
+        private boolean isolateNetwork = true;
+        private String cgroupRoot;
+        // cgroup limits per sandbox: memory.max, cpu.max and pids.max
+        private long cgroupMemoryMb = 256;
+        private double cgroupCpus = 0.5;
+        private int cgroupMaxProcesses = 64;
+    }
+
+    /**
+     * How the docker runner reaches the daemon (codepulz.pool.docker.*).
+     */
+    @Data
+    public static class Docker {
+        // Talk to the Engine API over the socket instead of forking the docker CLI per
+        // call; the CLI is still used when the socket does not exist (e.g. DOCKER_HOST=tcp://)
+        private boolean engineApi = true;
+        private String socket = "/var/run/docker.sock";
+        // Idle keep-alive connections kept for API requests
+        private int maxIdleConnections = 4;
+    }
+
+    public int minIdleFor(Language language) {
+        Overrides overrides = languages.get(language.getId());
+        return overrides != null && overrides.getMinIdle() != null ? overrides.getMinIdle() : minIdle;
+    }
+
+    public int maxSizeFor(Language language) {
+        Overrides overrides = languages.get(language.getId());
+        return overrides != null && overrides.getMaxSize() != null ? overrides.getMaxSize() : maxSize;
+    }
+
+    public String runnerFor(Language language) {
+        Overrides overrides = languages.get(language.getId());
+        return overrides != null && overrides.getRunner() != null ? overrides.getRunner() : runner;
+    }
+}
@@ -0,0 +1,33 @@
+package io.github.Syedowais381.CodePulz.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Lifetime of interactive sessions and when they are evicted (codepulz.session.*).
+ */
+@Data
+@ConfigurationProperties(prefix = "codepulz.session")
+public class SessionProperties {
+    // A running session that has had no input, output or client access for this long is killed
+    private long idleTimeoutMs = 30000;
+    // A finished session's output can be fetched for this long after the program exits
+    private long completedRetentionMs = 60000;
+    // Sessions one client may hold, finished ones included; starting another evicts the
+    // client's least recently used. Running sessions are first limited by
+    // codepulz.admission.max-per-client, so this only bites on finished sessions
+    // unless it is set below that limit
+    private int maxPerClient = 4;
+    // Sessions held in total; beyond this the least recently used idle sessions are evicted
+    private int maxSessions = 256;
+    // Capacity and memory pressure only evict sessions that are finished or have been
+    // idle (no input, output or client access) for at least this long
+    private long minIdleMs = 10000;
+    // Heap use (fraction of the max heap) and host memory available (fraction of the total,
+    // MemAvailable on Linux) beyond which idle sessions are evicted, pressure-evict-batch per tick
+    private double maxHeapUsage = 0.9;
+    private double minHostAvailable = 0.05;
+    private int pressureEvictBatch = 2;
+    // Resolution of the idle and retention timers
+    private long tickMs = 1000;
+}
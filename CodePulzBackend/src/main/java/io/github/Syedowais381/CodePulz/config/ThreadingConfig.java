@@ -0,0 +1,39 @@
+package io.github.Syedowais381.CodePulz.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Threads for blocking session I/O: the per-session stdout/stderr readers and exit
+ * monitors, and WebSocket frame sends; and for executions submitted through the
+ * async API, which wait in the admission queue and for the program off the
+ * servlet request threads.
+ *
+ * With spring.threads.virtual.enabled=true (which also moves Tomcat request handling
+ * onto virtual threads) each task gets its own virtual thread, so thousands of idle
+ * interactive sessions no longer hold three platform threads each.
+ */
+@Configuration
+public class ThreadingConfig {
+
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService sessionIoExecutor(@Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        if (virtualThreads) {
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("session-io-", 0).factory());
+        }
+        return Executors.newCachedThreadPool(Thread.ofPlatform().name("session-io-", 0).daemon(true).factory());
+    }
+
+    // Unbounded on purpose: the number of jobs in flight is capped by ExecutionJobService
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService executionJobExecutor(@Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        if (virtualThreads) {
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("execution-job-", 0).factory());
+        }
+        return Executors.newCachedThreadPool(Thread.ofPlatform().name("execution-job-", 0).daemon(true).factory());
+    }
+}
@@ -1,28 +1,60 @@
 package io.github.Syedowais381.CodePulz.config;
 
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.web.socket.WebSocketExtension;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
 import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
 import io.github.Syedowais381.CodePulz.websocket.ExecutionWebSocketHandler;
 
+import java.util.List;
+
 @Configuration
 @EnableWebSocket
 public class WebSocketConfig implements WebSocketConfigurer {
 
+    private static final String PERMESSAGE_DEFLATE = "permessage-deflate";
+
     private final ExecutionWebSocketHandler handler;
+    private final WebSocketProperties properties;
 
     @Autowired
-    public WebSocketConfig(ExecutionWebSocketHandler handler) {
+    public WebSocketConfig(ExecutionWebSocketHandler handler, WebSocketProperties properties) {
         this.handler = handler;
+        this.properties = properties;
     }
 
     @Override
     public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
          // Attach handler at /ws/execute/{sessionId}
          registry.addHandler(handler, "/ws/execute/*")
+             .setHandshakeHandler(new CompressionAwareHandshakeHandler(properties.isCompression()))
              .setAllowedOrigins(CorsConfig.ALLOWED_ORIGINS)
              .setAllowedOriginPatterns("https://*.duckdns.org");  // Allow duckdns subdomains
     }
+
+    /**
+     * Accepts permessage-deflate (which the servlet container supports) only when
+     * compression is enabled.
+     */
+    private static final class CompressionAwareHandshakeHandler extends DefaultHandshakeHandler {
+        private final boolean compression;
+
+        CompressionAwareHandshakeHandler(boolean compression) {
+            this.compression = compression;
+        }
+
+        @Override
+        protected List<WebSocketExtension> filterRequestedExtensions(ServerHttpRequest request,
+                List<WebSocketExtension> requestedExtensions, List<WebSocketExtension> supportedExtensions) {
+            List<WebSocketExtension> accepted = super.filterRequestedExtensions(request, requestedExtensions, supportedExtensions);
+            if (compression) {
+                return accepted;
+            }
+            return accepted.stream().filter(extension -> !PERMESSAGE_DEFLATE.equals(extension.getName())).toList();
+        }
+    }
 }
@@ -0,0 +1,31 @@
+package io.github.Syedowais381.CodePulz.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Output streaming over WebSocket (codepulz.websocket.*). Frame size and flow window
+ * apply to clients that negotiate the binary protocol.
+ */
+@Data
+@ConfigurationProperties(prefix = "codepulz.websocket")
+public class WebSocketProperties {
+    // Output arriving within this long of the first pending delta goes out in one frame
+    private long flushWindowMs = 10;
+    // Output bytes a subscriber may fall behind the newest frame before it is treated as slow
+    private long subscriberMaxLagBytes = 1024 * 1024;
+    // What happens to a slow subscriber: DROP skips it to the newest output, DISCONNECT closes it
+    private SlowSubscriberPolicy slowSubscriber = SlowSubscriberPolicy.DROP;
+    // Largest output payload per binary frame
+    private int maxFrameBytes = 64 * 1024;
+    // Output bytes a binary client may have unacknowledged before sending to it pauses (it
+    // may overshoot by one frame); meanwhile it falls behind and counts as slow past the lag cap
+    private long flowWindowBytes = 1024 * 1024;
+    // Accept permessage-deflate when the client offers it (bandwidth for CPU)
+    private boolean compression = false;
+
+    public enum SlowSubscriberPolicy {
+        DROP,
+        DISCONNECT
+    }
+}
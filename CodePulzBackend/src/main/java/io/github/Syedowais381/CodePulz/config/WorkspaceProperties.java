@@ -0,0 +1,21 @@
+package io.github.Syedowais381.CodePulz.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Where program sources are staged and how workspace directories are recycled
+ * (codepulz.workspace.*).
+ */
+@Data
+@ConfigurationProperties(prefix = "codepulz.workspace")
+public class WorkspaceProperties {
+    // Parent of all workspaces; defaults to /dev/shm/codepulz (tmpfs) when available,
+    // otherwise codepulz-workspaces in the system temp directory
+    private String directory;
+    // Emptied workspaces kept for reuse instead of being deleted and created again
+    private int maxIdle = 32;
+    // Directories under the root that nobody owns are deleted once they are this old
+    private long orphanAgeMs = 600000;
+    private long sweepIntervalMs = 60000;
+}
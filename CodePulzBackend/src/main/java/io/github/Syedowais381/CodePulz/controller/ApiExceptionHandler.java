@@ -0,0 +1,25 @@
+package io.github.Syedowais381.CodePulz.controller;
+
+import io.github.Syedowais381.CodePulz.dto.ExecutionResponse;
+import io.github.Syedowais381.CodePulz.scheduler.AdmissionRejectedException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/**
+ * Error responses shared by the REST controllers.
+ */
+@RestControllerAdvice
+public class ApiExceptionHandler {
+
+    // Too many executions queued: tell the client to back off. Also applies when an
+    // async result (CompletableFuture) completes with this exception.
+    @ExceptionHandler(AdmissionRejectedException.class)
+    public ResponseEntity<ExecutionResponse> handleAdmissionRejected(AdmissionRejectedException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(new ExecutionResponse("", e.getMessage(), 0, null, false, true));
+    }
+}
@@ -0,0 +1,22 @@
+package io.github.Syedowais381.CodePulz.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+import java.security.Principal;
+
+/**
+ * Who a request counts against for admission quotas and fairness: the authenticated user
+ * when there is one, else the caller's address. Never a header the client picks, or it
+ * could get around its quota by sending a new value per request. Behind a reverse proxy,
+ * set server.forward-headers-strategy so the address is the client's, not the proxy's.
+ */
+final class ClientIds {
+
+    private ClientIds() {
+    }
+
+    static String of(HttpServletRequest request) {
+        Principal user = request.getUserPrincipal();
+        return user != null ? "user:" + user.getName() : request.getRemoteAddr();
+    }
+}
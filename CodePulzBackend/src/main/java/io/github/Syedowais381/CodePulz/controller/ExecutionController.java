@@ -2,14 +2,41 @@ package io.github.Syedowais381.CodePulz.controller;
 
 
 
+import io.github.Syedowais381.CodePulz.config.ExecutionProperties;
+import io.github.Syedowais381.CodePulz.dto.BatchRequest;
+import io.github.Syedowais381.CodePulz.dto.BatchResponse;
 import io.github.Syedowais381.CodePulz.dto.ExecutionRequest;
 import io.github.Syedowais381.CodePulz.dto.ExecutionResponse;
+import io.github.Syedowais381.CodePulz.dto.ExecutionSession;
 import io.github.Syedowais381.CodePulz.dto.InputRequest;
+import io.github.Syedowais381.CodePulz.service.BatchExecutionService;
+import io.github.Syedowais381.CodePulz.service.ExecutionJobService;
+import io.github.Syedowais381.CodePulz.sandbox.Language;
 import io.github.Syedowais381.CodePulz.service.ExecutionService;
+import io.github.Syedowais381.CodePulz.sse.SessionEventStreams;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
 
 @RestController
 @RequestMapping("/api/v1") // All endpoints in this class start with /api/v1
@@ -17,45 +44,217 @@ import org.springframework.web.bind.annotation.*;
 @CrossOrigin(origins = "https://codepulz.netlify.app", allowCredentials = "true", allowedHeaders = "*")
 public class ExecutionController {
 
- // 1. We ask Spring to "inject" the service we just made
+ // 1. We ask Spring to "inject" the services we just made
  private final ExecutionService executionService;
+ private final ExecutionJobService jobService;
+ private final BatchExecutionService batchService;
+ private final ExecutionProperties properties;
+ private final SessionEventStreams eventStreams;
+
+ // Sent after the body of a /execute/stream run
+ private static final String[] STREAMED_RUN_TRAILERS =
+         {"X-Exit-Code", "X-Timed-Out", "X-Output-Bytes", "X-Output-Truncated", "X-Stderr", "X-Stderr-Truncated"};
 
  @Autowired
- public ExecutionController(ExecutionService executionService) {
+ public ExecutionController(ExecutionService executionService, ExecutionJobService jobService,
+                            BatchExecutionService batchService, ExecutionProperties properties,
+                            SessionEventStreams eventStreams) {
      this.executionService = executionService;
+     this.jobService = jobService;
+     this.batchService = batchService;
+     this.properties = properties;
+     this.eventStreams = eventStreams;
  }
 
  // 2. This method listens for POST requests at /api/v1/execute
  @PostMapping("/execute")
  @Operation(summary = "Execute a code snippet")
- public ExecutionResponse executeCode(@RequestBody ExecutionRequest request) {
+ public CompletableFuture<ExecutionResponse> executeCode(@RequestBody ExecutionRequest request, HttpServletRequest httpRequest) {
      
-     // 3. It immediately delegates the work to the service
-     return executionService.executeCode(request);
+     // 3. It immediately delegates the work to the service; the request thread is
+     //    released while the program runs and the response is written when it completes
+     return jobService.executeCode(request, ClientIds.of(httpRequest));
  }
 
  // 4. Start interactive execution - creates a session
  @PostMapping("/execute/start")
  @Operation(summary = "Start interactive code execution session")
- public ExecutionResponse startInteractiveExecution(@RequestBody ExecutionRequest request) {
-     return executionService.startInteractiveExecution(request);
+ public CompletableFuture<ExecutionResponse> startInteractiveExecution(@RequestBody ExecutionRequest request, HttpServletRequest httpRequest) {
+     return jobService.startInteractiveExecution(request, ClientIds.of(httpRequest));
  }
 
- // 5. Send input to a running session
+ // 5. Send input to a running session. With outputSince/errorSince in the body only the
+ //    output after those offsets is returned
  @PostMapping("/execute/{sessionId}/input")
  @Operation(summary = "Send input to an interactive execution session")
- public ExecutionResponse sendInput(@PathVariable String sessionId, @RequestBody InputRequest inputRequest) {
+ public CompletableFuture<ExecutionResponse> sendInput(@PathVariable String sessionId, @RequestBody InputRequest inputRequest) {
      // Validate sessionId matches
      if (!sessionId.equals(inputRequest.getSessionId())) {
-         return new ExecutionResponse("", "Session ID mismatch", 0, sessionId, false, true);
+         return CompletableFuture.completedFuture(new ExecutionResponse("", "Session ID mismatch", 0, sessionId, false, true));
      }
-     return executionService.sendInputToSession(sessionId, inputRequest.getInput(), inputRequest.isRaw());
+     return jobService.sendInputToSession(sessionId, inputRequest.getInput(), inputRequest.isRaw(),
+             inputRequest.getOutputSince(), inputRequest.getErrorSince());
  }
 
- // 6. Get current status and output of a session
+ // 6. Get current status and output of a session. outputSince/errorSince (the previous
+ //    response's nextOutputOffset/nextErrorOffset) return only new output; If-None-Match
+ //    with the previous ETag gets 304 while nothing changed; waitMs holds the request
+ //    (without a servlet thread) until something does
  @GetMapping("/execute/{sessionId}/status")
- @Operation(summary = "Get current status and output of an execution session")
- public ExecutionResponse getSessionStatus(@PathVariable String sessionId) {
-     return executionService.getSessionStatus(sessionId);
+ @Operation(summary = "Get current status and output of an execution session, optionally only new output or long-polling for it")
+ public CompletableFuture<ResponseEntity<ExecutionResponse>> getSessionStatus(
+         @PathVariable String sessionId,
+         @RequestParam(required = false) Long outputSince,
+         @RequestParam(required = false) Long errorSince,
+         @RequestParam(defaultValue = "0") long waitMs,
+         @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+     long wait = Math.min(Math.max(waitMs, 0), properties.getStatusMaxWaitMs());
+     return executionService.pollSessionStatus(sessionId, outputSince, errorSince, wait, ifNoneMatch)
+             .thenApply(poll -> {
+                 if (poll.etag() == null) {
+                     return ResponseEntity.ok(poll.response());
+                 }
+                 // Revalidated on every poll, never served from a cache
+                 if (poll.notModified()) {
+                     return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(poll.etag())
+                             .cacheControl(CacheControl.noCache()).<ExecutionResponse>build();
+                 }
+                 return ResponseEntity.ok().eTag(poll.etag()).cacheControl(CacheControl.noCache()).body(poll.response());
+             });
+ }
+
+ // 7. Stream a session as Server-Sent Events (stdout, stderr, status, exit; see
+ //    SessionEventStreams) instead of polling its status. Event ids are stream offsets, so
+ //    a reconnecting EventSource resumes from Last-Event-ID without repeating output
+ @GetMapping(value = "/execute/{sessionId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+ @Operation(summary = "Stream the output and status of an execution session as Server-Sent Events")
+ public ResponseEntity<SseEmitter> streamSessionEvents(
+         @PathVariable String sessionId,
+         @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+     ExecutionSession session = executionService.getSessionById(sessionId);
+     if (session == null) {
+         // Also stops EventSource from reconnecting
+         return ResponseEntity.notFound().build();
+     }
+     SseEmitter emitter = eventStreams.newEmitter();
+     eventStreams.stream(emitter, session, lastEventId);
+     return ResponseEntity.ok(emitter);
+ }
+
+ // 8. Run a program with all of its input upfront and stream its output as it is
+ //    produced, with the same events; a run that cannot start gets a "failed" event
+ @PostMapping(value = "/execute/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+ @Operation(summary = "Execute a code snippet, streaming its output as Server-Sent Events")
+ public SseEmitter streamExecution(@RequestBody ExecutionRequest request, HttpServletRequest httpRequest) {
+     SseEmitter emitter = eventStreams.newEmitter();
+     jobService.startStreamingExecution(request, ClientIds.of(httpRequest)).whenComplete((response, error) -> {
+         if (error != null) {
+             emitter.completeWithError(error.getCause() != null ? error.getCause() : error);
+             return;
+         }
+         ExecutionSession session = response.getSessionId() != null
+                 ? executionService.getSessionById(response.getSessionId()) : null;
+         if (session != null) {
+             eventStreams.stream(emitter, session, null);
+         } else {
+             eventStreams.fail(emitter, response);
+         }
+     });
+     return emitter;
+ }
+
+ // 9. Run a program on a large input and stream its stdout back byte for byte, for
+ //    data-heavy exercises. Multipart form with language, code and an optional input file
+ //    (spooled to disk by the container, then piped into stdin). Stdout is the chunked
+ //    response body; the exit code, stderr and limits follow as HTTP trailers
+ @PostMapping(value = "/execute/stream", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+ @Operation(summary = "Execute a code snippet on a large stdin file, streaming stdout as the response body")
+ public ResponseEntity<?> executeStreaming(@RequestParam String language, @RequestParam String code,
+                                           @RequestPart(required = false) MultipartFile input,
+                                           HttpServletRequest httpRequest, HttpServletResponse httpResponse) {
+     Language lang;
+     try {
+         lang = Language.fromId(language);
+     } catch (IllegalArgumentException e) {
+         return ResponseEntity.badRequest().contentType(MediaType.APPLICATION_JSON)
+                 .body(new ExecutionResponse("", e.getMessage(), 0, null, false, false));
+     }
+     String clientId = ClientIds.of(httpRequest);
+     AtomicReference<ExecutionService.StreamedResult> result = new AtomicReference<>();
+     try {
+         httpResponse.setTrailerFields(() -> streamedRunTrailers(result.get()));
+     } catch (IllegalStateException e) {
+         // HTTP/1.0 client: no trailers
+     }
+     // Runs on the async executor, not a request thread
+     StreamingResponseBody body = output -> {
+         try (InputStream stdin = input != null ? input.getInputStream() : InputStream.nullInputStream()) {
+             result.set(executionService.runStreaming(lang, code, stdin, output, clientId));
+         } catch (InterruptedException e) {
+             Thread.currentThread().interrupt();
+             throw new IOException("Interrupted", e);
+         }
+     };
+     return ResponseEntity.ok().contentType(MediaType.APPLICATION_OCTET_STREAM)
+             .header(HttpHeaders.TRAILER, String.join(", ", STREAMED_RUN_TRAILERS))
+             .body(body);
+ }
+
+ // 10. Run one program against many inputs: compiled once, cases run in parallel,
+ //    all results returned together in request order
+ @PostMapping(value = "/execute/batch", produces = MediaType.APPLICATION_JSON_VALUE)
+ @Operation(summary = "Run a code snippet against a batch of stdin test cases")
+ public DeferredResult<BatchResponse> executeBatch(@RequestBody BatchRequest request, HttpServletRequest httpRequest) {
+     DeferredResult<BatchResponse> deferred = new DeferredResult<>(properties.getBatchTimeoutMs());
+     batchService.runAsync(request, ClientIds.of(httpRequest), result -> { })
+             .whenComplete((response, error) -> {
+                 if (error != null) {
+                     deferred.setErrorResult(error.getCause() != null ? error.getCause() : error);
+                 } else {
+                     deferred.setResult(response);
+                 }
+             });
+     return deferred;
+ }
+
+ // 11. Same, streamed as Server-Sent Events: a "case" event per finished case (in
+ //    completion order), then a "done" event with the full BatchResponse
+ @PostMapping(value = "/execute/batch", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+ @Operation(summary = "Run a code snippet against a batch of stdin test cases, streaming results")
+ public SseEmitter streamBatch(@RequestBody BatchRequest request, HttpServletRequest httpRequest) {
+     SseEmitter emitter = new SseEmitter(properties.getBatchTimeoutMs());
+     batchService.runAsync(request, ClientIds.of(httpRequest), result -> {
+         try {
+             emitter.send(SseEmitter.event().name("case").data(result, MediaType.APPLICATION_JSON));
+         } catch (IOException | IllegalStateException e) {
+             // Client went away; the remaining cases still run and release their sandboxes
+         }
+     }).whenComplete((response, error) -> {
+         try {
+             if (error != null) {
+                 emitter.completeWithError(error.getCause() != null ? error.getCause() : error);
+                 return;
+             }
+             emitter.send(SseEmitter.event().name("done").data(response, MediaType.APPLICATION_JSON));
+             emitter.complete();
+         } catch (IOException | IllegalStateException e) {
+             emitter.completeWithError(e);
+         }
+     });
+     return emitter;
+ }
+
+ // Stderr is URL-encoded (UTF-8) to fit in a header field
+ private static Map<String, String> streamedRunTrailers(ExecutionService.StreamedResult result) {
+     if (result == null) {
+         return Map.of();
+     }
+     return Map.of(
+             "X-Exit-Code", String.valueOf(result.exitCode()),
+             "X-Timed-Out", String.valueOf(result.timedOut()),
+             "X-Output-Bytes", String.valueOf(result.outputBytes()),
+             "X-Output-Truncated", String.valueOf(result.outputTruncated()),
+             "X-Stderr", URLEncoder.encode(result.error(), StandardCharsets.UTF_8),
+             "X-Stderr-Truncated", String.valueOf(result.errorTruncated()));
  }
-}
\ No newline at end of file
+}
@@ -0,0 +1,64 @@
+package io.github.Syedowais381.CodePulz.controller;
+
+import io.github.Syedowais381.CodePulz.config.ExecutionProperties;
+import io.github.Syedowais381.CodePulz.dto.ExecutionJob;
+import io.github.Syedowais381.CodePulz.dto.ExecutionRequest;
+import io.github.Syedowais381.CodePulz.dto.JobResponse;
+import io.github.Syedowais381.CodePulz.service.ExecutionJobService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.net.URI;
+
+@RestController
+@RequestMapping("/api/v1")
+@Tag(name = "Execution Jobs", description = "Submit code for execution and fetch the result later")
+@CrossOrigin(origins = "https://codepulz.netlify.app", allowCredentials = "true", allowedHeaders = "*")
+public class JobController {
+
+    private final ExecutionJobService jobService;
+    private final ExecutionProperties properties;
+
+    @Autowired
+    public JobController(ExecutionJobService jobService, ExecutionProperties properties) {
+        this.jobService = jobService;
+        this.properties = properties;
+    }
+
+    // 1. Submit: returns 202 with the job ID straight away. Code without input starts an
+    //    interactive session; its sessionId in the result can be attached to over /ws/execute
+    @PostMapping("/jobs")
+    @Operation(summary = "Submit a code snippet for asynchronous execution")
+    public ResponseEntity<JobResponse> submit(@RequestBody ExecutionRequest request, HttpServletRequest httpRequest) {
+        ExecutionJob job = jobService.submit(request, ClientIds.of(httpRequest));
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/v1/jobs/" + job.getJobId()))
+                .body(job.toResponse());
+    }
+
+    // 2. Fetch: returns the current state at once, or with waitMs holds the request
+    //    (without a servlet thread) until the job finishes or the wait runs out
+    @GetMapping("/jobs/{jobId}")
+    @Operation(summary = "Get the state of an execution job, optionally long-polling for the result")
+    public DeferredResult<ResponseEntity<JobResponse>> getJob(@PathVariable String jobId,
+                                                              @RequestParam(defaultValue = "0") long waitMs) {
+        long timeout = Math.min(Math.max(waitMs, 0), properties.getJobMaxWaitMs());
+        DeferredResult<ResponseEntity<JobResponse>> deferred = new DeferredResult<>(timeout > 0 ? timeout : null);
+        ExecutionJob job = jobService.getJob(jobId);
+        if (job == null) {
+            deferred.setResult(ResponseEntity.status(HttpStatus.NOT_FOUND).build());
+        } else if (job.isDone() || timeout == 0) {
+            deferred.setResult(ResponseEntity.ok(job.toResponse()));
+        } else {
+            deferred.onTimeout(() -> deferred.setResult(ResponseEntity.ok(job.toResponse())));
+            job.getResult().whenComplete((response, error) -> deferred.setResult(ResponseEntity.ok(job.toResponse())));
+        }
+        return deferred;
+    }
+}
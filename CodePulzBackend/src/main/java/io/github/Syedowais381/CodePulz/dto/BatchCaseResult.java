@@ -0,0 +1,18 @@
+package io.github.Syedowais381.CodePulz.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchCaseResult {
+    private int index; // Position of the case in the request
+    private String output;
+    private String error;
+    private int exitCode; // -1 if the run timed out or could not be started
+    private long executionTimeMs;
+    private boolean timedOut;
+    private Boolean passed; // Null when the case has no expected output
+}
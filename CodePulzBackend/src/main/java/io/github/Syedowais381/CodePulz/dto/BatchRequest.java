@@ -0,0 +1,19 @@
+package io.github.Syedowais381.CodePulz.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class BatchRequest {
+    private String language;
+    private String code;
+    private List<BatchCase> cases = new ArrayList<>(); // One run per case, compiled once
+
+    @Data
+    public static class BatchCase {
+        private String input; // Standard input for this run
+        private String expectedOutput; // Optional; when set the case passes if stdout matches
+    }
+}
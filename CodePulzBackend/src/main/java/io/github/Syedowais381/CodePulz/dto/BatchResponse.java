@@ -0,0 +1,17 @@
+package io.github.Syedowais381.CodePulz.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchResponse {
+    private String error; // Compilation or request error; no cases are run when set
+    private List<BatchCaseResult> results; // In request order
+    private int passedCount;
+    private long executionTimeMs;
+}
@@ -0,0 +1,43 @@
+package io.github.Syedowais381.CodePulz.dto;
+
+import lombok.Getter;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * An execution submitted through the async API. The result future completes once
+ * the program has finished (or, for code without upfront input, once the
+ * interactive session has started and its sessionId is known).
+ */
+@Getter
+public class ExecutionJob {
+
+    public enum Status {
+        PENDING,   // waiting for a sandbox slot or running
+        COMPLETED, // result available
+        REJECTED,  // admission queue was full or the wait timed out
+        FAILED     // unexpected server error
+    }
+
+    private final String jobId;
+    private final long submittedAt = System.currentTimeMillis();
+    private final CompletableFuture<ExecutionResponse> result = new CompletableFuture<>();
+    private volatile Status status = Status.PENDING;
+
+    public ExecutionJob(String jobId) {
+        this.jobId = jobId;
+    }
+
+    public void complete(Status status, ExecutionResponse response) {
+        this.status = status;
+        result.complete(response);
+    }
+
+    public boolean isDone() {
+        return result.isDone();
+    }
+
+    public JobResponse toResponse() {
+        return new JobResponse(jobId, status, result.getNow(null));
+    }
+}
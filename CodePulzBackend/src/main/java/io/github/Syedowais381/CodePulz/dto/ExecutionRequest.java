@@ -7,6 +7,7 @@ public class ExecutionRequest {
     private String language;
     private String code;
     private String input; // Standard input for programs that read from console
+    private boolean noCache; // Run the program even if the result cache holds an identical run
 }
 
 
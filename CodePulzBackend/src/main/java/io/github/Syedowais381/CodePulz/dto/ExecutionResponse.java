@@ -14,4 +14,18 @@ public class ExecutionResponse {
     private String sessionId; // For interactive execution sessions
     private boolean isWaitingForInput; // Indicates if process is waiting for user input
     private boolean isComplete; // Indicates if execution is complete
-}
\ No newline at end of file
+    private int queuePosition; // Requests ahead of this one when it was queued (0 = started immediately)
+    private long queueWaitMs; // Time spent waiting for an execution slot
+    private long outputRateLimit; // Bytes per second the program's output is read at most (0 = unlimited)
+    private long outputLimitBytes; // Output past this is cut off and the program killed (0 = no cap)
+    private boolean outputThrottled; // The program printed faster than outputRateLimit and was slowed down
+    private boolean outputTruncated; // The program hit outputLimitBytes
+    private boolean cached; // Result of an earlier or concurrent identical run (from the result cache)
+    private long nextOutputOffset; // Stdout offset after this output; pass as outputSince to get only what follows
+    private long nextErrorOffset; // Same for stderr (errorSince)
+
+    public ExecutionResponse(String output, String error, long executionTimeMs, String sessionId,
+                             boolean isWaitingForInput, boolean isComplete) {
+        this(output, error, executionTimeMs, sessionId, isWaitingForInput, isComplete, 0, 0, 0, 0, false, false, false, 0, 0);
+    }
+}
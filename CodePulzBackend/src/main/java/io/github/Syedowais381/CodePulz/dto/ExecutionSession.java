@@ -1,10 +1,22 @@
 package io.github.Syedowais381.CodePulz.dto;
 
+import io.github.Syedowais381.CodePulz.buffer.OutputBuffer;
+import io.github.Syedowais381.CodePulz.buffer.OutputLimiter;
+import io.github.Syedowais381.CodePulz.sandbox.Language;
+import io.github.Syedowais381.CodePulz.sandbox.Sandbox;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.io.BufferedReader;
@@ -12,34 +24,143 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.IOException;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 @Data
 public class ExecutionSession {
     private String sessionId;
     private Process process;
     private Path tempDir;
+    private Sandbox sandbox; // Pooled sandbox the process runs in, null for a cold docker run
+    private Language language;
     private PrintWriter stdinWriter;
     private long startTime;
-    private long lastOutputTime;
-    private boolean isComplete;
+    private volatile long lastOutputTime;
+    private volatile long lastInputTime; // start time until the first input
+    private volatile long firstOutputTime; // 0 until the program writes its first byte
+    private volatile boolean isComplete;
+    private volatile boolean killed; // the process hit the execution timeout or the output cap and was killed
+    private volatile boolean outputLimitExceeded; // output went past the cap and was cut off
+    private volatile boolean inputOwnedBySocket; // a WebSocket connection owns stdin; REST input is refused
     
-    // Accumulated output and error
-    private final AtomicReference<StringBuilder> outputBuffer = new AtomicReference<>(new StringBuilder());
-    private final AtomicReference<StringBuilder> errorBuffer = new AtomicReference<>(new StringBuilder());
+    // Accumulated output and error, bounded to the most recent bytes of each stream
+    private final OutputBuffer outputBuffer;
+    private final OutputBuffer errorBuffer;
+    // Rate limit and cap on what the readers take from the pipes
+    @Getter(AccessLevel.NONE)
+    private final OutputLimiter outputLimiter;
+    // How far each stream has been pushed to listeners (guarded by streamLock)
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private long stdoutDispatched;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private long stderrDispatched;
     // Track when streams reach EOF
     private final java.util.concurrent.atomic.AtomicBoolean stdoutClosed = new java.util.concurrent.atomic.AtomicBoolean(false);
     private final java.util.concurrent.atomic.AtomicBoolean stderrClosed = new java.util.concurrent.atomic.AtomicBoolean(false);
+
+    // Bumped by the reader/monitor threads on every output chunk, stream EOF and exit,
+    // so callers can block until something happens instead of sleep-polling
+    private final AtomicLong changeCount = new AtomicLong();
+    @Getter(AccessLevel.NONE)
+    private final ReentrantLock changeLock = new ReentrantLock();
+    @Getter(AccessLevel.NONE)
+    private final Condition changed = changeLock.newCondition();
+    // Pending onChange futures, completed by the next change (guarded by changeLock)
+    @Getter(AccessLevel.NONE)
+    private final List<CompletableFuture<Long>> changeWaiters = new ArrayList<>();
+    // Whether the program is blocked reading stdin, as seen in its process state by
+    // StdinWaitDetector. Only meaningful while inputDetection is on; otherwise callers
+    // fall back to guessing from output silence.
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private volatile boolean inputDetection;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private volatile boolean waitingForInput;
+    // Number of sendInput calls, so a state sample taken before an input is not trusted
+    private final AtomicLong inputCount = new AtomicLong();
+    // Completed with the exit code once the process has exited (or was killed on timeout)
+    private final CompletableFuture<Integer> exitFuture = new CompletableFuture<>();
+
+    // Subscribers that get output pushed by the reader threads (e.g. WebSocket clients).
+    // streamLock orders appends, dispatch and subscribe so nobody misses or repeats a delta.
+    @Getter(AccessLevel.NONE)
+    private final List<OutputListener> listeners = new CopyOnWriteArrayList<>();
+    @Getter(AccessLevel.NONE)
+    private final Object streamLock = new Object();
+    @Getter(AccessLevel.NONE)
+    private final CountDownLatch streamsDrained = new CountDownLatch(2);
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private Integer exitCode; // set once the exit event has been dispatched (guarded by streamLock)
+
+    /**
+     * Receives output as the reader threads produce it. Callbacks run on the reader
+     * threads while holding the session's stream lock, so implementations must only
+     * hand the data off (e.g. enqueue it) and never block.
+     */
+    public interface OutputListener {
+        /**
+         * @param endOffset stream offset just after this delta (pass to readOutput to resume)
+         */
+        void onStdout(String data, long endOffset);
+
+        void onStderr(String data, long endOffset);
+
+        void onExit(int exitCode);
+
+        /**
+         * The program started or stopped blocking on stdin. Only sent while the session
+         * has input detection (see hasInputDetection).
+         */
+        default void onWaitingForInput(boolean waiting) {
+        }
+    }
     
-    private static final ExecutorService executorService = Executors.newCachedThreadPool();
+    // Used when no executor is passed in (tests, tools); the service supplies its own
+    private static final ExecutorService defaultExecutor = Executors.newCachedThreadPool();
     private static final long EXECUTION_TIMEOUT_SECONDS = 60;
+    public static final long DEFAULT_OUTPUT_RETENTION_BYTES = 1024 * 1024;
+
+    // Runs the stdout reader, stderr reader and exit monitor (three blocking tasks per session)
+    @Getter(AccessLevel.NONE)
+    private final ExecutorService executorService;
 
     public ExecutionSession(String sessionId, Process process, Path tempDir) {
+        this(sessionId, process, tempDir, DEFAULT_OUTPUT_RETENTION_BYTES, defaultExecutor);
+    }
+
+    /**
+     * @param outputRetentionBytes how much of the latest stdout (and, separately, stderr)
+     *                             is kept; older output is replaced by a truncation marker
+     * @param ioExecutor           runs the session's blocking reader and monitor tasks;
+     *                             a virtual-thread-per-task executor makes these nearly free
+     */
+    public ExecutionSession(String sessionId, Process process, Path tempDir, long outputRetentionBytes,
+                            ExecutorService ioExecutor) {
+        this(sessionId, process, tempDir, outputRetentionBytes, OutputLimiter.Limits.UNLIMITED, ioExecutor);
+    }
+
+    /**
+     * @param outputLimits rate at which the program's output is read, and the total past
+     *                     which it is cut off and the program killed
+     */
+    public ExecutionSession(String sessionId, Process process, Path tempDir, long outputRetentionBytes,
+                            OutputLimiter.Limits outputLimits, ExecutorService ioExecutor) {
         this.sessionId = sessionId;
+        this.executorService = ioExecutor;
+        this.outputLimiter = new OutputLimiter(outputLimits);
+        this.outputBuffer = new OutputBuffer(outputRetentionBytes);
+        this.errorBuffer = new OutputBuffer(outputRetentionBytes);
         this.process = process;
         this.tempDir = tempDir;
         this.startTime = System.currentTimeMillis();
         this.lastOutputTime = System.currentTimeMillis();
+        this.lastInputTime = startTime;
         this.isComplete = false;
         
         // Create stdin writer that stays open for interactive input
@@ -52,21 +173,24 @@ public class ExecutionSession {
         
         // Monitor process completion
         executorService.submit(() -> {
+            int exitCode = -1;
             try {
                 boolean finished = process.waitFor(EXECUTION_TIMEOUT_SECONDS, TimeUnit.SECONDS);
                 if (!finished) {
+                    killed = true;
                     process.destroyForcibly();
                 }
+                // Let the readers drain what the process wrote just before exiting,
+                // so the exit marker and exit event come after the last output
+                streamsDrained.await(1, TimeUnit.SECONDS);
                 // Append a clear message indicating the process has exited and its exit code
                 try {
-                    int exitCode = -1;
                     try {
                         exitCode = process.exitValue();
                     } catch (IllegalThreadStateException itse) {
                         // process not yet terminated; ignore
                     }
-                    outputBuffer.get().append("\n[Process exited with code: ").append(exitCode).append("]\n");
-                    lastOutputTime = System.currentTimeMillis();
+                    appendOutput("\n[Process exited with code: " + exitCode + "]\n");
                 } catch (Exception ex) {
                     // ignore any logging errors
                 }
@@ -75,6 +199,9 @@ public class ExecutionSession {
                 Thread.currentThread().interrupt();
                 this.isComplete = true;
             }
+            dispatchExit(exitCode);
+            exitFuture.complete(exitCode);
+            signalChange();
         });
     }
 
@@ -85,11 +212,15 @@ public class ExecutionSession {
                 byte[] buf = new byte[1024];
                 int read;
                 while ((read = in.read(buf)) != -1) {
-                    if (read > 0) {
-                        String s = new String(buf, 0, read, StandardCharsets.UTF_8);
-                        outputBuffer.get().append(s);
-                        lastOutputTime = System.currentTimeMillis();
+                    int allowed = outputLimiter.admit(read);
+                    if (allowed > 0) {
+                        markFirstOutput();
+                        appendOutput(buf, allowed);
                     }
+                    if (allowed < read) {
+                        stopOnOutputLimit();
+                    }
+                    paceReader(allowed);
                 }
                 // reached EOF on stdout
                 stdoutClosed.set(true);
@@ -98,8 +229,13 @@ public class ExecutionSession {
                     this.isComplete = true;
                 }
             } catch (IOException e) {
-                errorBuffer.get().append("Error reading output: ").append(e.getMessage()).append("\n");
+                appendError("Error reading output: " + e.getMessage() + "\n");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
+            closeStream(outputBuffer);
+            streamsDrained.countDown();
+            signalChange();
         });
     }
 
@@ -110,10 +246,15 @@ public class ExecutionSession {
                 byte[] buf = new byte[1024];
                 int read;
                 while ((read = err.read(buf)) != -1) {
-                    if (read > 0) {
-                        String s = new String(buf, 0, read, StandardCharsets.UTF_8);
-                        errorBuffer.get().append(s);
+                    int allowed = outputLimiter.admit(read);
+                    if (allowed > 0) {
+                        markFirstOutput();
+                        appendError(buf, allowed);
+                    }
+                    if (allowed < read) {
+                        stopOnOutputLimit();
                     }
+                    paceReader(allowed);
                 }
                 // reached EOF on stderr
                 stderrClosed.set(true);
@@ -122,18 +263,337 @@ public class ExecutionSession {
                 }
             } catch (IOException e) {
                 // Ignore error reading errors
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            closeStream(errorBuffer);
+            streamsDrained.countDown();
+            signalChange();
+        });
+    }
+
+    /**
+     * Hold the reader back while the program prints faster than the rate limit. The pipe
+     * fills meanwhile and blocks the program's writes. Once the program has exited there
+     * is nobody to slow down, so what is left in the pipe is drained at full speed.
+     */
+    private void paceReader(int bytes) throws InterruptedException {
+        if (process.isAlive()) {
+            outputLimiter.pace(bytes);
+        }
+    }
+
+    /**
+     * Output went past the cap: mark where it was cut and kill the program. Later reads
+     * are discarded until the pipes close.
+     */
+    private void stopOnOutputLimit() {
+        synchronized (streamLock) {
+            if (outputLimitExceeded) {
+                return;
+            }
+            outputLimitExceeded = true;
+            appendOutput("\n[Output limit of " + outputLimiter.getLimits().maxBytes()
+                    + " bytes exceeded, program stopped]\n");
+        }
+        killed = true;
+        process.destroyForcibly();
+    }
+
+    private void markFirstOutput() {
+        if (firstOutputTime == 0) {
+            firstOutputTime = System.currentTimeMillis();
+        }
+    }
+
+    private void appendOutput(String data) {
+        byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+        appendOutput(bytes, bytes.length);
+    }
+
+    private void appendOutput(byte[] data, int length) {
+        synchronized (streamLock) {
+            outputBuffer.write(data, 0, length);
+            lastOutputTime = System.currentTimeMillis();
+            dispatch(outputBuffer);
+        }
+        signalChange();
+    }
+
+    private void appendError(String data) {
+        byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+        appendError(bytes, bytes.length);
+    }
+
+    private void appendError(byte[] data, int length) {
+        synchronized (streamLock) {
+            errorBuffer.write(data, 0, length);
+            dispatch(errorBuffer);
+        }
+        signalChange();
+    }
+
+    /**
+     * At EOF a trailing partial UTF-8 sequence will never complete; flush it as-is.
+     */
+    private void closeStream(OutputBuffer buffer) {
+        synchronized (streamLock) {
+            buffer.close();
+            dispatch(buffer);
+        }
+    }
+
+    /**
+     * Push everything after the dispatched offset to listeners. Decoding happens here,
+     * once per delta, so characters split across reads are delivered whole.
+     * Caller holds streamLock.
+     */
+    private void dispatch(OutputBuffer buffer) {
+        boolean stdout = buffer == outputBuffer;
+        OutputBuffer.Read delta = buffer.read(stdout ? stdoutDispatched : stderrDispatched);
+        if (stdout) {
+            stdoutDispatched = delta.nextOffset();
+        } else {
+            stderrDispatched = delta.nextOffset();
+        }
+        if (delta.text().isEmpty()) {
+            return;
+        }
+        for (OutputListener listener : listeners) {
+            if (stdout) {
+                listener.onStdout(delta.text(), delta.nextOffset());
+            } else {
+                listener.onStderr(delta.text(), delta.nextOffset());
+            }
+        }
+    }
+
+    /**
+     * Record a sample of the program's stdin state, taken when the input count was
+     * inputCountAtSample. A "waiting" sample older than the latest input is dropped: the
+     * program has input to read, whatever it looked like before.
+     */
+    public void reportWaitingForInput(boolean waiting, long inputCountAtSample) {
+        synchronized (streamLock) {
+            if (!inputDetection || waiting == waitingForInput || exitCode != null
+                    || (waiting && inputCount.get() != inputCountAtSample)) {
+                return;
+            }
+            setWaitingForInput(waiting);
+        }
+        signalChange();
+    }
+
+    /**
+     * Caller holds streamLock.
+     */
+    private void setWaitingForInput(boolean waiting) {
+        waitingForInput = waiting;
+        for (OutputListener listener : listeners) {
+            listener.onWaitingForInput(waiting);
+        }
+    }
+
+    public void enableInputDetection() {
+        inputDetection = true;
+    }
+
+    /**
+     * Stop trusting the process state (e.g. it could not be read) and go back to the
+     * output-silence heuristics.
+     */
+    public void disableInputDetection() {
+        synchronized (streamLock) {
+            inputDetection = false;
+            waitingForInput = false;
+        }
+        signalChange();
+    }
+
+    public long getInputCount() {
+        return inputCount.get();
+    }
+
+    public boolean hasInputDetection() {
+        return inputDetection;
+    }
+
+    /**
+     * True while the program is blocked reading stdin. Always false without input detection.
+     */
+    public boolean isWaitingForInput() {
+        return inputDetection && waitingForInput;
+    }
+
+    private void dispatchExit(int code) {
+        synchronized (streamLock) {
+            if (exitCode != null) {
+                return;
+            }
+            exitCode = code;
+            for (OutputListener listener : listeners) {
+                listener.onExit(code);
+            }
+        }
+    }
+
+    /**
+     * Start pushing output to the listener. Everything produced so far is delivered
+     * first (and the exit event, if the process already finished), then each new
+     * chunk as the reader threads receive it.
+     */
+    public void subscribe(OutputListener listener) {
+        synchronized (streamLock) {
+            OutputBuffer.Read out = outputBuffer.read(0);
+            OutputBuffer.Read err = errorBuffer.read(0);
+            if (!out.text().isEmpty()) {
+                listener.onStdout(out.text(), out.nextOffset());
+            }
+            if (!err.text().isEmpty()) {
+                listener.onStderr(err.text(), err.nextOffset());
+            }
+            if (exitCode != null) {
+                listener.onExit(exitCode);
+            } else if (isWaitingForInput()) {
+                listener.onWaitingForInput(true);
+            }
+            listeners.add(listener);
+        }
+    }
+
+    public void unsubscribe(OutputListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void signalChange() {
+        long count;
+        List<CompletableFuture<Long>> waiters;
+        changeLock.lock();
+        try {
+            count = changeCount.incrementAndGet();
+            changed.signalAll();
+            waiters = changeWaiters.isEmpty() ? List.of() : new ArrayList<>(changeWaiters);
+            changeWaiters.clear();
+        } finally {
+            changeLock.unlock();
+        }
+        for (CompletableFuture<Long> waiter : waiters) {
+            waiter.complete(count);
+        }
+    }
+
+    /**
+     * Number of output/exit events seen so far. Pass it to awaitChange to wait for the next one.
+     */
+    public long getChangeCount() {
+        return changeCount.get();
+    }
+
+    /**
+     * Block until something happened after the given change count (new stdout/stderr bytes,
+     * a stream closing, or process exit), or until the timeout elapses.
+     * Returns the current change count; equal to seen means the wait timed out.
+     */
+    public long awaitChange(long seen, long timeoutMs) throws InterruptedException {
+        long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        changeLock.lock();
+        try {
+            while (changeCount.get() == seen && remaining > 0) {
+                remaining = changed.awaitNanos(remaining);
+            }
+            return changeCount.get();
+        } finally {
+            changeLock.unlock();
+        }
+    }
+
+    /**
+     * Non-blocking awaitChange: completes with the new change count once something
+     * happened after seen, or with seen when the timeout elapses first. It is completed
+     * on a reader or monitor thread, so dependent work belongs in an async stage.
+     */
+    public CompletableFuture<Long> onChange(long seen, long timeoutMs) {
+        CompletableFuture<Long> future = new CompletableFuture<>();
+        changeLock.lock();
+        try {
+            if (changeCount.get() != seen) {
+                return CompletableFuture.completedFuture(changeCount.get());
+            }
+            changeWaiters.add(future);
+        } finally {
+            changeLock.unlock();
+        }
+        future.completeOnTimeout(seen, timeoutMs, TimeUnit.MILLISECONDS).whenComplete((count, error) -> {
+            changeLock.lock();
+            try {
+                changeWaiters.remove(future);
+            } finally {
+                changeLock.unlock();
             }
         });
+        return future;
     }
 
     public String getCurrentOutput() {
         // Return the accumulated output as-is (do not trim). Trimming removes prompts
         // like "Enter a number: " which may not end with a newline.
-        return outputBuffer.get().toString();
+        return outputBuffer.readAll();
     }
 
     public String getCurrentError() {
-        return errorBuffer.get().toString();
+        return errorBuffer.readAll();
+    }
+
+    /**
+     * Bytes of stdout and stderr currently held in memory for this session.
+     */
+    public long getBufferedBytes() {
+        return outputBuffer.getRetainedBytes() + errorBuffer.getRetainedBytes();
+    }
+
+    public OutputLimiter.Limits getOutputLimits() {
+        return outputLimiter.getLimits();
+    }
+
+    /**
+     * Whether the program printed faster than the output rate limit and was slowed down.
+     */
+    public boolean isOutputThrottled() {
+        return outputLimiter.isThrottled();
+    }
+
+    /**
+     * Stdout written at or after the given offset, for consumers that read incrementally.
+     */
+    public OutputBuffer.Read readOutput(long fromOffset) {
+        return outputBuffer.read(fromOffset);
+    }
+
+    public OutputBuffer.Read readError(long fromOffset) {
+        return errorBuffer.read(fromOffset);
+    }
+
+    /**
+     * Stdout from fromOffset up to toOffset (a nextOffset of an earlier read).
+     */
+    public OutputBuffer.Read readOutput(long fromOffset, long toOffset) {
+        return outputBuffer.read(fromOffset, toOffset);
+    }
+
+    public OutputBuffer.Read readError(long fromOffset, long toOffset) {
+        return errorBuffer.read(fromOffset, toOffset);
+    }
+
+    /**
+     * Raw stdout bytes from the given offset, for consumers that forward bytes as-is.
+     * See OutputBuffer.readBytes.
+     */
+    public OutputBuffer.Slice readOutputBytes(long fromOffset, int maxBytes, int reserve) {
+        return outputBuffer.readBytes(fromOffset, maxBytes, reserve);
+    }
+
+    public OutputBuffer.Slice readErrorBytes(long fromOffset, int maxBytes, int reserve) {
+        return errorBuffer.readBytes(fromOffset, maxBytes, reserve);
     }
 
     /**
@@ -148,6 +608,28 @@ public class ExecutionSession {
                 stdinWriter.println(input);
             }
             stdinWriter.flush();
+            lastInputTime = System.currentTimeMillis();
+            // The program has something to read now
+            inputCount.incrementAndGet();
+            boolean changed = false;
+            synchronized (streamLock) {
+                if (waitingForInput) {
+                    setWaitingForInput(false);
+                    changed = true;
+                }
+            }
+            if (changed) {
+                signalChange();
+            }
+        }
+    }
+
+    /**
+     * Close the program's stdin, so it reads end-of-file after any input already sent.
+     */
+    public void closeInput() {
+        if (stdinWriter != null) {
+            stdinWriter.close();
         }
     }
 
@@ -10,5 +10,9 @@ public class InputRequest {
     // that expect input without a trailing newline or when client wants fine
     // control over input formatting.
     private boolean raw = false;
+    // Offsets from the previous response (nextOutputOffset/nextErrorOffset): return only
+    // output after them instead of everything printed so far
+    private Long outputSince;
+    private Long errorSince;
 }
 
@@ -0,0 +1,14 @@
+package io.github.Syedowais381.CodePulz.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class JobResponse {
+    private String jobId;
+    private ExecutionJob.Status status;
+    private ExecutionResponse result; // Null while the job is pending
+}
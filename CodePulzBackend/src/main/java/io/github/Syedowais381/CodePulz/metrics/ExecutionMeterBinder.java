@@ -0,0 +1,91 @@
+package io.github.Syedowais381.CodePulz.metrics;
+
+import io.github.Syedowais381.CodePulz.sandbox.Language;
+import io.github.Syedowais381.CodePulz.sandbox.SandboxPool;
+import io.github.Syedowais381.CodePulz.sandbox.WorkspaceManager;
+import io.github.Syedowais381.CodePulz.scheduler.ExecutionScheduler;
+import io.github.Syedowais381.CodePulz.service.ExecutionJobService;
+import io.github.Syedowais381.CodePulz.service.ExecutionService;
+import io.github.Syedowais381.CodePulz.websocket.ExecutionWebSocketHandler;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Gauges for the state of the execution backend: active sessions and their buffered
+ * output, WebSocket subscribers, admission queue and sandbox pool, per language, plus
+ * the depth of the executors behind them. Spring Boot binds it to the registry, so
+ * everything shows up under /actuator/metrics and /actuator/prometheus.
+ */
+@Component
+public class ExecutionMeterBinder implements MeterBinder {
+
+    private final ExecutionService executionService;
+    private final ExecutionJobService jobService;
+    private final ExecutionScheduler scheduler;
+    private final SandboxPool sandboxPool;
+    private final WorkspaceManager workspaces;
+    private final ExecutionWebSocketHandler webSocketHandler;
+    private final ExecutorService sessionIoExecutor;
+    private final ExecutorService jobExecutor;
+
+    @Autowired
+    public ExecutionMeterBinder(ExecutionService executionService, ExecutionJobService jobService,
+                                ExecutionScheduler scheduler, SandboxPool sandboxPool, WorkspaceManager workspaces,
+                                ExecutionWebSocketHandler webSocketHandler,
+                                @Qualifier("sessionIoExecutor") ExecutorService sessionIoExecutor,
+                                @Qualifier("executionJobExecutor") ExecutorService jobExecutor) {
+        this.executionService = executionService;
+        this.jobService = jobService;
+        this.scheduler = scheduler;
+        this.sandboxPool = sandboxPool;
+        this.workspaces = workspaces;
+        this.webSocketHandler = webSocketHandler;
+        this.sessionIoExecutor = sessionIoExecutor;
+        this.jobExecutor = jobExecutor;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (Language language : Language.values()) {
+            Tags tags = Tags.of("language", language.getId());
+            Gauge.builder("codepulz.sessions.active", executionService, s -> s.countActiveSessions(language))
+                    .description("Interactive sessions not cleaned up yet").tags(tags).register(registry);
+            Gauge.builder("codepulz.sessions.output.buffered", executionService, s -> s.getBufferedOutputBytes(language))
+                    .description("Stdout/stderr bytes held in memory by active sessions").baseUnit("bytes")
+                    .tags(tags).register(registry);
+            Gauge.builder("codepulz.websocket.subscribers", webSocketHandler, h -> h.countSubscribers(language))
+                    .description("Open WebSocket connections streaming a session").tags(tags).register(registry);
+            Gauge.builder("codepulz.websocket.queued", webSocketHandler, h -> h.getQueuedBytes(language))
+                    .description("Output bytes waiting to be sent to WebSocket clients").baseUnit("bytes")
+                    .tags(tags).register(registry);
+            Gauge.builder("codepulz.admission.running", scheduler, s -> s.getRunning(language))
+                    .description("Executions holding a sandbox slot").tags(tags).register(registry);
+            Gauge.builder("codepulz.admission.queued", scheduler, s -> s.getQueued(language))
+                    .description("Executions waiting for a sandbox slot").tags(tags).register(registry);
+            Gauge.builder("codepulz.pool.idle", sandboxPool, p -> p.idleCount(language))
+                    .description("Warm sandboxes ready to run a program").tags(tags).register(registry);
+            Gauge.builder("codepulz.pool.size", sandboxPool, p -> p.totalCount(language))
+                    .description("Warm sandboxes, idle or in use").tags(tags).register(registry);
+        }
+
+        Gauge.builder("codepulz.jobs.inflight", jobService, ExecutionJobService::getInFlight)
+                .description("Executions accepted through the async API and not finished").register(registry);
+        Gauge.builder("codepulz.pool.maintenance.queued", sandboxPool, SandboxPool::getMaintenanceBacklog)
+                .description("Sandbox resets and refills waiting for a maintenance thread").register(registry);
+        Gauge.builder("codepulz.workspaces.idle", workspaces, WorkspaceManager::getIdleCount)
+                .description("Emptied workspace directories kept for reuse").register(registry);
+        Gauge.builder("codepulz.workspaces.inuse", workspaces, WorkspaceManager::getInUseCount)
+                .description("Workspace directories handed out to sandboxes and runs").register(registry);
+        // Active threads and queue depth; nothing is reported for virtual-thread executors
+        new ExecutorServiceMetrics(sessionIoExecutor, "sessionIo", Tags.empty()).bindTo(registry);
+        new ExecutorServiceMetrics(jobExecutor, "executionJob", Tags.empty()).bindTo(registry);
+    }
+}
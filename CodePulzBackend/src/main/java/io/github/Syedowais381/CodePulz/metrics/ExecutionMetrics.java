@@ -0,0 +1,89 @@
+package io.github.Syedowais381.CodePulz.metrics;
+
+import io.github.Syedowais381.CodePulz.config.SandboxPoolProperties;
+import io.github.Syedowais381.CodePulz.sandbox.Language;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency breakdown of an execution, one timer per phase (codepulz.execution.phase).
+ *
+ * Every sample is tagged with the language, the phase, the sandbox runner the language
+ * uses and whether the program ran in a pooled sandbox or a cold start, which is what
+ * mostly decides the startup cost.
+ */
+@Component
+public class ExecutionMetrics {
+
+    public static final String PHASE_TIMER = "codepulz.execution.phase";
+
+    /**
+     * Steps of an execution, in the order they happen.
+     */
+    public enum Phase {
+        // Waiting in the admission queue for an execution slot
+        QUEUE_WAIT("queue_wait"),
+        // Taking a warm sandbox from the pool, or creating the temp directory of a cold run,
+        // and writing the source into it
+        SANDBOX_ACQUIRE("sandbox_acquire"),
+        // Separate compile step in a sandbox; cold runs compile inside the run command
+        COMPILE("compile"),
+        // Program start until exit (includes container startup for cold runs)
+        RUN("run"),
+        // Program start until its first stdout/stderr bytes
+        FIRST_OUTPUT("first_output"),
+        // Releasing the sandbox or deleting the temp directory
+        TEARDOWN("teardown");
+
+        private final String tag;
+
+        Phase(String tag) {
+            this.tag = tag;
+        }
+
+        public String getTag() {
+            return tag;
+        }
+    }
+
+    private final MeterRegistry registry;
+    private final SandboxPoolProperties poolProperties;
+
+    @Autowired
+    public ExecutionMetrics(MeterRegistry registry, SandboxPoolProperties poolProperties) {
+        this.registry = registry;
+        this.poolProperties = poolProperties;
+    }
+
+    public ExecutionMetrics(MeterRegistry registry) {
+        this(registry, new SandboxPoolProperties());
+    }
+
+    /**
+     * @param pooled true when the program ran in a warm sandbox from the pool
+     */
+    public void record(Phase phase, Language language, boolean pooled, long amount, TimeUnit unit) {
+        timer(phase, language, pooled).record(Math.max(0, amount), unit);
+    }
+
+    /**
+     * Record the time since startNanos (a System.nanoTime() value).
+     */
+    public void recordSince(Phase phase, Language language, boolean pooled, long startNanos) {
+        record(phase, language, pooled, System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public Timer timer(Phase phase, Language language, boolean pooled) {
+        return Timer.builder(PHASE_TIMER)
+                .description("Time spent in each phase of an execution")
+                .tag("phase", phase.getTag())
+                .tag("language", language.getId())
+                .tag("sandbox", pooled ? "pooled" : "cold")
+                .tag("runner", poolProperties.runnerFor(language))
+                .register(registry);
+    }
+}
@@ -0,0 +1,553 @@
+package io.github.Syedowais381.CodePulz.sandbox;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.StandardProtocolFamily;
+import java.net.URLEncoder;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal client for the Docker Engine HTTP API over its Unix socket, covering what the
+ * docker runner needs: creating, starting, attaching to and removing containers, and
+ * exec. Compared to forking the docker CLI this saves a process start, the CLI's config
+ * loading and a fresh daemon connection per call, and program output no longer passes
+ * through an extra process.
+ *
+ * Plain requests go over keep-alive connections that are returned to a small pool. Attach
+ * and exec-start upgrade their connection to a raw stream, which belongs to the returned
+ * EngineProcess from then on.
+ *
+ * Every call runs against the same deadlines the CLI runner gave its docker commands:
+ * a watchdog closes the connection of a call that overruns, which unblocks the thread
+ * waiting on it. Creating a container, including an implicit pull, gets the longer
+ * create timeout; a hijacked stream is only timed until the daemon accepts it.
+ */
+public class DockerEngineClient {
+
+    // Docker 20.10 and later
+    private static final String API_VERSION = "/v1.41";
+    // Exec inspection can still report the exec as running right after its stream ended
+    private static final long EXEC_EXIT_POLL_MS = 5;
+    private static final long EXEC_EXIT_TIMEOUT_MS = 2000;
+    // Match DockerSandboxRunner's CREATE_TIMEOUT_SECONDS and COMMAND_TIMEOUT_SECONDS
+    private static final long CREATE_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(120);
+    private static final long COMMAND_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(15);
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private record Head(int status, Map<String, String> headers) {
+        boolean keepAlive() {
+            return !"close".equalsIgnoreCase(headers.get("connection"));
+        }
+    }
+
+    private record Response(int status, byte[] body) {
+    }
+
+    /**
+     * A call's deadline. The state is set before the watchdog closes the connection, so
+     * the caller can tell a timeout from any other failure of the read it was blocked in.
+     */
+    private static final class Deadline {
+        static final int ARMED = 0;
+        static final int DISARMED = 1;
+        static final int EXPIRED = 2;
+
+        final AtomicInteger state = new AtomicInteger(ARMED);
+        volatile ScheduledFuture<?> timer;
+
+        /**
+         * Stop the watchdog. False if it expired and closed the connection already.
+         */
+        boolean disarm() {
+            ScheduledFuture<?> pending = timer;
+            if (pending != null) {
+                pending.cancel(false);
+            }
+            return state.compareAndSet(ARMED, DISARMED) || state.get() == DISARMED;
+        }
+    }
+
+    /**
+     * The daemon closed the connection before answering, e.g. an idle pooled connection
+     * it had already dropped.
+     */
+    private static final class ClosedBeforeResponseException extends EOFException {
+        ClosedBeforeResponseException() {
+            super("Docker daemon closed the connection");
+        }
+    }
+
+    private final Path socket;
+    private final LinkedBlockingDeque<Connection> idle;
+    private final long createTimeoutMs;
+    private final long commandTimeoutMs;
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("docker-api-watchdog").daemon(true).factory());
+
+    public DockerEngineClient(Path socket, int maxIdleConnections) {
+        this(socket, maxIdleConnections, CREATE_TIMEOUT_MS, COMMAND_TIMEOUT_MS);
+    }
+
+    DockerEngineClient(Path socket, int maxIdleConnections, long createTimeoutMs, long commandTimeoutMs) {
+        this.socket = socket;
+        this.idle = new LinkedBlockingDeque<>(Math.max(1, maxIdleConnections));
+        this.createTimeoutMs = createTimeoutMs;
+        this.commandTimeoutMs = commandTimeoutMs;
+    }
+
+    public Path getSocket() {
+        return socket;
+    }
+
+    /**
+     * Create a container, pulling its image first if the daemon does not have it (which
+     * "docker run" does implicitly). Returns the container ID.
+     */
+    public String createContainer(String name, Map<String, Object> config) throws IOException {
+        String path = "/containers/create" + (name != null ? "?name=" + encode(name) : "");
+        // One deadline for the whole create, pull included
+        long deadline = System.currentTimeMillis() + createTimeoutMs;
+        Response response = request("POST", path, config, createTimeoutMs);
+        if (response.status() == 404) {
+            pullImage(String.valueOf(config.get("Image")), deadline);
+            response = request("POST", path, config, remaining(deadline));
+        }
+        return expect(response, "create container", 201).path("Id").asText();
+    }
+
+    public void startContainer(String id) throws IOException {
+        // 304: already running
+        expect(request("POST", "/containers/" + encode(id) + "/start", null), "start container", 204, 304);
+    }
+
+    /**
+     * Host PID of the container's init process.
+     */
+    public long containerPid(String id) throws IOException {
+        return expect(request("GET", "/containers/" + encode(id) + "/json", null), "inspect container", 200)
+                .path("State").path("Pid").asLong();
+    }
+
+    public void killContainer(String id) throws IOException {
+        Response response = request("POST", "/containers/" + encode(id) + "/kill", null);
+        // 404: already removed, 409: not running
+        if (response.status() != 404 && response.status() != 409) {
+            expect(response, "kill container", 204);
+        }
+    }
+
+    public void removeContainer(String id) throws IOException {
+        Response response = request("DELETE", "/containers/" + encode(id) + "?force=true", null);
+        if (response.status() != 404) {
+            expect(response, "remove container", 204);
+        }
+    }
+
+    /**
+     * Create, attach to and start a container, like "docker run -i". The returned process
+     * stands for the container: its streams are the container's stdio and destroy()
+     * kills it. The config must set HostConfig.AutoRemove, as the exit code is taken from
+     * a wait for the container's removal.
+     */
+    public Process run(Map<String, Object> config) throws IOException {
+        Map<String, Object> attached = new LinkedHashMap<>(config);
+        attached.put("AttachStdin", true);
+        attached.put("AttachStdout", true);
+        attached.put("AttachStderr", true);
+        attached.put("OpenStdin", true);
+        attached.put("StdinOnce", true);
+        attached.put("Tty", false);
+        String id = createContainer(null, attached);
+
+        Connection wait = null;
+        Head waitHead = null;
+        Connection stream = null;
+        try {
+            // Waiting from before the start, so a program that exits at once is not missed
+            wait = connect();
+            String waitPath = "/containers/" + id + "/wait?condition=removed";
+            Deadline waitDeadline = closeAfter(wait, commandTimeoutMs);
+            try {
+                writeRequest(wait, "POST", waitPath, null, false);
+                waitHead = readHead(wait);
+            } catch (IOException e) {
+                throw waitDeadline.disarm() ? e : timedOut("POST", waitPath, commandTimeoutMs);
+            }
+            if (!waitDeadline.disarm()) {
+                throw timedOut("POST", waitPath, commandTimeoutMs);
+            }
+            if (waitHead.status() != 200) {
+                expect(new Response(waitHead.status(), readBody(wait, waitHead)), "wait for container", 200);
+            }
+            // Attached before the start, so no output is lost
+            stream = hijack("/containers/" + id + "/attach?stream=1&stdin=1&stdout=1&stderr=1", null);
+            startContainer(id);
+        } catch (IOException e) {
+            closeQuietly(wait);
+            closeQuietly(stream);
+            try {
+                removeContainer(id);
+            } catch (IOException ignored) {
+                // Best effort
+            }
+            throw e;
+        }
+
+        Connection waitConnection = wait;
+        Head waitResponse = waitHead;
+        return new EngineProcess(stream, () -> {
+            try (waitConnection) {
+                // The daemon answers once the container is gone
+                JsonNode status = expect(new Response(200, readBody(waitConnection, waitResponse)),
+                        "wait for container", 200);
+                return status.path("StatusCode").asInt(-1);
+            }
+        }, () -> {
+            try {
+                killContainer(id);
+            } catch (IOException e) {
+                // Already gone
+            }
+        });
+    }
+
+    /**
+     * Run command in a container, like "docker exec -i". Destroying the returned process
+     * only detaches from the program; it keeps running inside the container until killed
+     * there.
+     */
+    public Process exec(String containerId, List<String> command, String workingDir, boolean attachStdin)
+            throws IOException {
+        Map<String, Object> config = new LinkedHashMap<>();
+        config.put("AttachStdin", attachStdin);
+        config.put("AttachStdout", true);
+        config.put("AttachStderr", true);
+        config.put("Tty", false);
+        config.put("Cmd", command);
+        if (workingDir != null) {
+            config.put("WorkingDir", workingDir);
+        }
+        String execId = expect(request("POST", "/containers/" + encode(containerId) + "/exec", config),
+                "create exec", 201).path("Id").asText();
+        Connection stream = hijack("/exec/" + encode(execId) + "/start", Map.of("Detach", false, "Tty", false));
+        return new EngineProcess(stream, () -> execExitCode(execId), null);
+    }
+
+    private int execExitCode(String execId) throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + EXEC_EXIT_TIMEOUT_MS;
+        while (true) {
+            JsonNode exec = expect(request("GET", "/exec/" + encode(execId) + "/json", null), "inspect exec", 200);
+            if (!exec.path("Running").asBoolean() || System.currentTimeMillis() >= deadline) {
+                return exec.path("ExitCode").isNull() ? -1 : exec.path("ExitCode").asInt(-1);
+            }
+            TimeUnit.MILLISECONDS.sleep(EXEC_EXIT_POLL_MS);
+        }
+    }
+
+    private void pullImage(String image, long deadline) throws IOException {
+        String name = image;
+        String tag = "latest";
+        int colon = image.lastIndexOf(':');
+        if (colon > image.lastIndexOf('/')) {
+            name = image.substring(0, colon);
+            tag = image.substring(colon + 1);
+        }
+        Response response = request("POST", "/images/create?fromImage=" + encode(name) + "&tag=" + encode(tag), null,
+                remaining(deadline));
+        expect(response, "pull " + image, 200);
+        // Failures after the pull started are reported inside the progress stream
+        for (String line : new String(response.body(), StandardCharsets.UTF_8).split("\n")) {
+            if (line.contains("\"error\"")) {
+                throw new IOException("Docker API: could not pull " + image + ": "
+                        + JSON.readTree(line).path("error").asText());
+            }
+        }
+    }
+
+    private Response request(String method, String path, Object body) throws IOException {
+        return request(method, path, body, commandTimeoutMs);
+    }
+
+    private Response request(String method, String path, Object body, long timeoutMs) throws IOException {
+        Connection connection = idle.pollFirst();
+        boolean reused = connection != null;
+        if (connection == null) {
+            connection = connect();
+        }
+        Deadline deadline = closeAfter(connection, timeoutMs);
+        boolean sent = false;
+        try {
+            writeRequest(connection, method, path, body, false);
+            sent = true;
+            Head head = readHead(connection);
+            byte[] content = readBody(connection, head);
+            // A connection the watchdog got to is closed already
+            if (!deadline.disarm() || !head.keepAlive() || !idle.offerFirst(connection)) {
+                connection.close();
+            }
+            return new Response(head.status(), content);
+        } catch (IOException e) {
+            connection.close();
+            if (!deadline.disarm()) {
+                throw timedOut(method, path, timeoutMs);
+            }
+            if (reused && (!sent || e instanceof ClosedBeforeResponseException)) {
+                // A stale pooled connection; the daemon never saw the request
+                return request(method, path, body, timeoutMs);
+            }
+            throw e;
+        }
+    }
+
+    private Connection hijack(String path, Object body) throws IOException {
+        Connection connection = connect();
+        Deadline deadline = closeAfter(connection, commandTimeoutMs);
+        try {
+            writeRequest(connection, "POST", path, body, true);
+            Head head = readHead(connection);
+            // Daemons before API 1.22 answer 200 and hijack the connection all the same
+            if (head.status() != 101 && head.status() != 200) {
+                expect(new Response(head.status(), readBody(connection, head)), "attach", 101);
+            }
+            // From here on the stream lasts as long as the program
+            if (!deadline.disarm()) {
+                throw timedOut("POST", path, commandTimeoutMs);
+            }
+            return connection;
+        } catch (IOException e) {
+            connection.close();
+            throw deadline.disarm() ? e : timedOut("POST", path, commandTimeoutMs);
+        }
+    }
+
+    /**
+     * Close the connection once timeoutMs have passed, unless the returned deadline is
+     * disarmed first.
+     */
+    private Deadline closeAfter(Connection connection, long timeoutMs) {
+        Deadline deadline = new Deadline();
+        deadline.timer = watchdog.schedule(() -> {
+            if (deadline.state.compareAndSet(Deadline.ARMED, Deadline.EXPIRED)) {
+                connection.close();
+            }
+        }, Math.max(0, timeoutMs), TimeUnit.MILLISECONDS);
+        return deadline;
+    }
+
+    private static long remaining(long deadline) {
+        return deadline - System.currentTimeMillis();
+    }
+
+    private static IOException timedOut(String method, String path, long timeoutMs) {
+        return new IOException("Docker API: " + method + " " + path + " timed out after " + timeoutMs + " ms");
+    }
+
+    private Connection connect() throws IOException {
+        return new Connection(socket);
+    }
+
+    private static JsonNode expect(Response response, String action, int... statuses) throws IOException {
+        for (int status : statuses) {
+            if (response.status() == status) {
+                return response.body().length == 0 ? JSON.missingNode() : JSON.readTree(response.body());
+            }
+        }
+        String message = new String(response.body(), StandardCharsets.UTF_8).trim();
+        try {
+            message = JSON.readTree(response.body()).path("message").asText(message);
+        } catch (IOException e) {
+            // Not JSON
+        }
+        throw new IOException("Docker API: could not " + action + " (" + response.status() + "): " + message);
+    }
+
+    private static void writeRequest(Connection connection, String method, String path, Object body,
+                                     boolean upgrade) throws IOException {
+        byte[] content = body == null ? new byte[0] : JSON.writeValueAsBytes(body);
+        StringBuilder head = new StringBuilder()
+                .append(method).append(' ').append(API_VERSION).append(path).append(" HTTP/1.1\r\n")
+                .append("Host: docker\r\n");
+        if (body != null) {
+            head.append("Content-Type: application/json\r\n");
+        }
+        if (!method.equals("GET")) {
+            head.append("Content-Length: ").append(content.length).append("\r\n");
+        }
+        if (upgrade) {
+            head.append("Connection: Upgrade\r\nUpgrade: tcp\r\n");
+        }
+        head.append("\r\n");
+        ByteArrayOutputStream request = new ByteArrayOutputStream(head.length() + content.length);
+        request.write(head.toString().getBytes(StandardCharsets.US_ASCII));
+        request.write(content);
+        connection.out.write(request.toByteArray());
+    }
+
+    private static Head readHead(Connection connection) throws IOException {
+        String statusLine = readLine(connection.in);
+        if (statusLine == null) {
+            throw new ClosedBeforeResponseException();
+        }
+        String[] parts = statusLine.split(" ", 3);
+        if (parts.length < 2 || !parts[0].startsWith("HTTP/")) {
+            throw new IOException("Unexpected response from the Docker daemon: " + statusLine);
+        }
+        Map<String, String> headers = new HashMap<>();
+        for (String line = readLine(connection.in); line != null && !line.isEmpty(); line = readLine(connection.in)) {
+            int colon = line.indexOf(':');
+            if (colon > 0) {
+                headers.put(line.substring(0, colon).trim().toLowerCase(), line.substring(colon + 1).trim());
+            }
+        }
+        return new Head(Integer.parseInt(parts[1]), headers);
+    }
+
+    private static byte[] readBody(Connection connection, Head head) throws IOException {
+        if (head.status() == 204 || head.status() == 304 || head.status() / 100 == 1) {
+            return new byte[0];
+        }
+        InputStream in = connection.in;
+        if ("chunked".equalsIgnoreCase(head.headers().get("transfer-encoding"))) {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            while (true) {
+                String line = readLine(in);
+                if (line == null) {
+                    throw new EOFException("Docker daemon closed the connection inside a response");
+                }
+                int size = Integer.parseInt(line.split(";", 2)[0].trim(), 16);
+                if (size == 0) {
+                    // Optional trailers up to an empty line
+                    for (String trailer = readLine(in); trailer != null && !trailer.isEmpty(); trailer = readLine(in)) {
+                        // Ignored
+                    }
+                    return body.toByteArray();
+                }
+                body.write(readExactly(in, size));
+                readLine(in);
+            }
+        }
+        String length = head.headers().get("content-length");
+        if (length != null) {
+            return readExactly(in, Integer.parseInt(length));
+        }
+        return in.readAllBytes();
+    }
+
+    private static byte[] readExactly(InputStream in, int length) throws IOException {
+        byte[] bytes = in.readNBytes(length);
+        if (bytes.length < length) {
+            throw new EOFException("Docker daemon closed the connection inside a response");
+        }
+        return bytes;
+    }
+
+    /**
+     * A CRLF-terminated line without its terminator, or null at end of stream.
+     */
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+        int b;
+        while ((b = in.read()) != -1 && b != '\n') {
+            line.write(b);
+        }
+        if (b == -1 && line.size() == 0) {
+            return null;
+        }
+        String text = line.toString(StandardCharsets.ISO_8859_1);
+        return text.endsWith("\r") ? text.substring(0, text.length() - 1) : text;
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private static void closeQuietly(Connection connection) {
+        if (connection != null) {
+            connection.close();
+        }
+    }
+
+    /**
+     * One connection to the daemon. Reads and writes go straight to the channel, so a
+     * hijacked stream can be read by one thread while another writes stdin to it.
+     */
+    static final class Connection implements Closeable {
+        private final SocketChannel channel;
+        final InputStream in;
+        final OutputStream out;
+
+        Connection(Path socket) throws IOException {
+            channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+            try {
+                channel.connect(UnixDomainSocketAddress.of(socket));
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+            in = new BufferedInputStream(new InputStream() {
+                @Override
+                public int read() throws IOException {
+                    byte[] one = new byte[1];
+                    return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    return len == 0 ? 0 : channel.read(ByteBuffer.wrap(b, off, len));
+                }
+            }, 16 * 1024);
+            out = new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    write(new byte[] { (byte) b }, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                }
+
+                @Override
+                public void close() throws IOException {
+                    // End of stdin for the program; output keeps flowing
+                    channel.shutdownOutput();
+                }
+            };
+        }
+
+        @Override
+        public void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Nothing left to release
+            }
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package io.github.Syedowais381.CodePulz.sandbox;
+
+import io.github.Syedowais381.CodePulz.config.SandboxPoolProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs sandboxes as long-lived Docker containers. A container is started once with
+ * an idle command and every program run is a "docker exec" into it, so the
+ * container creation and runtime boot are paid when the pool refills, not per request.
+ * With runtime workers enabled, the idle command of python, javascript and java
+ * containers is the language's RuntimeWorker, running as PID 1 so resets do not kill it.
+ *
+ * Every container has a read-only root filesystem, runs as an unprivileged user with no
+ * capabilities, and can only write to the workspace mounted at /app and to tmpfs mounts
+ * that go away with it. A program therefore cannot change the image's toolchain or leave
+ * files for the next run of a reused container outside the directories reset wipes.
+ *
+ * The daemon is reached through the Engine API on its Unix socket (DockerEngineClient)
+ * when that socket exists, else through the docker CLI.
+ */
+@Slf4j
+@Component
+public class DockerSandboxRunner implements SandboxRunner {
+
+    public static final String NAME = "docker";
+
+    // Creating a container can include pulling the image the first time
+    private static final long CREATE_TIMEOUT_SECONDS = 120;
+    private static final long COMMAND_TIMEOUT_SECONDS = 15;
+    // Outside /app and /tmp, which are wiped on reset
+    private static final String WORKER_CONTROL_DIR = "/run/codepulz";
+
+    // Resource limits, mount point and environment of every sandboxed container
+    private static final double CPUS = 0.5;
+    private static final long MEMORY_MB = 256;
+    private static final String WORKDIR = "/app";
+    private static final List<String> ENVIRONMENT = List.of(
+        "PYTHONUNBUFFERED=1",  // Force unbuffered Python output
+        "JAVA_TOOL_OPTIONS=-Dfile.encoding=UTF-8", // Force Java UTF-8
+        "HOME=/tmp" // Toolchains that write under $HOME (go, dotnet) on a read-only root
+    );
+    // Writable tmpfs mounts on the read-only root filesystem, with their mount options
+    private static final Map<String, String> TMPFS = Map.of(
+        "/tmp", "rw,exec,nosuid,nodev",
+        WORKER_CONTROL_DIR, "rw,nosuid,nodev"
+    );
+    // Programs run as this user when the server itself runs as root
+    private static final String UNPRIVILEGED_USER = "65534:65534";
+
+    /**
+     * Where to list a container's processes on the host: its cgroup (v2) and the PID of
+     * its idle init process, which is not part of any program.
+     */
+    private record ContainerProcesses(Path cgroupProcs, long initPid) {
+    }
+
+    // Only for containers whose processes are visible from here (server on the Docker host)
+    private final Map<String, ContainerProcesses> containerProcesses = new ConcurrentHashMap<>();
+
+    private final WorkspaceManager workspaces;
+    private final SandboxPoolProperties properties;
+    // Null when going through the docker CLI
+    private final DockerEngineClient engine;
+
+    @Autowired
+    public DockerSandboxRunner(WorkspaceManager workspaces, SandboxPoolProperties properties) {
+        this(workspaces, properties, engineClient(properties.getDocker()));
+    }
+
+    DockerSandboxRunner(WorkspaceManager workspaces, SandboxPoolProperties properties, DockerEngineClient engine) {
+        this.workspaces = workspaces;
+        this.properties = properties;
+        this.engine = engine;
+    }
+
+    private static DockerEngineClient engineClient(SandboxPoolProperties.Docker docker) {
+        if (!docker.isEngineApi()) {
+            return null;
+        }
+        Path socket = Path.of(docker.getSocket());
+        if (!Files.exists(socket)) {
+            log.info("Docker socket {} not found, using the docker CLI", socket);
+            return null;
+        }
+        return new DockerEngineClient(socket, docker.getMaxIdleConnections());
+    }
+
+    /**
+     * Resource limits, mount, user and environment shared by every sandboxed container,
+     * as docker CLI options.
+     */
+    public static List<String> containerOptions(Path workspace) throws IOException {
+        List<String> options = new ArrayList<>(Arrays.asList(
+            "--cpus=" + CPUS,
+            "--memory=" + MEMORY_MB + "m",
+            "--read-only",
+            "--cap-drop", "ALL",
+            "--security-opt", "no-new-privileges",
+            "--user", sandboxUser(workspace),
+            "--workdir", WORKDIR,
+            "-v", workspace.toAbsolutePath() + ":" + WORKDIR
+        ));
+        TMPFS.forEach((path, mountOptions) -> {
+            options.add("--tmpfs");
+            options.add(path + ":" + mountOptions);
+        });
+        for (String variable : ENVIRONMENT) {
+            options.add("-e");
+            options.add(variable);
+        }
+        return options;
+    }
+
+    /**
+     * The same settings as containerOptions as an Engine API create body, for a
+     * container that is removed once it exits.
+     */
+    static Map<String, Object> containerConfig(Language language, Path workspace, List<String> command)
+            throws IOException {
+        Map<String, Object> hostConfig = new LinkedHashMap<>();
+        hostConfig.put("NanoCpus", (long) (CPUS * 1_000_000_000L));
+        hostConfig.put("Memory", MEMORY_MB * 1024 * 1024);
+        hostConfig.put("ReadonlyRootfs", true);
+        hostConfig.put("CapDrop", List.of("ALL"));
+        hostConfig.put("SecurityOpt", List.of("no-new-privileges"));
+        hostConfig.put("Binds", List.of(workspace.toAbsolutePath() + ":" + WORKDIR));
+        hostConfig.put("Tmpfs", TMPFS);
+        hostConfig.put("AutoRemove", true);
+        Map<String, Object> config = new LinkedHashMap<>();
+        config.put("Image", language.getImage());
+        config.put("Cmd", command);
+        config.put("User", sandboxUser(workspace));
+        config.put("WorkingDir", WORKDIR);
+        config.put("Env", ENVIRONMENT);
+        config.put("HostConfig", hostConfig);
+        return config;
+    }
+
+    /**
+     * The user a container runs as: the owner of the workspace, i.e. the server's own
+     * user, so both sides can read and clean up each other's files. A server running as
+     * root gets an unprivileged user instead, and the workspace is opened up to it.
+     */
+    static String sandboxUser(Path workspace) throws IOException {
+        int uid = (Integer) Files.getAttribute(workspace, "unix:uid");
+        if (uid != 0) {
+            return uid + ":" + Files.getAttribute(workspace, "unix:gid");
+        }
+        Files.setPosixFilePermissions(workspace, PosixFilePermissions.fromString("rwxrwxrwx"));
+        return UNPRIVILEGED_USER;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public Sandbox create(Language language) throws IOException {
+        Path workspace = workspaces.acquire();
+        String name = "codepulz-" + language.getId() + "-" + UUID.randomUUID().toString().substring(0, 8);
+
+        RuntimeWorker worker = null;
+        List<String> idleCommand = Arrays.asList("sleep", "infinity");
+        if (properties.isRuntimeWorkers() && RuntimeWorker.supports(language)) {
+            worker = new RuntimeWorker(language, WORKER_CONTROL_DIR);
+            idleCommand = RuntimeWorker.bootCommand(language, WORKER_CONTROL_DIR, WORKDIR);
+        }
+
+        try {
+            if (engine != null) {
+                engine.createContainer(name, containerConfig(language, workspace, idleCommand));
+                startCreated(name);
+            } else {
+                List<String> command = new ArrayList<>(Arrays.asList("docker", "run", "-d", "--rm", "--name", name));
+                command.addAll(containerOptions(workspace));
+                command.add(language.getImage());
+                command.addAll(idleCommand);
+                runDocker(command, CREATE_TIMEOUT_SECONDS);
+            }
+        } catch (IOException e) {
+            workspaces.discard(workspace);
+            throw e;
+        }
+        ContainerProcesses processes = locateProcesses(name);
+        if (processes != null) {
+            containerProcesses.put(name, processes);
+        }
+        return new Sandbox(name, language, workspace, worker);
+    }
+
+    /**
+     * Auto-removal only covers containers that were started.
+     */
+    private void startCreated(String name) throws IOException {
+        try {
+            engine.startContainer(name);
+        } catch (IOException e) {
+            try {
+                engine.removeContainer(name);
+            } catch (IOException ignored) {
+                // Best effort
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Find the container's cgroup through its init PID. Returns null when the cgroup is
+     * not visible, e.g. cgroup v1 or the server itself runs in a container.
+     */
+    private ContainerProcesses locateProcesses(String name) {
+        try {
+            long initPid = engine != null ? engine.containerPid(name)
+                    : Long.parseLong(runDocker(Arrays.asList("docker", "inspect", "-f", "{{.State.Pid}}", name),
+                            COMMAND_TIMEOUT_SECONDS));
+            for (String line : Files.readAllLines(Path.of("/proc", String.valueOf(initPid), "cgroup"))) {
+                if (line.startsWith("0::")) {
+                    Path procs = Path.of("/sys/fs/cgroup", line.substring(3), "cgroup.procs");
+                    return Files.isReadable(procs) ? new ContainerProcesses(procs, initPid) : null;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // Not visible from here
+        }
+        return null;
+    }
+
+    @Override
+    public List<Long> programPids(Sandbox sandbox, Process process) {
+        ContainerProcesses processes = containerProcesses.get(sandbox.getId());
+        if (processes == null) {
+            return null;
+        }
+        List<Long> pids = new ArrayList<>();
+        try {
+            for (String line : Files.readAllLines(processes.cgroupProcs())) {
+                if (!line.isBlank() && Long.parseLong(line.trim()) != processes.initPid()) {
+                    pids.add(Long.parseLong(line.trim()));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            return null;
+        }
+        return pids;
+    }
+
+    @Override
+    public Process exec(Sandbox sandbox, String command) throws IOException {
+        if (engine != null) {
+            return engine.exec(sandbox.getId(), Arrays.asList("sh", "-c", command), WORKDIR, true);
+        }
+        // -i keeps stdin attached; no -t, a TTY breaks non-interactive input
+        return new ProcessBuilder("docker", "exec", "-i", "-w", WORKDIR, sandbox.getId(), "sh", "-c", command).start();
+    }
+
+    /**
+     * A throwaway "docker run --rm" container. Through the Engine API destroying the
+     * process kills the container; through the CLI it keeps running if only the docker
+     * client is killed.
+     */
+    @Override
+    public Process start(Language language, Path workspace, String command) throws IOException {
+        if (engine != null) {
+            return engine.run(containerConfig(language, workspace, Arrays.asList("sh", "-c", command)));
+        }
+        // -i keeps stdin open; no -t, a TTY breaks non-interactive input
+        List<String> arguments = new ArrayList<>(Arrays.asList("docker", "run", "--rm", "-i"));
+        arguments.addAll(containerOptions(workspace));
+        arguments.add(language.getImage());
+        arguments.addAll(Arrays.asList("sh", "-c", command));
+        return new ProcessBuilder(arguments).start();
+    }
+
+    @Override
+    public void reset(Sandbox sandbox) throws IOException {
+        // Killing the docker exec client does not stop the program inside the container,
+        // so kill everything except the idle PID 1 and wipe files the program left behind.
+        // The rest of the filesystem is read-only to the program.
+        String script = "kill -9 -1 2>/dev/null; find /app /tmp /dev/shm -mindepth 1 -delete 2>/dev/null; ";
+        RuntimeWorker worker = sandbox.getWorker();
+        if (worker != null) {
+            // Reply FIFOs of killed clients, and the worker's memory for the growth check.
+            // Fails while the worker is still busy with a killed program
+            script += "rm -f " + WORKER_CONTROL_DIR + "/[0-9]*; cat /proc/1/status; "
+                    + "if [ -e " + WORKER_CONTROL_DIR + "/" + RuntimeWorker.BUSY_FILE + " ]; then "
+                    + "echo 'Runtime worker still busy'; exit 1; fi; ";
+        }
+        List<String> command = Arrays.asList("sh", "-c", script + "true");
+        String output = engine != null ? runEngineExec(sandbox.getId(), command)
+                : runDocker(concat(Arrays.asList("docker", "exec", sandbox.getId()), command), COMMAND_TIMEOUT_SECONDS);
+        if (worker != null) {
+            worker.checkMemory(output, properties.getWorkerMaxGrowthBytes());
+        }
+    }
+
+    @Override
+    public void destroy(Sandbox sandbox) {
+        containerProcesses.remove(sandbox.getId());
+        try {
+            if (engine != null) {
+                engine.removeContainer(sandbox.getId());
+            } else {
+                runDocker(Arrays.asList("docker", "rm", "-f", sandbox.getId()), COMMAND_TIMEOUT_SECONDS);
+            }
+        } catch (IOException e) {
+            // Container may already be gone
+        }
+        // Deleted rather than recycled: the container may still be shutting down
+        workspaces.discard(sandbox.getWorkspace());
+    }
+
+    private String runDocker(List<String> command, long timeoutSeconds) throws IOException {
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        return awaitOutput(process, String.join(" ", command), timeoutSeconds);
+    }
+
+    /**
+     * A short command inside the container through the Engine API; its stdout is the
+     * result, stderr is dropped.
+     */
+    private String runEngineExec(String containerId, List<String> command) throws IOException {
+        Process process = engine.exec(containerId, command, null, false);
+        process.getErrorStream().close();
+        return awaitOutput(process, String.join(" ", command), COMMAND_TIMEOUT_SECONDS);
+    }
+
+    private static String awaitOutput(Process process, String description, long timeoutSeconds) throws IOException {
+        try {
+            process.getOutputStream().close();
+            if (!process.waitFor(timeoutSeconds, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                throw new IOException("Timed out: " + description);
+            }
+            String output = readAll(process.getInputStream()).trim();
+            if (process.exitValue() != 0) {
+                throw new IOException("Docker command failed (" + process.exitValue() + "): " + output);
+            }
+            return output;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            process.destroyForcibly();
+            throw new IOException("Interrupted while running docker", e);
+        }
+    }
+
+    private static List<String> concat(List<String> first, List<String> second) {
+        List<String> all = new ArrayList<>(first);
+        all.addAll(second);
+        return all;
+    }
+
+    private static String readAll(InputStream in) throws IOException {
+        try (in) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package io.github.Syedowais381.CodePulz.sandbox;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A program in a container, seen through an attach or exec stream of the Docker Engine
+ * API. Without a TTY the daemon multiplexes stdout and stderr on that one stream as
+ * frames of an 8-byte header (stream type, three zero bytes, big-endian payload length)
+ * followed by the payload. A reader thread splits them into two bounded buffers behind
+ * getInputStream() and getErrorStream(); while a buffer is full it stops reading the
+ * socket, so a program printing faster than it is consumed blocks in write() as it would
+ * on a pipe.
+ */
+final class EngineProcess extends Process {
+
+    @FunctionalInterface
+    interface ExitCode {
+        int await() throws IOException, InterruptedException;
+    }
+
+    // Reported for a program whose stream was cut by destroy(), as for a SIGKILL
+    static final int DESTROYED_EXIT_CODE = 137;
+    private static final int STREAM_BUFFER_BYTES = 64 * 1024;
+
+    private final DockerEngineClient.Connection stream;
+    private final StreamBuffer stdout = new StreamBuffer(STREAM_BUFFER_BYTES);
+    private final StreamBuffer stderr = new StreamBuffer(STREAM_BUFFER_BYTES);
+    // Null when the program cannot be killed through the API (exec)
+    private final Runnable kill;
+    private final CompletableFuture<Integer> exit = new CompletableFuture<>();
+    private volatile boolean destroyed;
+
+    EngineProcess(DockerEngineClient.Connection stream, ExitCode exitCode, Runnable kill) {
+        this.stream = stream;
+        this.kill = kill;
+        Thread.ofVirtual().name("docker-stream").start(() -> demultiplex(exitCode));
+    }
+
+    private void demultiplex(ExitCode exitCode) {
+        byte[] header = new byte[8];
+        byte[] chunk = new byte[8192];
+        try {
+            while (stream.in.readNBytes(header, 0, header.length) == header.length) {
+                // 0 would be stdin, which is never sent back
+                StreamBuffer target = header[0] == 1 ? stdout : header[0] == 2 ? stderr : null;
+                int remaining = (header[4] & 0xff) << 24 | (header[5] & 0xff) << 16
+                        | (header[6] & 0xff) << 8 | header[7] & 0xff;
+                while (remaining > 0) {
+                    int read = stream.in.read(chunk, 0, Math.min(chunk.length, remaining));
+                    if (read < 0) {
+                        throw new EOFException("Stream ended inside a frame");
+                    }
+                    remaining -= read;
+                    if (target != null) {
+                        target.write(chunk, 0, read);
+                    }
+                }
+            }
+        } catch (IOException | InterruptedException e) {
+            // Closed by destroy(), or the daemon went away
+        } finally {
+            stdout.closeWrite();
+            stderr.closeWrite();
+        }
+
+        int code;
+        try {
+            code = destroyed && kill == null ? DESTROYED_EXIT_CODE : exitCode.await();
+        } catch (IOException | InterruptedException e) {
+            code = destroyed ? DESTROYED_EXIT_CODE : -1;
+        } finally {
+            stream.close();
+        }
+        exit.complete(code);
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return stream.out;
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return stdout.input;
+    }
+
+    @Override
+    public InputStream getErrorStream() {
+        return stderr.input;
+    }
+
+    @Override
+    public int waitFor() throws InterruptedException {
+        try {
+            return exit.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    @Override
+    public boolean waitFor(long timeout, TimeUnit unit) throws InterruptedException {
+        try {
+            exit.get(timeout, unit);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    @Override
+    public int exitValue() {
+        if (!exit.isDone()) {
+            throw new IllegalThreadStateException("process hasn't exited");
+        }
+        return exit.join();
+    }
+
+    @Override
+    public boolean isAlive() {
+        return !exit.isDone();
+    }
+
+    @Override
+    public CompletableFuture<Process> onExit() {
+        return exit.thenApply(code -> this);
+    }
+
+    @Override
+    public void destroy() {
+        destroyed = true;
+        if (kill != null) {
+            kill.run();
+        }
+        stream.close();
+    }
+
+    @Override
+    public boolean supportsNormalTermination() {
+        return false;
+    }
+
+    /**
+     * Bounded byte queue between the reader thread and one of the program's streams.
+     * Once its input is closed further output for it is dropped.
+     */
+    private static final class StreamBuffer {
+        private final byte[] data;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition changed = lock.newCondition();
+        // Guarded by lock
+        private int head;
+        private int size;
+        private boolean writeClosed;
+        private boolean readClosed;
+
+        final InputStream input = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                byte[] one = new byte[1];
+                return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                Objects.checkFromIndexSize(off, len, b.length);
+                if (len == 0) {
+                    return 0;
+                }
+                lock.lock();
+                try {
+                    while (size == 0 && !writeClosed && !readClosed) {
+                        changed.await();
+                    }
+                    if (readClosed) {
+                        throw new IOException("Stream closed");
+                    }
+                    if (size == 0) {
+                        return -1;
+                    }
+                    int n = Math.min(len, Math.min(size, data.length - head));
+                    System.arraycopy(data, head, b, off, n);
+                    head = (head + n) % data.length;
+                    size -= n;
+                    changed.signalAll();
+                    return n;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                } finally {
+                    lock.unlock();
+                }
+            }
+
+            @Override
+            public int available() {
+                lock.lock();
+                try {
+                    return size;
+                } finally {
+                    lock.unlock();
+                }
+            }
+
+            @Override
+            public void close() {
+                lock.lock();
+                try {
+                    readClosed = true;
+                    size = 0;
+                    changed.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        };
+
+        StreamBuffer(int capacity) {
+            this.data = new byte[capacity];
+        }
+
+        void write(byte[] b, int off, int len) throws InterruptedException {
+            lock.lock();
+            try {
+                while (len > 0) {
+                    while (size == data.length && !readClosed) {
+                        changed.await();
+                    }
+                    if (readClosed) {
+                        return;
+                    }
+                    int tail = (head + size) % data.length;
+                    int n = Math.min(len, Math.min(data.length - size, data.length - tail));
+                    System.arraycopy(b, off, data, tail, n);
+                    size += n;
+                    off += n;
+                    len -= n;
+                    changed.signalAll();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void closeWrite() {
+            lock.lock();
+            try {
+                writeClosed = true;
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package io.github.Syedowais381.CodePulz.sandbox;
+
+import lombok.Getter;
+
+/**
+ * Supported languages together with the toolchain image, the source filename
+ * and the shell commands used to build and run the program inside /app.
+ *
+ * Compiled languages write everything they need at run time into build/, so the
+ * directory can be cached and restored to skip compilation for identical code.
+ */
+@Getter
+public enum Language {
+    JAVA("java", "openjdk:17-slim", "Main.java",
+            "javac -d build Main.java", "java -cp build Main"),
+    PYTHON("python", "python:3.10-slim", "script.py", null, "python script.py"),
+    JAVASCRIPT("javascript", "node:18-slim", "index.js", null, "node index.js"),
+    CPP("cpp", "gcc:latest", "main.cpp",
+            "mkdir -p build && g++ main.cpp -o build/myapp", "./build/myapp"),
+    C("c", "gcc:latest", "main.c",
+            "mkdir -p build && gcc main.c -o build/myapp", "./build/myapp"),
+    // Create project files, then build. The user's Program.cs is already in /app,
+    // and the project takes its name ("app") from the /app working directory.
+    CSHARP("csharp", "mcr.microsoft.com/dotnet/sdk:7.0", "Program.cs",
+            "dotnet new console --force > /dev/null && dotnet build -o build --nologo -v q -clp:NoSummary",
+            "dotnet build/app.dll"),
+    GO("go", "golang:1.20", "main.go",
+            "go build -o build/myapp main.go", "./build/myapp");
+
+    /**
+     * Directory (relative to /app) holding the compiled artifacts.
+     */
+    public static final String BUILD_DIR = "build";
+
+    private final String id;
+    private final String image;
+    private final String filename;
+    private final String compileCommand; // null for interpreted languages
+    private final String runCommand;
+
+    Language(String id, String image, String filename, String compileCommand, String runCommand) {
+        this.id = id;
+        this.image = image;
+        this.filename = filename;
+        this.compileCommand = compileCommand;
+        this.runCommand = runCommand;
+    }
+
+    public boolean isCompiled() {
+        return compileCommand != null;
+    }
+
+    /**
+     * Single shell command that compiles (if needed) and runs the program.
+     */
+    public String getCommand() {
+        return isCompiled() ? compileCommand + " && " + runCommand : runCommand;
+    }
+
+    /**
+     * Resolve a language from the identifier used in ExecutionRequest (case-insensitive).
+     */
+    public static Language fromId(String id) {
+        if (id != null) {
+            for (Language language : values()) {
+                if (language.id.equalsIgnoreCase(id)) {
+                    return language;
+                }
+            }
+        }
+        throw new IllegalArgumentException("Unsupported language: " + id);
+    }
+}
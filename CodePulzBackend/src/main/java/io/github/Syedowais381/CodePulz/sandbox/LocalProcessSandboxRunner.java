@@ -0,0 +1,369 @@
+package io.github.Syedowais381.CodePulz.sandbox;
+
+import io.github.Syedowais381.CodePulz.config.SandboxPoolProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Runner that executes programs as plain host processes in a workspace directory,
+ * for tests, machines without Docker, and bare-metal hosts where container startup
+ * dominates. The language toolchains must be installed locally.
+ *
+ * Isolation is whatever the host allows without privileges:
+ * - rlimits on every program (heap, CPU time, file size, open files),
+ * - its own user and network namespace (no network) when unprivileged user
+ *   namespaces are enabled,
+ * - a cgroup per sandbox with memory, CPU and process limits when cgroup-root points
+ *   at a delegated cgroup v2 directory.
+ * It does not hide the host file system; run it where that is acceptable.
+ *
+ * Runtime workers run as host processes too, with their control directory in the system
+ * temp directory. A sandbox with a worker gets its namespaces from the worker: programs
+ * are started inside them with nsenter rather than in namespaces of their own, since the
+ * worker can only open a client's descriptors through /proc from the same user namespace.
+ * Workers share the sandbox's cgroup, but being long-lived they are not under the
+ * per-program rlimits, and neither are the programs they fork.
+ */
+@Slf4j
+@Component
+public class LocalProcessSandboxRunner implements SandboxRunner {
+
+    public static final String NAME = "local";
+
+    // Exit code of a program whose limits could not be applied
+    private static final int LIMITS_FAILED = 125;
+
+    // Processes started per sandbox, so reset can stop whatever is still running
+    private final Map<String, List<Process>> processes = new ConcurrentHashMap<>();
+    // Runtime worker process per sandbox, when runtime workers are enabled
+    private final Map<String, Process> workers = new ConcurrentHashMap<>();
+    // cgroup directory per sandbox, when cgroups are configured
+    private final Map<String, Path> cgroups = new ConcurrentHashMap<>();
+
+    private final WorkspaceManager workspaces;
+    private final SandboxPoolProperties properties;
+    // Whether unshare works here; checked on first use
+    private volatile Boolean namespaces;
+    private volatile boolean cgroupWarned;
+
+    @Autowired
+    public LocalProcessSandboxRunner(WorkspaceManager workspaces, SandboxPoolProperties properties) {
+        this.workspaces = workspaces;
+        this.properties = properties;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public Sandbox create(Language language) throws IOException {
+        String id = "local-" + UUID.randomUUID();
+        Path workspace = workspaces.acquire();
+        Path cgroup = createCgroup(id);
+        RuntimeWorker worker = null;
+        if (properties.isRuntimeWorkers() && RuntimeWorker.supports(language)) {
+            try {
+                worker = startWorker(id, language, workspace, cgroup);
+            } catch (IOException e) {
+                removeCgroup(cgroup);
+                workspaces.discard(workspace);
+                throw e;
+            }
+        }
+        Sandbox sandbox = new Sandbox(id, language, workspace, worker);
+        processes.put(sandbox.getId(), new CopyOnWriteArrayList<>());
+        if (cgroup != null) {
+            cgroups.put(sandbox.getId(), cgroup);
+        }
+        return sandbox;
+    }
+
+    private RuntimeWorker startWorker(String id, Language language, Path workspace, Path cgroup) throws IOException {
+        Path control = Files.createTempDirectory("codepulz-worker");
+        List<String> command = new ArrayList<>(namespacePrefix(null));
+        command.addAll(RuntimeWorker.bootCommand(language, control.toString(), workspace.toString()));
+        ProcessBuilder processBuilder = new ProcessBuilder(command)
+                .directory(workspace.toFile())
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.DISCARD);
+        processBuilder.environment().put("PYTHONUNBUFFERED", "1");
+        try {
+            Process process = processBuilder.start();
+            process.getOutputStream().close();
+            workers.put(id, process);
+            // Before the first request, so every program the worker forks is in the cgroup
+            if (cgroup != null) {
+                Files.writeString(cgroup.resolve("cgroup.procs"), Long.toString(process.pid()));
+            }
+        } catch (IOException e) {
+            Process started = workers.remove(id);
+            if (started != null) {
+                started.destroyForcibly();
+            }
+            Workspaces.delete(control);
+            throw e;
+        }
+        return new RuntimeWorker(language, control.toString());
+    }
+
+    @Override
+    public Process exec(Sandbox sandbox, String command) throws IOException {
+        Process process = start(sandbox.getWorkspace(), cgroups.get(sandbox.getId()), workers.get(sandbox.getId()), command);
+        processes.computeIfAbsent(sandbox.getId(), id -> new CopyOnWriteArrayList<>()).add(process);
+        return process;
+    }
+
+    @Override
+    public Process start(Language language, Path workspace, String command) throws IOException {
+        Path cgroup = createCgroup("local-run-" + UUID.randomUUID());
+        Process process;
+        try {
+            process = start(workspace, cgroup, null, command);
+        } catch (IOException e) {
+            removeCgroup(cgroup);
+            throw e;
+        }
+        if (cgroup != null) {
+            // Also takes down whatever the program left running in the background
+            process.onExit().thenRun(() -> removeCgroup(cgroup));
+        }
+        return process;
+    }
+
+    private Process start(Path workspace, Path cgroup, Process worker, String command) throws IOException {
+        ProcessBuilder processBuilder = new ProcessBuilder(limitedCommand(cgroup, worker, command))
+                .directory(workspace.toFile());
+        processBuilder.environment().put("PYTHONUNBUFFERED", "1");
+        processBuilder.environment().put("JAVA_TOOL_OPTIONS", "-Dfile.encoding=UTF-8");
+        return processBuilder.start();
+    }
+
+    /**
+     * sh joins the cgroup and sets the rlimits, which survive the exec into the
+     * namespaces (the worker's, when there is one) and the shell running the command.
+     */
+    List<String> limitedCommand(Path cgroup, Process worker, String command) {
+        SandboxPoolProperties.Local local = properties.getLocal();
+        StringBuilder script = new StringBuilder("{ ");
+        if (cgroup != null) {
+            script.append("echo $$ > \"$1\" && ");
+        }
+        appendLimit(script, "-d", local.getMemoryMb() * 1024);
+        appendLimit(script, "-t", local.getCpuSeconds());
+        // 512-byte blocks in a POSIX shell
+        appendLimit(script, "-f", local.getMaxFileMb() * 2048);
+        appendLimit(script, "-n", local.getMaxOpenFiles());
+        script.append("true; } 2>/dev/null || { echo 'codepulz: could not apply sandbox limits' >&2; exit ")
+                .append(LIMITS_FAILED).append("; }; shift; exec \"$@\"");
+
+        List<String> arguments = new ArrayList<>(Arrays.asList("sh", "-c", script.toString(),
+                "sh", cgroup != null ? cgroup.resolve("cgroup.procs").toString() : ""));
+        arguments.addAll(namespacePrefix(worker));
+        arguments.addAll(Arrays.asList("sh", "-c", command));
+        return arguments;
+    }
+
+    private static void appendLimit(StringBuilder script, String option, long value) {
+        if (value > 0) {
+            script.append("ulimit ").append(option).append(' ').append(value).append(" && ");
+        }
+    }
+
+    /**
+     * unshare into a new user namespace (mapped to root, with no privileges on the host)
+     * and network namespace, or nothing when that is off or not allowed here. Given the
+     * sandbox's runtime worker, nsenter into the worker's namespaces instead.
+     */
+    private List<String> namespacePrefix(Process worker) {
+        if (!properties.getLocal().isIsolateNetwork()) {
+            return List.of();
+        }
+        if (namespaces == null) {
+            namespaces = probeNamespaces();
+            if (!namespaces) {
+                log.warn("Unprivileged user namespaces are not available; local sandboxes keep host network access");
+            }
+        }
+        if (!namespaces) {
+            return List.of();
+        }
+        if (worker != null) {
+            // Keeps the uid the worker has there (mapped root) instead of switching to it
+            return List.of("nsenter", "--target", Long.toString(worker.pid()), "--user", "--net", "--preserve-credentials");
+        }
+        return List.of("unshare", "--user", "--map-root-user", "--net");
+    }
+
+    private static boolean probeNamespaces() {
+        try {
+            Process probe = new ProcessBuilder("unshare", "--user", "--map-root-user", "--net", "true")
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            if (!probe.waitFor(5, TimeUnit.SECONDS)) {
+                probe.destroyForcibly();
+                return false;
+            }
+            return probe.exitValue() == 0;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * A child cgroup with the sandbox limits, or null when cgroups are not configured or
+     * the directory is not usable (warned about once).
+     */
+    private Path createCgroup(String name) {
+        String root = properties.getLocal().getCgroupRoot();
+        if (root == null || root.isBlank()) {
+            return null;
+        }
+        SandboxPoolProperties.Local local = properties.getLocal();
+        Path cgroup = Path.of(root, name);
+        try {
+            try {
+                Files.writeString(Path.of(root, "cgroup.subtree_control"), "+memory +cpu +pids");
+            } catch (IOException e) {
+                // Already enabled by whoever delegated the directory
+            }
+            Files.createDirectory(cgroup);
+            Files.writeString(cgroup.resolve("memory.max"), Long.toString(local.getCgroupMemoryMb() * 1024 * 1024));
+            Files.writeString(cgroup.resolve("cpu.max"), Math.round(local.getCgroupCpus() * 100000) + " 100000");
+            Files.writeString(cgroup.resolve("pids.max"), Integer.toString(local.getCgroupMaxProcesses()));
+            return cgroup;
+        } catch (IOException e) {
+            if (!cgroupWarned) {
+                cgroupWarned = true;
+                log.warn("Cannot create cgroups under {}, local sandboxes run without cgroup limits: {}",
+                        root, e.getMessage());
+            }
+            removeCgroup(cgroup);
+            return null;
+        }
+    }
+
+    /**
+     * Kill everything left in the cgroup and remove it. Best effort.
+     */
+    private static void removeCgroup(Path cgroup) {
+        if (cgroup == null || !Files.isDirectory(cgroup)) {
+            return;
+        }
+        killCgroup(cgroup);
+        // The kill is asynchronous; rmdir fails while processes are still exiting
+        for (int attempt = 0; attempt < 50; attempt++) {
+            try {
+                Files.delete(cgroup);
+                return;
+            } catch (IOException e) {
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private static void killCgroup(Path cgroup) {
+        try {
+            Files.writeString(cgroup.resolve("cgroup.kill"), "1");
+        } catch (IOException e) {
+            // Kernel before 5.14; the descendants were killed one by one already
+        }
+    }
+
+    @Override
+    public List<Long> programPids(Sandbox sandbox, Process process) {
+        List<Long> pids = new ArrayList<>();
+        if (process.isAlive()) {
+            pids.add(process.pid());
+        }
+        process.descendants().forEach(child -> pids.add(child.pid()));
+        // Programs run by a runtime worker are its children, not the client's
+        Process worker = workers.get(sandbox.getId());
+        if (worker != null) {
+            worker.descendants().forEach(child -> pids.add(child.pid()));
+        }
+        return pids;
+    }
+
+    @Override
+    public void reset(Sandbox sandbox) throws IOException {
+        List<Process> started = processes.get(sandbox.getId());
+        if (started != null) {
+            for (Process process : started) {
+                process.descendants().forEach(ProcessHandle::destroyForcibly);
+                process.destroyForcibly();
+            }
+            started.clear();
+        }
+        Process worker = workers.get(sandbox.getId());
+        Path cgroup = cgroups.get(sandbox.getId());
+        if (worker == null && cgroup != null) {
+            // Programs that daemonized are no longer anyone's descendants
+            killCgroup(cgroup);
+        }
+        if (worker != null) {
+            worker.descendants().forEach(ProcessHandle::destroyForcibly);
+            if (!worker.isAlive()) {
+                throw new IOException("Runtime worker exited with " + worker.exitValue());
+            }
+            if (Files.exists(Path.of(sandbox.getWorker().getControlDir(), RuntimeWorker.BUSY_FILE))) {
+                throw new IOException("Runtime worker still busy");
+            }
+            Path status = Path.of("/proc", String.valueOf(worker.pid()), "status");
+            if (Files.isReadable(status)) {
+                sandbox.getWorker().checkMemory(Files.readString(status), properties.getWorkerMaxGrowthBytes());
+            }
+            // Reply FIFOs of clients that were killed
+            try (Stream<Path> files = Files.list(Path.of(sandbox.getWorker().getControlDir()))) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    if (file.getFileName().toString().matches("[0-9]+")) {
+                        Files.deleteIfExists(file);
+                    }
+                }
+            }
+        }
+        Workspaces.clear(sandbox.getWorkspace());
+    }
+
+    @Override
+    public void destroy(Sandbox sandbox) {
+        try {
+            reset(sandbox);
+        } catch (IOException e) {
+            // Directory is removed below anyway
+        }
+        processes.remove(sandbox.getId());
+        Process worker = workers.remove(sandbox.getId());
+        if (worker != null) {
+            worker.descendants().forEach(ProcessHandle::destroyForcibly);
+            worker.destroyForcibly();
+            Workspaces.delete(Path.of(sandbox.getWorker().getControlDir()));
+        }
+        removeCgroup(cgroups.remove(sandbox.getId()));
+        workspaces.discard(sandbox.getWorkspace());
+    }
+}
@@ -0,0 +1,141 @@
+package io.github.Syedowais381.CodePulz.sandbox;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A long-lived interpreter inside a sandbox that runs each program in a fresh child
+ * prepared ahead of the request: a fork of the worker for Python, a pre-booted spare
+ * process for JavaScript. Interpreter startup and the import of common modules are paid
+ * once per sandbox instead of once per run.
+ *
+ * The Java worker is a JVM booted ahead of the request that compiles Main.java in memory
+ * with javax.tools and runs it in the worker process itself, in a class loader of its own
+ * with System.in/out/err redirected, so neither javac nor a JVM is started on the request
+ * path. Nothing inside one JVM separates the program from the worker, so the Java worker
+ * is single-use: it halts after its program, leaving a "busy" file in its control
+ * directory, and the pool replaces the sandbox instead of resetting it. A sandbox reset
+ * that finds the busy file must fail for the same reason.
+ *
+ * Programs are started with runCommand, a shell snippet that hands its own stdio to the
+ * worker and exits with the program's exit code. When the worker is not running or
+ * cannot take over the descriptors, the snippet runs the program itself as before.
+ * The worker scripts are in src/main/resources/runtime.
+ */
+@Getter
+public class RuntimeWorker {
+
+    // Present in the control directory while the Java worker runs a program
+    public static final String BUSY_FILE = "busy";
+
+    private static final Map<Language, String> SCRIPTS = Map.of(
+            Language.PYTHON, "/runtime/python-worker.py",
+            Language.JAVASCRIPT, "/runtime/node-worker.js",
+            Language.JAVA, "/runtime/JavaWorker.java");
+    // Followed by the script source, control directory and work directory
+    private static final Map<Language, List<String>> INTERPRETERS = Map.of(
+            Language.PYTHON, List.of("python", "-c"),
+            Language.JAVASCRIPT, List.of("node", "-e"),
+            // The source launcher needs a file; exec so the JVM stays the container's PID 1
+            Language.JAVA, List.of("sh", "-c", "mkdir -p \"$1\" && printf '%s' \"$0\" > \"$1/JavaWorker.java\" && "
+                    + "exec java -Xmx160m -XX:+UseSerialGC -Djava.security.manager=allow \"$1/JavaWorker.java\" \"$1\" \"$2\""));
+    private static final Map<Language, String> SOURCES = new ConcurrentHashMap<>();
+
+    private final String controlDir;
+    private final String runCommand;
+    // Programs run inside the worker process, where /proc cannot tell when they read stdin
+    private final boolean inProcess;
+    // The worker serves one program; its sandbox is discarded after a run
+    private final boolean singleUse;
+    // Worker RSS at the first check; later checks are compared against it
+    @Getter(AccessLevel.NONE)
+    private volatile long baselineRss = -1;
+
+    public RuntimeWorker(Language language, String controlDir) {
+        this.controlDir = controlDir;
+        this.inProcess = language == Language.JAVA;
+        this.singleUse = inProcess;
+        this.runCommand = "d='" + controlDir + "'; f=$d/$$; "
+                + "if read w 2>/dev/null < $d/pid && kill -0 $w 2>/dev/null && mkfifo $f && exec 3<>$f; then "
+                // fd 3 keeps the FIFO open so the worker's reply is never lost; head reads
+                // it by path, so no process sits in a read of stdin while the program runs.
+                // The PID is written from a subshell: a redirected builtin would point this
+                // shell's own stdout at ctl while the worker may already be opening it
+                + "(echo $$ > $d/ctl); c=$(head -n 1 $f); exec 3>&-; rm -f $f; "
+                + "case $c in fallback) ;; '') exit 1 ;; *) exit $c ;; esac; fi; "
+                // exec would end a compile-and-run command after the compile
+                + (language.isCompiled() ? language.getCommand() : "exec " + language.getCommand());
+    }
+
+    public static boolean supports(Language language) {
+        return SCRIPTS.containsKey(language);
+    }
+
+    /**
+     * Command line that starts the language's worker. It creates controlDir, listens
+     * there and runs programs from workdir.
+     */
+    public static List<String> bootCommand(Language language, String controlDir, String workdir) throws IOException {
+        List<String> command = new ArrayList<>(INTERPRETERS.get(language));
+        command.add(source(language));
+        command.add(controlDir);
+        command.add(workdir);
+        return command;
+    }
+
+    private static String source(Language language) throws IOException {
+        String source = SOURCES.get(language);
+        if (source == null) {
+            try (InputStream in = RuntimeWorker.class.getResourceAsStream(SCRIPTS.get(language))) {
+                if (in == null) {
+                    throw new IOException("Missing runtime worker script " + SCRIPTS.get(language));
+                }
+                source = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            SOURCES.put(language, source);
+        }
+        return source;
+    }
+
+    /**
+     * Check the worker's memory between runs, given the contents of its /proc/[pid]/status.
+     * Throws once it has grown by more than maxGrowthBytes since the first check, so the
+     * sandbox is replaced instead of reused.
+     */
+    public void checkMemory(String procStatus, long maxGrowthBytes) throws IOException {
+        long rss = parseRss(procStatus);
+        if (rss < 0) {
+            return;
+        }
+        if (baselineRss < 0) {
+            baselineRss = rss;
+        } else if (rss - baselineRss > maxGrowthBytes) {
+            throw new IOException("Runtime worker grew from " + baselineRss + " to " + rss + " bytes");
+        }
+    }
+
+    /**
+     * VmRSS in bytes from /proc/[pid]/status, or -1 when it is not there.
+     */
+    static long parseRss(String procStatus) {
+        for (String line : procStatus.split("\n")) {
+            if (line.startsWith("VmRSS:")) {
+                String[] fields = line.substring(6).trim().split("\\s+");
+                try {
+                    return Long.parseLong(fields[0]) * 1024; // always in kB
+                } catch (NumberFormatException e) {
+                    return -1;
+                }
+            }
+        }
+        return -1;
+    }
+}
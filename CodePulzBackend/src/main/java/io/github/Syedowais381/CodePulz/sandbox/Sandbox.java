@@ -0,0 +1,44 @@
+package io.github.Syedowais381.CodePulz.sandbox;
+
+import lombok.Getter;
+
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pre-started, idle execution environment for one language. The workspace is a
+ * host directory that the runner exposes to the program as its working directory.
+ * worker is the sandbox's runtime worker, or null when programs are started directly.
+ */
+@Getter
+public class Sandbox {
+    private final String id;
+    private final Language language;
+    private final Path workspace;
+    private final RuntimeWorker worker;
+    private final long createdAt;
+    private final AtomicInteger useCount = new AtomicInteger();
+
+    public Sandbox(String id, Language language, Path workspace) {
+        this(id, language, workspace, null);
+    }
+
+    public Sandbox(String id, Language language, Path workspace, RuntimeWorker worker) {
+        this.id = id;
+        this.language = language;
+        this.workspace = workspace;
+        this.worker = worker;
+        this.createdAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Record one more program run in this sandbox and return the new total.
+     */
+    public int markUsed() {
+        return useCount.incrementAndGet();
+    }
+
+    public int getUses() {
+        return useCount.get();
+    }
+}
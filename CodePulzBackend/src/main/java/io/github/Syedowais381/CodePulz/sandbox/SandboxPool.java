@@ -0,0 +1,228 @@
+package io.github.Syedowais381.CodePulz.sandbox;
+
+import io.github.Syedowais381.CodePulz.config.SandboxPoolProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps a set of idle, pre-started sandboxes per language so a request can start
+ * running user code immediately instead of paying for container creation.
+ *
+ * Sandboxes are reset and returned to the pool after each run, and replaced once
+ * they reach the configured reuse limit. A background task tops every language
+ * up to its minimum idle count.
+ *
+ * Each language uses the SandboxRunner named by codepulz.pool.runner (or its
+ * per-language override), for pooled sandboxes and cold starts alike.
+ */
+@Slf4j
+@Component
+public class SandboxPool {
+
+    private final Map<Language, SandboxRunner> runners = new EnumMap<>(Language.class);
+    private final SandboxPoolProperties properties;
+    private final Map<Language, LanguagePool> pools = new EnumMap<>(Language.class);
+
+    private final ScheduledExecutorService refillExecutor = Executors.newSingleThreadScheduledExecutor();
+    // Resets and cold creations run here so release() never blocks the caller
+    private final ThreadPoolExecutor maintenanceExecutor = new ThreadPoolExecutor(2, 2, 0L, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>());
+
+    @Autowired
+    public SandboxPool(List<SandboxRunner> available, SandboxPoolProperties properties) {
+        this.properties = properties;
+        for (Language language : Language.values()) {
+            String name = properties.runnerFor(language);
+            SandboxRunner runner = available.stream()
+                    .filter(candidate -> candidate.getName().equals(name))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException(
+                            "Unknown sandbox runner '" + name + "' for " + language.getId()));
+            runners.put(language, runner);
+            pools.put(language, new LanguagePool());
+        }
+    }
+
+    /**
+     * Pool whose languages all use the given runner, whatever it is called.
+     */
+    public SandboxPool(SandboxRunner runner, SandboxPoolProperties properties) {
+        this.properties = properties;
+        for (Language language : Language.values()) {
+            runners.put(language, runner);
+            pools.put(language, new LanguagePool());
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        if (properties.isEnabled()) {
+            refillExecutor.scheduleWithFixedDelay(this::refill, 0,
+                    properties.getRefillIntervalMs(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    public SandboxRunner getRunner(Language language) {
+        return runners.get(language);
+    }
+
+    /**
+     * Take an idle sandbox for the language, creating one if the pool is below its
+     * maximum size. Returns null if none became available within the acquire timeout,
+     * in which case the caller should fall back to a cold start.
+     */
+    public Sandbox acquire(Language language) {
+        if (!properties.isEnabled()) {
+            return null;
+        }
+        LanguagePool pool = pools.get(language);
+        Sandbox sandbox = pool.idle.pollFirst();
+        if (sandbox == null && pool.reserveSlot(properties.maxSizeFor(language))) {
+            try {
+                sandbox = runners.get(language).create(language);
+            } catch (IOException | RuntimeException e) {
+                pool.total.decrementAndGet();
+                log.warn("Could not create {} sandbox: {}", language.getId(), e.getMessage());
+                return null;
+            }
+        }
+        if (sandbox == null) {
+            try {
+                sandbox = pool.idle.pollFirst(properties.getAcquireTimeoutMs(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+        if (sandbox != null) {
+            sandbox.markUsed();
+            // Replace what we took in the background rather than on the next refill tick
+            maintenanceExecutor.submit(() -> topUp(language));
+        }
+        return sandbox;
+    }
+
+    /**
+     * Hand a sandbox back after its run. It is reset and made idle again, or destroyed
+     * once it has reached the reuse limit, its runtime worker is single-use, or it fails
+     * to reset.
+     */
+    public void release(Sandbox sandbox) {
+        if (sandbox == null) {
+            return;
+        }
+        maintenanceExecutor.submit(() -> {
+            LanguagePool pool = pools.get(sandbox.getLanguage());
+            boolean spent = sandbox.getWorker() != null && sandbox.getWorker().isSingleUse() && sandbox.getUses() > 0;
+            if (spent || sandbox.getUses() >= properties.getMaxUses() || !properties.isEnabled()) {
+                discard(pool, sandbox);
+                return;
+            }
+            try {
+                runners.get(sandbox.getLanguage()).reset(sandbox);
+                pool.idle.offerLast(sandbox);
+            } catch (IOException e) {
+                log.warn("Reset of sandbox {} failed, discarding it: {}", sandbox.getId(), e.getMessage());
+                discard(pool, sandbox);
+            }
+        });
+    }
+
+    public int idleCount(Language language) {
+        return pools.get(language).idle.size();
+    }
+
+    public int totalCount(Language language) {
+        return pools.get(language).total.get();
+    }
+
+    /**
+     * Resets, refills and discards waiting for a maintenance thread.
+     */
+    public int getMaintenanceBacklog() {
+        return maintenanceExecutor.getQueue().size();
+    }
+
+    void refill() {
+        for (Language language : Language.values()) {
+            topUp(language);
+        }
+    }
+
+    private void topUp(Language language) {
+        LanguagePool pool = pools.get(language);
+        int minIdle = properties.minIdleFor(language);
+        int maxSize = properties.maxSizeFor(language);
+        while (pool.idle.size() < minIdle && pool.reserveSlot(maxSize)) {
+            try {
+                pool.idle.offerLast(runners.get(language).create(language));
+                pool.failing = false;
+            } catch (IOException | RuntimeException e) {
+                pool.total.decrementAndGet();
+                // Try again on the next refill tick instead of hammering a broken backend,
+                // and only warn once until the backend recovers
+                if (!pool.failing) {
+                    log.warn("Could not pre-warm {} sandbox: {}", language.getId(), e.getMessage());
+                    pool.failing = true;
+                } else {
+                    log.debug("Could not pre-warm {} sandbox: {}", language.getId(), e.getMessage());
+                }
+                return;
+            }
+        }
+    }
+
+    private void discard(LanguagePool pool, Sandbox sandbox) {
+        pool.total.decrementAndGet();
+        runners.get(sandbox.getLanguage()).destroy(sandbox);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refillExecutor.shutdownNow();
+        maintenanceExecutor.shutdownNow();
+        for (LanguagePool pool : pools.values()) {
+            Sandbox sandbox;
+            while ((sandbox = pool.idle.pollFirst()) != null) {
+                runners.get(sandbox.getLanguage()).destroy(sandbox);
+            }
+        }
+    }
+
+    private static final class LanguagePool {
+        private final LinkedBlockingDeque<Sandbox> idle = new LinkedBlockingDeque<>();
+        // Idle plus in-use sandboxes
+        private final AtomicInteger total = new AtomicInteger();
+        private volatile boolean failing;
+
+        boolean reserveSlot(int maxSize) {
+            int current;
+            do {
+                current = total.get();
+                if (current >= maxSize) {
+                    return false;
+                }
+            } while (!total.compareAndSet(current, current + 1));
+            return true;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package io.github.Syedowais381.CodePulz.sandbox;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Backend that creates sandboxes and runs programs inside them, under the backend's
+ * resource limits. The default implementation talks to Docker; the local process
+ * runner starts programs as host processes, for tests, machines without Docker and
+ * comparing backends. The runner is chosen per language (codepulz.pool.runner).
+ */
+public interface SandboxRunner {
+
+    /**
+     * Name the runner is selected by in configuration.
+     */
+    String getName();
+
+    /**
+     * Boot a new idle sandbox for the language. Blocks until the sandbox is ready.
+     */
+    Sandbox create(Language language) throws IOException;
+
+    /**
+     * Start the language's command inside the sandbox. Stdin, stdout and stderr of the
+     * returned process are connected to the program.
+     */
+    Process exec(Sandbox sandbox, String command) throws IOException;
+
+    /**
+     * Run a command once, outside any pooled sandbox, with workspace as the program's
+     * working directory (cold start). Killing the returned process does not necessarily
+     * stop the program (it may be a Docker client), so the workspace must not be reused
+     * after a run that did not exit by itself.
+     */
+    Process start(Language language, Path workspace, String command) throws IOException;
+
+    /**
+     * Host PIDs of the processes a program started with exec is running as (excluding
+     * the sandbox's own idle processes), so their state can be inspected through /proc.
+     * Returns null when the runner cannot see them from the host.
+     */
+    default List<Long> programPids(Sandbox sandbox, Process process) {
+        return null;
+    }
+
+    /**
+     * Bring a used sandbox back to a clean state: stop leftover processes and
+     * empty the workspace.
+     */
+    void reset(Sandbox sandbox) throws IOException;
+
+    /**
+     * Tear the sandbox down. Must not throw.
+     */
+    void destroy(Sandbox sandbox);
+}
@@ -0,0 +1,177 @@
+package io.github.Syedowais381.CodePulz.sandbox;
+
+import io.github.Syedowais381.CodePulz.config.WorkspaceProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Hands out the directories programs are staged in and mounted from.
+ *
+ * All workspaces live under one root, on tmpfs (/dev/shm) when the host has it, so
+ * writing sources and compiler output never touches the disk. Released workspaces
+ * are emptied and kept for the next run instead of being deleted and created again.
+ * A background sweeper deletes directories under the root that no longer belong to
+ * anyone (left behind by a crash or a failed delete).
+ */
+@Slf4j
+@Component
+public class WorkspaceManager {
+
+    private static final Path TMPFS = Paths.get("/dev/shm");
+    private static final String PREFIX = "ws-";
+
+    private final WorkspaceProperties properties;
+    private final Path root;
+    // Empty workspaces ready for reuse, and workspaces handed out and not released yet
+    private final LinkedBlockingDeque<Path> idle = new LinkedBlockingDeque<>();
+    private final Set<Path> inUse = ConcurrentHashMap.newKeySet();
+
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("workspace-sweeper").daemon(true).factory());
+
+    @Autowired
+    public WorkspaceManager(WorkspaceProperties properties) {
+        this.properties = properties;
+        if (properties.getDirectory() != null) {
+            this.root = Paths.get(properties.getDirectory());
+        } else if (Files.isDirectory(TMPFS) && Files.isWritable(TMPFS)) {
+            this.root = TMPFS.resolve("codepulz");
+        } else {
+            this.root = Paths.get(System.getProperty("java.io.tmpdir"), "codepulz-workspaces");
+        }
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        Files.createDirectories(root);
+        log.info("Workspaces under {}", root);
+        sweeper.scheduleWithFixedDelay(this::sweep, 0, properties.getSweepIntervalMs(), TimeUnit.MILLISECONDS);
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    /**
+     * An empty workspace directory, reused when one is idle.
+     */
+    public Path acquire() throws IOException {
+        Path workspace;
+        // Locked against the sweeper, so a workspace is always either idle or in use
+        synchronized (this) {
+            workspace = idle.pollFirst();
+            if (workspace == null) {
+                workspace = root.resolve(PREFIX + UUID.randomUUID());
+            }
+            inUse.add(workspace);
+        }
+        try {
+            Files.createDirectories(workspace);
+        } catch (IOException e) {
+            inUse.remove(workspace);
+            throw e;
+        }
+        return workspace;
+    }
+
+    /**
+     * Empty the workspace and keep it for reuse. Only for workspaces nothing is still
+     * writing to: a program that may outlive this call must use discard instead.
+     */
+    public void release(Path workspace) {
+        if (workspace == null || !inUse.contains(workspace)) {
+            return;
+        }
+        try {
+            Workspaces.clear(workspace);
+            synchronized (this) {
+                if (idle.size() < properties.getMaxIdle() && inUse.remove(workspace)) {
+                    idle.offerFirst(workspace);
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            log.debug("Could not empty workspace {}: {}", workspace, e.getMessage());
+        }
+        discard(workspace);
+    }
+
+    /**
+     * Delete the workspace. Whatever cannot be deleted now is left to the sweeper.
+     */
+    public void discard(Path workspace) {
+        if (workspace == null) {
+            return;
+        }
+        inUse.remove(workspace);
+        Workspaces.delete(workspace);
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    public int getInUseCount() {
+        return inUse.size();
+    }
+
+    /**
+     * Delete directories under the root that are neither in use nor idle and have not
+     * been modified for the orphan age.
+     */
+    void sweep() {
+        long cutoff = System.currentTimeMillis() - properties.getOrphanAgeMs();
+        List<Path> children;
+        try (Stream<Path> list = Files.list(root)) {
+            children = list.filter(path -> path.getFileName().toString().startsWith(PREFIX)).toList();
+        } catch (IOException e) {
+            log.debug("Could not list {}: {}", root, e.getMessage());
+            return;
+        }
+        int removed = 0;
+        for (Path child : children) {
+            synchronized (this) {
+                if (inUse.contains(child) || idle.contains(child)) {
+                    continue;
+                }
+                try {
+                    if (Files.getLastModifiedTime(child).toMillis() < cutoff) {
+                        Workspaces.delete(child);
+                        removed++;
+                    }
+                } catch (IOException e) {
+                    // Deleted concurrently
+                }
+            }
+        }
+        if (removed > 0) {
+            log.info("Removed {} orphaned workspaces from {}", removed, root);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sweeper.shutdownNow();
+        Path workspace;
+        while ((workspace = idle.pollFirst()) != null) {
+            Workspaces.delete(workspace);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package io.github.Syedowais381.CodePulz.sandbox;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * File helpers for sandbox workspace directories.
+ */
+final class Workspaces {
+
+    private Workspaces() {
+    }
+
+    /**
+     * Remove everything inside the directory but keep the directory itself.
+     */
+    static void clear(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (Stream<Path> walk = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) walk.sorted(Comparator.reverseOrder())::iterator) {
+                if (!path.equals(directory)) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+    }
+
+    static void delete(Path directory) {
+        try {
+            clear(directory);
+            Files.deleteIfExists(directory);
+        } catch (IOException e) {
+            // Best effort; the WorkspaceManager sweeper removes leftovers
+        }
+    }
+}
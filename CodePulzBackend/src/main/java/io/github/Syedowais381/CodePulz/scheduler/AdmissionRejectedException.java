@@ -0,0 +1,19 @@
+package io.github.Syedowais381.CodePulz.scheduler;
+
+/**
+ * Thrown when an execution cannot be admitted: the wait queue is full or the
+ * request waited longer than allowed. Mapped to HTTP 429 by the controller.
+ */
+public class AdmissionRejectedException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public AdmissionRejectedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,260 @@
+package io.github.Syedowais381.CodePulz.scheduler;
+
+import io.github.Syedowais381.CodePulz.config.AdmissionProperties;
+import io.github.Syedowais381.CodePulz.sandbox.Language;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Admission control in front of ExecutionService: limits how many sandboxes run at
+ * once (host-wide, per language and per client) and queues the rest.
+ *
+ * Waiting requests are kept in one FIFO per client and served round-robin across
+ * clients, so one client submitting a burst cannot starve the others. When the
+ * queue is full new requests are rejected immediately instead of piling up.
+ */
+@Slf4j
+@Component
+public class ExecutionScheduler {
+
+    private final AdmissionProperties properties;
+    private final int maxConcurrent;
+
+    // All state below is guarded by "this"
+    private int running;
+    private final Map<Language, Integer> runningByLanguage = new EnumMap<>(Language.class);
+    private final Map<String, Integer> runningByClient = new HashMap<>();
+    // Per-client FIFOs in round-robin order: the client served last moves to the back
+    private final LinkedHashMap<String, ArrayDeque<Waiter>> queues = new LinkedHashMap<>();
+    private int queued;
+
+    /**
+     * A granted execution slot. Release it exactly when the sandbox stops running;
+     * extra calls are ignored.
+     */
+    public final class Ticket {
+        private final String clientId;
+        private final Language language;
+        private final int queuePosition;
+        private final long waitMs;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Ticket(String clientId, Language language, int queuePosition, long waitMs) {
+            this.clientId = clientId;
+            this.language = language;
+            this.queuePosition = queuePosition;
+            this.waitMs = waitMs;
+        }
+
+        /**
+         * Requests that were ahead of this one when it was queued (0 if it ran immediately).
+         */
+        public int getQueuePosition() {
+            return queuePosition;
+        }
+
+        public long getWaitMs() {
+            return waitMs;
+        }
+
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                ExecutionScheduler.this.release(this);
+            }
+        }
+    }
+
+    private static final class Waiter {
+        private final String clientId;
+        private final Language language;
+        private final CompletableFuture<Void> granted = new CompletableFuture<>();
+
+        private Waiter(String clientId, Language language) {
+            this.clientId = clientId;
+            this.language = language;
+        }
+    }
+
+    @Autowired
+    public ExecutionScheduler(AdmissionProperties properties) {
+        this.properties = properties;
+        this.maxConcurrent = properties.getMaxConcurrent() > 0 ? properties.getMaxConcurrent() : deriveBudget(properties);
+        log.info("Execution admission: {} concurrent sandboxes, queue of {}", maxConcurrent, properties.getMaxQueue());
+    }
+
+    /**
+     * Budget from the host: as many sandboxes as fit in the CPUs and in the configured
+     * share of physical memory, given what each one asks Docker for.
+     */
+    static int deriveBudget(AdmissionProperties properties) {
+        int cpuSlots = (int) (Runtime.getRuntime().availableProcessors() / properties.getCpusPerRun());
+        int memorySlots = Integer.MAX_VALUE;
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean hostOs) {
+            long usable = (long) (hostOs.getTotalMemorySize() * properties.getMemoryFraction());
+            memorySlots = (int) (usable / (properties.getMemoryPerRunMb() * 1024 * 1024));
+        }
+        return Math.max(1, Math.min(cpuSlots, memorySlots));
+    }
+
+    /**
+     * Wait for a slot. Returns immediately when capacity is free and nobody fairer is
+     * waiting; otherwise queues the request.
+     *
+     * @throws AdmissionRejectedException if the queue is full or the wait times out
+     */
+    public Ticket acquire(String clientId, Language language) throws InterruptedException {
+        if (!properties.isEnabled()) {
+            return new Ticket(clientId, language, 0, 0);
+        }
+        long start = System.currentTimeMillis();
+        Waiter waiter = new Waiter(clientId, language);
+        int position;
+        synchronized (this) {
+            if (queued >= properties.getMaxQueue()) {
+                throw new AdmissionRejectedException("Server busy: execution queue is full", 1);
+            }
+            queues.computeIfAbsent(clientId, id -> new ArrayDeque<>()).addLast(waiter);
+            queued++;
+            dispatch();
+            // Only a request that stays queued has anyone ahead of it
+            position = waiter.granted.isDone() ? 0 : queued - 1;
+        }
+
+        try {
+            waiter.granted.get(properties.getMaxWaitMs(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            synchronized (this) {
+                if (!waiter.granted.isDone()) {
+                    remove(waiter);
+                    throw new AdmissionRejectedException("Server busy: timed out waiting for a free sandbox",
+                            Math.max(1, properties.getMaxWaitMs() / 1000));
+                }
+            }
+        } catch (InterruptedException e) {
+            synchronized (this) {
+                if (!waiter.granted.isDone()) {
+                    remove(waiter);
+                    throw e;
+                }
+            }
+            // Granted while being interrupted: keep the slot, restore the flag
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+        return new Ticket(clientId, language, position, System.currentTimeMillis() - start);
+    }
+
+    public synchronized int getRunning() {
+        return running;
+    }
+
+    public synchronized int getQueued() {
+        return queued;
+    }
+
+    public synchronized int getRunning(Language language) {
+        return runningByLanguage.getOrDefault(language, 0);
+    }
+
+    public synchronized int getQueued(Language language) {
+        int count = 0;
+        for (ArrayDeque<Waiter> queue : queues.values()) {
+            for (Waiter waiter : queue) {
+                if (waiter.language == language) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    private synchronized void release(Ticket ticket) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        running--;
+        runningByLanguage.merge(ticket.language, -1, Integer::sum);
+        if (runningByClient.merge(ticket.clientId, -1, Integer::sum) <= 0) {
+            runningByClient.remove(ticket.clientId);
+        }
+        dispatch();
+    }
+
+    /**
+     * Grant as many waiting requests as capacity allows, visiting clients round-robin.
+     * Only the head of each client's FIFO is considered so a client's own requests keep
+     * their order. Caller holds the lock.
+     */
+    private void dispatch() {
+        boolean grantedAny = true;
+        while (grantedAny && running < maxConcurrent && queued > 0) {
+            grantedAny = false;
+            Iterator<Map.Entry<String, ArrayDeque<Waiter>>> clients = queues.entrySet().iterator();
+            String servedClient = null;
+            while (clients.hasNext()) {
+                Map.Entry<String, ArrayDeque<Waiter>> entry = clients.next();
+                Waiter head = entry.getValue().peekFirst();
+                if (head != null && canRun(head)) {
+                    entry.getValue().pollFirst();
+                    queued--;
+                    running++;
+                    runningByLanguage.merge(head.language, 1, Integer::sum);
+                    runningByClient.merge(head.clientId, 1, Integer::sum);
+                    head.granted.complete(null);
+                    servedClient = entry.getKey();
+                    grantedAny = true;
+                    break;
+                }
+            }
+            if (servedClient != null) {
+                // Move the served client to the back of the rotation (or drop it if drained)
+                ArrayDeque<Waiter> remaining = queues.remove(servedClient);
+                if (!remaining.isEmpty()) {
+                    queues.put(servedClient, remaining);
+                }
+            }
+        }
+    }
+
+    private boolean canRun(Waiter waiter) {
+        if (running >= maxConcurrent) {
+            return false;
+        }
+        if (runningByClient.getOrDefault(waiter.clientId, 0) >= properties.getMaxPerClient()) {
+            return false;
+        }
+        Integer languageCap = properties.getLanguages().get(waiter.language.getId());
+        return languageCap == null || runningByLanguage.getOrDefault(waiter.language, 0) < languageCap;
+    }
+
+    private void remove(Waiter waiter) {
+        ArrayDeque<Waiter> queue = queues.get(waiter.clientId);
+        if (queue != null && queue.remove(waiter)) {
+            queued--;
+            if (queue.isEmpty()) {
+                queues.remove(waiter.clientId);
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package io.github.Syedowais381.CodePulz.scheduler;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timing wheel. Deadlines are bucketed into slots tickMs wide, and advancing the
+ * wheel only visits the slots whose ticks have passed, so scheduling and expiring an
+ * item are O(1) and there is no task object per timer. Deadlines are rounded up to the
+ * next tick. Timers cannot be cancelled; callers check whether an expired item is still
+ * due and schedule it again if not.
+ *
+ * Not thread-safe; callers synchronize.
+ */
+public class TimerWheel<T> {
+
+    private record Timer<T>(T item, long tick) {
+    }
+
+    private final long tickMs;
+    private final List<List<Timer<T>>> slots;
+    // First tick not processed yet
+    private long currentTick;
+    private int size;
+
+    public TimerWheel(long tickMs, int slotCount, long nowMs) {
+        this.tickMs = tickMs;
+        this.slots = new ArrayList<>(slotCount);
+        for (int i = 0; i < slotCount; i++) {
+            slots.add(new ArrayList<>());
+        }
+        this.currentTick = nowMs / tickMs;
+    }
+
+    public void schedule(T item, long deadlineMs) {
+        long tick = Math.max(Math.ceilDiv(deadlineMs, tickMs), currentTick);
+        slots.get((int) (tick % slots.size())).add(new Timer<>(item, tick));
+        size++;
+    }
+
+    /**
+     * Remove every item due at or before nowMs and pass it to expired.
+     */
+    public void advance(long nowMs, Consumer<T> expired) {
+        long target = nowMs / tickMs;
+        if (target < currentTick) {
+            return;
+        }
+        // Timers further than a turn ahead share slots with due ones and stay behind.
+        // After a jump of more than a turn every slot is visited once
+        long last = Math.min(target, currentTick + slots.size() - 1);
+        List<T> due = new ArrayList<>();
+        for (long tick = currentTick; tick <= last; tick++) {
+            Iterator<Timer<T>> timers = slots.get((int) (tick % slots.size())).iterator();
+            while (timers.hasNext()) {
+                Timer<T> timer = timers.next();
+                if (timer.tick() <= target) {
+                    timers.remove();
+                    size--;
+                    due.add(timer.item());
+                }
+            }
+        }
+        currentTick = target + 1;
+        // After the loop, so expired may schedule again
+        due.forEach(expired);
+    }
+
+    public int size() {
+        return size;
+    }
+}
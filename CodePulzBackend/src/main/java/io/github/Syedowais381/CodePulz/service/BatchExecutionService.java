@@ -0,0 +1,185 @@
+package io.github.Syedowais381.CodePulz.service;
+
+import io.github.Syedowais381.CodePulz.config.AdmissionProperties;
+import io.github.Syedowais381.CodePulz.config.ExecutionProperties;
+import io.github.Syedowais381.CodePulz.dto.BatchCaseResult;
+import io.github.Syedowais381.CodePulz.dto.BatchRequest;
+import io.github.Syedowais381.CodePulz.dto.BatchResponse;
+import io.github.Syedowais381.CodePulz.sandbox.Language;
+import io.github.Syedowais381.CodePulz.scheduler.AdmissionRejectedException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs one program against many stdin test cases: the program is compiled once up
+ * front (into the compilation cache, so every case starts from the run command) and
+ * the cases are spread over a few parallel workers. The compile and every case are
+ * admitted through ExecutionJobService, so batches count against the same in-flight
+ * cap as single runs, and each run still takes its own sandbox slot from the
+ * admission scheduler. No thread waits on another: each worker chains its next case
+ * onto the one before.
+ */
+@Slf4j
+@Service
+public class BatchExecutionService {
+
+    private final ExecutionService executionService;
+    private final ExecutionJobService jobService;
+    private final ExecutionProperties properties;
+    private final AdmissionProperties admissionProperties;
+
+    @Autowired
+    public BatchExecutionService(ExecutionService executionService, ExecutionJobService jobService,
+                                 ExecutionProperties properties, AdmissionProperties admissionProperties) {
+        this.executionService = executionService;
+        this.jobService = jobService;
+        this.properties = properties;
+        this.admissionProperties = admissionProperties;
+    }
+
+    /**
+     * Run every case and complete with the results in request order. onCase is called
+     * once per case as soon as it finishes (in completion order, never concurrently),
+     * so callers can stream partial results.
+     *
+     * @throws AdmissionRejectedException if too many executions are already in flight
+     *                                    to start the compile
+     */
+    public CompletableFuture<BatchResponse> runAsync(BatchRequest request, String clientId,
+                                                     Consumer<BatchCaseResult> onCase) {
+        long startTime = System.currentTimeMillis();
+        List<BatchRequest.BatchCase> cases = request.getCases() != null ? request.getCases() : List.of();
+        Language language;
+        try {
+            language = Language.fromId(request.getLanguage());
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(new BatchResponse(e.getMessage(), List.of(), 0, 0));
+        }
+        if (cases.isEmpty()) {
+            return CompletableFuture.completedFuture(new BatchResponse("Batch has no cases", List.of(), 0, 0));
+        }
+        if (cases.size() > properties.getBatchMaxCases()) {
+            return CompletableFuture.completedFuture(new BatchResponse("Batch has " + cases.size()
+                    + " cases; at most " + properties.getBatchMaxCases() + " are allowed", List.of(), 0, 0));
+        }
+
+        // 1. Compile once; a compile error fails the whole batch without running anything
+        return jobService.admit(() -> precompile(language, request.getCode(), clientId))
+                .thenCompose(compileError -> {
+                    if (compileError != null) {
+                        return CompletableFuture.completedFuture(
+                                new BatchResponse(compileError, List.of(), 0, System.currentTimeMillis() - startTime));
+                    }
+                    return runCases(new Batch(language, request.getCode(), cases, clientId, onCase))
+                            .thenApply(ordered -> {
+                                int passed = (int) ordered.stream()
+                                        .filter(result -> Boolean.TRUE.equals(result.getPassed())).count();
+                                return new BatchResponse(null, ordered, passed, System.currentTimeMillis() - startTime);
+                            });
+                });
+    }
+
+    /**
+     * The compile error, or null if the program compiled. A full admission queue is
+     * rethrown, so the batch is rejected like a single run.
+     */
+    private String precompile(Language language, String code, String clientId) {
+        try {
+            return executionService.precompile(language, code, clientId);
+        } catch (IOException e) {
+            return "Server Error: " + e.getMessage();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "Server Error: interrupted";
+        }
+    }
+
+    /**
+     * One batch in progress: the cases, their results so far and the next case to start.
+     */
+    private record Batch(Language language, String code, List<BatchRequest.BatchCase> cases, String clientId,
+                         Consumer<BatchCaseResult> onCase, BatchCaseResult[] results, AtomicInteger next) {
+
+        Batch(Language language, String code, List<BatchRequest.BatchCase> cases, String clientId,
+              Consumer<BatchCaseResult> onCase) {
+            this(language, code, cases, clientId, onCase, new BatchCaseResult[cases.size()], new AtomicInteger());
+        }
+    }
+
+    private CompletableFuture<List<BatchCaseResult>> runCases(Batch batch) {
+        // 2. Fan out. No more workers than the client may run at once, so a large batch
+        //    neither floods the admission queue nor crowds out other clients
+        int workers = Math.max(1, Math.min(batch.cases().size(), admissionProperties.getMaxPerClient()));
+        CompletableFuture<?>[] running = new CompletableFuture<?>[workers];
+        for (int i = 0; i < workers; i++) {
+            running[i] = nextCase(batch);
+        }
+        return CompletableFuture.allOf(running).thenApply(done -> Arrays.asList(batch.results()));
+    }
+
+    /**
+     * Start the batch's next case and, once it finishes, the one after that, until no
+     * cases are left.
+     */
+    private CompletableFuture<Void> nextCase(Batch batch) {
+        int index = batch.next().getAndIncrement();
+        if (index >= batch.cases().size()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        BatchRequest.BatchCase testCase = batch.cases().get(index);
+        CompletableFuture<BatchCaseResult> run;
+        try {
+            run = jobService.admit(() -> runCase(batch.language(), batch.code(), index, testCase, batch.clientId()));
+        } catch (AdmissionRejectedException e) {
+            run = CompletableFuture.completedFuture(failed(index, testCase, e.getMessage()));
+        }
+        return run.thenCompose(result -> {
+            batch.results()[index] = result;
+            synchronized (batch.onCase()) {
+                batch.onCase().accept(result);
+            }
+            return nextCase(batch);
+        });
+    }
+
+    private BatchCaseResult runCase(Language language, String code, int index, BatchRequest.BatchCase testCase,
+                                    String clientId) {
+        try {
+            ExecutionService.RunResult run = executionService.runWithInput(language, code, testCase.getInput(), clientId);
+            Boolean passed = testCase.getExpectedOutput() == null ? null
+                    : !run.timedOut() && run.exitCode() == 0
+                    && normalize(run.output()).equals(normalize(testCase.getExpectedOutput()));
+            return new BatchCaseResult(index, run.output(), run.error(), run.exitCode(), run.durationMs(),
+                    run.timedOut(), passed);
+        } catch (AdmissionRejectedException e) {
+            return failed(index, testCase, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return failed(index, testCase, "Server Error: interrupted");
+        } catch (Exception e) {
+            log.debug("Batch case {} failed", index, e);
+            return failed(index, testCase, "Server Error: " + e.getMessage());
+        }
+    }
+
+    private static BatchCaseResult failed(int index, BatchRequest.BatchCase testCase, String error) {
+        return new BatchCaseResult(index, "", error, -1, 0, false,
+                testCase.getExpectedOutput() == null ? null : false);
+    }
+
+    /**
+     * Output as graders usually compare it: line endings unified, trailing spaces on
+     * each line and trailing blank lines ignored.
+     */
+    static String normalize(String text) {
+        return text.replace("\r\n", "\n").replaceAll("[ \t]+\n", "\n").stripTrailing();
+    }
+}
@@ -0,0 +1,156 @@
+package io.github.Syedowais381.CodePulz.service;
+
+import io.github.Syedowais381.CodePulz.config.AdmissionProperties;
+import io.github.Syedowais381.CodePulz.config.ExecutionProperties;
+import io.github.Syedowais381.CodePulz.dto.ExecutionJob;
+import io.github.Syedowais381.CodePulz.dto.ExecutionRequest;
+import io.github.Syedowais381.CodePulz.dto.ExecutionResponse;
+import io.github.Syedowais381.CodePulz.scheduler.AdmissionRejectedException;
+import io.github.Syedowais381.CodePulz.scheduler.ExecutionScheduler;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs executions off the servlet request threads. Callers get either a job ID to
+ * poll (submit) or a future the controller hands back to Spring MVC as an async
+ * result, so a request thread is only held while the request is parsed and the
+ * response written.
+ *
+ * Work still waits in ExecutionScheduler for a sandbox slot; this class only caps
+ * how many executions may be in flight (running plus queued) so a burst of
+ * submissions is rejected up front instead of parking unbounded worker threads.
+ */
+@Slf4j
+@Service
+public class ExecutionJobService {
+
+    private final ExecutionService executionService;
+    private final ExecutionProperties properties;
+    private final ExecutorService jobExecutor;
+    private final int maxInFlight;
+
+    private final ConcurrentHashMap<String, ExecutionJob> jobs = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final ScheduledExecutorService expiry = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("execution-job-expiry").daemon(true).factory());
+
+    @Autowired
+    public ExecutionJobService(ExecutionService executionService, ExecutionProperties properties,
+                               ExecutionScheduler scheduler, AdmissionProperties admissionProperties,
+                               @Qualifier("executionJobExecutor") ExecutorService jobExecutor) {
+        this.executionService = executionService;
+        this.properties = properties;
+        this.jobExecutor = jobExecutor;
+        this.maxInFlight = scheduler.getMaxConcurrent() + admissionProperties.getMaxQueue();
+    }
+
+    /**
+     * Accept an execution and return its job immediately. The result is fetched
+     * later with getJob().
+     *
+     * @throws AdmissionRejectedException if too many executions are already in flight
+     */
+    public ExecutionJob submit(ExecutionRequest request, String clientId) {
+        ExecutionJob job = new ExecutionJob(UUID.randomUUID().toString());
+        CompletableFuture<ExecutionResponse> run = admit(() -> executionService.executeCode(request, clientId));
+        jobs.put(job.getJobId(), job);
+        run.whenComplete((response, error) -> {
+            if (error == null) {
+                job.complete(ExecutionJob.Status.COMPLETED, response);
+            } else if (error.getCause() instanceof AdmissionRejectedException rejected) {
+                job.complete(ExecutionJob.Status.REJECTED,
+                        new ExecutionResponse("", rejected.getMessage(), 0, null, false, true));
+            } else {
+                log.error("Execution job {} failed", job.getJobId(), error);
+                job.complete(ExecutionJob.Status.FAILED,
+                        new ExecutionResponse("", "Server Error: " + error.getMessage(), 0, null, false, true));
+            }
+            expiry.schedule(() -> jobs.remove(job.getJobId()), properties.getJobRetentionMs(), TimeUnit.MILLISECONDS);
+        });
+        return job;
+    }
+
+    /**
+     * The job with this ID, or null if it is unknown or has expired.
+     */
+    public ExecutionJob getJob(String jobId) {
+        return jobs.get(jobId);
+    }
+
+    /**
+     * Async form of ExecutionService.executeCode.
+     */
+    public CompletableFuture<ExecutionResponse> executeCode(ExecutionRequest request, String clientId) {
+        return admit(() -> executionService.executeCode(request, clientId));
+    }
+
+    /**
+     * Async form of ExecutionService.startInteractiveExecution.
+     */
+    public CompletableFuture<ExecutionResponse> startInteractiveExecution(ExecutionRequest request, String clientId) {
+        return admit(() -> executionService.startInteractiveExecution(request, clientId));
+    }
+
+    /**
+     * Async form of ExecutionService.startStreamingExecution.
+     */
+    public CompletableFuture<ExecutionResponse> startStreamingExecution(ExecutionRequest request, String clientId) {
+        return admit(() -> executionService.startStreamingExecution(request, clientId));
+    }
+
+    /**
+     * Async form of ExecutionService.sendInputToSession. Input to a session that
+     * already holds a slot is never rejected.
+     */
+    public CompletableFuture<ExecutionResponse> sendInputToSession(String sessionId, String input, boolean raw) {
+        return sendInputToSession(sessionId, input, raw, null, null);
+    }
+
+    public CompletableFuture<ExecutionResponse> sendInputToSession(String sessionId, String input, boolean raw,
+                                                                   Long outputSince, Long errorSince) {
+        return CompletableFuture.supplyAsync(
+                () -> executionService.sendInputToSession(sessionId, input, raw, outputSince, errorSince), jobExecutor);
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        expiry.shutdownNow();
+    }
+
+    /**
+     * Run work on a job thread if it fits under the in-flight cap. Batches admit each
+     * compile and case through here, so they count against the same cap.
+     *
+     * @throws AdmissionRejectedException if too many executions are already in flight
+     */
+    <T> CompletableFuture<T> admit(Supplier<T> work) {
+        if (inFlight.incrementAndGet() > maxInFlight) {
+            inFlight.decrementAndGet();
+            throw new AdmissionRejectedException("Server busy: too many executions in flight", 1);
+        }
+        try {
+            return CompletableFuture.supplyAsync(work, jobExecutor)
+                    .whenComplete((response, error) -> inFlight.decrementAndGet());
+        } catch (RuntimeException e) {
+            inFlight.decrementAndGet();
+            throw e;
+        }
+    }
+}
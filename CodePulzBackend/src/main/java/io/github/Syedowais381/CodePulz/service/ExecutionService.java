@@ -1,206 +1,371 @@
 package io.github.Syedowais381.CodePulz.service;
+import io.github.Syedowais381.CodePulz.buffer.OutputBuffer;
+import io.github.Syedowais381.CodePulz.buffer.OutputLimiter;
+import io.github.Syedowais381.CodePulz.cache.CompilationCache;
+import io.github.Syedowais381.CodePulz.cache.ResultCache;
+import io.github.Syedowais381.CodePulz.config.ExecutionProperties;
 import io.github.Syedowais381.CodePulz.dto.ExecutionRequest;
 import io.github.Syedowais381.CodePulz.dto.ExecutionResponse;
 import io.github.Syedowais381.CodePulz.dto.ExecutionSession;
+import io.github.Syedowais381.CodePulz.metrics.ExecutionMetrics;
+import io.github.Syedowais381.CodePulz.metrics.ExecutionMetrics.Phase;
+import io.github.Syedowais381.CodePulz.sandbox.Language;
+import io.github.Syedowais381.CodePulz.sandbox.Sandbox;
+import io.github.Syedowais381.CodePulz.sandbox.SandboxPool;
+import io.github.Syedowais381.CodePulz.sandbox.WorkspaceManager;
+import io.github.Syedowais381.CodePulz.scheduler.ExecutionScheduler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
-import java.io.BufferedReader;
-import java.io.File;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Service
 public class ExecutionService {
     
  private static final long EXECUTION_TIMEOUT_SECONDS = 60;
  private static final long OUTPUT_READ_TIMEOUT_SECONDS = 5;
- private static final long SESSION_CLEANUP_DELAY_SECONDS = 300; // Clean up sessions after 5 minutes of inactivity
- 
- // Store active execution sessions
- private final ConcurrentHashMap<String, ExecutionSession> activeSessions = new ConcurrentHashMap<>();
- private final ScheduledExecutorService cleanupExecutor = Executors.newScheduledThreadPool(1);
+ private static final String COMPILE_LOG = ".compile.log";
+ // Stderr kept for a streamed run; the rest is read and dropped
+ public static final int STREAMED_ERROR_BYTES = 4096;
+
+ private final SandboxPool sandboxPool;
+ private final CompilationCache compilationCache;
+ private final ExecutionProperties properties;
+ private final ExecutorService sessionIoExecutor;
+ private final ExecutionScheduler scheduler;
+ private final ExecutionMetrics metrics;
+ private final StdinWaitDetector stdinWaitDetector;
+ private final WorkspaceManager workspaces;
+ // Active interactive sessions, evicted when idle, expired or over the caps
+ private final SessionManager sessions;
+ private final ResultCache resultCache;
+
+ @Autowired
+ public ExecutionService(SandboxPool sandboxPool, CompilationCache compilationCache, ExecutionProperties properties,
+                         @Qualifier("sessionIoExecutor") ExecutorService sessionIoExecutor,
+                         ExecutionScheduler scheduler, ExecutionMetrics metrics, StdinWaitDetector stdinWaitDetector,
+                         WorkspaceManager workspaces, SessionManager sessions, ResultCache resultCache) {
+     this.sandboxPool = sandboxPool;
+     this.compilationCache = compilationCache;
+     this.properties = properties;
+     this.sessionIoExecutor = sessionIoExecutor;
+     this.scheduler = scheduler;
+     this.metrics = metrics;
+     this.stdinWaitDetector = stdinWaitDetector;
+     this.workspaces = workspaces;
+     this.sessions = sessions;
+     this.resultCache = resultCache;
+     sessions.setEvictionHandler(this::closeSession);
+ }
 
  /**
   * Start interactive execution - creates a session and starts the process
-  * Returns initial output if available
+  * Returns initial output if available. Waits in the admission queue first; throws
+  * AdmissionRejectedException when the queue is full.
   */
- public ExecutionResponse startInteractiveExecution(ExecutionRequest request) {
+ public ExecutionResponse startInteractiveExecution(ExecutionRequest request, String clientId) {
      long startTime = System.currentTimeMillis();
      String sessionId = UUID.randomUUID().toString();
-
-     // 1. Create a unique temporary directory
-     Path tempDir = createTempDirectory();
-     if (tempDir == null) {
-         return new ExecutionResponse("", "Error: Could not create temp directory", 0, null, false, false);
-     }
+     ExecutionScheduler.Ticket ticket = null;
 
      try {
-         // 2. Determine filename and build Docker command based on language
-         String filename = getFilenameForLanguage(request.getLanguage());
-         String[] command = buildDockerCommand(request.getLanguage(), tempDir, filename);
-
-         // 3. Save the user's code to the specific file
-         Path sourceFile = tempDir.resolve(filename);
-         Files.writeString(sourceFile, request.getCode());
-
-         // 4. Run the command using ProcessBuilder
-         ProcessBuilder processBuilder = new ProcessBuilder(command);
-         Process process = processBuilder.start();
-
-         // 5. Create session with process (stdin stays open for interactive input)
-         ExecutionSession session = new ExecutionSession(sessionId, process, tempDir);
-         activeSessions.put(sessionId, session);
-
-         // 6. Schedule cleanup after inactivity
-         scheduleSessionCleanup(sessionId);
-
-         // 7. Poll for initial output with multiple attempts (Docker startup + compilation takes time)
-         String initialOutput = "";
-         String initialError = "";
-         String previousOutput = "";
-         int maxAttempts = 35; // Poll up to 35 times (7 seconds total)
-         boolean foundOutput = false;
-         int pollsSinceLastChange = 0;
-         
-         for (int i = 0; i < maxAttempts; i++) {
-             try {
-                 Thread.sleep(200); // Wait 200ms between polls
-             } catch (InterruptedException e) {
-                 Thread.currentThread().interrupt();
-                 break;
-             }
-             
-             initialOutput = session.getCurrentOutput();
-             initialError = session.getCurrentError();
-             
-             // Check if output changed (new output arrived)
-             boolean outputChanged = !initialOutput.equals(previousOutput);
-             
-             // If process completed or died, return immediately
-             if (session.isComplete() || !session.isAlive()) {
-                 break;
-             }
-             
-             // If we see an error, the process might have crashed - wait a bit and return
-             if (!initialError.isEmpty() && initialError.contains("Exception")) {
-                 // Give it one more poll to capture full error
-                 try {
-                     Thread.sleep(200);
-                 } catch (InterruptedException e) {
-                     Thread.currentThread().interrupt();
-                 }
-                 initialOutput = session.getCurrentOutput();
-                 initialError = session.getCurrentError();
-                 break;
-             }
-             
-             // If we got output, mark it
-             if (!initialOutput.isEmpty() || !initialError.isEmpty()) {
-                 foundOutput = true;
-             }
-             
-             if (outputChanged) {
-                 previousOutput = initialOutput;
-                 pollsSinceLastChange = 0; // Reset counter when output changes
-             } else {
-                 pollsSinceLastChange++; // Count polls with no change
-             }
-             
-             // If we found output and haven't seen changes for 7 polls (1.4 seconds), 
-             // give it a bit more time to ensure program has reached the blocking read state
-             // This prevents returning too early before Scanner is ready to read
-             if (foundOutput && pollsSinceLastChange >= 7) {
-                 // Wait a bit more to ensure the program has reached the Scanner.nextInt() call
-                 // and is actually blocking waiting for input, not about to throw an exception
-                 // This extra wait helps ensure stdin is properly set up for blocking reads
-                 try {
-                     Thread.sleep(400); // Additional wait to ensure stdin is in blocking state
-                 } catch (InterruptedException e) {
-                     Thread.currentThread().interrupt();
-                 }
-                 // Double-check for any errors that might have occurred during the wait
-                 initialError = session.getCurrentError();
-                 if (!initialError.isEmpty()) {
-                     initialOutput = session.getCurrentOutput();
-                 }
-                 break;
-             }
-         }
+         // 1. Resolve the language, wait for an execution slot, start the program and
+         //    register its session
+         Language language = Language.fromId(request.getLanguage());
+         ticket = scheduler.acquire(clientId, language);
+         startTime = System.currentTimeMillis(); // queue wait is reported separately
+         ExecutionSession session = openSession(sessionId, language, request.getCode(), ticket, clientId);
+         ExecutionScheduler.Ticket slot = ticket;
+         ticket = null;
+
+         // 2. Wait for the initial output (Docker startup + compilation takes time) until the
+         //    program goes quiet, e.g. after printing a prompt, or exits
+         awaitOutput(session, 0, properties.getStartupTimeoutMs());
+         OutputBuffer.Read initialOutput = session.readOutput(0);
+         OutputBuffer.Read initialError = session.readError(0);
 
          long duration = System.currentTimeMillis() - startTime;
          boolean isComplete = session.isComplete() || !session.isAlive();
-         boolean isWaitingForInput = !isComplete && session.isAlive();
+         boolean isWaitingForInput = isWaitingForInput(session, isComplete);
 
-         return new ExecutionResponse(initialOutput, initialError, duration, sessionId, isWaitingForInput, isComplete);
+         ExecutionResponse response = new ExecutionResponse(initialOutput.text(), initialError.text(), duration, sessionId, isWaitingForInput, isComplete);
+         reportOutputLimits(response, session.getOutputLimits(), session.isOutputThrottled(), session.isOutputLimitExceeded());
+         response.setNextOutputOffset(initialOutput.nextOffset());
+         response.setNextErrorOffset(initialError.nextOffset());
+         response.setQueuePosition(slot.getQueuePosition());
+         response.setQueueWaitMs(slot.getWaitMs());
+         return response;
 
      } catch (IllegalArgumentException e) {
          return new ExecutionResponse("", e.getMessage(), 0, null, false, false);
-     } catch (IOException e) {
+     } catch (IOException | InterruptedException e) {
+         return new ExecutionResponse("", "Server Error: " + e.getMessage(), 0, null, false, false);
+     } finally {
+         // Launch failed after the slot was granted
+         if (ticket != null) {
+             ticket.release();
+         }
+     }
+ }
+
+ /**
+  * Start a program that gets all of its input upfront and whose output is streamed to
+  * the caller as it is produced (see SessionEventStreams). The input is written to stdin,
+  * which is then closed; the session is returned right away, without waiting for output.
+  * Waits in the admission queue first; throws AdmissionRejectedException when the queue is full.
+  */
+ public ExecutionResponse startStreamingExecution(ExecutionRequest request, String clientId) {
+     String sessionId = UUID.randomUUID().toString();
+     ExecutionScheduler.Ticket ticket = null;
+     try {
+         Language language = Language.fromId(request.getLanguage());
+         ticket = scheduler.acquire(clientId, language);
+         ExecutionSession session = openSession(sessionId, language, request.getCode(), ticket, clientId);
+         ExecutionScheduler.Ticket slot = ticket;
+         ticket = null;
+         if (request.getInput() != null && !request.getInput().isEmpty()) {
+             session.sendInput(request.getInput(), true);
+         }
+         session.closeInput();
+
+         ExecutionResponse response = new ExecutionResponse("", "", 0, sessionId, false, false);
+         response.setQueuePosition(slot.getQueuePosition());
+         response.setQueueWaitMs(slot.getWaitMs());
+         return response;
+
+     } catch (IllegalArgumentException e) {
+         return new ExecutionResponse("", e.getMessage(), 0, null, false, false);
+     } catch (IOException | InterruptedException e) {
          return new ExecutionResponse("", "Server Error: " + e.getMessage(), 0, null, false, false);
+     } finally {
+         if (ticket != null) {
+             ticket.release();
+         }
      }
  }
 
+ /**
+  * Launch the program and register its session. The ticket's slot is released when the
+  * program exits; if launching fails the caller still owns it.
+  */
+ private ExecutionSession openSession(String sessionId, Language language, String code,
+                                      ExecutionScheduler.Ticket ticket, String clientId)
+         throws IOException, InterruptedException {
+     // Start the program in a warm sandbox (or a cold container)
+     Launch launch = launch(language, code);
+     metrics.record(Phase.QUEUE_WAIT, language, launch.pooled(), ticket.getWaitMs(), TimeUnit.MILLISECONDS);
+
+     // Create session with process (stdin stays open until the session closes it).
+     // The slot is held until the program exits, not until the session is cleaned up
+     ExecutionSession session = new ExecutionSession(sessionId, launch.process(), launch.workspace(),
+             properties.getOutputRetentionBytes(), properties.outputLimitsFor(language), sessionIoExecutor);
+     session.setSandbox(launch.sandbox());
+     session.setLanguage(language);
+     session.getExitFuture().whenComplete((exitCode, error) -> {
+         ticket.release();
+         recordSessionRun(session, language, launch.pooled());
+     });
+     sessions.register(session, clientId);
+     // Report "waiting for input" from the program's process state where we can see it.
+     // A cold run's process may be the docker CLI, which always reads its stdin, and a program
+     // running inside a worker JVM has no process of its own, so these keep the
+     // output-silence heuristic
+     if (launch.pooled() && (launch.sandbox().getWorker() == null || !launch.sandbox().getWorker().isInProcess())) {
+         stdinWaitDetector.attach(session, () -> sandboxPool.getRunner(language).programPids(launch.sandbox(), launch.process()));
+     }
+     return session;
+ }
+
  /**
   * Send input to a running session and get updated output
   */
     public ExecutionResponse sendInputToSession(String sessionId, String input, boolean raw) {
-     ExecutionSession session = activeSessions.get(sessionId);
+        return sendInputToSession(sessionId, input, raw, null, null);
+    }
+
+ /**
+  * Same, returning only output after the given stdout/stderr offsets (null: all of it)
+  */
+    public ExecutionResponse sendInputToSession(String sessionId, String input, boolean raw,
+                                                Long outputSince, Long errorSince) {
+     ExecutionSession session = sessions.get(sessionId);
      if (session == null) {
-         return new ExecutionResponse("", "Session not found or expired", 0, sessionId, false, true);
+         return sessionNotFound(sessionId);
      }
 
      if (session.isComplete() || !session.isAlive()) {
          // Session completed, return final output
-         return getSessionOutput(session);
+         return getSessionOutput(session, outputSince, errorSince);
      }
 
-        // Capture previous output so we can wait for new output after sending input
-        String previousOutput = session.getCurrentOutput();
+        // One input owner per session: an attached WebSocket owner keeps it
+        if (session.isInputOwnedBySocket()) {
+            return new ExecutionResponse("", "Input belongs to a WebSocket connection attached to this session",
+                    0, sessionId, session.isWaitingForInput(), false);
+        }
+
+        // Remember where the session was so we only wait for what the input causes
+        long seen = session.getChangeCount();
 
     // Send input to the process (raw -> no newline appended)
     session.sendInput(input, raw);
 
-        // Poll for output after sending input (with multiple attempts for slower responses)
-        try {
-            int maxAttempts = 30; // Poll up to 30 times (6 seconds total)
-            for (int i = 0; i < maxAttempts; i++) {
-                Thread.sleep(200); // Wait 200ms between polls
-
-                // Check if output has changed compared to previous
-                String currentOutput = session.getCurrentOutput();
-                if (!currentOutput.equals(previousOutput) || session.isComplete() || !session.isAlive()) {
-                    break;
-                }
-            }
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
+        awaitOutput(session, seen, properties.getInputResponseTimeoutMs());
+
+        return getSessionOutput(session, outputSince, errorSince);
+ }
 
-        return getSessionOutput(session);
+ /**
+  * Block until the session reports new output (after the given change count) and that
+  * output has been quiet for the quiescence window, or the program blocks on stdin, or
+  * the process exits, or the timeout elapses. The reader threads signal each chunk and
+  * the stdin detector each state change, so this wakes as soon as either happens.
+  */
+ private void awaitOutput(ExecutionSession session, long seen, long timeoutMs) {
+     long deadline = System.currentTimeMillis() + timeoutMs;
+     try {
+         long current = session.awaitChange(seen, timeoutMs);
+         while (current != seen && !session.isComplete() && !session.isWaitingForInput()) {
+             seen = current;
+             long remaining = deadline - System.currentTimeMillis();
+             if (remaining <= 0) {
+                 break;
+             }
+             current = session.awaitChange(seen, Math.min(properties.getQuiescenceMs(), remaining));
+         }
+     } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+     }
+ }
+
+ /**
+  * Run and first-output phases of an interactive session, once its program has exited.
+  * The run includes the time the program spent waiting for input.
+  */
+ private void recordSessionRun(ExecutionSession session, Language language, boolean pooled) {
+     long exitTime = System.currentTimeMillis();
+     metrics.record(Phase.RUN, language, pooled, exitTime - session.getStartTime(), TimeUnit.MILLISECONDS);
+     long firstOutputTime = session.getFirstOutputTime();
+     if (firstOutputTime > 0) {
+         metrics.record(Phase.FIRST_OUTPUT, language, pooled,
+                 firstOutputTime - session.getStartTime(), TimeUnit.MILLISECONDS);
+     }
  }
 
  /**
   * Get current output from a session
   */
  public ExecutionResponse getSessionStatus(String sessionId) {
-     ExecutionSession session = activeSessions.get(sessionId);
+     ExecutionSession session = sessions.get(sessionId);
      if (session == null) {
-         return new ExecutionResponse("", "Session not found or expired", 0, sessionId, false, true);
+         return sessionNotFound(sessionId);
+     }
+     return getSessionOutput(session, null, null);
+ }
+
+ /**
+  * Answer to a status poll: the response and its ETag, or only the tag when the
+  * client's copy is still current. Unknown sessions have no tag.
+  */
+ public record StatusPoll(ExecutionResponse response, String etag) {
+     public boolean notModified() {
+         return response == null;
+     }
+ }
+
+ /**
+  * Session status for pollers. With outputSince/errorSince only output after those
+  * offsets is returned, so a poller does not download everything printed so far again.
+  * The ETag changes whenever the answer would; if ifNoneMatch still matches, the poll
+  * is answered as not modified without reading the buffers.
+  *
+  * With waitMs a poll that has nothing new (its tag matches, or there is no output past
+  * its offsets and the program neither waits for input nor has exited) is held until
+  * something happens or waitMs elapses. No thread waits meanwhile: the session completes
+  * the poll from its next change.
+  */
+ public CompletableFuture<StatusPoll> pollSessionStatus(String sessionId, Long outputSince, Long errorSince,
+                                                        long waitMs, String ifNoneMatch) {
+     ExecutionSession session = sessions.get(sessionId);
+     if (session == null) {
+         return CompletableFuture.completedFuture(new StatusPoll(sessionNotFound(sessionId), null));
+     }
+     long seen = session.getChangeCount();
+     if (waitMs > 0 && !hasNews(session, seen, outputSince, errorSince, ifNoneMatch)) {
+         return session.onChange(seen, waitMs)
+                 .thenApplyAsync(count -> statusPoll(session, outputSince, errorSince, ifNoneMatch), sessionIoExecutor);
+     }
+     return CompletableFuture.completedFuture(statusPoll(session, outputSince, errorSince, ifNoneMatch));
+ }
+
+ private StatusPoll statusPoll(ExecutionSession session, Long outputSince, Long errorSince, String ifNoneMatch) {
+     // Taken before the buffers are read, so the tag never stands for more than the body holds
+     String etag = statusTag(session.getChangeCount(), outputSince, errorSince);
+     if (etagMatches(ifNoneMatch, etag)) {
+         return new StatusPoll(null, etag);
+     }
+     return new StatusPoll(getSessionOutput(session, outputSince, errorSince), etag);
+ }
+
+ private static boolean hasNews(ExecutionSession session, long seen, Long outputSince, Long errorSince,
+                                String ifNoneMatch) {
+     if (ifNoneMatch != null) {
+         return !etagMatches(ifNoneMatch, statusTag(seen, outputSince, errorSince));
+     }
+     if (outputSince == null && errorSince == null) {
+         // Nothing to compare against
+         return true;
+     }
+     return session.isComplete() || !session.isAlive() || session.isWaitingForInput()
+             || session.getOutputBuffer().getEndOffset() > (outputSince != null ? outputSince : 0)
+             || session.getErrorBuffer().getEndOffset() > (errorSince != null ? errorSince : 0);
+ }
+
+ /**
+  * Every output chunk, stream end, exit and stdin state change bumps the session's change
+  * count, so it identifies what a status poll would return (together with the offsets).
+  */
+ private static String statusTag(long changeCount, Long outputSince, Long errorSince) {
+     return "\"" + changeCount + "-" + (outputSince != null ? outputSince : "") + "-"
+             + (errorSince != null ? errorSince : "") + "\"";
+ }
+
+ /**
+  * If-None-Match against the current tag; weak and strong forms compare equal.
+  */
+ static boolean etagMatches(String ifNoneMatch, String etag) {
+     if (ifNoneMatch == null) {
+         return false;
      }
-     return getSessionOutput(session);
+     for (String candidate : ifNoneMatch.split(",")) {
+         String tag = candidate.trim();
+         if (tag.startsWith("W/")) {
+             tag = tag.substring(2);
+         }
+         if (tag.equals("*") || tag.equals(etag)) {
+             return true;
+         }
+     }
+     return false;
+ }
+
+ private static ExecutionResponse sessionNotFound(String sessionId) {
+     return new ExecutionResponse("", "Session not found or expired", 0, sessionId, false, true);
  }
 
     /**
@@ -208,243 +373,572 @@ public class ExecutionService {
      * This is used by the WebSocket handler to attach to an existing session.
      */
     public ExecutionSession getSessionById(String sessionId) {
-        return activeSessions.get(sessionId);
+        return sessions.get(sessionId);
     }
 
  /**
-  * Helper to get current output from session
+  * Sessions of the language that have not been cleaned up yet.
+  */
+ public int countActiveSessions(Language language) {
+     int count = 0;
+     for (ExecutionSession session : sessions.getSessions()) {
+         if (session.getLanguage() == language) {
+             count++;
+         }
+     }
+     return count;
+ }
+
+ /**
+  * Output bytes held in memory by the language's active sessions.
+  */
+ public long getBufferedOutputBytes(Language language) {
+     long bytes = 0;
+     for (ExecutionSession session : sessions.getSessions()) {
+         if (session.getLanguage() == language) {
+             bytes += session.getBufferedBytes();
+         }
+     }
+     return bytes;
+ }
+
+ /**
+  * Helper to get current output from session: everything retained, or only what came
+  * after the given offsets
   */
- private ExecutionResponse getSessionOutput(ExecutionSession session) {
+ private ExecutionResponse getSessionOutput(ExecutionSession session, Long outputSince, Long errorSince) {
      long duration = System.currentTimeMillis() - session.getStartTime();
      boolean isComplete = session.isComplete() || !session.isAlive();
-     boolean isWaitingForInput = !isComplete && session.isAlive();
+     boolean isWaitingForInput = isWaitingForInput(session, isComplete);
 
      // Get current accumulated output
-     String output = session.getCurrentOutput();
-     String error = session.getCurrentError();
+     OutputBuffer.Read output = session.readOutput(outputSince != null ? outputSince : 0);
+     OutputBuffer.Read error = session.readError(errorSince != null ? errorSince : 0);
 
      // Clean up if complete
      if (isComplete) {
          cleanupSession(session.getSessionId());
      }
 
-     return new ExecutionResponse(output, error, duration, session.getSessionId(), isWaitingForInput, isComplete);
+     ExecutionResponse response = new ExecutionResponse(output.text(), error.text(), duration, session.getSessionId(), isWaitingForInput, isComplete);
+     reportOutputLimits(response, session.getOutputLimits(), session.isOutputThrottled(), session.isOutputLimitExceeded());
+     response.setNextOutputOffset(output.nextOffset());
+     response.setNextErrorOffset(error.nextOffset());
+     return response;
+ }
+
+ private static void reportOutputLimits(ExecutionResponse response, OutputLimiter.Limits limits,
+                                        boolean throttled, boolean truncated) {
+     response.setOutputRateLimit(Math.max(limits.bytesPerSecond(), 0));
+     response.setOutputLimitBytes(Math.max(limits.maxBytes(), 0));
+     response.setOutputThrottled(throttled);
+     response.setOutputTruncated(truncated);
  }
 
  /**
-  * Schedule cleanup of a session after inactivity
+  * With stdin detection the program's actual state; otherwise any live session is
+  * assumed to be waiting once the call returns (it went quiet or timed out).
   */
- private void scheduleSessionCleanup(String sessionId) {
-     cleanupExecutor.schedule(() -> {
-         ExecutionSession session = activeSessions.get(sessionId);
-         if (session != null && (session.isComplete() || !session.isAlive())) {
-             cleanupSession(sessionId);
-         }
-     }, SESSION_CLEANUP_DELAY_SECONDS, TimeUnit.SECONDS);
+ private static boolean isWaitingForInput(ExecutionSession session, boolean isComplete) {
+     if (isComplete || !session.isAlive()) {
+         return false;
+     }
+     return !session.hasInputDetection() || session.isWaitingForInput();
  }
 
  /**
   * Clean up a session
   */
  private void cleanupSession(String sessionId) {
-     ExecutionSession session = activeSessions.remove(sessionId);
+     ExecutionSession session = sessions.remove(sessionId);
      if (session != null) {
-         session.close();
-         deleteDirectory(session.getTempDir().toFile());
+         closeSession(session);
      }
  }
 
+ /**
+  * Stop the session's program if it still runs and release its sandbox or workspace.
+  * Also called by the SessionManager for sessions it evicts.
+  */
+ private void closeSession(ExecutionSession session) {
+     long teardownStart = System.nanoTime();
+     boolean exited = !session.getProcess().isAlive() && !session.isKilled();
+     session.close();
+     releaseWorkspace(session.getSandbox(), session.getTempDir(), exited);
+     metrics.recordSince(Phase.TEARDOWN, session.getLanguage(), session.getSandbox() != null, teardownStart);
+ }
+
  /**
   * Original non-interactive execution method (for backward compatibility)
   * Can still be used for programs that don't need interactive input
   */
- public ExecutionResponse executeCode(ExecutionRequest request) {
+ public ExecutionResponse executeCode(ExecutionRequest request, String clientId) {
      // If input is provided upfront, use non-interactive mode
      if (request.getInput() != null && !request.getInput().isEmpty()) {
-         return executeCodeNonInteractive(request);
+         return executeCodeNonInteractive(request, clientId);
      }
      // Otherwise, start interactive session
-     return startInteractiveExecution(request);
+     return startInteractiveExecution(request, clientId);
  }
 
  /**
   * Non-interactive execution (original behavior)
   */
- private ExecutionResponse executeCodeNonInteractive(ExecutionRequest request) {
-     long startTime = System.currentTimeMillis();
+ private ExecutionResponse executeCodeNonInteractive(ExecutionRequest request, String clientId) {
+     try {
+         Language language = Language.fromId(request.getLanguage());
+         RunResult result = resultCache.isEnabled() && !request.isNoCache()
+                 ? runWithInputCached(language, request.getCode(), request.getInput(), clientId)
+                 : runWithInput(language, request.getCode(), request.getInput(), clientId);
+         String error = result.timedOut()
+                 ? "Execution timed out after " + EXECUTION_TIMEOUT_SECONDS + " seconds."
+                 : result.error();
+         ExecutionResponse response = new ExecutionResponse(result.output(), error, result.durationMs(), null, false, true);
+         reportOutputLimits(response, properties.outputLimitsFor(language), false, result.outputTruncated());
+         response.setQueuePosition(result.queuePosition());
+         response.setQueueWaitMs(result.queueWaitMs());
+         response.setCached(result.cached());
+         return response;
 
-     Path tempDir = createTempDirectory();
-     if (tempDir == null) {
-         return new ExecutionResponse("", "Error: Could not create temp directory", 0, null, false, false);
+     } catch (IllegalArgumentException e) {
+         return new ExecutionResponse("", e.getMessage(), 0, null, false, false);
+     } catch (IOException | InterruptedException | java.util.concurrent.ExecutionException | java.util.concurrent.TimeoutException e) {
+         return new ExecutionResponse("", "Server Error: " + e.getMessage(), 0, null, false, false);
      }
+ }
+
+ /**
+  * Outcome of a program run to completion with all of its input given upfront.
+  * exitCode is -1 when the run timed out and was killed. outputTruncated means the
+  * program was killed for printing more than the output cap. cached means the result
+  * is that of an earlier or concurrent identical run, durationMs included.
+  */
+ public record RunResult(String output, String error, int exitCode, boolean timedOut, long durationMs,
+                         int queuePosition, long queueWaitMs, boolean outputTruncated, boolean cached) {
+ }
 
+ /**
+  * runWithInput through the result cache: a stored result of the same program and
+  * input is returned as-is, and concurrent identical calls share one run.
+  */
+ private RunResult runWithInputCached(Language language, String code, String input, String clientId)
+         throws IOException, InterruptedException, java.util.concurrent.ExecutionException, java.util.concurrent.TimeoutException {
+     String key = resultCache.key(language, code, input, properties.outputLimitsFor(language).maxBytes());
+     AtomicReference<RunResult> ownRun = new AtomicReference<>();
+     ResultCache.Lookup lookup;
      try {
-         String filename = getFilenameForLanguage(request.getLanguage());
-         String[] command = buildDockerCommand(request.getLanguage(), tempDir, filename);
+         lookup = resultCache.getOrRun(key, () -> {
+             RunResult run = runWithInput(language, code, input, clientId);
+             ownRun.set(run);
+             return new ResultCache.Result(run.output(), run.error(), run.exitCode(), run.timedOut(),
+                     run.outputTruncated(), run.durationMs());
+         });
+     } catch (IOException | InterruptedException | java.util.concurrent.ExecutionException
+              | java.util.concurrent.TimeoutException | RuntimeException e) {
+         throw e;
+     } catch (Exception e) {
+         throw new IllegalStateException(e);
+     }
+     if (lookup.source() == ResultCache.Source.RUN) {
+         return ownRun.get();
+     }
+     ResultCache.Result cached = lookup.result();
+     return new RunResult(cached.output(), cached.error(), cached.exitCode(), cached.timedOut(), cached.durationMs(),
+             0, 0, cached.outputTruncated(), true);
+ }
 
-         Path sourceFile = tempDir.resolve(filename);
-         Files.writeString(sourceFile, request.getCode());
+ /**
+  * Wait for an execution slot, run the program with the given stdin and collect its
+  * output. Throws AdmissionRejectedException when the admission queue is full.
+  */
+ public RunResult runWithInput(Language language, String code, String input, String clientId)
+         throws IOException, InterruptedException, java.util.concurrent.ExecutionException, java.util.concurrent.TimeoutException {
+     ExecutionScheduler.Ticket ticket = scheduler.acquire(clientId, language);
+     long startTime = System.currentTimeMillis(); // queue wait is reported separately
+     Launch launch = null;
+     boolean finished = false;
+     AtomicBoolean truncated = new AtomicBoolean();
 
-         ProcessBuilder processBuilder = new ProcessBuilder(command);
-         Process process = processBuilder.start();
+     try {
+         launch = launch(language, code);
+         metrics.record(Phase.QUEUE_WAIT, language, launch.pooled(), ticket.getWaitMs(), TimeUnit.MILLISECONDS);
+         Process process = launch.process();
+         long runStart = System.nanoTime();
 
          // Write input upfront if provided
          try (PrintWriter stdinWriter = new PrintWriter(
                  new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8), true)) {
-             if (request.getInput() != null && !request.getInput().isEmpty()) {
-                 stdinWriter.print(request.getInput());
+             if (input != null && !input.isEmpty()) {
+                 stdinWriter.print(input);
              }
              stdinWriter.flush();
          }
 
-         CompletableFuture<String> outputFuture = readStream(new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8)));
-         CompletableFuture<String> errorFuture = readStream(new BufferedReader(new InputStreamReader(process.getErrorStream(), StandardCharsets.UTF_8)));
-
-         boolean finished = process.waitFor(EXECUTION_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+         // Output is collected rather than streamed here, so only the cap applies
+         AtomicLong firstOutput = new AtomicLong();
+         OutputLimiter.Limits limits = properties.outputLimitsFor(language);
+         OutputLimiter limiter = new OutputLimiter(new OutputLimiter.Limits(0, 0, limits.maxBytes()));
+         CompletableFuture<String> outputFuture = readStream(process.getInputStream(), process, limiter, truncated, firstOutput);
+         CompletableFuture<String> errorFuture = readStream(process.getErrorStream(), process, limiter, truncated, firstOutput);
+
+         finished = process.waitFor(EXECUTION_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+         metrics.recordSince(Phase.RUN, language, launch.pooled(), runStart);
+         if (firstOutput.get() != 0) {
+             metrics.record(Phase.FIRST_OUTPUT, language, launch.pooled(), firstOutput.get() - runStart, TimeUnit.NANOSECONDS);
+         }
 
          String output = "";
          String error = "";
+         int exitCode = -1;
 
          if (!finished) {
              process.destroyForcibly();
-             error = "Execution timed out after " + EXECUTION_TIMEOUT_SECONDS + " seconds.";
          } else {
              output = outputFuture.get(OUTPUT_READ_TIMEOUT_SECONDS, TimeUnit.SECONDS);
              error = errorFuture.get(OUTPUT_READ_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+             exitCode = process.exitValue();
          }
 
          long duration = System.currentTimeMillis() - startTime;
-         return new ExecutionResponse(output, error, duration, null, false, true);
+         return new RunResult(output, error, exitCode, !finished, duration, ticket.getQueuePosition(), ticket.getWaitMs(),
+                 truncated.get(), false);
+
+     } finally {
+         if (launch != null) {
+             long teardownStart = System.nanoTime();
+             // A program killed at the output cap did not finish on its own
+             releaseWorkspace(launch.sandbox(), launch.workspace(), finished && !truncated.get());
+             metrics.recordSince(Phase.TEARDOWN, language, launch.pooled(), teardownStart);
+         }
+         ticket.release();
+     }
+ }
+
+ /**
+  * Outcome of a program whose stdout was streamed to the caller (see runStreaming).
+  * error holds the start of stderr, at most STREAMED_ERROR_BYTES; errorTruncated means
+  * there was more. outputTruncated means the program was killed at the stdout cap.
+  */
+ public record StreamedResult(int exitCode, boolean timedOut, long outputBytes, boolean outputTruncated,
+                              String error, boolean errorTruncated, long durationMs) {
+ }
+
+ /**
+  * Wait for an execution slot and run the program with its stdin read from input and its
+  * stdout copied to output as it is produced, byte for byte; neither is held in memory.
+  * Past stream-max-output-bytes of stdout the program is killed. Throws
+  * AdmissionRejectedException when the admission queue is full, and IOException (after
+  * killing the program) when output can no longer be written, e.g. the client went away.
+  */
+ public StreamedResult runStreaming(Language language, String code, InputStream input, OutputStream output,
+                                    String clientId) throws IOException, InterruptedException {
+     ExecutionScheduler.Ticket ticket = scheduler.acquire(clientId, language);
+     long startTime = System.currentTimeMillis(); // queue wait is reported separately
+     Launch launch = null;
+     boolean finished = false;
+     boolean truncated = false;
+
+     try {
+         launch = launch(language, code);
+         metrics.record(Phase.QUEUE_WAIT, language, launch.pooled(), ticket.getWaitMs(), TimeUnit.MILLISECONDS);
+         Process process = launch.process();
+         long runStart = System.nanoTime();
+
+         // Kill the program when it runs out of time, wherever the copying below is blocked
+         CompletableFuture<Boolean> exited = CompletableFuture.supplyAsync(() -> awaitExit(process), sessionIoExecutor);
+         // Feed stdin from its own thread so a program that writes before it has read
+         // everything cannot deadlock against us
+         sessionIoExecutor.execute(() -> {
+             try (OutputStream stdin = process.getOutputStream()) {
+                 if (input != null) {
+                     input.transferTo(stdin);
+                 }
+             } catch (IOException e) {
+                 // The program exited or closed stdin before reading all of it
+             }
+         });
+         CompletableFuture<OutputHead> errorFuture = readHead(process.getErrorStream(), STREAMED_ERROR_BYTES);
+
+         long maxBytes = properties.getStreamMaxOutputBytes();
+         long written = 0;
+         try (InputStream stdout = process.getInputStream()) {
+             byte[] buf = new byte[8192];
+             int read;
+             while ((read = stdout.read(buf)) != -1) {
+                 if (written == 0) {
+                     metrics.record(Phase.FIRST_OUTPUT, language, launch.pooled(), System.nanoTime() - runStart, TimeUnit.NANOSECONDS);
+                 }
+                 int allowed = maxBytes > 0 ? (int) Math.min(read, maxBytes - written) : read;
+                 output.write(buf, 0, allowed);
+                 written += allowed;
+                 if (allowed < read) {
+                     truncated = true;
+                     process.destroyForcibly();
+                     break;
+                 }
+                 // Send what there is while the program works; bursts still go out together
+                 if (stdout.available() == 0) {
+                     output.flush();
+                 }
+             }
+         } catch (IOException e) {
+             process.destroyForcibly();
+             throw e;
+         }
+         output.flush();
+
+         finished = exited.join();
+         metrics.recordSince(Phase.RUN, language, launch.pooled(), runStart);
+         OutputHead error = errorFuture
+                 .completeOnTimeout(new OutputHead("", false), OUTPUT_READ_TIMEOUT_SECONDS, TimeUnit.SECONDS).join();
+         int exitCode = finished ? process.exitValue() : -1;
+         long duration = System.currentTimeMillis() - startTime;
+         return new StreamedResult(exitCode, !finished, written, truncated, error.text(), error.truncated(), duration);
 
-     } catch (IllegalArgumentException e) {
-         return new ExecutionResponse("", e.getMessage(), 0, null, false, false);
-     } catch (IOException | InterruptedException | java.util.concurrent.ExecutionException | java.util.concurrent.TimeoutException e) {
-         return new ExecutionResponse("", "Server Error: " + e.getMessage(), 0, null, false, false);
      } finally {
-         deleteDirectory(tempDir.toFile());
-     }
- }
-
- /**
-  * Determines the correct filename for a given language.
-  */
- private String getFilenameForLanguage(String language) {
-     switch (language.toLowerCase()) {
-         case "java":
-             return "Main.java";
-         case "python":
-             return "script.py";
-         case "javascript":
-             return "index.js";
-         case "cpp":
-             return "main.cpp";
-         case "c": // <<< ADD THIS CASE
-             return "main.c";
-         case "csharp":
-             return "Program.cs";
-         case "go":
-             return "main.go";
-         default:
-             throw new IllegalArgumentException("Unsupported language: " + language);
-     }
- }
-
- /**
-  * Builds the complete, sandboxed docker command for a given language.
-  */
- /**
-  * Builds the complete, sandboxed docker command for a given language.
-  */
-    private String[] buildDockerCommand(String language, Path tempDir, String filename) {
-        String mountPath = tempDir.toAbsolutePath().toString();
-
-        List<String> command = new ArrayList<>();
-        command.addAll(Arrays.asList("docker", "run", "--rm"));
-        command.add("-i"); // keep stdin open
-        // Removed -t flag entirely as it causes issues with non-TTY input
-        command.addAll(Arrays.asList(
-            "--cpus=0.5",
-            "--memory=256m",
-            "--workdir", "/app",
-            "-v", mountPath + ":/app",
-            // Add pseudo-TTY disable flag to ensure consistent behavior
-            "-e", "PYTHONUNBUFFERED=1",  // Force unbuffered Python output
-            "-e", "JAVA_TOOL_OPTIONS=-Dfile.encoding=UTF-8" // Force Java UTF-8
-        ));
-
-     switch (language.toLowerCase()) {
-         case "java":
-             command.add("openjdk:17-slim");
-             command.addAll(Arrays.asList("sh", "-c", "javac Main.java && java Main"));
-             break;
-         case "python":
-             command.add("python:3.10-slim");
-             command.addAll(Arrays.asList("python", filename));
-             break;
-         case "javascript":
-             command.add("node:18-slim");
-             command.addAll(Arrays.asList("node", filename));
-             break;
-         case "cpp":
-             command.add("gcc:latest");
-             command.addAll(Arrays.asList("sh", "-c", "g++ " + filename + " -o myapp && ./myapp"));
-             break;
-         case "c": // <<< ADD THIS CASE
-             command.add("gcc:latest");
-             command.addAll(Arrays.asList("sh", "-c", "gcc " + filename + " -o myapp && ./myapp"));
-             break;
-         case "csharp":
-             // *** FIXED COMMAND ***
-             // Create project files, then run. The user's Program.cs is already mounted.
-             command.add("mcr.microsoft.com/dotnet/sdk:7.0");
-             command.addAll(Arrays.asList("sh", "-c",
-                     "dotnet new console --force > /dev/null && dotnet run"));
-             break;
-         case "go":
-             command.add("golang:1.20");
-             command.addAll(Arrays.asList("go", "run", filename));
-             break;
-         default:
-             throw new IllegalArgumentException("Unsupported language: " + language);
-     }
-
-     return command.toArray(new String[0]);
- }
-
- // --- Helper Methods (Unchanged) ---
-
- private Path createTempDirectory() {
+         if (launch != null) {
+             long teardownStart = System.nanoTime();
+             // A program killed at the output cap did not finish on its own
+             releaseWorkspace(launch.sandbox(), launch.workspace(), finished && !truncated);
+             metrics.recordSince(Phase.TEARDOWN, language, launch.pooled(), teardownStart);
+         }
+         ticket.release();
+     }
+ }
+
+ /**
+  * Wait for the program to exit within the execution timeout, killing it otherwise.
+  * False if it had to be killed.
+  */
+ private static boolean awaitExit(Process process) {
      try {
-         String tempDirName = "codepulz-run-" + UUID.randomUUID();
-         // Use system's temp directory
-         return Files.createTempDirectory(tempDirName);
-     } catch (IOException e) {
-         return null;
+         if (process.waitFor(EXECUTION_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+             return true;
+         }
+     } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
      }
+     process.destroyForcibly();
+     return false;
+ }
+
+ private record OutputHead(String text, boolean truncated) {
  }
 
- private CompletableFuture<String> readStream(BufferedReader reader) {
+ /**
+  * Read a stream to its end, keeping only its first maxBytes.
+  */
+ private CompletableFuture<OutputHead> readHead(InputStream stream, int maxBytes) {
      return CompletableFuture.supplyAsync(() -> {
-         StringBuilder sb = new StringBuilder();
-         try (reader) {
-             String line;
-             while ((line = reader.readLine()) != null) {
-                 sb.append(line).append("\n");
+         ByteArrayOutputStream head = new ByteArrayOutputStream();
+         boolean more = false;
+         try (stream) {
+             byte[] buf = new byte[8192];
+             int read;
+             while ((read = stream.read(buf)) != -1) {
+                 int allowed = Math.min(read, maxBytes - head.size());
+                 head.write(buf, 0, allowed);
+                 more |= allowed < read;
              }
          } catch (IOException e) {
-             return "Error reading stream: " + e.getMessage();
+             // Cut off when the program was killed; keep what was read
          }
-         return sb.toString().trim();
-     });
+         return new OutputHead(head.toString(StandardCharsets.UTF_8), more);
+     }, sessionIoExecutor);
  }
 
- private void deleteDirectory(File directory) {
-     File[] allContents = directory.listFiles();
-     if (allContents != null) {
-         for (File file : allContents) {
-             deleteDirectory(file);
+ /**
+  * Compile a program ahead of several runs so each run restores the artifacts from the
+  * compilation cache instead of compiling again. Returns null when the program is ready
+  * to run (or is interpreted, or caching is off) and the compiler output if compilation
+  * failed.
+  */
+ public String precompile(Language language, String code, String clientId) throws IOException, InterruptedException {
+     if (!language.isCompiled() || !compilationCache.isEnabled()
+             || compilationCache.contains(compilationCache.key(language, code))) {
+         return null;
+     }
+     ExecutionScheduler.Ticket ticket = scheduler.acquire(clientId, language);
+     try {
+         Sandbox sandbox = sandboxPool.acquire(language);
+         Path workspace = sandbox != null ? sandbox.getWorkspace() : workspaces.acquire();
+         boolean compiled = false;
+         try {
+             Files.writeString(workspace.resolve(language.getFilename()), code);
+             Compilation compilation = compile(language, code, sandbox, workspace);
+             compiled = true;
+             return compilation.exitCode() == 0 ? null : compilation.log();
+         } finally {
+             releaseWorkspace(sandbox, workspace, compiled);
+         }
+     } finally {
+         ticket.release();
+     }
+ }
+
+ /**
+  * A started program and where it runs. sandbox is null for cold starts.
+  */
+ private record Launch(Process process, Path workspace, Sandbox sandbox) {
+     boolean pooled() {
+         return sandbox != null;
+     }
+ }
+
+ /**
+  * Write the code and start it. Uses an idle sandbox from the warm pool when one is
+  * available, otherwise falls back to a cold start of the language's runner (a fresh
+  * "docker run" by default) in a new workspace.
+  */
+ private Launch launch(Language language, String code) throws IOException {
+     long acquireStart = System.nanoTime();
+     Sandbox sandbox = sandboxPool.acquire(language);
+     if (sandbox != null) {
+         try {
+             Files.writeString(sandbox.getWorkspace().resolve(language.getFilename()), code);
+             metrics.recordSince(Phase.SANDBOX_ACQUIRE, language, true, acquireStart);
+             // A runtime worker starts the program without booting an interpreter or JVM
+             String command = sandbox.getWorker() != null
+                     ? sandbox.getWorker().getRunCommand()
+                     : compileInSandbox(language, code, sandbox);
+             Process process = sandboxPool.getRunner(language).exec(sandbox, command);
+             return new Launch(process, sandbox.getWorkspace(), sandbox);
+         } catch (IOException e) {
+             sandboxPool.release(sandbox);
+             throw e;
+         }
+     }
+
+     Path tempDir = workspaces.acquire();
+     try {
+         Files.writeString(tempDir.resolve(language.getFilename()), code);
+         metrics.recordSince(Phase.SANDBOX_ACQUIRE, language, false, acquireStart);
+         // Cold runs use cached artifacts when present but do not populate the cache:
+         // compiling separately would cost a second container start
+         String command = language.getCommand();
+         if (language.isCompiled() && compilationCache.isEnabled()
+                 && compilationCache.restore(compilationCache.key(language, code), tempDir.resolve(Language.BUILD_DIR))) {
+             command = language.getRunCommand();
+         }
+         Process process = sandboxPool.getRunner(language).start(language, tempDir, command);
+         return new Launch(process, tempDir, null);
+     } catch (IOException e) {
+         workspaces.discard(tempDir);
+         throw e;
+     }
+ }
+
+ /**
+  * Work out the command to start in a sandbox. For compiled languages the artifacts
+  * are restored from the compilation cache when possible, so only the run command is
+  * left; on a miss the code is compiled as a separate step and cached before any user
+  * code has run (and could tamper with build/). Compiler messages are replayed on
+  * stderr of the returned command so clients see them as before.
+  */
+ private String compileInSandbox(Language language, String code, Sandbox sandbox) throws IOException {
+     if (!language.isCompiled() || !compilationCache.isEnabled()) {
+         return language.getCommand();
+     }
+     Path workspace = sandbox.getWorkspace();
+     if (compilationCache.restore(compilationCache.key(language, code), workspace.resolve(Language.BUILD_DIR))) {
+         return language.getRunCommand();
+     }
+
+     Compilation compilation = compile(language, code, sandbox, workspace);
+     String replayLog = compilation.log().isEmpty() ? "" : "cat " + COMPILE_LOG + " >&2; ";
+     if (compilation.exitCode() != 0) {
+         return replayLog + "exit " + compilation.exitCode();
+     }
+     return replayLog + language.getRunCommand();
+ }
+
+ /**
+  * Compiler exit code and messages (stdout and stderr combined).
+  */
+ private record Compilation(int exitCode, String log) {
+ }
+
+ /**
+  * Compile the source already written to the workspace, in the pooled sandbox or (when
+  * sandbox is null) a one-off container, and cache the artifacts on success.
+  */
+ private Compilation compile(Language language, String code, Sandbox sandbox, Path workspace) throws IOException {
+     String command = "(" + language.getCompileCommand() + ") > " + COMPILE_LOG + " 2>&1";
+     long compileStart = System.nanoTime();
+     Process compile = sandbox != null
+             ? sandboxPool.getRunner(language).exec(sandbox, command)
+             : sandboxPool.getRunner(language).start(language, workspace, command);
+     compile.getOutputStream().close();
+     try {
+         if (!compile.waitFor(EXECUTION_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+             compile.destroyForcibly();
+             throw new IOException("Compilation timed out after " + EXECUTION_TIMEOUT_SECONDS + " seconds.");
          }
+     } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         compile.destroyForcibly();
+         throw new IOException("Interrupted while compiling", e);
+     }
+
+     metrics.recordSince(Phase.COMPILE, language, sandbox != null, compileStart);
+
+     Path log = workspace.resolve(COMPILE_LOG);
+     String messages = Files.exists(log) ? Files.readString(log) : "";
+     // Artifacts are shared with every user of the same source, so only a sandbox no
+     // earlier program has run in may fill the cache
+     boolean fresh = sandbox == null || sandbox.getUses() <= 1;
+     if (compile.exitValue() == 0 && fresh) {
+         compilationCache.store(compilationCache.key(language, code), workspace.resolve(Language.BUILD_DIR));
      }
-     directory.delete();
+     return new Compilation(compile.exitValue(), messages);
+ }
+
+ /**
+  * Return a pooled sandbox for reuse, or hand back the workspace of a cold start.
+  * The workspace is only recycled when its container is known to be gone (the program
+  * exited by itself); killing the docker CLI does not stop the container, which could
+  * otherwise write into the next run's files.
+  */
+ private void releaseWorkspace(Sandbox sandbox, Path workspace, boolean exited) {
+     if (sandbox != null) {
+         sandboxPool.release(sandbox);
+     } else if (exited) {
+         workspaces.release(workspace);
+     } else {
+         workspaces.discard(workspace);
+     }
+ }
+
+ /**
+  * Collect a stream of the program as text. Bytes past the limiter's cap are dropped:
+  * the stream ends with a marker, truncated is set and the program is killed.
+  *
+  * @param firstOutput set to System.nanoTime() when the first bytes arrive on this or
+  *                    another stream sharing it
+  */
+ private CompletableFuture<String> readStream(InputStream stream, Process process, OutputLimiter limiter,
+                                              AtomicBoolean truncated, AtomicLong firstOutput) {
+     return CompletableFuture.supplyAsync(() -> {
+         ByteArrayOutputStream collected = new ByteArrayOutputStream();
+         boolean cut = false;
+         try (stream) {
+             byte[] buf = new byte[8192];
+             int read;
+             while ((read = stream.read(buf)) != -1) {
+                 firstOutput.compareAndSet(0, System.nanoTime());
+                 int allowed = limiter.admit(read);
+                 collected.write(buf, 0, allowed);
+                 if (allowed < read && !cut) {
+                     cut = true;
+                     truncated.set(true);
+                     process.destroyForcibly();
+                 }
+             }
+         } catch (IOException e) {
+             return "Error reading stream: " + e.getMessage();
+         }
+         String text = collected.toString(StandardCharsets.UTF_8).trim();
+         return cut ? text + "\n[Output limit of " + limiter.getLimits().maxBytes() + " bytes exceeded, program stopped]" : text;
+     }, sessionIoExecutor);
  }
 }
\ No newline at end of file
@@ -0,0 +1,302 @@
+package io.github.Syedowais381.CodePulz.service;
+
+import io.github.Syedowais381.CodePulz.config.SessionProperties;
+import io.github.Syedowais381.CodePulz.dto.ExecutionSession;
+import io.github.Syedowais381.CodePulz.scheduler.TimerWheel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Holds the interactive sessions and decides when they go away:
+ * - a running session is killed once it has had no input, output or client access for
+ *   idle-timeout-ms; how long a busy program may run is left to the execution timeout,
+ * - a finished session is dropped completed-retention-ms after its program exited,
+ * - a client starting more than max-per-client sessions loses its least recently used one.
+ *   Finished sessions count towards this limit; running ones are capped earlier by the
+ *   scheduler's codepulz.admission.max-per-client,
+ * - beyond max-sessions, and while the heap or the host is short of memory, the least
+ *   recently used idle sessions are evicted.
+ *
+ * Deadlines live in a timer wheel advanced by one thread every tick-ms, instead of a
+ * scheduled task per session. Activity only updates timestamps; a deadline that turns
+ * out to have moved when its timer fires is scheduled again.
+ */
+@Slf4j
+@Component
+public class SessionManager {
+
+    private static final int WHEEL_SLOTS = 512;
+    private static final Path MEMINFO = Path.of("/proc/meminfo");
+
+    /**
+     * A registered session with what eviction needs to know about it.
+     */
+    private static final class Tracked {
+        final ExecutionSession session;
+        final String clientId;
+        // Last time a client fetched the session (status, input, WebSocket attach)
+        volatile long lastAccess;
+        // When the program exited, 0 while it runs
+        volatile long completedAt;
+
+        Tracked(ExecutionSession session, String clientId, long now) {
+            this.session = session;
+            this.clientId = clientId;
+            this.lastAccess = now;
+        }
+
+        long lastActivity() {
+            return Math.max(lastAccess, Math.max(session.getLastInputTime(), session.getLastOutputTime()));
+        }
+    }
+
+    private final SessionProperties properties;
+    private final MeterRegistry registry;
+    private final ConcurrentHashMap<String, Tracked> sessions = new ConcurrentHashMap<>();
+    // Guarded by itself
+    private final TimerWheel<Tracked> timers;
+    private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("session-evictor").daemon(true).factory());
+
+    // Stops the program and releases its sandbox; set by ExecutionService
+    private volatile Consumer<ExecutionSession> evictionHandler = ExecutionSession::close;
+    private BooleanSupplier memoryPressure = this::isUnderMemoryPressure;
+
+    @Autowired
+    public SessionManager(SessionProperties properties, MeterRegistry registry) {
+        this.properties = properties;
+        this.registry = registry;
+        this.timers = new TimerWheel<>(properties.getTickMs(), WHEEL_SLOTS, System.currentTimeMillis());
+    }
+
+    SessionManager(SessionProperties properties, MeterRegistry registry, BooleanSupplier memoryPressure) {
+        this(properties, registry);
+        this.memoryPressure = memoryPressure;
+    }
+
+    @PostConstruct
+    public void start() {
+        ticker.scheduleAtFixedRate(() -> {
+            try {
+                tick(System.currentTimeMillis());
+            } catch (RuntimeException e) {
+                log.warn("Session eviction failed", e);
+            }
+        }, properties.getTickMs(), properties.getTickMs(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ticker.shutdownNow();
+    }
+
+    public void setEvictionHandler(Consumer<ExecutionSession> evictionHandler) {
+        this.evictionHandler = evictionHandler;
+    }
+
+    /**
+     * Start tracking a new session. Makes room first: the client's least recently used
+     * session when it is at max-per-client, and idle sessions when max-sessions is reached.
+     * The new session is added even if nothing could be evicted.
+     */
+    public void register(ExecutionSession session, String clientId) {
+        long now = System.currentTimeMillis();
+        Tracked tracked = new Tracked(session, clientId, now);
+        List<Tracked> evicted = new ArrayList<>();
+        // Caps are checked and the session added as one step
+        synchronized (this) {
+            List<Tracked> own = new ArrayList<>();
+            for (Tracked other : sessions.values()) {
+                if (other.clientId.equals(clientId)) {
+                    own.add(other);
+                }
+            }
+            own.sort(Comparator.comparingLong(Tracked::lastActivity));
+            int ownExcess = Math.min(own.size() - properties.getMaxPerClient() + 1, own.size());
+            for (int i = 0; i < ownExcess; i++) {
+                remove(own.get(i), "client_limit", evicted);
+            }
+            int excess = sessions.size() - properties.getMaxSessions() + 1;
+            if (excess > 0) {
+                for (Tracked idle : idleSessions(now, excess)) {
+                    remove(idle, "capacity", evicted);
+                }
+            }
+            sessions.put(session.getSessionId(), tracked);
+        }
+        close(evicted);
+
+        schedule(tracked, deadline(tracked));
+        session.getExitFuture().whenComplete((code, error) -> {
+            tracked.completedAt = System.currentTimeMillis();
+            schedule(tracked, deadline(tracked));
+        });
+    }
+
+    /**
+     * The session, counting the lookup as client activity, or null if it is gone.
+     */
+    public ExecutionSession get(String sessionId) {
+        Tracked tracked = sessions.get(sessionId);
+        if (tracked == null) {
+            return null;
+        }
+        tracked.lastAccess = System.currentTimeMillis();
+        return tracked.session;
+    }
+
+    /**
+     * Stop tracking the session; the caller cleans it up. Null if it was already gone.
+     */
+    public ExecutionSession remove(String sessionId) {
+        Tracked tracked = sessions.remove(sessionId);
+        return tracked != null ? tracked.session : null;
+    }
+
+    public List<ExecutionSession> getSessions() {
+        List<ExecutionSession> list = new ArrayList<>(sessions.size());
+        for (Tracked tracked : sessions.values()) {
+            list.add(tracked.session);
+        }
+        return list;
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    /**
+     * Expire the sessions whose deadlines have passed, then relieve memory pressure.
+     * Runs on the ticker thread; package-private so tests can drive the clock.
+     */
+    void tick(long now) {
+        List<Tracked> due = new ArrayList<>();
+        synchronized (timers) {
+            timers.advance(now, due::add);
+        }
+        List<Tracked> evicted = new ArrayList<>();
+        for (Tracked tracked : due) {
+            if (sessions.get(tracked.session.getSessionId()) != tracked) {
+                continue;
+            }
+            long deadline = deadline(tracked);
+            if (deadline > now) {
+                schedule(tracked, deadline);
+            } else {
+                remove(tracked, tracked.completedAt > 0 ? "expired" : "idle", evicted);
+            }
+        }
+        if (memoryPressure.getAsBoolean()) {
+            synchronized (this) {
+                for (Tracked idle : idleSessions(now, properties.getPressureEvictBatch())) {
+                    remove(idle, "memory", evicted);
+                }
+            }
+        }
+        close(evicted);
+    }
+
+    private long deadline(Tracked tracked) {
+        if (tracked.completedAt > 0) {
+            return tracked.completedAt + properties.getCompletedRetentionMs();
+        }
+        return tracked.lastActivity() + properties.getIdleTimeoutMs();
+    }
+
+    private void schedule(Tracked tracked, long deadline) {
+        synchronized (timers) {
+            timers.schedule(tracked, deadline);
+        }
+    }
+
+    /**
+     * Up to limit finished or idle sessions, least recently used first.
+     */
+    private List<Tracked> idleSessions(long now, int limit) {
+        List<Tracked> idle = new ArrayList<>();
+        for (Tracked tracked : sessions.values()) {
+            if (tracked.completedAt > 0 || now - tracked.lastActivity() >= properties.getMinIdleMs()) {
+                idle.add(tracked);
+            }
+        }
+        idle.sort(Comparator.comparingLong(Tracked::lastActivity));
+        return idle.subList(0, Math.min(limit, idle.size()));
+    }
+
+    private void remove(Tracked tracked, String reason, List<Tracked> evicted) {
+        if (sessions.remove(tracked.session.getSessionId(), tracked)) {
+            evicted.add(tracked);
+            Counter.builder("codepulz.sessions.evicted")
+                    .description("Interactive sessions removed by the session manager")
+                    .tag("reason", reason)
+                    .register(registry)
+                    .increment();
+        }
+    }
+
+    /**
+     * Outside the lock: stopping a program and releasing its sandbox may take a while.
+     */
+    private void close(List<Tracked> evicted) {
+        for (Tracked tracked : evicted) {
+            try {
+                evictionHandler.accept(tracked.session);
+            } catch (RuntimeException e) {
+                log.warn("Failed to clean up evicted session {}", tracked.session.getSessionId(), e);
+            }
+        }
+    }
+
+    private boolean isUnderMemoryPressure() {
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        if (heap.getMax() > 0 && heap.getUsed() > heap.getMax() * properties.getMaxHeapUsage()) {
+            return true;
+        }
+        if (properties.getMinHostAvailable() <= 0 || !Files.isReadable(MEMINFO)) {
+            return false;
+        }
+        long total = -1;
+        long available = -1;
+        try {
+            for (String line : Files.readAllLines(MEMINFO)) {
+                if (line.startsWith("MemTotal:")) {
+                    total = kilobytes(line);
+                } else if (line.startsWith("MemAvailable:")) {
+                    available = kilobytes(line);
+                }
+            }
+        } catch (IOException e) {
+            return false;
+        }
+        return total > 0 && available >= 0 && available < total * properties.getMinHostAvailable();
+    }
+
+    private static long kilobytes(String meminfoLine) {
+        String[] fields = meminfoLine.substring(meminfoLine.indexOf(':') + 1).trim().split("\\s+");
+        try {
+            return Long.parseLong(fields[0]);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
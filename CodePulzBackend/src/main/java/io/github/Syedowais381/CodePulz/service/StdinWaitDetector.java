@@ -0,0 +1,207 @@
+package io.github.Syedowais381.CodePulz.service;
+
+import io.github.Syedowais381.CodePulz.config.ExecutionProperties;
+import io.github.Syedowais381.CodePulz.dto.ExecutionSession;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Tells when a program is blocked reading stdin by looking at its threads in /proc,
+ * instead of guessing from how long it has been silent.
+ *
+ * A program counts as waiting for input when one of its threads is asleep in a read
+ * of fd 0 (or in epoll_wait on an epoll set that contains fd 0, as event loops like
+ * Node's do) and none of its threads is runnable. A CPU-bound program that prints
+ * nothing is therefore never reported as waiting.
+ *
+ * Each attached session is sampled every stdinProbeIntervalMs. A blocked state must be
+ * seen on two consecutive samples before it is reported, which gives the session's
+ * reader threads time to pick up a prompt written just before the read.
+ */
+@Slf4j
+@Component
+public class StdinWaitDetector {
+
+    private static final Path PROC = Path.of("/proc");
+    private static final Pattern EPOLL_STDIN = Pattern.compile("(?m)^tfd:\\s+0\\s");
+
+    private final ExecutionProperties properties;
+    private final ScheduledExecutorService probes = Executors.newScheduledThreadPool(2,
+            Thread.ofPlatform().name("stdin-probe-", 0).daemon(true).factory());
+
+    // Syscall numbers of the running architecture; null where unsupported
+    private final Syscalls syscalls = Syscalls.forArch(System.getProperty("os.arch"));
+
+    /**
+     * Syscalls that read from a file descriptor given as their first argument, and
+     * those that wait on an epoll set given as their first argument.
+     */
+    record Syscalls(Set<Long> reads, Set<Long> epollWaits) {
+        static Syscalls forArch(String arch) {
+            return switch (arch) {
+                // read, pread64, readv, preadv, preadv2 / epoll_wait, epoll_pwait, epoll_pwait2
+                case "amd64", "x86_64" -> new Syscalls(Set.of(0L, 17L, 19L, 295L, 327L), Set.of(232L, 281L, 441L));
+                // read, readv, pread64, preadv, preadv2 / epoll_pwait, epoll_pwait2
+                case "aarch64", "arm64" -> new Syscalls(Set.of(63L, 65L, 67L, 69L, 286L), Set.of(22L, 441L));
+                default -> null;
+            };
+        }
+    }
+
+    @Autowired
+    public StdinWaitDetector(ExecutionProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * Start sampling the session's program until it exits. pids supplies the host PIDs
+     * the program currently runs as (see SandboxRunner.programPids). Returns false, and
+     * leaves the session on the silence heuristics, when detection is off or the
+     * processes cannot be inspected from here.
+     */
+    public boolean attach(ExecutionSession session, Supplier<List<Long>> pids) {
+        if (!properties.isStdinDetection() || syscalls == null || !Files.isDirectory(PROC) || pids.get() == null) {
+            return false;
+        }
+        session.enableInputDetection();
+        Probe probe = new Probe(session, pids);
+        long interval = properties.getStdinProbeIntervalMs();
+        probe.future = probes.scheduleWithFixedDelay(probe, interval, interval, TimeUnit.MILLISECONDS);
+        session.getExitFuture().whenComplete((code, error) -> probe.future.cancel(false));
+        return true;
+    }
+
+    private final class Probe implements Runnable {
+        private final ExecutionSession session;
+        private final Supplier<List<Long>> pids;
+        private volatile ScheduledFuture<?> future;
+        // Only touched by the probe task (runs are never concurrent with fixed delay)
+        private boolean blockedBefore;
+
+        private Probe(ExecutionSession session, Supplier<List<Long>> pids) {
+            this.session = session;
+            this.pids = pids;
+        }
+
+        @Override
+        public void run() {
+            long inputCount = session.getInputCount();
+            boolean blocked;
+            try {
+                List<Long> current = pids.get();
+                if (current == null) {
+                    throw new IOException("process list no longer available");
+                }
+                blocked = isBlockedOnStdin(current);
+            } catch (IOException | RuntimeException e) {
+                // e.g. /proc/<pid>/syscall needs ptrace access to the program's processes
+                log.debug("Stdin detection off for session {}: {}", session.getSessionId(), e.getMessage());
+                session.disableInputDetection();
+                if (future != null) {
+                    future.cancel(false);
+                }
+                return;
+            }
+            boolean confirmed = blocked && blockedBefore;
+            blockedBefore = blocked;
+            if (confirmed || !blocked) {
+                session.reportWaitingForInput(confirmed, inputCount);
+            }
+        }
+    }
+
+    /**
+     * True when a thread of the given processes sleeps reading stdin and none is runnable.
+     * Processes that exit while being inspected are skipped.
+     */
+    boolean isBlockedOnStdin(List<Long> pids) throws IOException {
+        boolean readingStdin = false;
+        for (long pid : pids) {
+            Path process = PROC.resolve(String.valueOf(pid));
+            List<Path> tasks;
+            try (Stream<Path> list = Files.list(process.resolve("task"))) {
+                tasks = list.toList();
+            } catch (NoSuchFileException e) {
+                continue;
+            }
+            for (Path task : tasks) {
+                String state;
+                String syscall;
+                try {
+                    state = taskState(Files.readString(task.resolve("stat")));
+                    syscall = Files.readString(task.resolve("syscall")).trim();
+                } catch (NoSuchFileException e) {
+                    continue; // thread or process just exited
+                }
+                if (state.equals("R")) {
+                    return false;
+                }
+                if (!readingStdin && state.equals("S")) {
+                    readingStdin = waitsOnStdin(process, syscall);
+                }
+            }
+        }
+        return readingStdin;
+    }
+
+    /**
+     * /proc/.../syscall is "nr arg0 arg1 ..." for a thread blocked in a syscall,
+     * "running" or "-1 sp pc" otherwise.
+     */
+    private boolean waitsOnStdin(Path process, String syscall) throws IOException {
+        String[] fields = syscall.split(" ");
+        if (fields.length < 2 || !fields[1].startsWith("0x")) {
+            return false;
+        }
+        long number;
+        long fd;
+        try {
+            number = Long.parseLong(fields[0]);
+            fd = Long.parseUnsignedLong(fields[1].substring(2), 16);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        if (syscalls.reads().contains(number)) {
+            return fd == 0;
+        }
+        if (syscalls.epollWaits().contains(number)) {
+            try {
+                return EPOLL_STDIN.matcher(Files.readString(process.resolve("fdinfo").resolve(String.valueOf(fd)))).find();
+            } catch (NoSuchFileException | AccessDeniedException e) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * State letter from /proc/.../stat; the command name before it may contain spaces
+     * and parentheses, so parse from the last ')'.
+     */
+    static String taskState(String stat) {
+        int end = stat.lastIndexOf(')');
+        return end >= 0 && end + 2 < stat.length() ? stat.substring(end + 2, end + 3) : "";
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        probes.shutdownNow();
+    }
+}
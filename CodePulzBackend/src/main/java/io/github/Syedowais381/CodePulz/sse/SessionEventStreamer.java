@@ -0,0 +1,185 @@
+package io.github.Syedowais381.CodePulz.sse;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.github.Syedowais381.CodePulz.buffer.OutputBuffer;
+import io.github.Syedowais381.CodePulz.dto.ExecutionSession;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pushes one execution session's output to one Server-Sent Events subscriber.
+ *
+ * As with the binary WebSocket protocol, output is not queued here: the session's reader
+ * threads only mark that something changed, and a send task on the shared executor reads
+ * what the subscriber has not seen yet straight from the session's output buffers. A
+ * subscriber that cannot keep up therefore costs no memory; it gets larger events, or a
+ * truncated one once the output it missed is no longer retained.
+ *
+ * Every event's id is the stdout and stderr offsets after it ("out:err"), so a client
+ * that reconnects with Last-Event-ID continues exactly where it stopped.
+ */
+class SessionEventStreamer implements ExecutionSession.OutputListener {
+
+    private final SseEmitter emitter;
+    private final ExecutionSession execSession;
+    private final ObjectMapper mapper;
+    private final Executor sender;
+    private final ScheduledExecutorService timer;
+    private final long quietMs;
+
+    private final AtomicBoolean sendPending = new AtomicBoolean();
+    private final AtomicBoolean quietCheckPending = new AtomicBoolean();
+    private final AtomicBoolean quietCheckDue = new AtomicBoolean();
+    private volatile boolean waitingForInput;
+    private volatile Integer exitCode;
+    private volatile boolean closed;
+
+    // Only touched by send(), which runs one at a time
+    private long stdoutSent;
+    private long stderrSent;
+    private boolean sawOutput;
+    private boolean lastWaitingForInput;
+
+    /**
+     * @param stdoutFrom stdout offset to start sending from (0 for everything retained)
+     * @param stderrFrom same for stderr
+     */
+    SessionEventStreamer(SseEmitter emitter, ExecutionSession execSession, ObjectMapper mapper, Executor sender,
+                         ScheduledExecutorService timer, long quietMs, long stdoutFrom, long stderrFrom) {
+        this.emitter = emitter;
+        this.execSession = execSession;
+        this.mapper = mapper;
+        this.sender = sender;
+        this.timer = timer;
+        this.quietMs = quietMs;
+        this.stdoutSent = stdoutFrom;
+        this.stderrSent = stderrFrom;
+        // A resumed client has seen output before
+        this.sawOutput = stdoutFrom > 0 || stderrFrom > 0;
+    }
+
+    @Override
+    public void onStdout(String data, long endOffset) {
+        onOutput();
+    }
+
+    @Override
+    public void onStderr(String data, long endOffset) {
+        onOutput();
+    }
+
+    private void onOutput() {
+        requestSend();
+        if (!execSession.hasInputDetection()) {
+            scheduleQuietCheck(quietMs);
+        }
+    }
+
+    @Override
+    public void onWaitingForInput(boolean waiting) {
+        waitingForInput = waiting;
+        requestSend();
+    }
+
+    @Override
+    public void onExit(int exitCode) {
+        this.exitCode = exitCode;
+        requestSend();
+    }
+
+    void stop() {
+        closed = true;
+        execSession.unsubscribe(this);
+    }
+
+    private void requestSend() {
+        if (!closed && sendPending.compareAndSet(false, true)) {
+            sender.execute(this::send);
+        }
+    }
+
+    /**
+     * Report "waiting for input" once the program has been quiet for the quiet window
+     * (sessions without input detection). At most one timer is pending.
+     */
+    private void scheduleQuietCheck(long delayMs) {
+        if (!closed && quietCheckPending.compareAndSet(false, true)) {
+            timer.schedule(() -> {
+                quietCheckPending.set(false);
+                long quietFor = System.currentTimeMillis() - execSession.getLastOutputTime();
+                if (quietFor < quietMs) {
+                    scheduleQuietCheck(quietMs - quietFor);
+                } else {
+                    quietCheckDue.set(true);
+                    requestSend();
+                }
+            }, delayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private synchronized void send() {
+        // Changes from here on need another send
+        sendPending.set(false);
+        if (closed) {
+            return;
+        }
+        // The exit is dispatched after all output was appended, so reading it first means
+        // the output read below is complete
+        Integer code = exitCode;
+        try {
+            boolean sentOutput = sendOutput(true) | sendOutput(false);
+
+            Boolean waiting = null;
+            if (execSession.hasInputDetection()) {
+                waiting = waitingForInput;
+            } else if (sentOutput) {
+                // Guessing from silence: new output means the program is not waiting
+                waiting = false;
+            } else if (quietCheckDue.getAndSet(false)) {
+                waiting = execSession.isAlive() && !execSession.isComplete() && sawOutput;
+            }
+            if (code == null && waiting != null && waiting != lastWaitingForInput) {
+                lastWaitingForInput = waiting;
+                send("status", mapper.createObjectNode().put("waitingForInput", waiting));
+            }
+
+            if (code != null) {
+                send("exit", mapper.createObjectNode().put("code", code));
+                stop();
+                emitter.complete();
+            }
+        } catch (IOException | IllegalStateException e) {
+            // Client went away or the stream timed out; the container ends the response
+            stop();
+        }
+    }
+
+    private boolean sendOutput(boolean stdout) throws IOException {
+        OutputBuffer.Read read = stdout ? execSession.readOutput(stdoutSent) : execSession.readError(stderrSent);
+        if (read.nextOffset() == (stdout ? stdoutSent : stderrSent)) {
+            return false;
+        }
+        if (stdout) {
+            stdoutSent = read.nextOffset();
+        } else {
+            stderrSent = read.nextOffset();
+        }
+        ObjectNode data = mapper.createObjectNode().put("data", read.text());
+        if (read.truncated()) {
+            data.put("truncated", true);
+        }
+        send(stdout ? "stdout" : "stderr", data);
+        sawOutput = true;
+        return true;
+    }
+
+    private void send(String name, ObjectNode data) throws IOException {
+        emitter.send(SseEmitter.event().id(stdoutSent + ":" + stderrSent).name(name).data(data.toString()));
+    }
+}
@@ -0,0 +1,107 @@
+package io.github.Syedowais381.CodePulz.sse;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.Syedowais381.CodePulz.config.ExecutionProperties;
+import io.github.Syedowais381.CodePulz.dto.ExecutionResponse;
+import io.github.Syedowais381.CodePulz.dto.ExecutionSession;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Streams execution sessions as Server-Sent Events, for clients that cannot use the
+ * WebSocket endpoint. The emitter is an async response, so no request thread is held
+ * while a subscriber waits; output is pushed by the session's reader threads as it is
+ * produced (see SessionEventStreamer).
+ *
+ * Events (data is JSON, as in the WebSocket text protocol):
+ * - stdout / stderr: { "data": "...", "truncated": true } (truncated only when output was lost)
+ * - status: { "waitingForInput": true }
+ * - exit: { "code": 0 }, after which the stream ends
+ * - failed: the ExecutionResponse of a run that could not be started
+ */
+@Component
+public class SessionEventStreams {
+
+    private final ExecutionProperties properties;
+    private final ObjectMapper mapper = new ObjectMapper();
+    // Sends events (may block on slow clients)
+    private final ExecutorService sender;
+    // Runs the "waiting for input" timers
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1,
+            Thread.ofPlatform().name("sse-timer").daemon(true).factory());
+
+    @Autowired
+    public SessionEventStreams(ExecutionProperties properties, @Qualifier("sessionIoExecutor") ExecutorService sender) {
+        this.properties = properties;
+        this.sender = sender;
+    }
+
+    public SseEmitter newEmitter() {
+        return new SseEmitter(properties.getEventStreamTimeoutMs());
+    }
+
+    /**
+     * Send the session's events to the emitter until the program exits, starting after
+     * the event whose id the client last saw (null or unparseable: from the start).
+     */
+    public void stream(SseEmitter emitter, ExecutionSession session, String lastEventId) {
+        long[] from = resumeOffsets(lastEventId);
+        SessionEventStreamer streamer = new SessionEventStreamer(emitter, session, mapper, sender, scheduler,
+                properties.getQuiescenceMs(), from[0], from[1]);
+        emitter.onCompletion(streamer::stop);
+        emitter.onError(error -> streamer.stop());
+        // End the response normally; EventSource reconnects with the last id
+        emitter.onTimeout(() -> {
+            streamer.stop();
+            emitter.complete();
+        });
+        session.subscribe(streamer);
+    }
+
+    /**
+     * End the stream with a "failed" event carrying the response of a run that did not start.
+     */
+    public void fail(SseEmitter emitter, ExecutionResponse response) {
+        try {
+            emitter.send(SseEmitter.event().name("failed").data(response, MediaType.APPLICATION_JSON));
+            emitter.complete();
+        } catch (IOException | IllegalStateException e) {
+            emitter.completeWithError(e);
+        }
+    }
+
+    /**
+     * The stdout and stderr offsets in an event id ("out:err"), or 0 and 0.
+     */
+    static long[] resumeOffsets(String lastEventId) {
+        if (lastEventId != null) {
+            int colon = lastEventId.indexOf(':');
+            try {
+                if (colon > 0) {
+                    long out = Long.parseLong(lastEventId.substring(0, colon).trim());
+                    long err = Long.parseLong(lastEventId.substring(colon + 1).trim());
+                    if (out >= 0 && err >= 0) {
+                        return new long[]{out, err};
+                    }
+                }
+            } catch (NumberFormatException e) {
+                // Not one of ours; start over
+            }
+        }
+        return new long[]{0, 0};
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,55 @@
+package io.github.Syedowais381.CodePulz.websocket;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Server-to-client frames of the binary protocol (subprotocol codepulz.binary.v1).
+ * All integers are big-endian.
+ *
+ * - stdout / stderr: type (1 byte), flags (1 byte), stream offset of the first payload
+ *   byte (8 bytes), then the raw output bytes. Offsets count every byte the program
+ *   wrote to that stream; a gap to the previous frame means output was dropped from
+ *   the session's retention buffer, and FLAG_TRUNCATED is set. Payloads are not cut
+ *   on character boundaries, so clients decode UTF-8 in streaming mode.
+ * - status: type, waiting for input (1 byte, 0 or 1)
+ * - exit: type, exit code (4 bytes)
+ *
+ * Client frames stay JSON text: stdin and close as in the JSON protocol, plus
+ * { "type": "ack", "bytes": n } with the total output payload bytes received, which
+ * opens the flow-control window again.
+ */
+final class BinaryFrames {
+
+    static final String PROTOCOL = "codepulz.binary.v1";
+
+    static final byte STDOUT = 1;
+    static final byte STDERR = 2;
+    static final byte STATUS = 3;
+    static final byte EXIT = 4;
+
+    static final byte FLAG_TRUNCATED = 1;
+
+    // Room to leave in front of output bytes for their header
+    static final int OUTPUT_HEADER_BYTES = 10;
+
+    private BinaryFrames() {
+    }
+
+    /**
+     * Fill in the header of an output frame whose payload already follows
+     * OUTPUT_HEADER_BYTES reserved bytes in frame.
+     */
+    static ByteBuffer output(byte stream, byte[] frame, long offset, boolean truncated) {
+        ByteBuffer buffer = ByteBuffer.wrap(frame);
+        buffer.put(stream).put(truncated ? FLAG_TRUNCATED : 0).putLong(offset);
+        return buffer.rewind();
+    }
+
+    static ByteBuffer status(boolean waitingForInput) {
+        return ByteBuffer.wrap(new byte[] {STATUS, (byte) (waitingForInput ? 1 : 0)});
+    }
+
+    static ByteBuffer exit(int code) {
+        return ByteBuffer.allocate(5).put(EXIT).putInt(code).flip();
+    }
+}
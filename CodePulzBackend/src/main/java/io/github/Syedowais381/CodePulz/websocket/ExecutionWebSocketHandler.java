@@ -2,53 +2,95 @@ package io.github.Syedowais381.CodePulz.websocket;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.Syedowais381.CodePulz.config.ExecutionProperties;
+import io.github.Syedowais381.CodePulz.config.WebSocketProperties;
 import io.github.Syedowais381.CodePulz.dto.ExecutionSession;
+import io.github.Syedowais381.CodePulz.sandbox.Language;
 import io.github.Syedowais381.CodePulz.service.ExecutionService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.SubProtocolCapable;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.util.UriComponentsBuilder;
 
-import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
 
 /**
  * WebSocket handler that attaches to an existing ExecutionSession (created via HTTP /execute)
  * and streams stdout/stderr to the client, while accepting stdin frames from the client.
  *
+ * Any number of sockets may attach to one session. Output is pushed by the session's
+ * reader threads as it is produced, encoded once per session and the same frames sent to
+ * every socket (see SessionBroadcaster); there is no per-socket polling or queueing.
+ * The first socket to attach owns the session's input; later ones, and any that connect
+ * with ?role=viewer, are read-only viewers whose stdin and close frames are refused. When
+ * the owner leaves, input passes to the longest attached socket that did not connect as a
+ * viewer. While a socket owns the input, POST /execute/{sessionId}/input is refused too.
+ *
  * Protocol (JSON text frames):
  * - Client -> Server: { "type": "stdin", "data": "...", "raw": false }
  * - Server -> Client: { "type": "stdout", "data": "..." }
  * - Server -> Client: { "type": "stderr", "data": "..." }
+ * - Server -> Client: { "type": "status", "waitingForInput": true }
  * - Server -> Client: { "type": "exit", "code": 0 }
+ * - Server -> Client: { "type": "error", "message": "..." }
+ *
+ * Clients that request the subprotocol codepulz.binary.v1 get output, status and exit
+ * as compact binary frames instead (see BinaryFrames) and acknowledge what they received
+ * with { "type": "ack", "bytes": n }. Without a subprotocol, or with codepulz.json.v1,
+ * the JSON frames above are used.
  */
 @Component
-public class ExecutionWebSocketHandler extends TextWebSocketHandler {
+public class ExecutionWebSocketHandler extends TextWebSocketHandler implements SubProtocolCapable {
+
+    public static final String JSON_PROTOCOL = "codepulz.json.v1";
 
     private final ExecutionService executionService;
     private final ObjectMapper mapper = new ObjectMapper();
 
-    // track pollers per websocket session
-    private final Map<String, ScheduledFuture<?>> pollers = new ConcurrentHashMap<>();
-    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(4);
+    private final ExecutionProperties properties;
+    private final WebSocketProperties webSocketProperties;
+
+    // One broadcaster per execution session with sockets attached
+    private final Map<String, SessionBroadcaster> broadcasters = new ConcurrentHashMap<>();
+    // The subscription of each websocket session
+    private final Map<String, SessionBroadcaster.Subscriber> subscribers = new ConcurrentHashMap<>();
+    // Encodes frames and sends them (may block on slow sockets)
+    private final ExecutorService sender;
+    // Runs the "waiting for input" timers
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
 
     @Autowired
-    public ExecutionWebSocketHandler(ExecutionService executionService) {
+    public ExecutionWebSocketHandler(ExecutionService executionService, ExecutionProperties properties,
+                                     WebSocketProperties webSocketProperties,
+                                     @Qualifier("sessionIoExecutor") ExecutorService sender) {
         this.executionService = executionService;
+        this.properties = properties;
+        this.webSocketProperties = webSocketProperties;
+        this.sender = sender;
+    }
+
+    /**
+     * Offered in the handshake; the first one the client also lists is selected.
+     */
+    @Override
+    public List<String> getSubProtocols() {
+        return List.of(BinaryFrames.PROTOCOL, JSON_PROTOCOL);
     }
 
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
         // Extract sessionId from the URI: /ws/execute/{sessionId}
-        String path = session.getUri().getPath();
-        String[] parts = path.split("/");
-        String execSessionId = parts[parts.length - 1];
+        String execSessionId = executionSessionId(session);
 
         ExecutionSession execSession = executionService.getSessionById(execSessionId);
         if (execSession == null) {
@@ -60,86 +102,19 @@ public class ExecutionWebSocketHandler extends TextWebSocketHandler {
             return;
         }
 
-        // Start a poller that checks for new output every 100ms and sends deltas
-        final String wsId = session.getId();
-        final Runnable poller = new Runnable() {
-            private String lastOut = "";
-            private String lastErr = "";
-
-            private boolean lastWaitingForInput = false;
-            
-            @Override
-            public void run() {
-                try {
-                    String out = execSession.getCurrentOutput();
-                    String err = execSession.getCurrentError();
-
-                    if (!out.equals(lastOut)) {
-                        String delta = out.substring(lastOut.length());
-                        lastOut = out;
-                        session.sendMessage(new TextMessage(mapper.createObjectNode()
-                                .put("type", "stdout")
-                                .put("data", delta)
-                                .toString()));
-                    }
-                    if (!err.equals(lastErr)) {
-                        String delta = err.substring(lastErr.length());
-                        lastErr = err;
-                        session.sendMessage(new TextMessage(mapper.createObjectNode()
-                                .put("type", "stderr")
-                                .put("data", delta)
-                                .toString()));
-                    }
-
-                    // Only send exit and close when process has truly finished
-                    if (execSession.isComplete() && !execSession.isAlive()) {
-                        session.sendMessage(new TextMessage(mapper.createObjectNode()
-                                .put("type", "exit")
-                                .put("code", 0)
-                                .toString()));
-                        session.close();
-                    } else {
-                        // Track the waiting state
-                        long timeSinceLastOutput = System.currentTimeMillis() - execSession.getLastOutputTime();
-
-                        // A program is considered waiting for input if:
-                        // 1. It's alive and not complete
-                        // 2. There has been no new output for a short time (give programs time to print prompts)
-                        // 3. We've received some initial output
-                        // Increase quiet period to avoid noisy false positives on some hosts/containers.
-                        boolean waitingForInput = execSession.isAlive() &&
-                                               !execSession.isComplete() &&
-                                               timeSinceLastOutput > 300 && // 300ms quiet period
-                                               !lastOut.isEmpty();
-
-                        // Always send waiting status after input is processed
-                        if (waitingForInput != lastWaitingForInput) {
-                            session.sendMessage(new TextMessage(mapper.createObjectNode()
-                                    .put("type", "status")
-                                    .put("waitingForInput", waitingForInput)
-                                    .toString()));
-                            lastWaitingForInput = waitingForInput;
-                            
-                            // Reset the input state after sending input
-                            if (!waitingForInput) {
-                                lastOut = execSession.getCurrentOutput();
-                                lastErr = execSession.getCurrentError();
-                            }
-                        }
-                    }
-                } catch (IOException e) {
-                    // Ignore send errors; close will cleanup
-                    try {
-                        session.close();
-                    } catch (IOException ex) {
-                        // ignore
-                    }
-                }
+        // Join the session's broadcaster, subscribing it to the session if this is the
+        // first socket; the socket is sent everything printed before it connected first
+        boolean binary = BinaryFrames.PROTOCOL.equals(session.getAcceptedProtocol());
+        boolean wantsInput = !"viewer".equals(queryParam(session, "role"));
+        broadcasters.compute(execSessionId, (id, broadcaster) -> {
+            if (broadcaster == null) {
+                broadcaster = new SessionBroadcaster(execSession, mapper, sender, scheduler,
+                        properties.getQuiescenceMs(), webSocketProperties);
+                execSession.subscribe(broadcaster);
             }
-        };
-
-        ScheduledFuture<?> future = scheduler.scheduleAtFixedRate(poller, 0, 100, TimeUnit.MILLISECONDS);
-        pollers.put(wsId, future);
+            subscribers.put(session.getId(), broadcaster.join(session, binary, wantsInput));
+            return broadcaster;
+        });
     }
 
     @Override
@@ -148,9 +123,7 @@ public class ExecutionWebSocketHandler extends TextWebSocketHandler {
         String type = node.has("type") ? node.get("type").asText() : "stdin";
 
         // Extract execution session id from URI
-        String path = session.getUri().getPath();
-        String[] parts = path.split("/");
-        String execSessionId = parts[parts.length - 1];
+        String execSessionId = executionSessionId(session);
         ExecutionSession execSession = executionService.getSessionById(execSessionId);
         if (execSession == null) {
             session.sendMessage(new TextMessage(mapper.createObjectNode()
@@ -161,18 +134,78 @@ public class ExecutionWebSocketHandler extends TextWebSocketHandler {
             return;
         }
 
-        if ("stdin".equals(type)) {
-            String data = node.has("data") ? node.get("data").asText() : "";
-            boolean raw = node.has("raw") && node.get("raw").asBoolean(false);
-            execSession.sendInput(data, raw);
-        } else if ("close".equals(type)) {
-            execSession.close();
+        SessionBroadcaster.Subscriber subscriber = subscribers.get(session.getId());
+        if (subscriber == null) {
+            return;
+        }
+        if ("stdin".equals(type) || "close".equals(type)) {
+            if (!subscriber.isOwner()) {
+                // Sent through the subscriber so it stays ordered with its output frames
+                subscriber.notice(new TextMessage(mapper.createObjectNode()
+                        .put("type", "error")
+                        .put("message", "Read-only viewer: input belongs to another connection")
+                        .toString()));
+            } else if ("stdin".equals(type)) {
+                String data = node.has("data") ? node.get("data").asText() : "";
+                boolean raw = node.has("raw") && node.get("raw").asBoolean(false);
+                execSession.sendInput(data, raw);
+            } else {
+                execSession.close();
+            }
+        } else if ("ack".equals(type)) {
+            subscriber.acknowledge(node.path("bytes").asLong(0));
         }
     }
 
     @Override
-    public void afterConnectionClosed(WebSocketSession session, org.springframework.web.socket.CloseStatus status) throws Exception {
-        ScheduledFuture<?> future = pollers.remove(session.getId());
-        if (future != null) future.cancel(true);
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
+        SessionBroadcaster.Subscriber subscriber = subscribers.remove(session.getId());
+        if (subscriber != null) {
+            // The last socket to leave takes the broadcaster off the session
+            broadcasters.computeIfPresent(executionSessionId(session), (id, broadcaster) -> {
+                if (broadcaster != subscriber.getBroadcaster() || !broadcaster.leave(subscriber)) {
+                    return broadcaster;
+                }
+                broadcaster.stop();
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Open sockets streaming a session of the language.
+     */
+    public int countSubscribers(Language language) {
+        int count = 0;
+        for (SessionBroadcaster broadcaster : broadcasters.values()) {
+            if (broadcaster.getExecSession().getLanguage() == language) {
+                count += broadcaster.countSubscribers();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Output bytes encoded for the language's sockets but not sent to them yet, summed
+     * over every socket.
+     */
+    public long getQueuedBytes(Language language) {
+        long bytes = 0;
+        for (SessionBroadcaster broadcaster : broadcasters.values()) {
+            if (broadcaster.getExecSession().getLanguage() == language) {
+                bytes += broadcaster.getLagBytes();
+            }
+        }
+        return bytes;
+    }
+
+    private static String executionSessionId(WebSocketSession session) {
+        String path = session.getUri().getPath();
+        String[] parts = path.split("/");
+        return parts[parts.length - 1];
+    }
+
+    private static String queryParam(WebSocketSession session, String name) {
+        return UriComponentsBuilder.fromUri(session.getUri()).build().getQueryParams().getFirst(name);
     }
 }
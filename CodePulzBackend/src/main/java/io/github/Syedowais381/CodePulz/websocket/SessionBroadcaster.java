@@ -0,0 +1,614 @@
+package io.github.Syedowais381.CodePulz.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.Syedowais381.CodePulz.buffer.OutputBuffer;
+import io.github.Syedowais381.CodePulz.config.WebSocketProperties;
+import io.github.Syedowais381.CodePulz.dto.ExecutionSession;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pushes one execution session's output to every WebSocket client attached to it.
+ *
+ * The session's reader threads only mark that there is new output. An encoder task on
+ * the shared executor then reads it from the session's output buffers, after a short
+ * flush window so bursts go out as one frame, and appends it to a shared list of frames,
+ * encoded once for each protocol in use: a JSON text message and/or binary messages (see
+ * BinaryFrames). Status and exit frames are appended the same way. Each subscriber has a
+ * cursor into the list and its own send task, so all subscribers are sent the same
+ * message objects and a slow socket only holds up itself. Frames every subscriber has
+ * sent are unreferenced and collected.
+ *
+ * Nothing is buffered for a subscriber beyond subscriber-max-lag-bytes of output: a
+ * subscriber that falls further behind (a slow socket, or a binary client that stopped
+ * acknowledging) is skipped to the newest output or disconnected, per slow-subscriber.
+ * A JSON client sees a marker in place of the skipped output, a binary one a gap in
+ * the stream offsets.
+ *
+ * A subscriber that joins late is first sent the output the session still retains, read
+ * from its buffers, up to where the shared frames it will receive begin. At most one
+ * subscriber owns the session's input; the others are read-only viewers. When the owner
+ * leaves, input passes to the longest attached subscriber that asked for it. While a
+ * subscriber owns the input the session is marked so, and input over REST is refused.
+ */
+class SessionBroadcaster implements ExecutionSession.OutputListener {
+
+    private final ExecutionSession execSession;
+    private final ObjectMapper mapper;
+    private final Executor sender;
+    private final ScheduledExecutorService timer;
+    private final long quietMs;
+    private final WebSocketProperties properties;
+
+    // Guards the frame list, the subscribers and what has been encoded
+    private final Object lock = new Object();
+    private final List<Subscriber> subscribers = new ArrayList<>();
+    private Subscriber owner;
+    private int jsonSubscribers;
+    private int binarySubscribers;
+    // Newest frame; older ones are only reachable from subscriber cursors
+    private Frame tail = new Frame(0, false, null, null);
+    private Frame exitFrame;
+    // Stream offsets up to which output has been turned into frames
+    private long stdoutEncoded;
+    private long stderrEncoded;
+    private boolean sawOutput;
+    private boolean lastWaitingForInput;
+    private volatile boolean stopped;
+
+    private final AtomicBoolean encodePending = new AtomicBoolean();
+    private final AtomicBoolean quietCheckPending = new AtomicBoolean();
+    private final AtomicBoolean quietCheckDue = new AtomicBoolean();
+    private volatile boolean waitingForInput;
+    private volatile Integer exitCode;
+
+    /**
+     * One output chunk, status change or exit, as sent to every subscriber.
+     */
+    static final class Frame {
+        // Output payload bytes of this frame, and of all frames up to and including it
+        final long bytes;
+        long total;
+        final boolean exit;
+        // Null when no subscriber of that protocol was attached. Binary payloads are sent
+        // as duplicates, since sending a buffer consumes it
+        final TextMessage text;
+        final List<ByteBuffer> binary;
+        volatile Frame next;
+
+        Frame(long bytes, boolean exit, TextMessage text, List<ByteBuffer> binary) {
+            this.bytes = bytes;
+            this.exit = exit;
+            this.text = text;
+            this.binary = binary;
+        }
+    }
+
+    SessionBroadcaster(ExecutionSession execSession, ObjectMapper mapper, Executor sender,
+                       ScheduledExecutorService timer, long quietMs, WebSocketProperties properties) {
+        this.execSession = execSession;
+        this.mapper = mapper;
+        this.sender = sender;
+        this.timer = timer;
+        this.quietMs = quietMs;
+        this.properties = properties;
+    }
+
+    ExecutionSession getExecSession() {
+        return execSession;
+    }
+
+    /**
+     * Attach a socket. It owns the session's input if it asks to and nobody else does.
+     */
+    Subscriber join(WebSocketSession socket, boolean binary, boolean wantsInput) {
+        synchronized (lock) {
+            Subscriber subscriber = new Subscriber(socket, binary, wantsInput, tail, stdoutEncoded, stderrEncoded,
+                    exitFrame, exitFrame == null && lastWaitingForInput);
+            subscribers.add(subscriber);
+            if (wantsInput && owner == null) {
+                setOwner(subscriber);
+            }
+            if (binary) {
+                binarySubscribers++;
+            } else {
+                jsonSubscribers++;
+            }
+            subscriber.requestSend();
+            return subscriber;
+        }
+    }
+
+    /**
+     * Detach a subscriber. True if it was the last one.
+     */
+    boolean leave(Subscriber subscriber) {
+        synchronized (lock) {
+            remove(subscriber);
+            return subscribers.isEmpty();
+        }
+    }
+
+    private void remove(Subscriber subscriber) {
+        subscriber.closed = true;
+        if (!subscribers.remove(subscriber)) {
+            return;
+        }
+        if (subscriber.binary) {
+            binarySubscribers--;
+        } else {
+            jsonSubscribers--;
+        }
+        if (owner == subscriber) {
+            // Hand over to the subscriber that has been waiting for input longest
+            setOwner(subscribers.stream().filter(next -> next.wantsInput).findFirst().orElse(null));
+        }
+    }
+
+    /**
+     * Called holding lock.
+     */
+    private void setOwner(Subscriber subscriber) {
+        owner = subscriber;
+        execSession.setInputOwnedBySocket(subscriber != null);
+    }
+
+    void stop() {
+        synchronized (lock) {
+            stopped = true;
+            for (Subscriber subscriber : new ArrayList<>(subscribers)) {
+                remove(subscriber);
+            }
+        }
+        execSession.unsubscribe(this);
+    }
+
+    int countSubscribers() {
+        synchronized (lock) {
+            return subscribers.size();
+        }
+    }
+
+    /**
+     * Output bytes the subscribers have yet to be sent, summed over all of them.
+     */
+    long getLagBytes() {
+        synchronized (lock) {
+            long lag = 0;
+            for (Subscriber subscriber : subscribers) {
+                lag += tail.total - subscriber.last.total;
+            }
+            return lag;
+        }
+    }
+
+    @Override
+    public void onStdout(String data, long endOffset) {
+        onOutput();
+    }
+
+    @Override
+    public void onStderr(String data, long endOffset) {
+        onOutput();
+    }
+
+    private void onOutput() {
+        requestEncode(properties.getFlushWindowMs());
+        if (!execSession.hasInputDetection()) {
+            scheduleQuietCheck(quietMs);
+        }
+    }
+
+    @Override
+    public void onWaitingForInput(boolean waiting) {
+        waitingForInput = waiting;
+        requestEncode(0);
+    }
+
+    @Override
+    public void onExit(int exitCode) {
+        this.exitCode = exitCode;
+        requestEncode(0);
+    }
+
+    private void requestEncode(long delayMs) {
+        if (!stopped && encodePending.compareAndSet(false, true)) {
+            if (delayMs > 0) {
+                // Let the rest of a burst arrive so it goes out in one frame
+                timer.schedule(() -> sender.execute(this::encode), delayMs, TimeUnit.MILLISECONDS);
+            } else {
+                sender.execute(this::encode);
+            }
+        }
+    }
+
+    /**
+     * Report "waiting for input" once the program has been quiet for the quiet window
+     * (sessions without input detection). At most one timer is pending; when it fires
+     * early (output kept coming) it re-arms for the rest of the window.
+     */
+    private void scheduleQuietCheck(long delayMs) {
+        if (!stopped && quietCheckPending.compareAndSet(false, true)) {
+            timer.schedule(() -> {
+                quietCheckPending.set(false);
+                long quietFor = System.currentTimeMillis() - execSession.getLastOutputTime();
+                if (quietFor < quietMs) {
+                    scheduleQuietCheck(quietMs - quietFor);
+                } else {
+                    quietCheckDue.set(true);
+                    requestEncode(0);
+                }
+            }, delayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void encode() {
+        // Changes from here on need another pass
+        encodePending.set(false);
+        // The exit is dispatched after all output was appended, so reading it first means
+        // the output encoded below is complete
+        Integer code = exitCode;
+        List<Subscriber> wake;
+        synchronized (lock) {
+            if (stopped || exitFrame != null) {
+                return;
+            }
+            boolean output = encodeOutput(true) | encodeOutput(false);
+
+            Boolean waiting = null;
+            if (execSession.hasInputDetection()) {
+                waiting = waitingForInput;
+            } else if (output) {
+                // Guessing from silence: new output means the program is not waiting
+                waiting = false;
+            } else if (quietCheckDue.getAndSet(false)) {
+                waiting = execSession.isAlive() && !execSession.isComplete() && sawOutput;
+            }
+            if (code == null && waiting != null && waiting != lastWaitingForInput) {
+                lastWaitingForInput = waiting;
+                append(new Frame(0, false,
+                        jsonSubscribers > 0 ? statusText(waiting) : null,
+                        binarySubscribers > 0 ? List.of(BinaryFrames.status(waiting)) : null));
+            }
+
+            if (code != null) {
+                // Always encoded in both forms: late subscribers are sent it too
+                exitFrame = new Frame(0, true, exitText(code), List.of(BinaryFrames.exit(code)));
+                append(exitFrame);
+            }
+            wake = new ArrayList<>(subscribers);
+        }
+        for (Subscriber subscriber : wake) {
+            subscriber.requestSend();
+        }
+    }
+
+    /**
+     * Turn the stream's output since the last frame into one frame. Called holding lock.
+     */
+    private boolean encodeOutput(boolean stdout) {
+        long from = stdout ? stdoutEncoded : stderrEncoded;
+        OutputBuffer.Read read = stdout ? execSession.readOutput(from) : execSession.readError(from);
+        long to = read.nextOffset();
+        if (to == from) {
+            return false;
+        }
+        if (stdout) {
+            stdoutEncoded = to;
+        } else {
+            stderrEncoded = to;
+        }
+        sawOutput = true;
+        append(new Frame(to - from, false,
+                jsonSubscribers > 0 ? outputText(stdout, read.text()) : null,
+                binarySubscribers > 0 ? binaryOutput(stdout, from, to) : null));
+        return true;
+    }
+
+    /**
+     * Add a frame and deal with subscribers it puts too far behind. Called holding lock.
+     */
+    private void append(Frame frame) {
+        Frame previous = tail;
+        frame.total = previous.total + frame.bytes;
+        previous.next = frame;
+        tail = frame;
+        if (frame.bytes == 0) {
+            return;
+        }
+        for (Subscriber subscriber : new ArrayList<>(subscribers)) {
+            // Slow if it had more than the cap pending before this frame, so one large
+            // frame alone does not count against anybody
+            if (previous.total - subscriber.last.total <= properties.getSubscriberMaxLagBytes()) {
+                continue;
+            }
+            if (properties.getSlowSubscriber() == WebSocketProperties.SlowSubscriberPolicy.DISCONNECT) {
+                remove(subscriber);
+                sender.execute(() -> subscriber.closeQuietly(CloseStatus.SESSION_NOT_RELIABLE));
+            } else {
+                // Skip everything it has not been sent except this newest frame
+                subscriber.skippedBytes += previous.total - subscriber.last.total;
+                subscriber.last = previous;
+                subscriber.piece = 0;
+            }
+        }
+    }
+
+    private TextMessage outputText(boolean stdout, String data) {
+        return new TextMessage(mapper.createObjectNode().put("type", stdout ? "stdout" : "stderr")
+                .put("data", data).toString());
+    }
+
+    private TextMessage statusText(boolean waitingForInput) {
+        return new TextMessage(mapper.createObjectNode().put("type", "status")
+                .put("waitingForInput", waitingForInput).toString());
+    }
+
+    private TextMessage exitText(int code) {
+        return new TextMessage(mapper.createObjectNode().put("type", "exit").put("code", code).toString());
+    }
+
+    /**
+     * The stream's bytes in [from, to) as binary output frames of at most max-frame-bytes.
+     */
+    private List<ByteBuffer> binaryOutput(boolean stdout, long from, long to) {
+        byte stream = stdout ? BinaryFrames.STDOUT : BinaryFrames.STDERR;
+        List<ByteBuffer> frames = new ArrayList<>();
+        while (from < to) {
+            int max = (int) Math.min(properties.getMaxFrameBytes(), to - from);
+            OutputBuffer.Slice slice = stdout
+                    ? execSession.readOutputBytes(from, max, BinaryFrames.OUTPUT_HEADER_BYTES)
+                    : execSession.readErrorBytes(from, max, BinaryFrames.OUTPUT_HEADER_BYTES);
+            if (slice.length() == 0 || slice.offset() >= to) {
+                break;
+            }
+            byte[] data = slice.data();
+            int length = slice.length();
+            if (slice.nextOffset() > to) {
+                // Output before from was dropped meanwhile and the slice moved past the range
+                length = (int) (to - slice.offset());
+                data = Arrays.copyOf(data, BinaryFrames.OUTPUT_HEADER_BYTES + length);
+            }
+            frames.add(BinaryFrames.output(stream, data, slice.offset(), slice.truncated()));
+            from = slice.offset() + length;
+        }
+        return frames;
+    }
+
+    /**
+     * One WebSocket client of the session.
+     */
+    final class Subscriber {
+
+        private final WebSocketSession socket;
+        private final boolean binary;
+        // Asked to own the input; takes it over when the owner leaves
+        private final boolean wantsInput;
+        // Last frame sent (or skipped), and binary messages of the next one already sent;
+        // guarded by lock
+        private Frame last;
+        private int piece;
+        private long skippedBytes;
+        private volatile boolean closed;
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final Queue<TextMessage> notices = new ConcurrentLinkedQueue<>();
+
+        // Sent before the first frame: retained output up to these offsets, then the exit
+        // or the current status. Only touched by the drain task
+        private boolean backlogPending = true;
+        private final long backlogStdout;
+        private final long backlogStderr;
+        private final Frame backlogExit;
+        private final boolean backlogWaiting;
+
+        // Binary protocol: output payload bytes sent and acknowledged
+        private volatile long sentBytes;
+        private volatile long ackedBytes;
+        private volatile boolean awaitingAck;
+
+        private Subscriber(WebSocketSession socket, boolean binary, boolean wantsInput, Frame last,
+                           long backlogStdout, long backlogStderr, Frame backlogExit, boolean backlogWaiting) {
+            this.socket = socket;
+            this.binary = binary;
+            this.wantsInput = wantsInput;
+            this.last = last;
+            this.backlogStdout = backlogStdout;
+            this.backlogStderr = backlogStderr;
+            this.backlogExit = backlogExit;
+            this.backlogWaiting = backlogWaiting;
+        }
+
+        boolean isOwner() {
+            synchronized (lock) {
+                return owner == this;
+            }
+        }
+
+        SessionBroadcaster getBroadcaster() {
+            return SessionBroadcaster.this;
+        }
+
+        /**
+         * Send a message to this subscriber only, in order with its frames.
+         */
+        void notice(TextMessage message) {
+            notices.add(message);
+            requestSend();
+        }
+
+        /**
+         * The client has received this many output payload bytes in total (binary protocol).
+         * Resumes sending if it was waiting for room in the flow window.
+         */
+        void acknowledge(long bytes) {
+            if (bytes <= ackedBytes) {
+                return;
+            }
+            ackedBytes = Math.min(bytes, sentBytes);
+            if (awaitingAck) {
+                awaitingAck = false;
+                requestSend();
+            }
+        }
+
+        private void requestSend() {
+            if (!closed && draining.compareAndSet(false, true)) {
+                sender.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                if (backlogPending) {
+                    backlogPending = false;
+                    sendBacklog();
+                }
+                while (!closed) {
+                    TextMessage notice;
+                    while ((notice = notices.poll()) != null) {
+                        send(notice);
+                    }
+                    WebSocketMessage<?> message;
+                    long skipped;
+                    boolean exit;
+                    synchronized (lock) {
+                        Frame frame = last.next;
+                        if (frame == null) {
+                            return;
+                        }
+                        if (binary) {
+                            // Output (and exit, which must follow it) waits while the flow window is full
+                            if ((frame.bytes > 0 || frame.exit)
+                                    && sentBytes - ackedBytes >= properties.getFlowWindowBytes()) {
+                                awaitingAck = true;
+                                // An acknowledgement may have come in before the flag was set
+                                if (sentBytes - ackedBytes >= properties.getFlowWindowBytes()) {
+                                    return;
+                                }
+                                awaitingAck = false;
+                            }
+                            // A frame's binary messages go out one at a time, so the window
+                            // is checked between them
+                            message = piece < frame.binary.size()
+                                    ? new BinaryMessage(frame.binary.get(piece).duplicate()) : null;
+                            if (++piece >= frame.binary.size()) {
+                                piece = 0;
+                                last = frame;
+                            }
+                        } else {
+                            message = frame.text;
+                            last = frame;
+                        }
+                        exit = frame.exit && last == frame;
+                        skipped = skippedBytes;
+                        skippedBytes = 0;
+                    }
+                    if (skipped > 0 && !binary) {
+                        send(outputText(true, "[... " + skipped + " bytes of output skipped, connection too slow ...]\n"));
+                    }
+                    if (message != null) {
+                        send(message);
+                    }
+                    if (exit) {
+                        closeQuietly(CloseStatus.NORMAL);
+                        return;
+                    }
+                }
+            } catch (IOException | IllegalStateException e) {
+                // Ignore send errors; close will cleanup
+                closeQuietly(CloseStatus.SERVER_ERROR);
+            } finally {
+                draining.set(false);
+                // A frame or notice may have been added after the loop looked
+                if (!closed && !awaitingAck && (hasNext() || !notices.isEmpty())) {
+                    requestSend();
+                }
+            }
+        }
+
+        private boolean hasNext() {
+            synchronized (lock) {
+                return last.next != null;
+            }
+        }
+
+        /**
+         * Output the session retained before this subscriber's first frame, then the exit
+         * if the program had already finished, or else its status.
+         */
+        private void sendBacklog() throws IOException {
+            sendBacklog(true, backlogStdout);
+            sendBacklog(false, backlogStderr);
+            if (backlogExit != null) {
+                send(backlogExit);
+                closeQuietly(CloseStatus.NORMAL);
+            } else if (backlogWaiting) {
+                send(binary ? new BinaryMessage(BinaryFrames.status(true)) : statusText(true));
+            }
+        }
+
+        private void sendBacklog(boolean stdout, long to) throws IOException {
+            if (to == 0) {
+                return;
+            }
+            if (binary) {
+                for (ByteBuffer frame : binaryOutput(stdout, 0, to)) {
+                    send(new BinaryMessage(frame));
+                }
+            } else {
+                OutputBuffer.Read read = stdout ? execSession.readOutput(0, to) : execSession.readError(0, to);
+                send(outputText(stdout, read.text()));
+            }
+        }
+
+        private void send(Frame frame) throws IOException {
+            if (binary) {
+                for (ByteBuffer payload : frame.binary) {
+                    send(new BinaryMessage(payload.duplicate()));
+                }
+            } else {
+                send(frame.text);
+            }
+        }
+
+        private void send(WebSocketMessage<?> message) throws IOException {
+            if (closed || !socket.isOpen()) {
+                return;
+            }
+            if (binary && message instanceof BinaryMessage binaryMessage) {
+                ByteBuffer payload = binaryMessage.getPayload();
+                byte type = payload.get(payload.position());
+                if (type == BinaryFrames.STDOUT || type == BinaryFrames.STDERR) {
+                    sentBytes += payload.remaining() - BinaryFrames.OUTPUT_HEADER_BYTES;
+                }
+            }
+            socket.sendMessage(message);
+        }
+
+        private void closeQuietly(CloseStatus status) {
+            synchronized (lock) {
+                remove(this);
+            }
+            try {
+                socket.close(status);
+            } catch (IOException ex) {
+                // ignore
+            }
+        }
+    }
+}
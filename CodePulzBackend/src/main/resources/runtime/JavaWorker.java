@@ -0,0 +1,352 @@
+// CodePulz runtime worker for Java.
+//
+// Started once per sandbox with the source launcher: java JavaWorker.java <control dir> <work dir>
+// The JVM boots and warms up the compiler ahead of the request, then waits on the FIFO
+// <control dir>/ctl for a client shell PID. It compiles <work dir>/Main.java in memory
+// with javax.tools, loads it in a class loader of its own and runs Main.main with
+// System.in/out/err opened on the client's stdio through /proc. The exit code is written
+// to the client's FIFO <control dir>/<client pid>; "fallback" is written instead when the
+// client's descriptors cannot be opened, and the client then compiles and runs the
+// program itself.
+//
+// Each JVM runs one program only. Program code shares the JVM with the worker and can
+// reach anything in it (threads outside its group, the security manager, the worker's
+// statics), so once a program has run the worker halts and leaves <control dir>/busy
+// behind: the sandbox is replaced by a fresh one, never handed to the next client.
+
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.Permission;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class JavaWorker {
+
+    private static final String SOURCE = "Main.java";
+    private static final String MAIN_CLASS = "Main";
+    private static final long POLL_MS = 50;
+
+    private static final PrintStream LOG = System.err;
+    private static final JavaCompiler COMPILER = ToolProvider.getSystemJavaCompiler();
+
+    /**
+     * Thrown instead of exiting the JVM when the program calls System.exit.
+     */
+    private static final class ExitTrap extends SecurityException {
+        final int status;
+
+        ExitTrap(int status) {
+            super("System.exit(" + status + ")");
+            this.status = status;
+        }
+    }
+
+    private static volatile ThreadGroup program;
+
+    @SuppressWarnings("removal")
+    public static void main(String[] args) throws Exception {
+        Path control = Path.of(args[0]);
+        Path workdir = Path.of(args[1]);
+        Files.createDirectories(control);
+        Path ctl = control.resolve("ctl");
+        if (!Files.exists(ctl)) {
+            new ProcessBuilder("mkfifo", ctl.toString()).inheritIO().start().waitFor();
+        }
+
+        // Allows everything but exiting the JVM from program threads
+        System.setSecurityManager(new SecurityManager() {
+            @Override
+            public void checkPermission(Permission perm) {
+            }
+
+            @Override
+            public void checkPermission(Permission perm, Object context) {
+            }
+
+            @Override
+            public void checkExit(int status) {
+                ThreadGroup group = program;
+                if (group != null && group.parentOf(Thread.currentThread().getThreadGroup())) {
+                    throw new ExitTrap(status);
+                }
+            }
+        });
+
+        // Warm up the compiler so the first request does not pay for its class loading and JIT
+        compile("public class Main { public static void main(String[] args) { } }", new PrintWriter(OutputStream.nullOutputStream()));
+
+        Files.writeString(control.resolve("pid.tmp"), ProcessHandle.current().pid() + "\n");
+        Files.move(control.resolve("pid.tmp"), control.resolve("pid"), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+
+        // Read-write so the FIFO never reports EOF between clients
+        try (RandomAccessFile fifo = new RandomAccessFile(ctl.toFile(), "rw");
+             BufferedReader requests = new BufferedReader(new InputStreamReader(new FileInputStream(fifo.getFD()), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = requests.readLine()) != null) {
+                long client;
+                try {
+                    client = Long.parseLong(line.trim());
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                // Returns only when nothing ran, so the JVM is still clean
+                handle(control, workdir, client);
+            }
+        }
+    }
+
+    /**
+     * Run the client's program, reply with its exit code and halt. Returns after replying
+     * "fallback" when the program was not started.
+     */
+    private static void handle(Path control, Path workdir, long client) {
+        Path busy = control.resolve("busy");
+        try {
+            Path[] stdio = new Path[3];
+            for (int n = 0; n < 3; n++) {
+                stdio[n] = Path.of("/proc", String.valueOf(client), "fd", String.valueOf(n));
+                // Only pipes and devices: a regular file opened again would not share the offset
+                if (!Files.exists(stdio[n]) || Files.isRegularFile(stdio[n]) || Files.isDirectory(stdio[n])) {
+                    reply(control, client, "fallback");
+                    return;
+                }
+            }
+            int status;
+            try (InputStream stdin = new FileInputStream(stdio[0].toFile());
+                 PrintStream stdout = printStream(stdio[1]);
+                 PrintStream stderr = printStream(stdio[2])) {
+                Files.createFile(busy);
+                status = run(workdir, client, stdin, stdout, stderr);
+                stdout.flush();
+                stderr.flush();
+            }
+            // Report the result, then take the sandbox out of service (busy stays)
+            reply(control, client, String.valueOf(status));
+            Runtime.getRuntime().halt(0);
+        } catch (IOException e) {
+            LOG.println("Request from " + client + " failed: " + e);
+            // Nothing has run if busy was never created
+            if (!Files.exists(busy)) {
+                reply(control, client, "fallback");
+            } else {
+                reply(control, client, "1");
+                Runtime.getRuntime().halt(1);
+            }
+        }
+    }
+
+    /**
+     * Same stream the JVM sets up for System.out/err (flushes on every write).
+     */
+    private static PrintStream printStream(Path path) throws IOException {
+        return new PrintStream(new BufferedOutputStream(new FileOutputStream(path.toFile()), 128), true, StandardCharsets.UTF_8);
+    }
+
+    private static int run(Path workdir, long client, InputStream stdin, PrintStream stdout, PrintStream stderr) throws IOException {
+        String source = Files.readString(workdir.resolve(SOURCE));
+        Map<String, byte[]> classes = compile(source, new PrintWriter(stderr, true));
+        if (classes == null) {
+            return 1; // javac's exit code for compilation errors
+        }
+
+        Method main;
+        ClassLoader loader = new MemoryClassLoader(classes);
+        try {
+            main = loader.loadClass(MAIN_CLASS).getMethod("main", String[].class);
+            if (!Modifier.isStatic(main.getModifiers())) {
+                throw new NoSuchMethodException("main is not static");
+            }
+        } catch (ClassNotFoundException | NoSuchMethodException | LinkageError e) {
+            stderr.println("Error: Main method not found in class Main, please define the main method as:");
+            stderr.println("   public static void main(String[] args)");
+            return 1;
+        }
+
+        System.setIn(stdin);
+        System.setOut(stdout);
+        System.setErr(stderr);
+        // A System.exit from any program thread ends the run, as in a plain JVM
+        int[] exitedFromThread = {-1};
+        ThreadGroup group = new ThreadGroup("program") {
+            @Override
+            public void uncaughtException(Thread t, Throwable e) {
+                if (e instanceof ExitTrap exit) {
+                    exitedFromThread[0] = exit.status;
+                } else {
+                    System.err.print("Exception in thread \"" + t.getName() + "\" ");
+                    e.printStackTrace(System.err);
+                }
+            }
+        };
+        int[] status = {0};
+        Thread thread = new Thread(group, () -> {
+            try {
+                main.invoke(null, (Object) new String[0]);
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof ExitTrap exit) {
+                    status[0] = exit.status;
+                } else {
+                    status[0] = 1;
+                    trimStackTrace(cause);
+                    System.err.print("Exception in thread \"main\" ");
+                    cause.printStackTrace(System.err);
+                }
+            } catch (ExitTrap exit) {
+                status[0] = exit.status;
+            } catch (IllegalAccessException e) {
+                status[0] = 1;
+                System.err.println("Error: Main method not found in class Main, please define the main method as:");
+                System.err.println("   public static void main(String[] args)");
+            }
+        }, "main");
+        thread.setContextClassLoader(loader);
+        program = group;
+        try {
+            thread.start();
+            // The JVM would wait for all non-daemon threads before exiting
+            while (exitedFromThread[0] < 0 && hasLiveThreads(group)) {
+                thread.join(POLL_MS);
+                if (!Files.exists(Path.of("/proc", String.valueOf(client)))) {
+                    LOG.println("Client " + client + " is gone while its program runs, halting");
+                    Runtime.getRuntime().halt(1);
+                }
+            }
+        } catch (InterruptedException e) {
+            Runtime.getRuntime().halt(1);
+        } finally {
+            program = null;
+        }
+        // Daemon threads, or threads still running after System.exit, end with the JVM
+        return exitedFromThread[0] >= 0 ? exitedFromThread[0] : status[0];
+    }
+
+    private static boolean hasLiveThreads(ThreadGroup group) {
+        Thread[] threads = new Thread[group.activeCount() + 8];
+        int count = group.enumerate(threads, true);
+        for (int i = 0; i < count; i++) {
+            if (threads[i].isAlive() && !threads[i].isDaemon()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compile the source in memory. Diagnostics go to errors in javac's format; returns
+     * null when compilation failed.
+     */
+    static Map<String, byte[]> compile(String source, PrintWriter errors) throws IOException {
+        Map<String, byte[]> classes = new HashMap<>();
+        StandardJavaFileManager standard = COMPILER.getStandardFileManager(null, null, StandardCharsets.UTF_8);
+        ForwardingJavaFileManager<StandardJavaFileManager> files = new ForwardingJavaFileManager<>(standard) {
+            @Override
+            public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind,
+                                                       FileObject sibling) {
+                return new SimpleJavaFileObject(URI.create("mem:///" + className.replace('.', '/') + kind.extension), kind) {
+                    @Override
+                    public OutputStream openOutputStream() {
+                        return new ByteArrayOutputStream() {
+                            @Override
+                            public void close() {
+                                classes.put(className, toByteArray());
+                            }
+                        };
+                    }
+                };
+            }
+        };
+        // Named like the file javac would read, so diagnostics read the same
+        JavaFileObject unit = new SimpleJavaFileObject(URI.create("string:///" + SOURCE), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+
+            @Override
+            public String getName() {
+                return SOURCE;
+            }
+        };
+        boolean ok;
+        try (files) {
+            ok = COMPILER.getTask(errors, files, null, List.of(), null, List.of(unit)).call();
+        }
+        errors.flush();
+        return ok ? classes : null;
+    }
+
+    /**
+     * Drop the reflection and worker frames below the program's main method.
+     */
+    private static void trimStackTrace(Throwable error) {
+        StackTraceElement[] trace = error.getStackTrace();
+        for (int i = 0; i < trace.length; i++) {
+            if (trace[i].getClassName().startsWith("jdk.internal.reflect.")
+                    || trace[i].getClassName().equals("java.lang.reflect.Method")) {
+                error.setStackTrace(Arrays.copyOf(trace, i));
+                return;
+            }
+        }
+    }
+
+    private static void reply(Path control, long client, String text) {
+        Path fifo = control.resolve(String.valueOf(client));
+        if (!Files.exists(fifo)) {
+            return; // client is gone
+        }
+        // Read-write never blocks; the text reaches the client if it is still reading
+        try (RandomAccessFile out = new RandomAccessFile(fifo.toFile(), "rw")) {
+            out.write((text + "\n").getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            // client is gone
+        }
+    }
+
+    /**
+     * Loads the program's classes, apart from the worker's own.
+     */
+    private static final class MemoryClassLoader extends ClassLoader {
+        private final Map<String, byte[]> classes;
+
+        MemoryClassLoader(Map<String, byte[]> classes) {
+            super(ClassLoader.getPlatformClassLoader());
+            this.classes = classes;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            byte[] bytes = classes.get(name);
+            if (bytes == null) {
+                throw new ClassNotFoundException(name);
+            }
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+// CodePulz runtime worker for JavaScript.
+//
+// Started once per sandbox as: node -e <this file> <control dir> <work dir>
+// Node cannot fork, so the worker keeps one spare child that has already booted and
+// loaded the core modules programs commonly use. Requests arrive on the FIFO
+// <control dir>/ctl, one client shell PID per line. The spare takes over the client's
+// stdin/stdout/stderr through /proc and runs <work dir>/index.js as its main module;
+// a new spare is started right away for the next request. When the child exits its
+// exit code is written to the client's FIFO <control dir>/<client pid>. "fallback" is
+// written instead when the client's descriptors cannot be taken over, and the client
+// then runs the program itself.
+
+const childProcess = require('child_process');
+const fs = require('fs');
+const net = require('net');
+const path = require('path');
+
+const [control, workdir] = process.argv.slice(1);
+const SCRIPT = 'index.js';
+const SIGNALS = require('os').constants.signals;
+
+// Runs in the spare child (passed as its -e source)
+function spare(script, control) {
+    const fs = require('fs');
+    const Module = require('module');
+    for (const name of ['assert', 'buffer', 'crypto', 'events', 'os', 'path', 'readline', 'stream', 'string_decoder', 'util']) {
+        require(name);
+    }
+    process.once('message', (client) => {
+        // Closing an fd and opening the client's makes it take the same number, which
+        // keeps fs.readFileSync(0), /dev/stdin and the lazily created process streams working.
+        // Only pipes and devices: a regular file opened again would not share the offset.
+        try {
+            const flags = [fs.constants.O_RDONLY, fs.constants.O_WRONLY, fs.constants.O_WRONLY];
+            for (let n = 0; n < 3; n++) {
+                fs.closeSync(n);
+                if (fs.openSync(`/proc/${client}/fd/${n}`, flags[n]) !== n) {
+                    throw new Error('descriptor ' + n + ' not reused');
+                }
+                const stat = fs.fstatSync(n);
+                if (!stat.isFIFO() && !stat.isCharacterDevice()) {
+                    throw new Error('not a pipe');
+                }
+            }
+        } catch (e) {
+            // Written before exiting, so it is the first line the client reads
+            fs.appendFileSync(require('path').join(control, String(client)), 'fallback\n',
+                { flag: fs.constants.O_WRONLY | fs.constants.O_NONBLOCK });
+            process.exit(0);
+        }
+        // Without the IPC channel the event loop ends with the program, as in a plain run
+        process.disconnect();
+        process.argv = [process.execPath, require('path').resolve(script)];
+        Module.runMain(process.argv[1]);
+    });
+}
+
+let next = null;
+
+function startSpare() {
+    const source = `(${spare})(${JSON.stringify(SCRIPT)}, ${JSON.stringify(control)})`;
+    const child = childProcess.spawn(process.execPath, ['-e', source], {
+        cwd: workdir,
+        stdio: ['ignore', 'ignore', 'ignore', 'ipc'],
+        env: process.env,
+    });
+    child.client = null;
+    child.on('exit', (code, signal) => {
+        if (child.client !== null) {
+            reply(child.client, String(code !== null ? code : 128 + (SIGNALS[signal] || 0)));
+        }
+        if (next === child) {
+            next = startSpare();
+        }
+    });
+    child.on('error', () => {});
+    return child;
+}
+
+function reply(client, text) {
+    let fd;
+    try {
+        fd = fs.openSync(path.join(control, String(client)), fs.constants.O_WRONLY | fs.constants.O_NONBLOCK);
+    } catch (e) {
+        return; // client is gone
+    }
+    try {
+        fs.writeSync(fd, text + '\n');
+    } catch (e) {
+        // ignore
+    } finally {
+        fs.closeSync(fd);
+    }
+}
+
+function handle(line) {
+    const client = Number.parseInt(line, 10);
+    if (!Number.isInteger(client) || client <= 0) {
+        return;
+    }
+    const child = next;
+    next = startSpare();
+    child.client = client;
+    child.send(client);
+}
+
+fs.mkdirSync(control, { recursive: true });
+const ctlPath = path.join(control, 'ctl');
+if (!fs.existsSync(ctlPath)) {
+    childProcess.execFileSync('mkfifo', [ctlPath]);
+}
+// Read-write so the FIFO never reports EOF between clients
+const ctl = new net.Socket({ fd: fs.openSync(ctlPath, fs.constants.O_RDWR | fs.constants.O_NONBLOCK), readable: true, writable: false });
+let pending = '';
+ctl.setEncoding('utf8');
+ctl.on('data', (data) => {
+    const lines = (pending + data).split('\n');
+    pending = lines.pop();
+    lines.forEach(handle);
+});
+
+process.on('SIGTERM', () => process.exit(0));
+next = startSpare();
+fs.writeFileSync(path.join(control, 'pid.tmp'), process.pid + '\n');
+fs.renameSync(path.join(control, 'pid.tmp'), path.join(control, 'pid'));
@@ -0,0 +1,203 @@
+# CodePulz runtime worker for Python (fork server).
+#
+# Started once per sandbox as: python -c <this file> <control dir> <work dir>
+# Imports the standard modules programs commonly use, then waits for requests on the
+# FIFO <control dir>/ctl. A request is the PID of a client shell, one per line. The
+# worker opens the client's stdin/stdout/stderr through /proc, forks, and the child
+# runs <work dir>/script.py on them. When the child exits its exit code is written to
+# the client's FIFO <control dir>/<client pid>. "fallback" is written instead when the
+# client's descriptors cannot be opened, and the client then runs the program itself.
+
+import atexit
+import os
+import select
+import signal
+import stat
+import sys
+
+# Preloaded for every program; a forked child gets them without importing again
+import bisect  # noqa: F401
+import collections  # noqa: F401
+import datetime  # noqa: F401
+import decimal  # noqa: F401
+import fractions  # noqa: F401
+import functools  # noqa: F401
+import heapq  # noqa: F401
+import io
+import itertools  # noqa: F401
+import json  # noqa: F401
+import math  # noqa: F401
+import random
+import re  # noqa: F401
+import statistics  # noqa: F401
+import string  # noqa: F401
+import threading
+import time  # noqa: F401
+import traceback
+import types
+import typing  # noqa: F401
+
+SCRIPT = "script.py"
+
+
+def reply(control, client, text):
+    try:
+        fd = os.open(os.path.join(control, str(client)), os.O_WRONLY | os.O_NONBLOCK)
+    except OSError:
+        return  # client is gone
+    try:
+        os.write(fd, (text + "\n").encode())
+    except OSError:
+        pass
+    finally:
+        os.close(fd)
+
+
+def open_stdio(client):
+    """
+    Open the client's stdio anew. Only pipes and devices behave like the originals:
+    a regular file opened again would not share the client's offset.
+    """
+    fds = []
+    try:
+        for n, flags in ((0, os.O_RDONLY), (1, os.O_WRONLY), (2, os.O_WRONLY)):
+            fds.append(os.open("/proc/%d/fd/%d" % (client, n), flags))
+            mode = os.fstat(fds[-1]).st_mode
+            if not (stat.S_ISFIFO(mode) or stat.S_ISCHR(mode)):
+                raise OSError("not a pipe")
+    except OSError:
+        for fd in fds:
+            os.close(fd)
+        return None
+    return fds
+
+
+def run_program(workdir, fds):
+    """Body of the forked child; never returns."""
+    status = 1
+    try:
+        signal.set_wakeup_fd(-1)
+        for sig in (signal.SIGCHLD, signal.SIGTERM):
+            signal.signal(sig, signal.SIG_DFL)
+        for target, fd in enumerate(fds):
+            os.dup2(fd, target)
+        os.closerange(3, os.sysconf("SC_OPEN_MAX"))
+        os.chdir(workdir)
+
+        # Same streams python sets up with PYTHONUNBUFFERED
+        sys.stdin = sys.__stdin__ = io.TextIOWrapper(
+            io.BufferedReader(io.FileIO(0, "r", closefd=False)), encoding="utf-8")
+        sys.stdout = sys.__stdout__ = io.TextIOWrapper(
+            io.FileIO(1, "w", closefd=False), encoding="utf-8", write_through=True)
+        sys.stderr = sys.__stderr__ = io.TextIOWrapper(
+            io.FileIO(2, "w", closefd=False), encoding="utf-8", errors="backslashreplace", write_through=True)
+        # Every child would otherwise draw the same "random" numbers
+        random.seed()
+
+        path = os.path.abspath(SCRIPT)
+        sys.argv = [SCRIPT]
+        sys.path[0] = workdir
+        main = types.ModuleType("__main__")
+        main.__file__ = path
+        sys.modules["__main__"] = main
+        status = 0
+        try:
+            with open(path, "rb") as source:
+                code = compile(source.read(), path, "exec")
+            exec(code, main.__dict__)
+        except SystemExit as e:
+            status = exit_status(e)
+        except BaseException as e:
+            # Drop this function's frame so the traceback starts at the program
+            traceback.print_exception(type(e), e, e.__traceback__.tb_next)
+            status = 1
+        for thread in threading.enumerate():
+            if thread is not threading.main_thread() and not thread.daemon:
+                thread.join()
+        try:
+            atexit._run_exitfuncs()
+        except SystemExit as e:
+            status = exit_status(e)
+        sys.stdout.flush()
+        sys.stderr.flush()
+    except BaseException:
+        pass
+    os._exit(status)
+
+
+def exit_status(e):
+    if e.code is None:
+        return 0
+    if isinstance(e.code, int):
+        return e.code & 0xFF
+    print(e.code, file=sys.stderr)
+    return 1
+
+
+def main():
+    control, workdir = sys.argv[1], sys.argv[2]
+    os.makedirs(control, exist_ok=True)
+    ctl_path = os.path.join(control, "ctl")
+    if not os.path.exists(ctl_path):
+        os.mkfifo(ctl_path)
+    # Read-write so the FIFO never reports EOF between clients
+    ctl = os.open(ctl_path, os.O_RDWR | os.O_NONBLOCK)
+
+    wake_read, wake_write = os.pipe()
+    os.set_blocking(wake_read, False)
+    os.set_blocking(wake_write, False)
+    signal.set_wakeup_fd(wake_write)
+    signal.signal(signal.SIGCHLD, lambda *_: None)
+    signal.signal(signal.SIGTERM, lambda *_: os._exit(0))
+
+    with open(os.path.join(control, "pid.tmp"), "w") as f:
+        f.write("%d\n" % os.getpid())
+    os.replace(os.path.join(control, "pid.tmp"), os.path.join(control, "pid"))
+
+    running = {}  # child pid -> client pid
+    pending = b""
+    while True:
+        readable, _, _ = select.select([ctl, wake_read], [], [])
+        if wake_read in readable:
+            try:
+                while os.read(wake_read, 512):
+                    pass
+            except BlockingIOError:
+                pass
+            # Also reaps orphans re-parented to us when we run as PID 1
+            while True:
+                try:
+                    pid, status = os.waitpid(-1, os.WNOHANG)
+                except ChildProcessError:
+                    break
+                if pid == 0:
+                    break
+                client = running.pop(pid, None)
+                if client is not None:
+                    code = os.waitstatus_to_exitcode(status)
+                    reply(control, client, str(code if code >= 0 else 128 - code))
+        if ctl in readable:
+            try:
+                pending += os.read(ctl, 4096)
+            except BlockingIOError:
+                continue
+            *lines, pending = pending.split(b"\n")
+            for line in lines:
+                try:
+                    client = int(line)
+                except ValueError:
+                    continue
+                fds = open_stdio(client)
+                if fds is None:
+                    reply(control, client, "fallback")
+                    continue
+                pid = os.fork()
+                if pid == 0:
+                    os.close(ctl)
+                    run_program(workdir, fds)
+                running[pid] = client
+                for fd in fds:
+                    os.close(fd)
+
+
+main()
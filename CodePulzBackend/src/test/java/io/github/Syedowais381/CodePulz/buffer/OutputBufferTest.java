@@ -0,0 +1,113 @@
+package io.github.Syedowais381.CodePulz.buffer;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OutputBufferTest {
+
+    @Test
+    void readsIncrementallyByOffset() {
+        OutputBuffer buffer = new OutputBuffer(64 * 1024);
+        buffer.write("Enter a number: ");
+        OutputBuffer.Read first = buffer.read(0);
+        buffer.write("42\n");
+        OutputBuffer.Read second = buffer.read(first.nextOffset());
+
+        assertThat(first.text()).isEqualTo("Enter a number: ");
+        assertThat(second.text()).isEqualTo("42\n");
+        assertThat(second.nextOffset()).isEqualTo(buffer.getEndOffset());
+        assertThat(buffer.read(second.nextOffset()).text()).isEmpty();
+    }
+
+    @Test
+    void readsUpToAnEarlierOffset() {
+        OutputBuffer buffer = new OutputBuffer(64 * 1024);
+        buffer.write("one\n");
+        long mark = buffer.read(0).nextOffset();
+        buffer.write("two\n");
+
+        assertThat(buffer.read(0, mark).text()).isEqualTo("one\n");
+        assertThat(buffer.read(0, mark).nextOffset()).isEqualTo(mark);
+        assertThat(buffer.read(mark, Long.MAX_VALUE).text()).isEqualTo("two\n");
+    }
+
+    @Test
+    void spansChunkBoundaries() {
+        OutputBuffer buffer = new OutputBuffer(64 * 1024);
+        String text = "x".repeat(OutputBuffer.CHUNK_SIZE * 3 + 17);
+        buffer.write(text);
+
+        assertThat(buffer.readAll()).isEqualTo(text);
+        assertThat(buffer.read(OutputBuffer.CHUNK_SIZE - 1).text()).hasSize(text.length() - OutputBuffer.CHUNK_SIZE + 1);
+    }
+
+    @Test
+    void readsRawBytesAfterReservedPrefix() {
+        OutputBuffer buffer = new OutputBuffer(2 * OutputBuffer.CHUNK_SIZE);
+        buffer.write("x".repeat(OutputBuffer.CHUNK_SIZE * 3));
+        buffer.write("tail");
+
+        OutputBuffer.Slice slice = buffer.readBytes(0, 5, 2);
+        assertThat(slice.truncated()).isTrue();
+        assertThat(slice.offset()).isEqualTo(buffer.getStartOffset());
+        assertThat(slice.data()).hasSize(7);
+        assertThat(new String(slice.data(), 2, slice.length(), StandardCharsets.UTF_8)).isEqualTo("xxxxx");
+
+        OutputBuffer.Slice last = buffer.readBytes(buffer.getEndOffset() - 4, 1024, 0);
+        assertThat(last.truncated()).isFalse();
+        assertThat(new String(last.data(), StandardCharsets.UTF_8)).isEqualTo("tail");
+        assertThat(last.nextOffset()).isEqualTo(buffer.getEndOffset());
+    }
+
+    @Test
+    void holdsBackIncompleteUtf8UntilItCompletes() {
+        OutputBuffer buffer = new OutputBuffer(64 * 1024);
+        byte[] euro = "€".getBytes(StandardCharsets.UTF_8);
+        buffer.write(new byte[] {'a', euro[0], euro[1]}, 0, 3);
+
+        OutputBuffer.Read partial = buffer.read(0);
+        assertThat(partial.text()).isEqualTo("a");
+        assertThat(partial.nextOffset()).isEqualTo(1);
+
+        buffer.write(euro, 2, 1);
+        assertThat(buffer.read(partial.nextOffset()).text()).isEqualTo("€");
+    }
+
+    @Test
+    void flushesIncompleteTailOnceClosed() {
+        OutputBuffer buffer = new OutputBuffer(64 * 1024);
+        buffer.write(new byte[] {'a', (byte) 0xE2}, 0, 2);
+        buffer.close();
+
+        assertThat(buffer.readAll()).isEqualTo("a�");
+    }
+
+    @Test
+    void dropsOldestChunksPastRetentionAndMarksTruncation() {
+        OutputBuffer buffer = new OutputBuffer(2 * OutputBuffer.CHUNK_SIZE);
+        for (int i = 0; i < 10; i++) {
+            buffer.write(String.valueOf(i).repeat(OutputBuffer.CHUNK_SIZE));
+        }
+
+        assertThat(buffer.getRetainedBytes()).isEqualTo(2L * OutputBuffer.CHUNK_SIZE);
+        OutputBuffer.Read read = buffer.read(0);
+        assertThat(read.truncated()).isTrue();
+        assertThat(read.text()).startsWith("[... " + 8 * OutputBuffer.CHUNK_SIZE + " bytes of earlier output truncated ...]\n8888");
+        assertThat(read.text()).endsWith("9999");
+        assertThat(buffer.read(buffer.getStartOffset()).truncated()).isFalse();
+    }
+
+    @Test
+    void skipsCharacterCutByEviction() {
+        OutputBuffer buffer = new OutputBuffer(2 * OutputBuffer.CHUNK_SIZE);
+        // 3-byte characters do not line up with chunk boundaries
+        buffer.write("€".repeat(OutputBuffer.CHUNK_SIZE));
+
+        String text = buffer.read(0).text();
+        String body = text.substring(text.indexOf('\n') + 1);
+        assertThat(body).matches("€+");
+    }
+}
@@ -0,0 +1,44 @@
+package io.github.Syedowais381.CodePulz.buffer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OutputLimiterTest {
+
+    @Test
+    void admitsUpToTheCap() {
+        OutputLimiter limiter = new OutputLimiter(new OutputLimiter.Limits(0, 0, 100));
+
+        assertThat(limiter.admit(60)).isEqualTo(60);
+        assertThat(limiter.admit(60)).isEqualTo(40);
+        assertThat(limiter.admit(60)).isZero();
+        assertThat(limiter.getAdmittedBytes()).isEqualTo(100);
+    }
+
+    @Test
+    void burstPassesThenReadsArePacedAtTheRate() throws InterruptedException {
+        OutputLimiter limiter = new OutputLimiter(new OutputLimiter.Limits(100_000, 10_000, 0));
+
+        long start = System.nanoTime();
+        limiter.pace(10_000);
+        assertThat(limiter.isThrottled()).isFalse();
+        limiter.pace(20_000);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertThat(limiter.isThrottled()).isTrue();
+        assertThat(elapsedMs).isBetween(150L, 1000L);
+    }
+
+    @Test
+    void unlimitedNeverWaits() throws InterruptedException {
+        OutputLimiter limiter = new OutputLimiter(OutputLimiter.Limits.UNLIMITED);
+
+        limiter.pace(Integer.MAX_VALUE);
+
+        assertThat(limiter.admit(1 << 20)).isEqualTo(1 << 20);
+        assertThat(limiter.isThrottled()).isFalse();
+    }
+}
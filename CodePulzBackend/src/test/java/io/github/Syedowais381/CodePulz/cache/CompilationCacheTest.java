@@ -0,0 +1,110 @@
+package io.github.Syedowais381.CodePulz.cache;
+
+import io.github.Syedowais381.CodePulz.config.CompileCacheProperties;
+import io.github.Syedowais381.CodePulz.sandbox.Language;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompilationCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void restoresStoredArtifacts() throws Exception {
+        CompilationCache cache = newCache(1024);
+        String key = cache.key(Language.CPP, "int main() { return 0; }");
+
+        assertThat(cache.restore(key, tempDir.resolve("first"))).isFalse();
+        cache.store(key, buildDir("run1", "myapp", 100));
+
+        Path restored = tempDir.resolve("second");
+        assertThat(cache.restore(key, restored)).isTrue();
+        assertThat(Files.size(restored.resolve("myapp"))).isEqualTo(100);
+        assertThat(cache.getHits()).isEqualTo(1);
+        assertThat(cache.getMisses()).isEqualTo(1);
+        assertThat(cache.getBytesStored()).isEqualTo(100);
+    }
+
+    @Test
+    void keyDependsOnLanguageAndSource() {
+        CompilationCache cache = newCache(1024);
+
+        assertThat(cache.key(Language.C, "x")).isEqualTo(cache.key(Language.C, "x"));
+        assertThat(cache.key(Language.C, "x")).isNotEqualTo(cache.key(Language.CPP, "x"));
+        assertThat(cache.key(Language.C, "x")).isNotEqualTo(cache.key(Language.C, "y"));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedPastByteBudget() throws Exception {
+        CompilationCache cache = newCache(250);
+        cache.store("a", buildDir("a", "bin", 100));
+        cache.store("b", buildDir("b", "bin", 100));
+        // Touch "a" so "b" becomes the eldest entry
+        assertThat(cache.restore("a", tempDir.resolve("touch"))).isTrue();
+        cache.store("c", buildDir("c", "bin", 100));
+
+        assertThat(cache.getEntryCount()).isEqualTo(2);
+        assertThat(cache.getBytesStored()).isEqualTo(200);
+        assertThat(cache.restore("b", tempDir.resolve("b-out"))).isFalse();
+        assertThat(cache.restore("a", tempDir.resolve("a-out"))).isTrue();
+        assertThat(cache.restore("c", tempDir.resolve("c-out"))).isTrue();
+    }
+
+    @Test
+    void treatsShortCopyAsMiss() throws Exception {
+        CompilationCache cache = newCache(1024);
+        cache.store("a", buildDir("a", "bin", 100));
+        // Damage the entry on disk behind the index's back
+        Files.write(tempDir.resolve("cache").resolve("a").resolve("bin"), new byte[10]);
+
+        Path restored = tempDir.resolve("out");
+        assertThat(cache.restore("a", restored)).isFalse();
+        assertThat(restored).doesNotExist();
+        assertThat(cache.getMisses()).isEqualTo(1);
+    }
+
+    @Test
+    void refusesBuildDirectoryWithSymlinks() throws Exception {
+        CompilationCache cache = newCache(1024);
+        Path secret = Files.writeString(tempDir.resolve("secret"), "host file");
+        Path build = buildDir("a", "bin", 10);
+        Files.createSymbolicLink(build.resolve("leak"), secret);
+
+        cache.store("a", build);
+
+        assertThat(cache.getEntryCount()).isZero();
+        assertThat(cache.restore("a", tempDir.resolve("out"))).isFalse();
+    }
+
+    @Test
+    void reloadsEntriesFromDiskOnStartup() throws Exception {
+        CompilationCache cache = newCache(1024);
+        cache.store("a", buildDir("a", "bin", 10));
+
+        CompilationCache reopened = newCache(1024);
+        assertThat(reopened.getEntryCount()).isEqualTo(1);
+        assertThat(reopened.restore("a", tempDir.resolve("out"))).isTrue();
+    }
+
+    private CompilationCache newCache(long maxBytes) {
+        CompileCacheProperties properties = new CompileCacheProperties();
+        properties.setDirectory(tempDir.resolve("cache").toString());
+        properties.setMaxBytes(maxBytes);
+        CompilationCache cache = new CompilationCache(properties, new SimpleMeterRegistry());
+        cache.init();
+        return cache;
+    }
+
+    private Path buildDir(String name, String file, int size) throws Exception {
+        Path dir = Files.createDirectories(tempDir.resolve("builds").resolve(name));
+        Files.write(dir.resolve(file), new byte[size]);
+        return dir;
+    }
+}
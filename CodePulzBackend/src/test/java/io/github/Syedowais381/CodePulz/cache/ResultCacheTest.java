@@ -0,0 +1,122 @@
+package io.github.Syedowais381.CodePulz.cache;
+
+import io.github.Syedowais381.CodePulz.config.ResultCacheProperties;
+import io.github.Syedowais381.CodePulz.sandbox.Language;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ResultCacheTest {
+
+    private static ResultCache newCache(long maxBytes, long ttlMs) {
+        ResultCacheProperties properties = new ResultCacheProperties();
+        properties.setEnabled(true);
+        properties.setMaxBytes(maxBytes);
+        properties.setTtlMs(ttlMs);
+        return new ResultCache(properties, new SimpleMeterRegistry());
+    }
+
+    private static ResultCache.Result result(String output) {
+        return new ResultCache.Result(output, "", 0, false, false, 10);
+    }
+
+    @Test
+    void storesFinishedRunsAndReplaysThem() throws Exception {
+        ResultCache cache = newCache(1024 * 1024, 60000);
+        AtomicInteger runs = new AtomicInteger();
+        ResultCache.Runner runner = () -> {
+            runs.incrementAndGet();
+            return result("hello");
+        };
+
+        assertThat(cache.getOrRun("k", runner).source()).isEqualTo(ResultCache.Source.RUN);
+        ResultCache.Lookup second = cache.getOrRun("k", runner);
+
+        assertThat(second.source()).isEqualTo(ResultCache.Source.CACHE);
+        assertThat(second.result().output()).isEqualTo("hello");
+        assertThat(runs).hasValue(1);
+        assertThat(cache.getHits()).isEqualTo(1);
+        assertThat(cache.getMisses()).isEqualTo(1);
+    }
+
+    @Test
+    void doesNotCacheRunsCutShortOrFailed() throws Exception {
+        ResultCache cache = newCache(1024 * 1024, 60000);
+        cache.getOrRun("timeout", () -> new ResultCache.Result("", "", -1, true, false, 60000));
+        cache.getOrRun("capped", () -> new ResultCache.Result("spam", "", 137, false, true, 100));
+        assertThatThrownBy(() -> cache.getOrRun("failed", () -> {
+            throw new IOException("docker is gone");
+        })).isInstanceOf(IOException.class);
+
+        assertThat(cache.getEntryCount()).isZero();
+    }
+
+    @Test
+    void concurrentIdenticalLookupsShareOneRun() throws Exception {
+        ResultCache cache = newCache(1024 * 1024, 60000);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+        ResultCache.Runner slowRun = () -> {
+            runs.incrementAndGet();
+            started.countDown();
+            release.await();
+            return result("shared");
+        };
+
+        CompletableFuture<ResultCache.Lookup> first = CompletableFuture.supplyAsync(() -> lookup(cache, slowRun));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<ResultCache.Lookup> second = CompletableFuture.supplyAsync(() -> lookup(cache, slowRun));
+        Thread.sleep(100);
+        release.countDown();
+
+        assertThat(first.get(5, TimeUnit.SECONDS).source()).isEqualTo(ResultCache.Source.RUN);
+        assertThat(second.get(5, TimeUnit.SECONDS).result().output()).isEqualTo("shared");
+        assertThat(runs).hasValue(1);
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedAndExpiredEntries() throws Exception {
+        // Each entry is 256 bytes of overhead plus two bytes per character
+        ResultCache cache = newCache(600, 60000);
+        cache.getOrRun("a", () -> result("a"));
+        cache.getOrRun("b", () -> result("b"));
+        cache.getOrRun("a", () -> result("unused")); // touch "a" so "b" is the eldest
+        cache.getOrRun("c", () -> result("c"));
+
+        assertThat(cache.getEntryCount()).isEqualTo(2);
+        assertThat(cache.getOrRun("b", () -> result("b again")).source()).isEqualTo(ResultCache.Source.RUN);
+
+        ResultCache expiring = newCache(1024 * 1024, 0);
+        expiring.getOrRun("a", () -> result("a"));
+        Thread.sleep(5);
+        assertThat(expiring.getOrRun("a", () -> result("fresh")).result().output()).isEqualTo("fresh");
+    }
+
+    @Test
+    void keyDependsOnInputAndOutputCap() {
+        ResultCache cache = newCache(1024, 60000);
+
+        assertThat(cache.key(Language.PYTHON, "print(input())", "1", 100))
+                .isEqualTo(cache.key(Language.PYTHON, "print(input())", "1", 100))
+                .isNotEqualTo(cache.key(Language.PYTHON, "print(input())", "2", 100))
+                .isNotEqualTo(cache.key(Language.PYTHON, "print(input())", "1", 200))
+                .isNotEqualTo(cache.key(Language.JAVASCRIPT, "print(input())", "1", 100));
+    }
+
+    private static ResultCache.Lookup lookup(ResultCache cache, ResultCache.Runner runner) {
+        try {
+            return cache.getOrRun("k", runner);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package io.github.Syedowais381.CodePulz.dto;
+
+import io.github.Syedowais381.CodePulz.buffer.OutputLimiter;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExecutionSessionTest {
+
+    @Test
+    void wakesWaitersAsSoonAsOutputArrives() throws Exception {
+        ExecutionSession session = start("printf 'Enter a number: '; read n; echo \"You entered: $n\"");
+        try {
+            long seen = waitForText(session, 0, "Enter a number: ");
+
+            long before = System.nanoTime();
+            session.sendInput("42", false);
+            long after = session.awaitChange(seen, 5000);
+
+            assertThat(after).isGreaterThan(seen);
+            assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - before)).isLessThan(2000);
+            waitForText(session, after, "You entered: 42");
+        } finally {
+            session.close();
+        }
+    }
+
+    @Test
+    void completesExitFutureWithExitCode() throws Exception {
+        ExecutionSession session = start("echo done; exit 3");
+
+        assertThat(session.getExitFuture().get(5, TimeUnit.SECONDS)).isEqualTo(3);
+        assertThat(session.isComplete()).isTrue();
+    }
+
+    @Test
+    void awaitChangeTimesOutWhenNothingHappens() throws Exception {
+        ExecutionSession session = start("read n");
+        try {
+            long seen = session.getChangeCount();
+            assertThat(session.awaitChange(seen, 100)).isEqualTo(seen);
+        } finally {
+            session.close();
+        }
+    }
+
+    @Test
+    void onChangeCompletesWithTheNextChangeOrTheTimeout() throws Exception {
+        ExecutionSession session = start("read n; echo \"got $n\"; read m");
+        try {
+            long seen = session.getChangeCount();
+            assertThat(session.onChange(seen, 100).get(2, TimeUnit.SECONDS)).isEqualTo(seen);
+
+            CompletableFuture<Long> next = session.onChange(seen, 5000);
+            assertThat(next.isDone()).isFalse();
+            session.sendInput("1", false);
+            assertThat(next.get(2, TimeUnit.SECONDS)).isGreaterThan(seen);
+            // Already past seen: completes at once
+            assertThat(session.onChange(seen, 5000).isDone()).isTrue();
+        } finally {
+            session.close();
+        }
+    }
+
+    @Test
+    void cutsOffOutputAndKillsProgramPastTheCap() throws Exception {
+        Process process = new ProcessBuilder("sh", "-c", "while :; do echo spam; done").start();
+        ExecutionSession session = new ExecutionSession("test", process, null, 1024 * 1024,
+                new OutputLimiter.Limits(0, 0, 10_000), Executors.newCachedThreadPool());
+
+        session.getExitFuture().get(5, TimeUnit.SECONDS);
+
+        String output = session.getCurrentOutput();
+        assertThat(session.isOutputLimitExceeded()).isTrue();
+        assertThat(session.isKilled()).isTrue();
+        assertThat(output).contains("[Output limit of 10000 bytes exceeded, program stopped]");
+        assertThat(output.indexOf("[Output limit")).isLessThanOrEqualTo(10_001);
+    }
+
+    @Test
+    void slowsDownProgramPrintingFasterThanTheRate() throws Exception {
+        Process process = new ProcessBuilder("sh", "-c", "head -c 400000 /dev/zero; echo; echo finished").start();
+        ExecutionSession session = new ExecutionSession("test", process, null, 1024 * 1024,
+                new OutputLimiter.Limits(500_000, 50_000, 0), Executors.newCachedThreadPool());
+        long start = System.currentTimeMillis();
+
+        session.getExitFuture().get(10, TimeUnit.SECONDS);
+
+        // The pipe holds up to 64KiB, so the program itself is held back for the rest
+        assertThat(System.currentTimeMillis() - start).isGreaterThanOrEqualTo(300);
+        assertThat(session.isOutputThrottled()).isTrue();
+        assertThat(session.isOutputLimitExceeded()).isFalse();
+        assertThat(session.getCurrentOutput()).contains("finished");
+    }
+
+    private static ExecutionSession start(String script) throws Exception {
+        Process process = new ProcessBuilder("sh", "-c", script).start();
+        return new ExecutionSession("test", process, null);
+    }
+
+    private static long waitForText(ExecutionSession session, long seen, String text) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!session.getCurrentOutput().contains(text)) {
+            assertThat(System.currentTimeMillis()).as("waiting for " + text).isLessThan(deadline);
+            seen = session.awaitChange(seen, 500);
+        }
+        return seen;
+    }
+}
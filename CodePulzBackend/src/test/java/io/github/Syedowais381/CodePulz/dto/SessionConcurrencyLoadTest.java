@@ -0,0 +1,141 @@
+package io.github.Syedowais381.CodePulz.dto;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Opens many concurrent interactive sessions (a shell that waits for one line of input)
+ * with session I/O on platform threads and then on virtual threads, and reports the
+ * threads each mode holds and the input round-trip latency. Then ramps the number of
+ * sessions up per mode to find how many one JVM sustains: the most sessions that all
+ * start and answer within the p99 latency budget.
+ *
+ * Threads are counted by name, so leftovers of the other mode do not skew the numbers:
+ * the platform pool's own threads, and the virtual-thread scheduler's carriers.
+ *
+ * Excluded from the default build; run with:
+ * mvn test -Pload-test -Dcodepulz.load.sessions=1000 -Dcodepulz.load.max-sessions=4000
+ */
+@Tag("load")
+class SessionConcurrencyLoadTest {
+
+    private static final int SESSIONS = Integer.getInteger("codepulz.load.sessions", 300);
+    // Ramp for the sustainable session count
+    private static final int MAX_SESSIONS = Integer.getInteger("codepulz.load.max-sessions", 2000);
+    private static final int STEP = Integer.getInteger("codepulz.load.step", 250);
+    private static final long P99_BUDGET_MICROS = Long.getLong("codepulz.load.p99-budget-ms", 50) * 1000;
+
+    private static final String PLATFORM_PREFIX = "load-session-io-";
+    // Carrier threads of the default virtual-thread scheduler (not the common pool)
+    private static final String CARRIER_PREFIX = "ForkJoinPool-";
+
+    private record Mode(String name, String threadPrefix, Supplier<ExecutorService> executor) {
+    }
+
+    private record Result(String mode, int threads, long startMs, long p50Micros, long p99Micros) {
+    }
+
+    private static final Mode PLATFORM = new Mode("platform", PLATFORM_PREFIX,
+            () -> Executors.newCachedThreadPool(Thread.ofPlatform().name(PLATFORM_PREFIX, 0).factory()));
+    private static final Mode VIRTUAL = new Mode("virtual", CARRIER_PREFIX, Executors::newVirtualThreadPerTaskExecutor);
+
+    @Test
+    void virtualThreadsHoldFarFewerPlatformThreads() throws Exception {
+        Result platform = run(PLATFORM, SESSIONS);
+        Result virtual = run(VIRTUAL, SESSIONS);
+
+        System.out.printf("%n%d concurrent sessions%n", SESSIONS);
+        for (Result result : List.of(platform, virtual)) {
+            System.out.printf("%-9s platform threads: %5d  start all: %5d ms  input round trip p50: %6d us  p99: %6d us%n",
+                    result.mode(), result.threads(), result.startMs(), result.p50Micros(), result.p99Micros());
+        }
+        assertThat(platform.threads()).isGreaterThan(0);
+        assertThat(virtual.threads()).isLessThan(platform.threads());
+
+        System.out.printf("%nSustainable sessions (p99 round trip within %d ms, up to %d)%n",
+                P99_BUDGET_MICROS / 1000, MAX_SESSIONS);
+        for (Mode mode : List.of(PLATFORM, VIRTUAL)) {
+            System.out.printf("%-9s %5d%n", mode.name(), sustainable(mode));
+        }
+    }
+
+    /**
+     * The largest session count, in steps of STEP, that starts and stays within the
+     * latency budget.
+     */
+    private int sustainable(Mode mode) throws InterruptedException {
+        int sustained = 0;
+        for (int sessions = STEP; sessions <= MAX_SESSIONS; sessions += STEP) {
+            try {
+                if (run(mode, sessions).p99Micros() > P99_BUDGET_MICROS) {
+                    break;
+                }
+                sustained = sessions;
+            } catch (IOException | OutOfMemoryError e) {
+                // Out of processes, file descriptors or native threads
+                System.out.printf("%-9s failed at %d sessions: %s%n", mode.name(), sessions, e);
+                break;
+            }
+        }
+        return sustained;
+    }
+
+    private Result run(Mode mode, int count) throws IOException, InterruptedException {
+        ExecutorService executor = mode.executor().get();
+        List<ExecutionSession> sessions = new ArrayList<>();
+        try {
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                Process process = new ProcessBuilder("sh", "-c", "read line; echo \"echo:$line\"").start();
+                sessions.add(new ExecutionSession(mode.name() + "-" + i, process, null,
+                        ExecutionSession.DEFAULT_OUTPUT_RETENTION_BYTES, executor));
+            }
+            long startMs = (System.nanoTime() - start) / 1_000_000;
+            // Give the reader tasks time to park on their pipes
+            Thread.sleep(500);
+            int threads = threads(mode.threadPrefix());
+
+            long[] latencies = new long[count];
+            for (int i = 0; i < count; i++) {
+                ExecutionSession session = sessions.get(i);
+                long seen = session.getChangeCount();
+                long sent = System.nanoTime();
+                session.sendInput("ping" + i, false);
+                while (!session.getCurrentOutput().contains("echo:ping" + i)) {
+                    seen = session.awaitChange(seen, 5000);
+                }
+                latencies[i] = (System.nanoTime() - sent) / 1000;
+            }
+            Arrays.sort(latencies);
+            return new Result(mode.name(), threads, startMs,
+                    latencies[count / 2], latencies[(int) (count * 0.99)]);
+        } finally {
+            sessions.forEach(ExecutionSession::close);
+            executor.shutdownNow();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Live threads whose name starts with prefix.
+     */
+    private static int threads(String prefix) {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        return (int) Arrays.stream(threads.dumpAllThreads(false, false))
+                .filter(info -> info.getThreadName().startsWith(prefix))
+                .count();
+    }
+}
@@ -0,0 +1,63 @@
+package io.github.Syedowais381.CodePulz.metrics;
+
+import io.github.Syedowais381.CodePulz.config.SandboxPoolProperties;
+import io.github.Syedowais381.CodePulz.metrics.ExecutionMetrics.Phase;
+import io.github.Syedowais381.CodePulz.sandbox.Language;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExecutionMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ExecutionMetrics metrics = new ExecutionMetrics(registry);
+
+    @Test
+    void recordsEachPhaseUnderItsOwnTags() {
+        metrics.record(Phase.COMPILE, Language.CPP, true, 120, TimeUnit.MILLISECONDS);
+        metrics.record(Phase.COMPILE, Language.CPP, true, 80, TimeUnit.MILLISECONDS);
+        metrics.record(Phase.RUN, Language.CPP, false, 900, TimeUnit.MILLISECONDS);
+
+        Timer compile = registry.get(ExecutionMetrics.PHASE_TIMER)
+                .tags("phase", "compile", "language", "cpp", "sandbox", "pooled").timer();
+        assertThat(compile.count()).isEqualTo(2);
+        assertThat(compile.totalTime(TimeUnit.MILLISECONDS)).isEqualTo(200);
+
+        Timer run = registry.get(ExecutionMetrics.PHASE_TIMER)
+                .tags("phase", "run", "language", "cpp", "sandbox", "cold").timer();
+        assertThat(run.count()).isEqualTo(1);
+        assertThat(registry.find(ExecutionMetrics.PHASE_TIMER).tags("phase", "run", "sandbox", "pooled").timer())
+                .isNull();
+    }
+
+    @Test
+    void tagsSamplesWithTheLanguagesRunner() {
+        SandboxPoolProperties poolProperties = new SandboxPoolProperties();
+        SandboxPoolProperties.Overrides python = new SandboxPoolProperties.Overrides();
+        python.setRunner("local");
+        poolProperties.getLanguages().put("python", python);
+        ExecutionMetrics byRunner = new ExecutionMetrics(registry, poolProperties);
+
+        byRunner.record(Phase.RUN, Language.PYTHON, false, 40, TimeUnit.MILLISECONDS);
+        byRunner.record(Phase.RUN, Language.C, false, 900, TimeUnit.MILLISECONDS);
+
+        assertThat(registry.get(ExecutionMetrics.PHASE_TIMER).tags("language", "python", "runner", "local").timer()
+                .count()).isEqualTo(1);
+        assertThat(registry.get(ExecutionMetrics.PHASE_TIMER).tags("language", "c", "runner", "docker").timer()
+                .count()).isEqualTo(1);
+    }
+
+    @Test
+    void clampsNegativeDurations() {
+        // Timestamps from different clocks (or a clock step) must not break the timer
+        metrics.record(Phase.FIRST_OUTPUT, Language.PYTHON, true, -5, TimeUnit.MILLISECONDS);
+
+        Timer timer = metrics.timer(Phase.FIRST_OUTPUT, Language.PYTHON, true);
+        assertThat(timer.count()).isEqualTo(1);
+        assertThat(timer.totalTime(TimeUnit.MILLISECONDS)).isZero();
+    }
+}
@@ -0,0 +1,399 @@
+package io.github.Syedowais381.CodePulz.sandbox;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DockerEngineClientTest {
+
+    @TempDir
+    Path dir;
+
+    private FakeDaemon daemon;
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (daemon != null) {
+            daemon.close();
+        }
+    }
+
+    @Test
+    void runWaitsAndAttachesBeforeStartingAndSplitsTheStreams() throws Exception {
+        CountDownLatch exited = new CountDownLatch(1);
+        daemon = new FakeDaemon(dir.resolve("docker.sock"), (target, body, in, out) -> {
+            switch (target) {
+                case "POST /v1.41/containers/create" -> respond(out, 201, "{\"Id\":\"c1\"}");
+                case "POST /v1.41/containers/c1/wait?condition=removed" -> {
+                    out.write(("HTTP/1.1 200 OK\r\nContent-Type: application/json\r\n"
+                            + "Transfer-Encoding: chunked\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+                    out.flush();
+                    exited.await();
+                    String status = "{\"StatusCode\":3}\n";
+                    out.write((Integer.toHexString(status.length()) + "\r\n" + status + "\r\n0\r\n\r\n")
+                            .getBytes(StandardCharsets.US_ASCII));
+                    return false;
+                }
+                case "POST /v1.41/containers/c1/attach?stream=1&stdin=1&stdout=1&stderr=1" -> {
+                    out.write("HTTP/1.1 101 UPGRADED\r\nConnection: Upgrade\r\nUpgrade: tcp\r\n\r\n"
+                            .getBytes(StandardCharsets.US_ASCII));
+                    out.flush();
+                    String line = new String(in.readAllBytes(), StandardCharsets.UTF_8).trim();
+                    frame(out, 1, "got " + line + "\n");
+                    frame(out, 2, "oops\n");
+                    frame(out, 1, "bye\n");
+                    out.flush();
+                    exited.countDown();
+                    return false;
+                }
+                case "POST /v1.41/containers/c1/start" -> respond(out, 204, null);
+                default -> respond(out, 404, "{\"message\":\"unexpected " + target + "\"}");
+            }
+            return true;
+        });
+        DockerEngineClient client = new DockerEngineClient(daemon.socket, 2);
+
+        Process process = client.run(Map.of("Image", "alpine", "Cmd", List.of("cat")));
+        process.getOutputStream().write("hello\n".getBytes(StandardCharsets.UTF_8));
+        process.getOutputStream().close();
+
+        assertThat(new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8))
+                .isEqualTo("got hello\nbye\n");
+        assertThat(new String(process.getErrorStream().readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("oops\n");
+        assertThat(process.waitFor(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(process.exitValue()).isEqualTo(3);
+        assertThat(daemon.requests).containsExactly(
+                "POST /v1.41/containers/create",
+                "POST /v1.41/containers/c1/wait?condition=removed",
+                "POST /v1.41/containers/c1/attach?stream=1&stdin=1&stdout=1&stderr=1",
+                "POST /v1.41/containers/c1/start");
+        assertThat(daemon.bodies.get(0)).contains("\"OpenStdin\":true", "\"StdinOnce\":true", "\"Tty\":false");
+    }
+
+    @Test
+    void requestsReuseAPooledConnection() throws Exception {
+        daemon = new FakeDaemon(dir.resolve("docker.sock"), (target, body, in, out) -> {
+            if (target.endsWith("/json")) {
+                respond(out, 200, "{\"State\":{\"Pid\":4242}}");
+            } else {
+                respond(out, 204, null);
+            }
+            return true;
+        });
+        DockerEngineClient client = new DockerEngineClient(daemon.socket, 2);
+
+        client.startContainer("c1");
+        assertThat(client.containerPid("c1")).isEqualTo(4242);
+        client.removeContainer("c1");
+
+        assertThat(daemon.connections.get()).isEqualTo(1);
+    }
+
+    @Test
+    void staleConnectionIsReplaced() throws Exception {
+        // Answers one request per connection, then hangs up
+        daemon = new FakeDaemon(dir.resolve("docker.sock"), (target, body, in, out) -> {
+            respond(out, 204, null);
+            return false;
+        });
+        DockerEngineClient client = new DockerEngineClient(daemon.socket, 2);
+
+        client.startContainer("c1");
+        Thread.sleep(50);
+        client.startContainer("c2");
+
+        assertThat(daemon.requests).hasSize(2);
+        assertThat(daemon.connections.get()).isEqualTo(2);
+    }
+
+    @Test
+    void missingImageIsPulledBeforeCreatingAgain() throws Exception {
+        AtomicInteger creates = new AtomicInteger();
+        daemon = new FakeDaemon(dir.resolve("docker.sock"), (target, body, in, out) -> {
+            if (target.startsWith("POST /v1.41/containers/create")) {
+                if (creates.getAndIncrement() == 0) {
+                    respond(out, 404, "{\"message\":\"No such image: python:3.11\"}");
+                } else {
+                    respond(out, 201, "{\"Id\":\"c1\"}");
+                }
+            } else {
+                respond(out, 200, "{\"status\":\"Pulling from library/python\"}\n{\"status\":\"Downloaded\"}\n");
+            }
+            return true;
+        });
+        DockerEngineClient client = new DockerEngineClient(daemon.socket, 2);
+
+        assertThat(client.createContainer("sandbox", Map.of("Image", "python:3.11"))).isEqualTo("c1");
+        assertThat(daemon.requests).containsExactly(
+                "POST /v1.41/containers/create?name=sandbox",
+                "POST /v1.41/images/create?fromImage=python&tag=3.11",
+                "POST /v1.41/containers/create?name=sandbox");
+    }
+
+    @Test
+    void daemonErrorsCarryItsMessage() throws Exception {
+        daemon = new FakeDaemon(dir.resolve("docker.sock"), (target, body, in, out) -> {
+            respond(out, 500, "{\"message\":\"driver failed\"}");
+            return true;
+        });
+        DockerEngineClient client = new DockerEngineClient(daemon.socket, 2);
+
+        assertThatThrownBy(() -> client.startContainer("c1"))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("start container (500): driver failed");
+    }
+
+    @Test
+    void unansweredCallTimesOut() throws Exception {
+        CountDownLatch hangUp = new CountDownLatch(1);
+        daemon = new FakeDaemon(dir.resolve("docker.sock"), (target, body, in, out) -> {
+            hangUp.await();
+            return false;
+        });
+        DockerEngineClient client = new DockerEngineClient(daemon.socket, 2, 300, 100);
+
+        long start = System.currentTimeMillis();
+        assertThatThrownBy(() -> client.startContainer("c1"))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("timed out after 100 ms");
+        assertThatThrownBy(() -> client.exec("c1", List.of("true"), null, false))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("timed out after 100 ms");
+        assertThat(System.currentTimeMillis() - start).isLessThan(5000);
+        hangUp.countDown();
+    }
+
+    @Test
+    void createTimeoutCoversTheImplicitPull() throws Exception {
+        CountDownLatch hangUp = new CountDownLatch(1);
+        daemon = new FakeDaemon(dir.resolve("docker.sock"), (target, body, in, out) -> {
+            if (target.startsWith("POST /v1.41/containers/create")) {
+                respond(out, 404, "{\"message\":\"No such image: python:3.11\"}");
+                return true;
+            }
+            hangUp.await();
+            return false;
+        });
+        DockerEngineClient client = new DockerEngineClient(daemon.socket, 2, 300, 100);
+
+        assertThatThrownBy(() -> client.createContainer("sandbox", Map.of("Image", "python:3.11")))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("/images/create")
+                .hasMessageContaining("timed out");
+        hangUp.countDown();
+    }
+
+    @Test
+    void execReportsTheExitCodeOnceTheExecStopped() throws Exception {
+        AtomicInteger inspections = new AtomicInteger();
+        daemon = new FakeDaemon(dir.resolve("docker.sock"), (target, body, in, out) -> {
+            switch (target) {
+                case "POST /v1.41/containers/c1/exec" -> respond(out, 201, "{\"Id\":\"e1\"}");
+                case "POST /v1.41/exec/e1/start" -> {
+                    out.write("HTTP/1.1 101 UPGRADED\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+                    frame(out, 1, "done\n");
+                    return false;
+                }
+                default -> respond(out, 200, inspections.incrementAndGet() < 3
+                        ? "{\"Running\":true,\"ExitCode\":0}" : "{\"Running\":false,\"ExitCode\":5}");
+            }
+            return true;
+        });
+        DockerEngineClient client = new DockerEngineClient(daemon.socket, 2);
+
+        Process process = client.exec("c1", List.of("sh", "-c", "echo done; exit 5"), "/app", false);
+
+        assertThat(new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("done\n");
+        assertThat(process.waitFor(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(process.exitValue()).isEqualTo(5);
+        assertThat(daemon.bodies.get(0)).contains("\"AttachStdin\":false", "\"WorkingDir\":\"/app\"",
+                "\"Cmd\":[\"sh\",\"-c\",\"echo done; exit 5\"]");
+        assertThat(daemon.bodies.get(1)).contains("\"Detach\":false");
+    }
+
+    @Test
+    void destroyCutsAnExecStream() throws Exception {
+        CountDownLatch hangUp = new CountDownLatch(1);
+        daemon = new FakeDaemon(dir.resolve("docker.sock"), (target, body, in, out) -> {
+            if (target.endsWith("/exec")) {
+                respond(out, 201, "{\"Id\":\"e1\"}");
+                return true;
+            }
+            out.write("HTTP/1.1 101 UPGRADED\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            frame(out, 1, "started\n");
+            hangUp.await();
+            return false;
+        });
+        DockerEngineClient client = new DockerEngineClient(daemon.socket, 2);
+
+        Process process = client.exec("c1", List.of("sleep", "60"), null, true);
+        byte[] first = new byte[8];
+        assertThat(process.getInputStream().readNBytes(first, 0, first.length)).isEqualTo(8);
+        assertThat(process.isAlive()).isTrue();
+
+        process.destroy();
+
+        assertThat(process.waitFor(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(process.exitValue()).isEqualTo(EngineProcess.DESTROYED_EXIT_CODE);
+        hangUp.countDown();
+    }
+
+    @Test
+    void slowReaderHoldsBackTheStreamInsteadOfBuffering() throws Exception {
+        int frames = 64;
+        int frameBytes = 16 * 1024;
+        CountDownLatch allSent = new CountDownLatch(1);
+        daemon = new FakeDaemon(dir.resolve("docker.sock"), (target, body, in, out) -> {
+            if (target.endsWith("/exec")) {
+                respond(out, 201, "{\"Id\":\"e1\"}");
+                return true;
+            }
+            if (target.endsWith("/json")) {
+                respond(out, 200, "{\"Running\":false,\"ExitCode\":0}");
+                return true;
+            }
+            out.write("HTTP/1.1 101 UPGRADED\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            for (int i = 0; i < frames; i++) {
+                frame(out, 1, "x".repeat(frameBytes));
+            }
+            out.flush();
+            allSent.countDown();
+            return false;
+        });
+        DockerEngineClient client = new DockerEngineClient(daemon.socket, 2);
+
+        Process process = client.exec("c1", List.of("yes"), null, false);
+
+        // 1 MiB does not fit in the stream buffer and socket buffers until it is read
+        assertThat(allSent.await(300, TimeUnit.MILLISECONDS)).isFalse();
+        assertThat(process.getInputStream().readAllBytes()).hasSize(frames * frameBytes);
+        assertThat(allSent.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(process.waitFor(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    private static void respond(OutputStream out, int status, String json) throws IOException {
+        byte[] body = json == null ? new byte[0] : json.getBytes(StandardCharsets.UTF_8);
+        String head = "HTTP/1.1 " + status + " Status\r\n"
+                + (json == null ? "" : "Content-Type: application/json\r\nContent-Length: " + body.length + "\r\n")
+                + "\r\n";
+        out.write(head.getBytes(StandardCharsets.US_ASCII));
+        out.write(body);
+        out.flush();
+    }
+
+    private static void frame(OutputStream out, int stream, String payload) throws IOException {
+        byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+        out.write(new byte[] { (byte) stream, 0, 0, 0,
+                (byte) (bytes.length >>> 24), (byte) (bytes.length >>> 16), (byte) (bytes.length >>> 8),
+                (byte) bytes.length });
+        out.write(bytes);
+    }
+
+    /**
+     * Speaks just enough HTTP/1.1 on a Unix socket to stand in for the Docker daemon:
+     * each connection is served by its own thread, one request at a time.
+     */
+    private static final class FakeDaemon implements AutoCloseable {
+
+        interface Handler {
+            // Returns whether the connection is kept open for further requests
+            boolean handle(String target, String body, InputStream in, OutputStream out) throws Exception;
+        }
+
+        final Path socket;
+        final List<String> requests = new CopyOnWriteArrayList<>();
+        final List<String> bodies = new CopyOnWriteArrayList<>();
+        final AtomicInteger connections = new AtomicInteger();
+        private final ServerSocketChannel server;
+        private final Handler handler;
+
+        FakeDaemon(Path socket, Handler handler) throws IOException {
+            this.socket = socket;
+            this.handler = handler;
+            this.server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            server.bind(UnixDomainSocketAddress.of(socket));
+            Thread.ofPlatform().daemon(true).name("fake-docker").start(this::accept);
+        }
+
+        private void accept() {
+            while (server.isOpen()) {
+                try {
+                    SocketChannel channel = server.accept();
+                    connections.incrementAndGet();
+                    Thread.ofPlatform().daemon(true).name("fake-docker-connection").start(() -> serve(channel));
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        private void serve(SocketChannel channel) {
+            try (channel) {
+                InputStream in = new BufferedInputStream(Channels.newInputStream(channel));
+                OutputStream out = Channels.newOutputStream(channel);
+                while (true) {
+                    String requestLine = readLine(in);
+                    if (requestLine == null) {
+                        return;
+                    }
+                    int length = 0;
+                    for (String line = readLine(in); line != null && !line.isEmpty(); line = readLine(in)) {
+                        if (line.toLowerCase().startsWith("content-length:")) {
+                            length = Integer.parseInt(line.substring(15).trim());
+                        }
+                    }
+                    String[] parts = requestLine.split(" ");
+                    String target = parts[0] + " " + parts[1];
+                    String body = new String(in.readNBytes(length), StandardCharsets.UTF_8);
+                    requests.add(target);
+                    if (!body.isEmpty()) {
+                        bodies.add(body);
+                    }
+                    if (!handler.handle(target, body, in, out)) {
+                        return;
+                    }
+                }
+            } catch (Exception e) {
+                // Client went away
+            }
+        }
+
+        private static String readLine(InputStream in) throws IOException {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int b;
+            while ((b = in.read()) != -1 && b != '\n') {
+                if (b != '\r') {
+                    line.write(b);
+                }
+            }
+            return b == -1 && line.size() == 0 ? null : line.toString(StandardCharsets.US_ASCII);
+        }
+
+        @Override
+        public void close() throws IOException {
+            server.close();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package io.github.Syedowais381.CodePulz.sandbox;
+
+import io.github.Syedowais381.CodePulz.config.SandboxPoolProperties;
+import io.github.Syedowais381.CodePulz.config.WorkspaceProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@EnabledOnOs(OS.LINUX)
+class LocalProcessSandboxRunnerTest {
+
+    private final WorkspaceManager workspaces = new WorkspaceManager(new WorkspaceProperties());
+    private final SandboxPoolProperties properties = new SandboxPoolProperties();
+    private LocalProcessSandboxRunner runner;
+    private Sandbox sandbox;
+
+    @AfterEach
+    void tearDown() {
+        if (sandbox != null) {
+            runner.destroy(sandbox);
+        }
+    }
+
+    @Test
+    void programsRunUnderTheConfiguredRlimits() throws Exception {
+        properties.getLocal().setCpuSeconds(7);
+        properties.getLocal().setMaxOpenFiles(100);
+        properties.getLocal().setMemoryMb(300);
+        runner = new LocalProcessSandboxRunner(workspaces, properties);
+        sandbox = runner.create(Language.C);
+
+        Process process = runner.exec(sandbox, "ulimit -t; ulimit -n; ulimit -d; pwd");
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+
+        assertThat(process.waitFor()).isZero();
+        assertThat(output.lines()).containsExactly("7", "100", String.valueOf(300 * 1024),
+                sandbox.getWorkspace().toRealPath().toString());
+    }
+
+    @Test
+    void programSeesItsStdinAndExitCode() throws Exception {
+        runner = new LocalProcessSandboxRunner(workspaces, properties);
+        sandbox = runner.create(Language.PYTHON);
+
+        Process process = runner.exec(sandbox, "read line; echo \"got $line\"; echo oops >&2; exit 4");
+        process.getOutputStream().write("hello\n".getBytes(StandardCharsets.UTF_8));
+        process.getOutputStream().close();
+
+        assertThat(new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("got hello\n");
+        assertThat(new String(process.getErrorStream().readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("oops\n");
+        assertThat(process.waitFor()).isEqualTo(4);
+    }
+
+    @Test
+    void coldStartRunsInTheGivenWorkspace() throws Exception {
+        runner = new LocalProcessSandboxRunner(workspaces, properties);
+        Path workspace = workspaces.acquire();
+        try {
+            Files.writeString(workspace.resolve("script.py"), "print('hi')");
+
+            Process process = runner.start(Language.PYTHON, workspace, "cat script.py");
+
+            assertThat(new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8))
+                    .isEqualTo("print('hi')");
+            assertThat(process.waitFor()).isZero();
+        } finally {
+            workspaces.discard(workspace);
+        }
+    }
+
+    @Test
+    void runsWithoutNamespacesWhenIsolationIsOff() throws Exception {
+        properties.getLocal().setIsolateNetwork(false);
+        properties.getLocal().setMaxOpenFiles(0);
+        runner = new LocalProcessSandboxRunner(workspaces, properties);
+
+        assertThat(runner.limitedCommand(null, null, "true")).doesNotContain("unshare")
+                .noneMatch(argument -> argument.contains("ulimit -n"));
+    }
+}
@@ -0,0 +1,135 @@
+package io.github.Syedowais381.CodePulz.sandbox;
+
+import io.github.Syedowais381.CodePulz.config.SandboxPoolProperties;
+import io.github.Syedowais381.CodePulz.config.WorkspaceProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class RuntimeWorkerTest {
+
+    private LocalProcessSandboxRunner runner;
+    private Sandbox sandbox;
+
+    @AfterEach
+    void tearDown() {
+        if (sandbox != null) {
+            runner.destroy(sandbox);
+        }
+    }
+
+    @Test
+    void replacesSandboxOnceWorkerGrowsBeyondLimit() throws Exception {
+        RuntimeWorker worker = new RuntimeWorker(Language.PYTHON, "/run/codepulz");
+
+        worker.checkMemory("Name:\tpython\nVmRSS:\t   20480 kB\n", 8 * 1024 * 1024);
+        worker.checkMemory("VmRSS:\t   26624 kB\n", 8 * 1024 * 1024);
+        worker.checkMemory("no memory line", 8 * 1024 * 1024);
+
+        assertThatThrownBy(() -> worker.checkMemory("VmRSS:\t   30720 kB\n", 8 * 1024 * 1024))
+                .isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void nativeLanguagesHaveNoWorkers() {
+        assertThat(RuntimeWorker.supports(Language.PYTHON)).isTrue();
+        assertThat(RuntimeWorker.supports(Language.JAVASCRIPT)).isTrue();
+        assertThat(RuntimeWorker.supports(Language.JAVA)).isTrue();
+        assertThat(RuntimeWorker.supports(Language.CPP)).isFalse();
+        assertThat(new RuntimeWorker(Language.JAVA, "/run/codepulz").isInProcess()).isTrue();
+        assertThat(new RuntimeWorker(Language.PYTHON, "/run/codepulz").isInProcess()).isFalse();
+        assertThat(new RuntimeWorker(Language.JAVA, "/run/codepulz").isSingleUse()).isTrue();
+        assertThat(new RuntimeWorker(Language.PYTHON, "/run/codepulz").isSingleUse()).isFalse();
+    }
+
+    @Test
+    @EnabledOnOs(OS.LINUX)
+    void workerRunsEachProgramInItsOwnChild() throws Exception {
+        assumeTrue(onPath("python"), "python is not installed");
+        SandboxPoolProperties properties = new SandboxPoolProperties();
+        properties.setRuntimeWorkers(true);
+        runner = new LocalProcessSandboxRunner(new WorkspaceManager(new WorkspaceProperties()), properties);
+        sandbox = runner.create(Language.PYTHON);
+        RuntimeWorker worker = sandbox.getWorker();
+        assertThat(worker).isNotNull();
+        String workerPid = awaitStart(worker);
+
+        Files.writeString(sandbox.getWorkspace().resolve("script.py"),
+                "import os\nCOUNT = globals().get('COUNT', 0) + 1\n"
+                        + "print(os.getppid(), COUNT, input('? '))\nraise SystemExit(3)\n");
+        for (String input : new String[]{"first", "second"}) {
+            Process process = runner.exec(sandbox, worker.getRunCommand());
+            process.getOutputStream().write((input + "\n").getBytes(StandardCharsets.UTF_8));
+            process.getOutputStream().close();
+
+            String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            // Forked from the worker, and no state left over from the previous run
+            assertThat(output).isEqualTo("? " + workerPid + " 1 " + input + "\n");
+            assertThat(process.waitFor()).isEqualTo(3);
+        }
+    }
+
+    @Test
+    @EnabledOnOs(OS.LINUX)
+    void javaWorkerRunsOneProgramThenTheSandboxIsReplaced() throws Exception {
+        assumeTrue(onPath("javac"), "a JDK is not installed");
+        SandboxPoolProperties properties = new SandboxPoolProperties();
+        properties.setRuntimeWorkers(true);
+        runner = new LocalProcessSandboxRunner(new WorkspaceManager(new WorkspaceProperties()), properties);
+        sandbox = runner.create(Language.JAVA);
+        RuntimeWorker worker = sandbox.getWorker();
+        long workerPid = Long.parseLong(awaitStart(worker));
+
+        // A thread outside the program's group would outlive the run in a reused JVM
+        Files.writeString(sandbox.getWorkspace().resolve("Main.java"),
+                "public class Main {\n"
+                        + "    public static void main(String[] args) {\n"
+                        + "        new Thread(Thread.currentThread().getThreadGroup().getParent(), () -> {\n"
+                        + "            while (true) { try { Thread.sleep(1000); } catch (InterruptedException e) { } }\n"
+                        + "        }).start();\n"
+                        + "        System.out.println(new java.util.Scanner(System.in).nextLine());\n"
+                        + "        System.exit(3);\n    }\n}\n");
+        Process process = runner.exec(sandbox, worker.getRunCommand());
+        process.getOutputStream().write("first\n".getBytes(StandardCharsets.UTF_8));
+        process.getOutputStream().close();
+
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        // System.exit ends the program with its code, and the worker JVM with it
+        assertThat(output).isEqualTo("first\n");
+        assertThat(process.waitFor()).isEqualTo(3);
+        assertThat(worker.isSingleUse()).isTrue();
+        ProcessHandle.of(workerPid).ifPresent(handle -> handle.onExit().join());
+        assertThatThrownBy(() -> runner.reset(sandbox)).isInstanceOf(IOException.class);
+    }
+
+    private static String awaitStart(RuntimeWorker worker) throws Exception {
+        Path pidFile = Path.of(worker.getControlDir(), "pid");
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!Files.exists(pidFile)) {
+            assertThat(System.currentTimeMillis()).as("worker did not start").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+        return Files.readString(pidFile).trim();
+    }
+
+    private static boolean onPath(String command) {
+        try {
+            return new ProcessBuilder(command, "--version").start().waitFor() == 0;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
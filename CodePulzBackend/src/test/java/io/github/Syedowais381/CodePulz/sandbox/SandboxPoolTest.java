@@ -0,0 +1,165 @@
+package io.github.Syedowais381.CodePulz.sandbox;
+
+import io.github.Syedowais381.CodePulz.config.SandboxPoolProperties;
+import io.github.Syedowais381.CodePulz.config.WorkspaceProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SandboxPoolTest {
+
+    private final CountingRunner runner = new CountingRunner();
+    private SandboxPool pool;
+
+    @AfterEach
+    void tearDown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void refillWarmsMinimumIdlePerLanguage() {
+        pool = newPool(2, 3, 10);
+        pool.refill();
+
+        for (Language language : Language.values()) {
+            assertThat(pool.idleCount(language)).isEqualTo(2);
+        }
+        assertThat(runner.created.get()).isEqualTo(2 * Language.values().length);
+    }
+
+    @Test
+    void releasedSandboxIsResetAndReused() throws Exception {
+        pool = newPool(0, 1, 10);
+
+        Sandbox first = pool.acquire(Language.PYTHON);
+        Files.writeString(first.getWorkspace().resolve("script.py"), "print('hi')");
+        Process process = runner.exec(first, "cat script.py");
+        assertThat(new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8)).contains("print('hi')");
+        pool.release(first);
+        await(() -> pool.idleCount(Language.PYTHON) == 1);
+
+        Sandbox second = pool.acquire(Language.PYTHON);
+        assertThat(second).isSameAs(first);
+        assertThat(second.getUses()).isEqualTo(2);
+        try (var files = Files.list(second.getWorkspace())) {
+            assertThat(files).isEmpty();
+        }
+        pool.release(second);
+    }
+
+    @Test
+    void sandboxIsReplacedAfterReuseLimit() throws Exception {
+        pool = newPool(0, 1, 1);
+
+        Sandbox sandbox = pool.acquire(Language.GO);
+        pool.release(sandbox);
+        await(() -> runner.destroyed.get() == 1);
+
+        assertThat(pool.totalCount(Language.GO)).isZero();
+        assertThat(Files.exists(sandbox.getWorkspace())).isFalse();
+    }
+
+    @Test
+    void acquireGivesUpWhenPoolIsExhausted() {
+        pool = newPool(0, 1, 10);
+
+        Sandbox held = pool.acquire(Language.C);
+        assertThat(held).isNotNull();
+        assertThat(pool.acquire(Language.C)).isNull();
+        pool.release(held);
+    }
+
+    @Test
+    void failedCreateGivesItsSlotBack() {
+        pool = newPool(0, 1, 10);
+        runner.failCreate = new IllegalStateException("no such image");
+
+        assertThat(pool.acquire(Language.C)).isNull();
+        assertThat(pool.totalCount(Language.C)).isZero();
+
+        runner.failCreate = null;
+        Sandbox sandbox = pool.acquire(Language.C);
+        assertThat(sandbox).isNotNull();
+        pool.release(sandbox);
+    }
+
+    @Test
+    void usesTheRunnerConfiguredForEachLanguage() {
+        SandboxPoolProperties properties = new SandboxPoolProperties();
+        SandboxPoolProperties.Overrides python = new SandboxPoolProperties.Overrides();
+        python.setRunner(LocalProcessSandboxRunner.NAME);
+        properties.getLanguages().put("python", python);
+        DockerSandboxRunner docker = new DockerSandboxRunner(new WorkspaceManager(new WorkspaceProperties()), properties);
+
+        pool = new SandboxPool(List.of(docker, runner), properties);
+
+        assertThat(pool.getRunner(Language.PYTHON)).isSameAs(runner);
+        assertThat(pool.getRunner(Language.C)).isSameAs(docker);
+    }
+
+    @Test
+    void rejectsUnknownRunner() {
+        SandboxPoolProperties properties = new SandboxPoolProperties();
+        properties.setRunner("firecracker");
+
+        assertThatThrownBy(() -> new SandboxPool(List.of(runner), properties))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("firecracker");
+    }
+
+    private SandboxPool newPool(int minIdle, int maxSize, int maxUses) {
+        SandboxPoolProperties properties = new SandboxPoolProperties();
+        properties.setEnabled(true);
+        properties.setMinIdle(minIdle);
+        properties.setMaxSize(maxSize);
+        properties.setMaxUses(maxUses);
+        properties.setAcquireTimeoutMs(50);
+        // Driven manually through refill() in these tests
+        properties.setRefillIntervalMs(60_000);
+        return new SandboxPool(runner, properties);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("condition not met in time").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static class CountingRunner extends LocalProcessSandboxRunner {
+        private final AtomicInteger created = new AtomicInteger();
+        private final AtomicInteger destroyed = new AtomicInteger();
+        private volatile RuntimeException failCreate;
+
+        private CountingRunner() {
+            super(new WorkspaceManager(new WorkspaceProperties()), new SandboxPoolProperties());
+        }
+
+        @Override
+        public Sandbox create(Language language) throws IOException {
+            created.incrementAndGet();
+            if (failCreate != null) {
+                throw failCreate;
+            }
+            return super.create(language);
+        }
+
+        @Override
+        public void destroy(Sandbox sandbox) {
+            destroyed.incrementAndGet();
+            super.destroy(sandbox);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package io.github.Syedowais381.CodePulz.sandbox;
+
+import io.github.Syedowais381.CodePulz.config.WorkspaceProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WorkspaceManagerTest {
+
+    @TempDir
+    Path root;
+
+    private WorkspaceManager workspaces;
+
+    @BeforeEach
+    void setUp() {
+        WorkspaceProperties properties = new WorkspaceProperties();
+        properties.setDirectory(root.toString());
+        properties.setMaxIdle(1);
+        properties.setOrphanAgeMs(60000);
+        workspaces = new WorkspaceManager(properties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        workspaces.shutdown();
+    }
+
+    @Test
+    void releasedWorkspaceIsEmptiedAndReused() throws Exception {
+        Path first = workspaces.acquire();
+        Files.writeString(first.resolve("Main.java"), "class Main {}");
+        Files.createDirectories(first.resolve("out"));
+        workspaces.release(first);
+
+        assertThat(workspaces.getIdleCount()).isEqualTo(1);
+        Path second = workspaces.acquire();
+        assertThat(second).isEqualTo(first);
+        try (var files = Files.list(second)) {
+            assertThat(files).isEmpty();
+        }
+        assertThat(workspaces.getInUseCount()).isEqualTo(1);
+    }
+
+    @Test
+    void workspacesBeyondMaxIdleAreDeleted() throws Exception {
+        Path first = workspaces.acquire();
+        Path second = workspaces.acquire();
+        workspaces.release(first);
+        workspaces.release(second);
+
+        assertThat(workspaces.getIdleCount()).isEqualTo(1);
+        assertThat(first).isDirectory();
+        assertThat(second).doesNotExist();
+    }
+
+    @Test
+    void discardDeletesTheWorkspace() throws Exception {
+        Path workspace = workspaces.acquire();
+        Files.writeString(workspace.resolve("a.out"), "binary");
+        workspaces.discard(workspace);
+
+        assertThat(workspace).doesNotExist();
+        assertThat(workspaces.getInUseCount()).isZero();
+        assertThat(workspaces.getIdleCount()).isZero();
+    }
+
+    @Test
+    void sweepRemovesOldOrphansOnly() throws Exception {
+        FileTime old = FileTime.fromMillis(System.currentTimeMillis() - 120000);
+        Path orphan = Files.createDirectories(root.resolve("ws-orphan"));
+        Files.writeString(orphan.resolve("leftover.txt"), "x");
+        Files.setLastModifiedTime(orphan, old);
+        Path recent = Files.createDirectories(root.resolve("ws-recent"));
+        Path unrelated = Files.createDirectories(root.resolve("other"));
+        Files.setLastModifiedTime(unrelated, old);
+        Path inUse = workspaces.acquire();
+        Files.setLastModifiedTime(inUse, old);
+
+        workspaces.sweep();
+
+        assertThat(orphan).doesNotExist();
+        assertThat(recent).isDirectory();
+        assertThat(unrelated).isDirectory();
+        assertThat(inUse).isDirectory();
+    }
+}
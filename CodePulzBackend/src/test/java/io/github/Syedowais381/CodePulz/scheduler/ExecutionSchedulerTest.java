@@ -0,0 +1,127 @@
+package io.github.Syedowais381.CodePulz.scheduler;
+
+import io.github.Syedowais381.CodePulz.config.AdmissionProperties;
+import io.github.Syedowais381.CodePulz.sandbox.Language;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ExecutionSchedulerTest {
+
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+    }
+
+    private static AdmissionProperties properties(int maxConcurrent, int maxPerClient, int maxQueue) {
+        AdmissionProperties properties = new AdmissionProperties();
+        properties.setMaxConcurrent(maxConcurrent);
+        properties.setMaxPerClient(maxPerClient);
+        properties.setMaxQueue(maxQueue);
+        properties.setMaxWaitMs(5000);
+        return properties;
+    }
+
+    private Future<ExecutionScheduler.Ticket> acquireAsync(ExecutionScheduler scheduler, String client,
+                                                           List<String> order) {
+        return callers.submit(() -> {
+            ExecutionScheduler.Ticket ticket = scheduler.acquire(client, Language.PYTHON);
+            order.add(client);
+            return ticket;
+        });
+    }
+
+    private static void awaitQueued(ExecutionScheduler scheduler, int queued) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (scheduler.getQueued() != queued && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(scheduler.getQueued()).isEqualTo(queued);
+    }
+
+    @Test
+    void servesClientsRoundRobinSoABurstCannotStarveOthers() throws Exception {
+        ExecutionScheduler scheduler = new ExecutionScheduler(properties(1, 10, 10));
+        ExecutionScheduler.Ticket running = scheduler.acquire("busy", Language.PYTHON);
+
+        List<String> order = new CopyOnWriteArrayList<>();
+        Future<ExecutionScheduler.Ticket> busy1 = acquireAsync(scheduler, "busy", order);
+        awaitQueued(scheduler, 1);
+        Future<ExecutionScheduler.Ticket> busy2 = acquireAsync(scheduler, "busy", order);
+        awaitQueued(scheduler, 2);
+        Future<ExecutionScheduler.Ticket> other = acquireAsync(scheduler, "other", order);
+        awaitQueued(scheduler, 3);
+        assertThat(scheduler.getRunning()).isEqualTo(1);
+
+        running.release();
+        busy1.get(2, TimeUnit.SECONDS).release();
+        ExecutionScheduler.Ticket otherTicket = other.get(2, TimeUnit.SECONDS);
+        assertThat(otherTicket.getQueuePosition()).isEqualTo(2);
+        otherTicket.release();
+        busy2.get(2, TimeUnit.SECONDS).release();
+
+        assertThat(order).containsExactly("busy", "other", "busy");
+        assertThat(scheduler.getRunning()).isZero();
+    }
+
+    @Test
+    void perClientQuotaLetsOtherClientsRunFirst() throws Exception {
+        ExecutionScheduler scheduler = new ExecutionScheduler(properties(4, 1, 10));
+        ExecutionScheduler.Ticket first = scheduler.acquire("a", Language.PYTHON);
+
+        List<String> order = new CopyOnWriteArrayList<>();
+        Future<ExecutionScheduler.Ticket> second = acquireAsync(scheduler, "a", order);
+        awaitQueued(scheduler, 1);
+        ExecutionScheduler.Ticket otherClient = scheduler.acquire("b", Language.PYTHON);
+        assertThat(otherClient.getQueuePosition()).isZero();
+        assertThat(second.isDone()).isFalse();
+
+        first.release();
+        second.get(2, TimeUnit.SECONDS);
+        assertThat(scheduler.getRunning()).isEqualTo(2);
+    }
+
+    @Test
+    void languageCapHoldsBackOnlyThatLanguage() throws Exception {
+        AdmissionProperties properties = properties(4, 10, 10);
+        properties.getLanguages().put("csharp", 1);
+        ExecutionScheduler scheduler = new ExecutionScheduler(properties);
+
+        ExecutionScheduler.Ticket csharp = scheduler.acquire("a", Language.CSHARP);
+        Future<ExecutionScheduler.Ticket> secondCsharp = callers.submit(() -> scheduler.acquire("b", Language.CSHARP));
+        awaitQueued(scheduler, 1);
+        scheduler.acquire("c", Language.PYTHON);
+        assertThat(secondCsharp.isDone()).isFalse();
+
+        csharp.release();
+        assertThat(secondCsharp.get(2, TimeUnit.SECONDS)).isNotNull();
+    }
+
+    @Test
+    void rejectsWhenQueueIsFullAndReleaseIsIdempotent() throws Exception {
+        ExecutionScheduler scheduler = new ExecutionScheduler(properties(1, 10, 1));
+        ExecutionScheduler.Ticket running = scheduler.acquire("a", Language.PYTHON);
+        Future<ExecutionScheduler.Ticket> queued = callers.submit(() -> scheduler.acquire("b", Language.PYTHON));
+        awaitQueued(scheduler, 1);
+
+        assertThatThrownBy(() -> scheduler.acquire("c", Language.PYTHON))
+                .isInstanceOf(AdmissionRejectedException.class)
+                .satisfies(e -> assertThat(((AdmissionRejectedException) e).getRetryAfterSeconds()).isPositive());
+
+        running.release();
+        running.release();
+        queued.get(2, TimeUnit.SECONDS);
+        assertThat(scheduler.getRunning()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,58 @@
+package io.github.Syedowais381.CodePulz.scheduler;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimerWheelTest {
+
+    @Test
+    void expiresItemsOnceTheirTickHasPassed() {
+        TimerWheel<String> wheel = new TimerWheel<>(100, 8, 0);
+        wheel.schedule("a", 250);
+        wheel.schedule("b", 300);
+        wheel.schedule("c", 950); // a turn later, in the same slot as "a"
+        List<String> expired = new ArrayList<>();
+
+        wheel.advance(290, expired::add);
+        assertThat(expired).isEmpty();
+        wheel.advance(300, expired::add);
+        assertThat(expired).containsExactly("a", "b");
+        wheel.advance(900, expired::add);
+        assertThat(expired).containsExactly("a", "b");
+        wheel.advance(1000, expired::add);
+        assertThat(expired).containsExactly("a", "b", "c");
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void jumpOfSeveralTurnsExpiresEverythingDue() {
+        TimerWheel<String> wheel = new TimerWheel<>(100, 4, 0);
+        for (int i = 1; i <= 10; i++) {
+            wheel.schedule("t" + i, i * 100L);
+        }
+        wheel.schedule("later", 5000);
+        List<String> expired = new ArrayList<>();
+
+        wheel.advance(2000, expired::add);
+
+        assertThat(expired).hasSize(10);
+        assertThat(wheel.size()).isEqualTo(1);
+    }
+
+    @Test
+    void pastDeadlinesFireOnTheNextAdvance() {
+        TimerWheel<String> wheel = new TimerWheel<>(100, 8, 1000);
+        wheel.advance(1500, item -> {
+        });
+        wheel.schedule("late", 200);
+        List<String> expired = new ArrayList<>();
+
+        wheel.advance(1600, expired::add);
+
+        assertThat(expired).containsExactly("late");
+    }
+}
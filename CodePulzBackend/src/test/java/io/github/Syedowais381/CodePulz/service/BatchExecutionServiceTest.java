@@ -0,0 +1,143 @@
+package io.github.Syedowais381.CodePulz.service;
+
+import io.github.Syedowais381.CodePulz.config.AdmissionProperties;
+import io.github.Syedowais381.CodePulz.config.ExecutionProperties;
+import io.github.Syedowais381.CodePulz.dto.BatchCaseResult;
+import io.github.Syedowais381.CodePulz.dto.BatchRequest;
+import io.github.Syedowais381.CodePulz.dto.BatchResponse;
+import io.github.Syedowais381.CodePulz.sandbox.Language;
+import io.github.Syedowais381.CodePulz.scheduler.AdmissionRejectedException;
+import io.github.Syedowais381.CodePulz.scheduler.ExecutionScheduler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BatchExecutionServiceTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final ExecutionService executionService = mock(ExecutionService.class);
+    private final BatchExecutionService batchService = batchService(new AdmissionProperties());
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private BatchExecutionService batchService(AdmissionProperties admission) {
+        ExecutionJobService jobService = new ExecutionJobService(executionService, new ExecutionProperties(),
+                new ExecutionScheduler(admission), admission, executor);
+        return new BatchExecutionService(executionService, jobService, new ExecutionProperties(), admission);
+    }
+
+    private static BatchRequest request(String... inputsAndExpected) {
+        BatchRequest request = new BatchRequest();
+        request.setLanguage("cpp");
+        request.setCode("int main() {}");
+        for (int i = 0; i < inputsAndExpected.length; i += 2) {
+            BatchRequest.BatchCase testCase = new BatchRequest.BatchCase();
+            testCase.setInput(inputsAndExpected[i]);
+            testCase.setExpectedOutput(inputsAndExpected[i + 1]);
+            request.getCases().add(testCase);
+        }
+        return request;
+    }
+
+    @Test
+    void compilesOnceAndReportsEveryCaseInRequestOrder() throws Exception {
+        when(executionService.runWithInput(eq(Language.CPP), anyString(), anyString(), anyString()))
+                .thenAnswer(invocation -> {
+                    String input = invocation.getArgument(2);
+                    // Echo the input doubled; "slow" finishes last
+                    if (input.equals("slow")) {
+                        Thread.sleep(100);
+                    }
+                    return new ExecutionService.RunResult(input + input, "", 0, false, 3, 0, 0, false, false);
+                });
+
+        List<BatchCaseResult> streamed = new CopyOnWriteArrayList<>();
+        BatchResponse response = batchService.runAsync(request("slow", "slowslow", "a", "b", "c", null),
+                "client", streamed::add).get(5, TimeUnit.SECONDS);
+
+        verify(executionService, times(1)).precompile(eq(Language.CPP), anyString(), anyString());
+        assertThat(response.getError()).isNull();
+        assertThat(response.getResults()).extracting(BatchCaseResult::getIndex).containsExactly(0, 1, 2);
+        assertThat(response.getResults()).extracting(BatchCaseResult::getPassed).containsExactly(true, false, null);
+        assertThat(response.getPassedCount()).isEqualTo(1);
+        assertThat(streamed).hasSize(3);
+        assertThat(streamed.get(2).getIndex()).isZero();
+    }
+
+    @Test
+    void compileErrorFailsTheBatchWithoutRunningCases() throws Exception {
+        when(executionService.precompile(any(), anyString(), anyString())).thenReturn("main.cpp:1: error");
+
+        BatchResponse response = batchService.runAsync(request("1", "1"), "client", result -> { })
+                .get(5, TimeUnit.SECONDS);
+
+        assertThat(response.getError()).isEqualTo("main.cpp:1: error");
+        assertThat(response.getResults()).isEmpty();
+        verify(executionService, never()).runWithInput(any(), anyString(), anyString(), anyString());
+    }
+
+    @Test
+    void batchesCountAgainstTheInFlightCap() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(executionService.precompile(any(), anyString(), anyString())).thenAnswer(invocation -> {
+            release.await();
+            return null;
+        });
+        AdmissionProperties admission = new AdmissionProperties();
+        admission.setMaxConcurrent(1);
+        admission.setMaxQueue(0);
+        BatchExecutionService service = batchService(admission);
+
+        CompletableFuture<BatchResponse> first = service.runAsync(request("1", "1"), "a", result -> { });
+        assertThatThrownBy(() -> service.runAsync(request("1", "1"), "b", result -> { }))
+                .isInstanceOf(AdmissionRejectedException.class);
+
+        release.countDown();
+        assertThat(first.get(5, TimeUnit.SECONDS).getResults()).hasSize(1);
+    }
+
+    @Test
+    void runsEveryCaseWithAFewWorkers() throws Exception {
+        when(executionService.runWithInput(eq(Language.CPP), anyString(), anyString(), anyString()))
+                .thenReturn(new ExecutionService.RunResult("1", "", 0, false, 1, 0, 0, false, false));
+        AdmissionProperties admission = new AdmissionProperties();
+        admission.setMaxPerClient(2);
+        String[] cases = new String[40];
+        Arrays.fill(cases, "1");
+
+        BatchResponse response = batchService(admission).runAsync(request(cases), "client", result -> { })
+                .get(5, TimeUnit.SECONDS);
+
+        assertThat(response.getResults()).hasSize(20).allMatch(result -> Boolean.TRUE.equals(result.getPassed()));
+        verify(executionService, times(20)).runWithInput(eq(Language.CPP), anyString(), anyString(), anyString());
+    }
+
+    @Test
+    void comparesOutputIgnoringLineEndingsAndTrailingWhitespace() {
+        assertThat(BatchExecutionService.normalize("1 2 \r\n3\n\n"))
+                .isEqualTo(BatchExecutionService.normalize("1 2\n3"));
+        assertThat(BatchExecutionService.normalize(" 1")).isNotEqualTo(BatchExecutionService.normalize("1"));
+    }
+}
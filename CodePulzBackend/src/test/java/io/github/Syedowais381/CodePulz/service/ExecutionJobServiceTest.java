@@ -0,0 +1,103 @@
+package io.github.Syedowais381.CodePulz.service;
+
+import io.github.Syedowais381.CodePulz.config.AdmissionProperties;
+import io.github.Syedowais381.CodePulz.config.ExecutionProperties;
+import io.github.Syedowais381.CodePulz.dto.ExecutionJob;
+import io.github.Syedowais381.CodePulz.dto.ExecutionRequest;
+import io.github.Syedowais381.CodePulz.dto.ExecutionResponse;
+import io.github.Syedowais381.CodePulz.scheduler.AdmissionRejectedException;
+import io.github.Syedowais381.CodePulz.scheduler.ExecutionScheduler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ExecutionJobServiceTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final ExecutionService executionService = mock(ExecutionService.class);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private ExecutionJobService jobService(int maxConcurrent, int maxQueue) {
+        AdmissionProperties admission = new AdmissionProperties();
+        admission.setMaxConcurrent(maxConcurrent);
+        admission.setMaxQueue(maxQueue);
+        return new ExecutionJobService(executionService, new ExecutionProperties(),
+                new ExecutionScheduler(admission), admission, executor);
+    }
+
+    private static ExecutionRequest request() {
+        ExecutionRequest request = new ExecutionRequest();
+        request.setLanguage("python");
+        request.setCode("print(1)");
+        request.setInput("x");
+        return request;
+    }
+
+    @Test
+    void submitReturnsPendingJobAndCompletesItInTheBackground() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(executionService.executeCode(any(), anyString())).thenAnswer(invocation -> {
+            release.await();
+            return new ExecutionResponse("1", "", 5, null, false, true);
+        });
+        ExecutionJobService service = jobService(2, 2);
+
+        ExecutionJob job = service.submit(request(), "client");
+        assertThat(job.getStatus()).isEqualTo(ExecutionJob.Status.PENDING);
+        assertThat(service.getJob(job.getJobId())).isSameAs(job);
+
+        release.countDown();
+        ExecutionResponse result = job.getResult().get(2, TimeUnit.SECONDS);
+        assertThat(result.getOutput()).isEqualTo("1");
+        assertThat(job.toResponse().getStatus()).isEqualTo(ExecutionJob.Status.COMPLETED);
+    }
+
+    @Test
+    void rejectsSubmissionsBeyondTheInFlightCap() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(executionService.executeCode(any(), anyString())).thenAnswer(invocation -> {
+            release.await();
+            return new ExecutionResponse("", "", 0, null, false, true);
+        });
+        ExecutionJobService service = jobService(1, 1);
+
+        service.submit(request(), "a");
+        service.executeCode(request(), "b");
+        assertThatThrownBy(() -> service.submit(request(), "c")).isInstanceOf(AdmissionRejectedException.class);
+
+        release.countDown();
+        long deadline = System.currentTimeMillis() + 2000;
+        while (service.getInFlight() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(service.getInFlight()).isZero();
+    }
+
+    @Test
+    void jobRejectedWhileQueuedIsReportedAsRejected() throws Exception {
+        when(executionService.executeCode(any(), anyString()))
+                .thenThrow(new AdmissionRejectedException("Server busy: timed out waiting for a free sandbox", 30));
+        ExecutionJobService service = jobService(1, 10);
+
+        ExecutionJob job = service.submit(request(), "client");
+        ExecutionResponse result = job.getResult().get(2, TimeUnit.SECONDS);
+
+        assertThat(job.getStatus()).isEqualTo(ExecutionJob.Status.REJECTED);
+        assertThat(result.getError()).contains("timed out");
+    }
+}
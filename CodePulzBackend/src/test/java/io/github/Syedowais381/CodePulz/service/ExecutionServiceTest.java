@@ -0,0 +1,212 @@
+package io.github.Syedowais381.CodePulz.service;
+
+import io.github.Syedowais381.CodePulz.cache.CompilationCache;
+import io.github.Syedowais381.CodePulz.cache.ResultCache;
+import io.github.Syedowais381.CodePulz.config.AdmissionProperties;
+import io.github.Syedowais381.CodePulz.config.CompileCacheProperties;
+import io.github.Syedowais381.CodePulz.config.ExecutionProperties;
+import io.github.Syedowais381.CodePulz.config.ResultCacheProperties;
+import io.github.Syedowais381.CodePulz.config.SandboxPoolProperties;
+import io.github.Syedowais381.CodePulz.config.SessionProperties;
+import io.github.Syedowais381.CodePulz.config.WorkspaceProperties;
+import io.github.Syedowais381.CodePulz.dto.ExecutionResponse;
+import io.github.Syedowais381.CodePulz.dto.ExecutionSession;
+import io.github.Syedowais381.CodePulz.metrics.ExecutionMetrics;
+import io.github.Syedowais381.CodePulz.sandbox.Language;
+import io.github.Syedowais381.CodePulz.sandbox.SandboxPool;
+import io.github.Syedowais381.CodePulz.sandbox.SandboxRunner;
+import io.github.Syedowais381.CodePulz.sandbox.WorkspaceManager;
+import io.github.Syedowais381.CodePulz.scheduler.ExecutionScheduler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ExecutionServiceTest {
+
+    private final ExecutorService io = Executors.newCachedThreadPool();
+    private final ExecutionProperties properties = new ExecutionProperties();
+    private final WorkspaceManager workspaces = new WorkspaceManager(new WorkspaceProperties());
+    private final SessionManager sessions = new SessionManager(new SessionProperties(), new SimpleMeterRegistry());
+    private final SandboxRunner runner = mock(SandboxRunner.class);
+    private final ExecutionService service = new ExecutionService(
+            new SandboxPool(runner, new SandboxPoolProperties()),
+            new CompilationCache(new CompileCacheProperties(), new SimpleMeterRegistry()), properties, io,
+            new ExecutionScheduler(new AdmissionProperties()), new ExecutionMetrics(new SimpleMeterRegistry()),
+            new StdinWaitDetector(properties), workspaces, sessions,
+            new ResultCache(new ResultCacheProperties(), new SimpleMeterRegistry()));
+
+    @AfterEach
+    void tearDown() {
+        sessions.getSessions().forEach(ExecutionSession::close);
+        io.shutdownNow();
+    }
+
+    /**
+     * A session running script with sh, as if started through startInteractiveExecution.
+     */
+    private ExecutionSession start(String script) throws Exception {
+        Process process = new ProcessBuilder("sh", "-c", script).start();
+        ExecutionSession session = new ExecutionSession(UUID.randomUUID().toString(), process, workspaces.acquire(),
+                ExecutionSession.DEFAULT_OUTPUT_RETENTION_BYTES, io);
+        session.setLanguage(Language.PYTHON);
+        sessions.register(session, "client");
+        return session;
+    }
+
+    /**
+     * Until the output contains text and the session has been quiet for a moment.
+     */
+    private static void waitForOutput(ExecutionSession session, String text) throws InterruptedException {
+        long seen = session.getChangeCount();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!session.getCurrentOutput().contains(text) && System.currentTimeMillis() < deadline) {
+            seen = session.awaitChange(seen, 100);
+        }
+        assertThat(session.getCurrentOutput()).contains(text);
+        for (long next = session.awaitChange(seen, 100); next != seen; next = session.awaitChange(seen, 100)) {
+            seen = next;
+        }
+    }
+
+    @Test
+    void offsetsReturnOnlyOutputPrintedSince() throws Exception {
+        ExecutionSession session = start("echo one; read x; echo two; read y");
+        waitForOutput(session, "one\n");
+
+        ExecutionResponse first = service.getSessionStatus(session.getSessionId());
+        assertThat(first.getOutput()).isEqualTo("one\n");
+        assertThat(first.getNextOutputOffset()).isEqualTo(4);
+
+        ExecutionResponse second = service.sendInputToSession(session.getSessionId(), "go", false,
+                first.getNextOutputOffset(), first.getNextErrorOffset());
+        assertThat(second.getOutput()).isEqualTo("two\n");
+        assertThat(second.getNextOutputOffset()).isEqualTo(8);
+
+        ExecutionResponse third = service.pollSessionStatus(session.getSessionId(), 8L, 0L, 0, null)
+                .get(5, TimeUnit.SECONDS).response();
+        assertThat(third.getOutput()).isEmpty();
+        assertThat(third.getNextOutputOffset()).isEqualTo(8);
+    }
+
+    @Test
+    void restInputIsRefusedWhileASocketOwnsTheInput() throws Exception {
+        ExecutionSession session = start("read x; echo got $x; read y");
+        session.setInputOwnedBySocket(true);
+
+        ExecutionResponse refused = service.sendInputToSession(session.getSessionId(), "rest", false);
+        assertThat(refused.getError()).contains("WebSocket");
+        assertThat(session.getCurrentOutput()).isEmpty();
+
+        session.setInputOwnedBySocket(false);
+        ExecutionResponse accepted = service.sendInputToSession(session.getSessionId(), "rest", false);
+        assertThat(accepted.getOutput()).isEqualTo("got rest\n");
+    }
+
+    @Test
+    void unchangedSessionIsNotModified() throws Exception {
+        ExecutionSession session = start("echo ready; read x; echo more; read y");
+        waitForOutput(session, "ready\n");
+
+        ExecutionService.StatusPoll first = service.pollSessionStatus(session.getSessionId(), null, null, 0, null)
+                .get(5, TimeUnit.SECONDS);
+        assertThat(first.etag()).isNotNull();
+        ExecutionService.StatusPoll again = service.pollSessionStatus(session.getSessionId(), null, null, 0,
+                "W/" + first.etag()).get(5, TimeUnit.SECONDS);
+        assertThat(again.notModified()).isTrue();
+        assertThat(again.etag()).isEqualTo(first.etag());
+
+        session.sendInput("x", false);
+        waitForOutput(session, "more\n");
+        ExecutionService.StatusPoll changed = service.pollSessionStatus(session.getSessionId(), null, null, 0,
+                first.etag()).get(5, TimeUnit.SECONDS);
+        assertThat(changed.notModified()).isFalse();
+        assertThat(changed.response().getOutput()).isEqualTo("ready\nmore\n");
+    }
+
+    @Test
+    void longPollIsAnsweredByTheNextOutput() throws Exception {
+        ExecutionSession session = start("read x; echo late; read y");
+
+        CompletableFuture<ExecutionService.StatusPoll> poll =
+                service.pollSessionStatus(session.getSessionId(), 0L, 0L, 5000, null);
+        Thread.sleep(100);
+        assertThat(poll.isDone()).isFalse();
+
+        long sent = System.currentTimeMillis();
+        session.sendInput("x", false);
+        ExecutionResponse response = poll.get(5, TimeUnit.SECONDS).response();
+
+        assertThat(System.currentTimeMillis() - sent).isLessThan(2000);
+        assertThat(response.getOutput()).isEqualTo("late\n");
+    }
+
+    @Test
+    void longPollWithACurrentTagTimesOutAsNotModified() throws Exception {
+        ExecutionSession session = start("read x");
+        String etag = service.pollSessionStatus(session.getSessionId(), null, null, 0, null)
+                .get(5, TimeUnit.SECONDS).etag();
+
+        long start = System.currentTimeMillis();
+        ExecutionService.StatusPoll poll = service.pollSessionStatus(session.getSessionId(), null, null, 200, etag)
+                .get(5, TimeUnit.SECONDS);
+
+        assertThat(System.currentTimeMillis() - start).isGreaterThanOrEqualTo(190);
+        assertThat(poll.notModified()).isTrue();
+    }
+
+    /**
+     * Cold starts (the pool is off by default) run script with sh instead of the program.
+     */
+    private void coldStartsRun(String script) throws Exception {
+        when(runner.start(any(), any(), any())).thenAnswer(invocation -> new ProcessBuilder("sh", "-c", script).start());
+    }
+
+    @Test
+    void streamedRunPipesInputThroughByteForByte() throws Exception {
+        coldStartsRun("cat; printf 'oops' >&2; exit 3");
+        // Binary data, CRLFs and trailing whitespace must all survive
+        byte[] input = new byte[3 * 1024 * 1024 + 5];
+        new Random(42).nextBytes(input);
+        System.arraycopy(" \r\n\n ".getBytes(), 0, input, input.length - 5, 5);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        ExecutionService.StreamedResult result = service.runStreaming(Language.PYTHON, "print()",
+                new ByteArrayInputStream(input), output, "client");
+
+        assertThat(output.toByteArray()).isEqualTo(input);
+        assertThat(result.outputBytes()).isEqualTo(input.length);
+        assertThat(result.exitCode()).isEqualTo(3);
+        assertThat(result.error()).isEqualTo("oops");
+        assertThat(result.outputTruncated()).isFalse();
+        assertThat(result.timedOut()).isFalse();
+    }
+
+    @Test
+    void streamedRunIsKilledAtTheOutputCap() throws Exception {
+        properties.setStreamMaxOutputBytes(10_000);
+        coldStartsRun("yes");
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        ExecutionService.StreamedResult result = service.runStreaming(Language.PYTHON, "print()",
+                InputStream.nullInputStream(), output, "client");
+
+        assertThat(output.size()).isEqualTo(10_000);
+        assertThat(result.outputTruncated()).isTrue();
+        assertThat(result.outputBytes()).isEqualTo(10_000);
+    }
+}
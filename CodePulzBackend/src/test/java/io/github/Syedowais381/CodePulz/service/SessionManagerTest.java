@@ -0,0 +1,177 @@
+package io.github.Syedowais381.CodePulz.service;
+
+import io.github.Syedowais381.CodePulz.config.SessionProperties;
+import io.github.Syedowais381.CodePulz.dto.ExecutionSession;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SessionManagerTest {
+
+    private final List<ExecutionSession> started = new ArrayList<>();
+    private final List<ExecutionSession> evicted = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean memoryPressure = new AtomicBoolean();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @AfterEach
+    void tearDown() {
+        started.forEach(ExecutionSession::close);
+    }
+
+    private SessionManager manager(SessionProperties properties) {
+        SessionManager manager = new SessionManager(properties, registry, memoryPressure::get);
+        manager.setEvictionHandler(session -> {
+            evicted.add(session);
+            session.close();
+        });
+        return manager;
+    }
+
+    private static SessionProperties properties() {
+        SessionProperties properties = new SessionProperties();
+        properties.setTickMs(100);
+        properties.setIdleTimeoutMs(5000);
+        properties.setCompletedRetentionMs(2000);
+        properties.setMinIdleMs(1000);
+        return properties;
+    }
+
+    private ExecutionSession start(String id, String script) throws Exception {
+        Process process = new ProcessBuilder("sh", "-c", script).start();
+        ExecutionSession session = new ExecutionSession(id, process, null);
+        started.add(session);
+        return session;
+    }
+
+    private double evictions(String reason) {
+        return registry.counter("codepulz.sessions.evicted", "reason", reason).count();
+    }
+
+    @Test
+    void killsRunningSessionOnlyAfterIdleTimeoutSinceLastActivity() throws Exception {
+        SessionManager manager = manager(properties());
+        ExecutionSession session = start("a", "while read line; do :; done");
+        manager.register(session, "client");
+        Thread.sleep(300);
+        session.sendInput("x", false);
+        long inputAt = session.getLastInputTime();
+
+        // Five seconds after start, but not after the input
+        manager.tick(session.getStartTime() + 5100);
+        assertThat(manager.get("a")).isSameAs(session);
+
+        manager.tick(inputAt + 5100);
+        assertThat(manager.get("a")).isNull();
+        assertThat(evicted).containsExactly(session);
+        assertThat(evictions("idle")).isEqualTo(1);
+    }
+
+    @Test
+    void outputKeepsRunningSessionAlive() throws Exception {
+        SessionManager manager = manager(properties());
+        ExecutionSession session = start("a", "sleep 0.3; echo still working; read line");
+        manager.register(session, "client");
+        long waitUntil = System.currentTimeMillis() + 5000;
+        while (session.getLastOutputTime() < session.getStartTime() + 300 && System.currentTimeMillis() < waitUntil) {
+            Thread.sleep(20);
+        }
+        long outputAt = session.getLastOutputTime();
+
+        // No input at all, but the program printed after it started
+        manager.tick(session.getStartTime() + 5100);
+        assertThat(manager.get("a")).isSameAs(session);
+
+        manager.tick(outputAt + 5100);
+        assertThat(manager.get("a")).isNull();
+        assertThat(evictions("idle")).isEqualTo(1);
+    }
+
+    @Test
+    void dropsFinishedSessionAfterRetention() throws Exception {
+        SessionManager manager = manager(properties());
+        ExecutionSession session = start("a", "echo done");
+        manager.register(session, "client");
+        session.getExitFuture().get(5, TimeUnit.SECONDS);
+        long now = System.currentTimeMillis();
+
+        manager.tick(now + 1000);
+        assertThat(manager.get("a")).isSameAs(session);
+        manager.tick(now + 2200);
+        assertThat(manager.get("a")).isNull();
+        assertThat(evictions("expired")).isEqualTo(1);
+    }
+
+    @Test
+    void evictsClientsLeastRecentlyUsedSessionBeyondItsLimit() throws Exception {
+        SessionProperties properties = properties();
+        properties.setMaxPerClient(2);
+        SessionManager manager = manager(properties);
+        ExecutionSession first = start("a", "read n");
+        ExecutionSession second = start("b", "read n");
+        manager.register(first, "client");
+        Thread.sleep(5);
+        manager.register(second, "client");
+        Thread.sleep(5);
+        manager.get("a");
+        manager.register(start("other", "read n"), "someone-else");
+
+        manager.register(start("c", "read n"), "client");
+
+        assertThat(evicted).containsExactly(second);
+        assertThat(manager.size()).isEqualTo(3);
+        assertThat(evictions("client_limit")).isEqualTo(1);
+    }
+
+    @Test
+    void evictsOnlyIdleSessionsWhenFull() throws Exception {
+        SessionProperties properties = properties();
+        properties.setMaxSessions(2);
+        properties.setMinIdleMs(60000);
+        SessionManager manager = manager(properties);
+        ExecutionSession running = start("a", "read n");
+        ExecutionSession finished = start("b", "true");
+        manager.register(running, "one");
+        manager.register(finished, "two");
+        finished.getExitFuture().get(5, TimeUnit.SECONDS);
+        // The exit callback may run just after the future completes
+        Thread.sleep(50);
+
+        manager.register(start("c", "read n"), "three");
+        assertThat(evicted).containsExactly(finished);
+
+        // Nothing else is idle: admitted over the cap rather than killing active sessions
+        manager.register(start("d", "read n"), "four");
+        assertThat(evicted).containsExactly(finished);
+        assertThat(manager.size()).isEqualTo(3);
+    }
+
+    @Test
+    void evictsIdleSessionsUnderMemoryPressure() throws Exception {
+        SessionProperties properties = properties();
+        properties.setPressureEvictBatch(1);
+        SessionManager manager = manager(properties);
+        ExecutionSession older = start("a", "read n");
+        manager.register(older, "one");
+        Thread.sleep(5);
+        manager.register(start("b", "read n"), "two");
+        long now = System.currentTimeMillis();
+
+        manager.tick(now + 500);
+        assertThat(evicted).isEmpty();
+
+        memoryPressure.set(true);
+        manager.tick(now + 500);
+        assertThat(evicted).isEmpty(); // both were active within min-idle-ms
+        manager.tick(now + 1500);
+        assertThat(evicted).containsExactly(older);
+        assertThat(evictions("memory")).isEqualTo(1);
+    }
+}
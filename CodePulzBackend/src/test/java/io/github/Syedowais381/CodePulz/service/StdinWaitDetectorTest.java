@@ -0,0 +1,78 @@
+package io.github.Syedowais381.CodePulz.service;
+
+import io.github.Syedowais381.CodePulz.config.ExecutionProperties;
+import io.github.Syedowais381.CodePulz.dto.ExecutionSession;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@EnabledOnOs(OS.LINUX)
+class StdinWaitDetectorTest {
+
+    private final StdinWaitDetector detector = new StdinWaitDetector(new ExecutionProperties());
+    private ExecutionSession session;
+
+    @AfterEach
+    void tearDown() {
+        detector.shutdown();
+        if (session != null) {
+            session.close();
+        }
+    }
+
+    @Test
+    void reportsWaitingAsSoonAsTheProgramReadsStdin() throws Exception {
+        session = start("printf 'Enter a number: '; read n; echo \"got $n\"; read m");
+        assertThat(attach()).isTrue();
+
+        long seen = awaitWaiting(0, true);
+        assertThat(session.getCurrentOutput()).isEqualTo("Enter a number: ");
+
+        session.sendInput("7", false);
+        assertThat(session.isWaitingForInput()).isFalse();
+        awaitWaiting(seen, true);
+        assertThat(session.getCurrentOutput()).isEqualTo("Enter a number: got 7\n");
+    }
+
+    @Test
+    void busyProgramIsNotWaitingEvenWhenSilent() throws Exception {
+        session = start("while :; do :; done");
+        assertThat(attach()).isTrue();
+
+        long seen = session.getChangeCount();
+        session.awaitChange(seen, 300);
+
+        assertThat(session.hasInputDetection()).isTrue();
+        assertThat(session.isWaitingForInput()).isFalse();
+    }
+
+    private ExecutionSession start(String script) throws Exception {
+        Process process = new ProcessBuilder("sh", "-c", script).start();
+        return new ExecutionSession("test", process, null);
+    }
+
+    private boolean attach() {
+        Process process = session.getProcess();
+        return detector.attach(session, () -> {
+            List<Long> pids = new ArrayList<>();
+            pids.add(process.pid());
+            process.descendants().forEach(child -> pids.add(child.pid()));
+            return pids;
+        });
+    }
+
+    private long awaitWaiting(long seen, boolean waiting) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (session.isWaitingForInput() != waiting) {
+            assertThat(System.currentTimeMillis()).as("waiting for input = " + waiting).isLessThan(deadline);
+            seen = session.awaitChange(seen, 500);
+        }
+        return seen;
+    }
+}
@@ -0,0 +1,142 @@
+package io.github.Syedowais381.CodePulz.sse;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.Syedowais381.CodePulz.dto.ExecutionSession;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SessionEventStreamerTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final ScheduledExecutorService executor = Executors.newScheduledThreadPool(2);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private record Event(String id, String name, JsonNode data) {
+    }
+
+    /**
+     * Records the events it is asked to send instead of writing a response.
+     */
+    private final class RecordingEmitter extends SseEmitter {
+        final List<Event> events = new CopyOnWriteArrayList<>();
+        final CountDownLatch completed = new CountDownLatch(1);
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            StringBuilder text = new StringBuilder();
+            for (ResponseBodyEmitter.DataWithMediaType part : builder.build()) {
+                text.append(part.getData());
+            }
+            String id = null;
+            String name = null;
+            JsonNode data = null;
+            for (String line : text.toString().split("\n")) {
+                if (line.startsWith("id:")) {
+                    id = line.substring(3);
+                } else if (line.startsWith("event:")) {
+                    name = line.substring(6);
+                } else if (line.startsWith("data:")) {
+                    try {
+                        data = mapper.readTree(line.substring(5));
+                    } catch (Exception e) {
+                        throw new AssertionError(e);
+                    }
+                }
+            }
+            events.add(new Event(id, name, data));
+        }
+
+        @Override
+        public void complete() {
+            completed.countDown();
+        }
+
+        void awaitEvent(String name) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (events.stream().noneMatch(e -> e.name().equals(name))) {
+                assertThat(System.currentTimeMillis()).as("waiting for " + name).isLessThan(deadline);
+                Thread.sleep(10);
+            }
+        }
+
+        String stdout() {
+            return events.stream().filter(e -> e.name().equals("stdout"))
+                    .map(e -> e.data().get("data").asText()).reduce("", String::concat);
+        }
+    }
+
+    private SessionEventStreamer streamer(RecordingEmitter emitter, ExecutionSession session, long out, long err) {
+        return new SessionEventStreamer(emitter, session, mapper, executor, executor, 100, out, err);
+    }
+
+    @Test
+    void streamsOutputStatusAndExitWithOffsetIds() throws Exception {
+        RecordingEmitter emitter = new RecordingEmitter();
+        Process process = new ProcessBuilder("sh", "-c",
+                "printf 'Name? '; read n; echo \"hi $n\"; echo oops >&2; exit 4").start();
+        ExecutionSession session = new ExecutionSession("s1", process, null);
+
+        session.subscribe(streamer(emitter, session, 0, 0));
+        emitter.awaitEvent("status");
+        assertThat(emitter.events.get(emitter.events.size() - 1).data().get("waitingForInput").asBoolean()).isTrue();
+        session.sendInput("ann", false);
+
+        assertThat(emitter.completed.await(5, TimeUnit.SECONDS)).isTrue();
+        Event exit = emitter.events.get(emitter.events.size() - 1);
+        assertThat(exit.name()).isEqualTo("exit");
+        assertThat(exit.data().get("code").asInt()).isEqualTo(4);
+        assertThat(emitter.stdout()).startsWith("Name? hi ann\n").contains("[Process exited with code: 4]");
+        assertThat(emitter.events).filteredOn(e -> e.name().equals("stderr"))
+                .extracting(e -> e.data().get("data").asText()).containsExactly("oops\n");
+        // The last id points just past everything that was sent
+        String[] offsets = exit.id().split(":");
+        assertThat(Long.parseLong(offsets[0])).isEqualTo(session.readOutput(0).nextOffset());
+        assertThat(Long.parseLong(offsets[1])).isEqualTo(5);
+    }
+
+    @Test
+    void resumesAfterTheLastEventIdWithoutRepeatingOutput() throws Exception {
+        Process process = new ProcessBuilder("sh", "-c", "echo one; read x; echo two").start();
+        ExecutionSession session = new ExecutionSession("s2", process, null);
+        RecordingEmitter first = new RecordingEmitter();
+        SessionEventStreamer firstStreamer = streamer(first, session, 0, 0);
+        session.subscribe(firstStreamer);
+        first.awaitEvent("stdout");
+        firstStreamer.stop();
+        String lastEventId = first.events.get(0).id();
+        assertThat(lastEventId).isEqualTo("4:0");
+
+        session.sendInput("x", false);
+        session.getExitFuture().get(5, TimeUnit.SECONDS);
+        RecordingEmitter resumed = new RecordingEmitter();
+        long[] from = SessionEventStreams.resumeOffsets(lastEventId);
+        session.subscribe(streamer(resumed, session, from[0], from[1]));
+
+        assertThat(resumed.completed.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(resumed.stdout()).startsWith("two\n").doesNotContain("one");
+    }
+
+    @Test
+    void unknownEventIdsStartFromTheBeginning() {
+        assertThat(SessionEventStreams.resumeOffsets("12:3")).containsExactly(12, 3);
+        assertThat(SessionEventStreams.resumeOffsets(null)).containsExactly(0, 0);
+        assertThat(SessionEventStreams.resumeOffsets("abc")).containsExactly(0, 0);
+        assertThat(SessionEventStreams.resumeOffsets("-1:2")).containsExactly(0, 0);
+    }
+}
@@ -0,0 +1,284 @@
+package io.github.Syedowais381.CodePulz.websocket;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.Syedowais381.CodePulz.config.WebSocketProperties;
+import io.github.Syedowais381.CodePulz.dto.ExecutionSession;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SessionBroadcasterTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final ScheduledExecutorService executor = Executors.newScheduledThreadPool(4);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    private SessionBroadcaster broadcaster(ExecutionSession execSession, WebSocketProperties properties) {
+        return new SessionBroadcaster(execSession, mapper, executor, executor, 100, properties);
+    }
+
+    @Test
+    void pushesLiveOutputStatusAndExit() throws Exception {
+        List<WebSocketMessage<?>> sent = new CopyOnWriteArrayList<>();
+        WebSocketSession socket = recordingSocket(sent, false);
+        Process process = new ProcessBuilder("sh", "-c",
+                "printf 'Enter a number: '; read n; echo \"got $n\"; exit 4").start();
+        ExecutionSession execSession = new ExecutionSession("s1", process, null);
+        SessionBroadcaster broadcaster = broadcaster(execSession, new WebSocketProperties());
+
+        broadcaster.join(socket, false, true);
+        execSession.subscribe(broadcaster);
+        awaitFrame(sent, "status");
+        execSession.sendInput("7", false);
+
+        verify(socket, timeout(5000)).close(CloseStatus.NORMAL);
+        List<JsonNode> frames = json(sent);
+        assertThat(stdout(frames)).startsWith("Enter a number: got 7\n").contains("[Process exited with code: 4]");
+        assertThat(frames.get(frames.size() - 1).get("type").asText()).isEqualTo("exit");
+        assertThat(frames.get(frames.size() - 1).get("code").asInt()).isEqualTo(4);
+    }
+
+    @Test
+    void sendsTheSameEncodedFramesToEverySubscriber() throws Exception {
+        List<WebSocketMessage<?>> first = new CopyOnWriteArrayList<>();
+        List<WebSocketMessage<?>> second = new CopyOnWriteArrayList<>();
+        WebSocketSession firstSocket = recordingSocket(first, false);
+        WebSocketSession secondSocket = recordingSocket(second, false);
+        Process process = new ProcessBuilder("sh", "-c", "read x; echo \"hi $x\"").start();
+        ExecutionSession execSession = new ExecutionSession("s2", process, null);
+        SessionBroadcaster broadcaster = broadcaster(execSession, new WebSocketProperties());
+
+        broadcaster.join(firstSocket, false, true);
+        broadcaster.join(secondSocket, false, true);
+        execSession.subscribe(broadcaster);
+        execSession.sendInput("all", false);
+
+        verify(firstSocket, timeout(5000)).close(CloseStatus.NORMAL);
+        verify(secondSocket, timeout(5000)).close(CloseStatus.NORMAL);
+        assertThat(stdout(json(first))).startsWith("hi all\n");
+        assertThat(first).hasSameSizeAs(second);
+        for (int i = 0; i < first.size(); i++) {
+            assertThat(first.get(i)).isSameAs(second.get(i));
+        }
+    }
+
+    @Test
+    void lateSubscriberReceivesEarlierOutputAndExit() throws Exception {
+        List<WebSocketMessage<?>> early = new CopyOnWriteArrayList<>();
+        List<WebSocketMessage<?>> late = new CopyOnWriteArrayList<>();
+        WebSocketSession earlySocket = recordingSocket(early, false);
+        WebSocketSession lateSocket = recordingSocket(late, false);
+        Process process = new ProcessBuilder("sh", "-c", "echo early").start();
+        ExecutionSession execSession = new ExecutionSession("s3", process, null);
+        SessionBroadcaster broadcaster = broadcaster(execSession, new WebSocketProperties());
+        broadcaster.join(earlySocket, false, true);
+        execSession.subscribe(broadcaster);
+        verify(earlySocket, timeout(5000)).close(CloseStatus.NORMAL);
+
+        broadcaster.join(lateSocket, false, false);
+
+        verify(lateSocket, timeout(5000)).close(CloseStatus.NORMAL);
+        List<JsonNode> frames = json(late);
+        assertThat(frames.get(0).get("data").asText()).startsWith("early\n");
+        assertThat(frames.get(frames.size() - 1).get("type").asText()).isEqualTo("exit");
+    }
+
+    @Test
+    void binaryProtocolPausesUntilClientAcknowledges() throws Exception {
+        List<WebSocketMessage<?>> sent = new CopyOnWriteArrayList<>();
+        WebSocketSession socket = recordingSocket(sent, false);
+        WebSocketProperties properties = new WebSocketProperties();
+        properties.setFlushWindowMs(5);
+        properties.setMaxFrameBytes(3);
+        properties.setFlowWindowBytes(4);
+        Process process = new ProcessBuilder("sh", "-c", "printf 'hello world'; exit 3").start();
+        ExecutionSession execSession = new ExecutionSession("s4", process, null);
+        execSession.getExitFuture().get();
+        SessionBroadcaster broadcaster = broadcaster(execSession, properties);
+
+        SessionBroadcaster.Subscriber subscriber = broadcaster.join(socket, true, true);
+        execSession.subscribe(broadcaster);
+        Thread.sleep(200);
+        // Two 3-byte frames, then nothing until acknowledged
+        assertThat(sent).hasSize(2);
+
+        ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        long deadline = System.currentTimeMillis() + 5000;
+        int read = 0;
+        while (sent.isEmpty() || payload(sent.get(sent.size() - 1)).get(0) != BinaryFrames.EXIT) {
+            assertThat(System.currentTimeMillis()).as("waiting for exit").isLessThan(deadline);
+            for (; read < sent.size(); read++) {
+                ByteBuffer frame = payload(sent.get(read));
+                if (frame.get(0) == BinaryFrames.STDOUT) {
+                    assertThat(frame.getLong(2)).isEqualTo(stdout.size());
+                    assertThat(frame.remaining() - BinaryFrames.OUTPUT_HEADER_BYTES).isBetween(1, 3);
+                    stdout.write(frame.array(), BinaryFrames.OUTPUT_HEADER_BYTES,
+                            frame.remaining() - BinaryFrames.OUTPUT_HEADER_BYTES);
+                }
+            }
+            subscriber.acknowledge(stdout.size());
+            Thread.sleep(10);
+        }
+
+        assertThat(stdout.toString(StandardCharsets.UTF_8)).isEqualTo("hello world\n[Process exited with code: 3]\n");
+        assertThat(payload(sent.get(sent.size() - 1)).getInt(1)).isEqualTo(3);
+        verify(socket, timeout(5000)).close(CloseStatus.NORMAL);
+    }
+
+    @Test
+    void disconnectsSubscriberThatFallsTooFarBehind() throws Exception {
+        List<WebSocketMessage<?>> fast = new CopyOnWriteArrayList<>();
+        WebSocketSession fastSocket = recordingSocket(fast, false);
+        WebSocketSession stuckSocket = recordingSocket(new CopyOnWriteArrayList<>(), true);
+        ExecutionSession execSession = new ExecutionSession("s5", chattyProcess(), null);
+        SessionBroadcaster broadcaster = broadcaster(execSession, slowSubscriberProperties(
+                WebSocketProperties.SlowSubscriberPolicy.DISCONNECT));
+
+        broadcaster.join(fastSocket, false, true);
+        broadcaster.join(stuckSocket, false, false);
+        execSession.subscribe(broadcaster);
+
+        verify(stuckSocket, timeout(5000)).close(CloseStatus.SESSION_NOT_RELIABLE);
+        verify(fastSocket, timeout(5000)).close(CloseStatus.NORMAL);
+        assertThat(stdout(json(fast))).contains("line 500:");
+        assertThat(broadcaster.countSubscribers()).isZero();
+    }
+
+    @Test
+    void skipsSlowSubscriberToTheNewestOutput() throws Exception {
+        List<WebSocketMessage<?>> sent = new CopyOnWriteArrayList<>();
+        WebSocketSession stuckSocket = recordingSocket(sent, true);
+        ExecutionSession execSession = new ExecutionSession("s6", chattyProcess(), null);
+        SessionBroadcaster broadcaster = broadcaster(execSession, slowSubscriberProperties(
+                WebSocketProperties.SlowSubscriberPolicy.DROP));
+
+        broadcaster.join(stuckSocket, false, true);
+        execSession.subscribe(broadcaster);
+        execSession.getExitFuture().get(5, TimeUnit.SECONDS);
+        Thread.sleep(100);
+        // Nothing held for it beyond the lag cap while it was stuck
+        assertThat(broadcaster.getLagBytes()).isLessThan(6000);
+        release.countDown();
+
+        verify(stuckSocket, timeout(5000)).close(CloseStatus.NORMAL);
+        String stdout = stdout(json(sent));
+        assertThat(stdout).contains("bytes of output skipped").contains("[Process exited with code: 0]");
+        assertThat(stdout).doesNotContain("line 250:");
+    }
+
+    @Test
+    void onlyOneSubscriberOwnsTheInput() throws Exception {
+        Process process = new ProcessBuilder("sh", "-c", "read x").start();
+        ExecutionSession execSession = new ExecutionSession("s7", process, null);
+        SessionBroadcaster broadcaster = broadcaster(execSession, new WebSocketProperties());
+
+        SessionBroadcaster.Subscriber viewer = broadcaster.join(recordingSocket(new CopyOnWriteArrayList<>(), false), false, false);
+        SessionBroadcaster.Subscriber owner = broadcaster.join(recordingSocket(new CopyOnWriteArrayList<>(), false), false, true);
+        SessionBroadcaster.Subscriber second = broadcaster.join(recordingSocket(new CopyOnWriteArrayList<>(), false), false, true);
+        assertThat(viewer.isOwner()).isFalse();
+        assertThat(owner.isOwner()).isTrue();
+        assertThat(second.isOwner()).isFalse();
+        assertThat(execSession.isInputOwnedBySocket()).isTrue();
+
+        // The next socket that asked for input takes over, never the viewer
+        SessionBroadcaster.Subscriber rejoined = broadcaster.join(recordingSocket(new CopyOnWriteArrayList<>(), false), false, true);
+        assertThat(broadcaster.leave(owner)).isFalse();
+        assertThat(second.isOwner()).isTrue();
+        assertThat(broadcaster.leave(second)).isFalse();
+        assertThat(rejoined.isOwner()).isTrue();
+        assertThat(viewer.isOwner()).isFalse();
+
+        // With only viewers left nobody owns the input, and REST may send it again
+        assertThat(broadcaster.leave(rejoined)).isFalse();
+        assertThat(viewer.isOwner()).isFalse();
+        assertThat(execSession.isInputOwnedBySocket()).isFalse();
+        execSession.close();
+    }
+
+    /**
+     * Prints 500 lines of about 50 bytes in bursts of 50, pausing between bursts.
+     */
+    private static Process chattyProcess() throws Exception {
+        return new ProcessBuilder("sh", "-c", "i=1; while [ $i -le 500 ]; do "
+                + "echo \"line $i: the quick brown fox jumps over the lazy dog\"; "
+                + "[ $((i % 50)) -eq 0 ] && sleep 0.05; i=$((i + 1)); done").start();
+    }
+
+    private static WebSocketProperties slowSubscriberProperties(WebSocketProperties.SlowSubscriberPolicy policy) {
+        WebSocketProperties properties = new WebSocketProperties();
+        properties.setFlushWindowMs(0);
+        properties.setSubscriberMaxLagBytes(3000);
+        properties.setSlowSubscriber(policy);
+        return properties;
+    }
+
+    /**
+     * A socket that records what it is sent; a stuck one blocks on its first send until released.
+     */
+    private WebSocketSession recordingSocket(List<WebSocketMessage<?>> sent, boolean stuck) throws Exception {
+        WebSocketSession socket = mock(WebSocketSession.class);
+        when(socket.isOpen()).thenReturn(true);
+        doAnswer(invocation -> {
+            if (stuck) {
+                release.await();
+            }
+            sent.add(invocation.getArgument(0));
+            return null;
+        }).when(socket).sendMessage(any());
+        return socket;
+    }
+
+    private List<JsonNode> json(List<WebSocketMessage<?>> sent) throws Exception {
+        List<JsonNode> frames = new CopyOnWriteArrayList<>();
+        for (WebSocketMessage<?> message : sent) {
+            frames.add(mapper.readTree(((TextMessage) message).getPayload()));
+        }
+        return frames;
+    }
+
+    private static String stdout(List<JsonNode> frames) {
+        return frames.stream().filter(f -> f.get("type").asText().equals("stdout"))
+                .map(f -> f.get("data").asText()).reduce("", String::concat);
+    }
+
+    private static ByteBuffer payload(WebSocketMessage<?> message) {
+        return ((BinaryMessage) message).getPayload();
+    }
+
+    private void awaitFrame(List<WebSocketMessage<?>> sent, String type) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (json(sent).stream().noneMatch(f -> f.get("type").asText().equals(type))) {
+            assertThat(System.currentTimeMillis()).as("waiting for " + type).isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+}